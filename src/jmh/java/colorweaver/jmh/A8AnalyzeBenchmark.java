@@ -0,0 +1,67 @@
+package colorweaver.jmh;
+
+import colorweaver.a8.A8PaletteReducer;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the A8PaletteReducer palette analysis methods on each sample image. Results are per analyzed pixel, and
+ * include building the 32KB mapping for the new palette.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class A8AnalyzeBenchmark {
+    @Param({SampleImages.PHOTO, SampleImages.PAINTING, SampleImages.PIXEL_ART, SampleImages.GRADIENTS})
+    public String image;
+
+    @Param({"256"})
+    public int limit;
+
+    private A8PaletteReducer reducer;
+    private Pixmap source;
+
+    @Setup
+    public void setup() {
+        reducer = new A8PaletteReducer();
+        source = SampleImages.load(image);
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public int[] analyze() {
+        reducer.analyze(source, 100, limit);
+        return reducer.paletteArray;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public int[] analyzeFast() {
+        reducer.analyzeFast(source, 100, limit);
+        return reducer.paletteArray;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public int[] analyzeHueWise() {
+        reducer.analyzeHueWise(source, 100, limit);
+        return reducer.paletteArray;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public int[] analyzeMC() {
+        reducer.analyzeMC(source, limit);
+        return reducer.paletteArray;
+    }
+}
@@ -0,0 +1,63 @@
+package colorweaver.jmh;
+
+import colorweaver.a8.A8PaletteReducer;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every A8PaletteReducer {@code reduce*(Pixmap)} dither on each sample image, using the default palette.
+ * Results are per pixel. Each operation first copies the sample into a scratch Pixmap, which is a native memory copy
+ * and is small next to any dither.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class A8DitherBenchmark {
+    @Param({"reduce", "reduceSolid", "reduceSierraLite", "reduceFloydSteinberg", "reduceJimenez", "reduceAdditive",
+            "reduceIgneous", "reduceRoberts", "reduceLoaf", "reduceGourd", "reduceWoven", "reduceWrenOriginal",
+            "reduceWren", "reduceBlueNoise", "reduceBlueNoiseOmni64", "reduceBlueNoiseOmni128",
+            "reduceBlueNoiseDuel128", "reduceBlueNoiseBrawl128", "reduceBlueNoisePawn128", "reduceBlueNoiseBishop128",
+            "reduceBlueNoiseKnight128", "reduceBlueNoiseRook128", "reduceBlueCrab", "reduceBlueNit", "reduceBlunt",
+            "reduceBayerOct", "reduceBanter", "reduceBayerOctShifty", "reduceChant", "reduceSkitter", "reduceBerry",
+            "reduceChaoticNoise", "reduceScatter", "reduceNeue", "reduceDodgy", "reduceOverboard", "reduceBurkes",
+            "reduceOceanic", "reduceSeaside", "reduceMaritime", "reduceElevator", "reduceReallySimple",
+            "reduceReallyLinear", "reduceKnoll", "reduceKnollStored", "reduceKnollStoredLight", "reduceKnollSelect",
+            "reduceKnollHastySelect", "reduceInfusion", "reduceKnollFull", "reduceKnollRoberts", "reducePatternish",
+            "reducePatternish2", "reducePattwo", "reducePatthree", "reducePatfour", "reduceMarten",
+            "reduceMicroPatternish", "reduceBluesy", "reduceBluesy2", "reduceBluyer", "reduceBaydient", "reduceBayer",
+            "reduceBluyerMono"})
+    public String dither;
+
+    @Param({SampleImages.PHOTO, SampleImages.PAINTING, SampleImages.PIXEL_ART, SampleImages.GRADIENTS})
+    public String image;
+
+    private A8PaletteReducer reducer;
+    private Method method;
+    private Pixmap source, scratch;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        reducer = new A8PaletteReducer();
+        method = A8PaletteReducer.class.getMethod(dither, Pixmap.class);
+        source = SampleImages.load(image);
+        scratch = SampleImages.scratch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.dispose();
+        scratch.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public Object reduce() throws ReflectiveOperationException {
+        return method.invoke(reducer, SampleImages.reset(scratch, source));
+    }
+}
@@ -0,0 +1,60 @@
+package colorweaver.jmh;
+
+import colorweaver.PaletteReducer;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every PaletteReducer {@code reduce*(Pixmap)} dither on each sample image, using the default palette.
+ * Results are per pixel. Each operation first copies the sample into a scratch Pixmap, which is a native memory copy
+ * and is small next to any dither.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DitherBenchmark {
+    @Param({"reduce", "reduceSolid", "reduceBurkes0", "reduceBurkes0LAB", "reduceBurkes", "reduceBurkes2",
+            "reduceCyanic", "reduceOceanic", "reduceOceanicLAB", "reduceSeaside", "reduceSeasideLAB", "reduceCoastal",
+            "reduceWithNoise", "reduceSierraLite", "reduceFloydSteinbergAdjustable", "reduceFloydSteinberg",
+            "reduceWithRoberts", "reduceRobertsMul", "reduceRobertsEdit", "reduceRobertsLAB", "reduceLoaf",
+            "reduceLoaf2", "reduceLoaf3", "reduceLeaf", "reduceCuatro", "reduceIGN", "reduceIgneous", "reduceBlob",
+            "reduceTrueBlue3", "reduceTrueBlue4", "reduceTrueBlue5", "reduceRing", "reduceBluish", "reduceNeue",
+            "reduceDodgy", "reducePlexus", "reduceWeave", "reduceWean", "reduceBlubber", "reduceChaoticNoise",
+            "reduceGarbage", "reduceScatter", "reduceKnoll", "reduceKnoll2", "reducePatternish", "reduceKnollRoberts",
+            "reduceKnollBlue", "reduceShuffle", "reduceSchmidt", "reduceOverboard0", "reduceOverboard2", "reduceGourd",
+            "reduceGourdLUT", "reduceGourdNoGamma"})
+    public String dither;
+
+    @Param({SampleImages.PHOTO, SampleImages.PAINTING, SampleImages.PIXEL_ART, SampleImages.GRADIENTS})
+    public String image;
+
+    private PaletteReducer reducer;
+    private Method method;
+    private Pixmap source, scratch;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        reducer = new PaletteReducer();
+        method = PaletteReducer.class.getMethod(dither, Pixmap.class);
+        source = SampleImages.load(image);
+        scratch = SampleImages.scratch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.dispose();
+        scratch.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public Object reduce() throws ReflectiveOperationException {
+        return method.invoke(reducer, SampleImages.reset(scratch, source));
+    }
+}
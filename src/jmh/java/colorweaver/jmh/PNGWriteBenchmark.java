@@ -0,0 +1,73 @@
+package colorweaver.jmh;
+
+import colorweaver.PNG8;
+import colorweaver.PaletteReducer;
+import colorweaver.a8.A8PNG8;
+import colorweaver.a8.A8PaletteReducer;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing an already-analyzed image with PNG8 and A8PNG8 at each deflate compression level, using
+ * {@code writeSolid()} so the time is spent in the mapping lookup, filtering, deflating and chunk writing rather than
+ * in a dither. Output goes to a reused in-memory stream. Results are per pixel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PNGWriteBenchmark {
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"})
+    public int compression;
+
+    @Param({SampleImages.PHOTO, SampleImages.PIXEL_ART})
+    public String image;
+
+    private PNG8 png8;
+    private A8PNG8 a8png8;
+    private Pixmap source;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setup() {
+        source = SampleImages.load(image);
+        png8 = new PNG8();
+        png8.setCompression(compression);
+        png8.palette = new PaletteReducer();
+        png8.palette.analyze(source);
+        a8png8 = new A8PNG8();
+        a8png8.setCompression(compression);
+        a8png8.palette = new A8PaletteReducer();
+        a8png8.palette.analyze(source);
+        output = new ByteArrayOutputStream(SampleImages.PIXELS * 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        png8.dispose();
+        a8png8.dispose();
+        source.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public int png8() throws IOException {
+        output.reset();
+        png8.writeSolid(output, source);
+        return output.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public int a8png8() {
+        output.reset();
+        a8png8.writeSolid(output, source);
+        return output.size();
+    }
+}
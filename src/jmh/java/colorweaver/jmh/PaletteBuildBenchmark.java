@@ -0,0 +1,62 @@
+package colorweaver.jmh;
+
+import colorweaver.PaletteReducer;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a palette mapping with {@link PaletteReducer#exact(int[], PaletteReducer.ColorMetric)} and
+ * {@link PaletteReducer#analyze(Pixmap, int, int, PaletteReducer.ColorMetric)}, for each built-in ColorMetric.
+ * Exact results are per cell of the 32768-cell mapping (each cell stands for one RGB555 color); analyze results are
+ * per pixel of the analyzed image, which includes building the mapping afterwards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaletteBuildBenchmark {
+    @Param({"basicMetric", "labMetric", "labRoughMetric", "labQuickMetric", "iptQuickMetric", "iptGoodMetric",
+            "oklabMetric", "oklabCarefulMetric", "oklabLABMetric", "oklabGammaMetric", "oklabAlternateMetric",
+            "oklabOnceMetric", "rgbEasyMetric", "rgbStupidMetric", "rgbStupiderMetric", "rgbSqrtMetric",
+            "rgbSimpleMetric", "rgbTrickyMetric"})
+    public String metric;
+
+    @Param({SampleImages.PHOTO, SampleImages.PIXEL_ART})
+    public String image;
+
+    private PaletteReducer.ColorMetric colorMetric;
+    private PaletteReducer reducer;
+    private Pixmap pixmap;
+    private int[] palette;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        colorMetric = (PaletteReducer.ColorMetric) PaletteReducer.class.getField(metric).get(null);
+        reducer = new PaletteReducer();
+        pixmap = SampleImages.load(image);
+        palette = new PaletteReducer(pixmap).paletteArray.clone();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pixmap.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(0x8000)
+    public byte[] exact() {
+        reducer.exact(palette, colorMetric);
+        return reducer.paletteMapping;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SampleImages.PIXELS)
+    public byte[] analyze() {
+        reducer.analyze(pixmap, 100, 256, colorMetric);
+        return reducer.paletteMapping;
+    }
+}
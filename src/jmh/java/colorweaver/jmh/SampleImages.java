@@ -0,0 +1,74 @@
+package colorweaver.jmh;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import java.io.File;
+
+/**
+ * Loads the fixed sample images that the benchmarks run on. Every sample is scaled to {@link #SIZE} by {@link #SIZE}
+ * pixels, so each benchmark can report its results per pixel with
+ * {@link org.openjdk.jmh.annotations.OperationsPerInvocation} no matter which image it uses. Images are read from the
+ * {@code samples/} folder, or from the folder given by the {@code colorweaver.samples} system property.
+ */
+public final class SampleImages {
+    private SampleImages(){}
+
+    /**
+     * The width and height of every sample image, in pixels.
+     */
+    public static final int SIZE = 256;
+    /**
+     * How many pixels are in every sample image; used as the operation count for per-pixel results.
+     */
+    public static final int PIXELS = SIZE * SIZE;
+
+    /**
+     * A photo, a painting, a piece of pixel art, and a set of smooth gradients; these stress different parts of
+     * palette analysis and dithering.
+     */
+    public static final String PHOTO = "Frog.jpg", PAINTING = "Girl_with_a_Pearl_Earring.jpg",
+            PIXEL_ART = "Color_Guard.png", GRADIENTS = "gradients.png";
+
+    static {
+        GdxNativesLoader.load();
+    }
+
+    /**
+     * Loads the named sample and scales it to {@link #SIZE} by {@link #SIZE} as an RGBA8888 Pixmap.
+     * @param name the file name of an image in the samples folder
+     * @return a new RGBA8888 Pixmap; the caller should dispose it
+     */
+    public static Pixmap load(String name) {
+        final File file = new File(System.getProperty("colorweaver.samples", "samples"), name);
+        final Pixmap original = new Pixmap(new FileHandle(file));
+        final Pixmap scaled = new Pixmap(SIZE, SIZE, Pixmap.Format.RGBA8888);
+        scaled.setBlending(Pixmap.Blending.None);
+        scaled.setFilter(Pixmap.Filter.BiLinear);
+        scaled.drawPixmap(original, 0, 0, original.getWidth(), original.getHeight(), 0, 0, SIZE, SIZE);
+        original.dispose();
+        return scaled;
+    }
+
+    /**
+     * Makes a Pixmap that {@link #reset(Pixmap, Pixmap)} can copy a sample into before each dither.
+     * @return a new, empty RGBA8888 Pixmap the same size as every sample
+     */
+    public static Pixmap scratch() {
+        final Pixmap scratch = new Pixmap(SIZE, SIZE, Pixmap.Format.RGBA8888);
+        scratch.setBlending(Pixmap.Blending.None);
+        return scratch;
+    }
+
+    /**
+     * Copies every pixel of {@code source} into {@code target}, replacing what was there.
+     * @param target a Pixmap from {@link #scratch()}
+     * @param source a Pixmap from {@link #load(String)}
+     * @return target, for chaining
+     */
+    public static Pixmap reset(Pixmap target, Pixmap source) {
+        target.drawPixmap(source, 0, 0);
+        return target;
+    }
+}
@@ -0,0 +1,503 @@
+package colorweaver;
+
+import colorweaver.PaletteReducer.ColorMetric;
+import colorweaver.annotation.GwtIncompatible;
+import colorweaver.tools.ParallelKit;
+import colorweaver.tools.StringKit;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reduces a batch of images to every combination of several palettes and several dithers, writing each result as a
+ * PNG-8 file, without needing a window or any libGDX backend. Only the native Pixmap code is needed, which this loads
+ * itself. Each input image is decoded once and then dithered with every palette and dither in the {@link Job}; the
+ * palettes are built once at the start (optionally with a {@link PreloadCache}) and shared by every thread through a
+ * {@link SharedPalette}.
+ * <br>
+ * Work is split by input image across a fixed number of threads, and only a few more images than there are threads
+ * are ever decoded and waiting at once. Encoded PNG files are handed to a separate writer thread, and at most
+ * {@link Job#pendingWrites} files can wait to be written; if the disk falls behind, dithering threads wait for it
+ * rather than holding more and more encoded files in memory. If there are fewer images than threads, the spare
+ * threads are given to each PaletteReducer with {@link PaletteReducer#setParallelism(int)}.
+ * <br>
+ * A Job can be built in code or loaded from a properties file with {@link Job#load(File)}; {@link #main(String[])}
+ * runs a job file given as its only argument, or the same job as {@link FolderPalettizer} if given nothing. If one
+ * image fails to load or write, the rest of the batch still runs, and {@link #run(Job)} throws at the end.
+ */
+@GwtIncompatible
+public class BatchPalettizer {
+    /**
+     * Describes one batch: which images to read, which palettes and dithers to apply, and where to write the results.
+     * Every field can be changed directly before the Job is run; the add methods are just shortcuts.
+     */
+    public static class Job {
+        /**
+         * Image files to read; any format Pixmap can decode (PNG, JPEG, or BMP) will work.
+         */
+        public final List<File> inputs = new ArrayList<>();
+        /**
+         * Palettes to apply, by name; each is an array of RGBA8888 ints, as {@link PaletteReducer#exact(int[])} takes.
+         */
+        public final Map<String, int[]> palettes = new LinkedHashMap<>();
+        /**
+         * Dithers to apply, each named by the part of a PaletteReducer method name after "reduce", such as "Solid"
+         * for {@link PaletteReducer#reduceSolid(Pixmap)} or "Neue" for {@link PaletteReducer#reduceNeue(Pixmap)}.
+         * The name is also used in result file names; to use a different name there, follow the method name with a
+         * colon and the name to use, such as "TrueBlue3:BlueNewer".
+         */
+        public final List<String> dithers = new ArrayList<>();
+        /**
+         * The folder that results are written to; it is created if needed. Each result is named after its input,
+         * dither, and palette, such as {@code frog_Neue_aurora.png}.
+         */
+        public File output = new File("output_images");
+        /**
+         * The ColorMetric used to build every palette's mapping.
+         */
+        public ColorMetric metric = PaletteReducer.oklabCarefulMetric;
+        /**
+         * If non-null, a folder used as a {@link PreloadCache} for palette mappings.
+         */
+        public File cache = null;
+        /**
+         * The dither strength used for every dither; see {@link PaletteReducer#setDitherStrength(float)}.
+         */
+        public float ditherStrength = 1f;
+        /**
+         * The deflate compression level for written files; see {@link PNG8#setCompression(int)}.
+         */
+        public int compression = 7;
+        /**
+         * How many threads dither and encode images at once.
+         */
+        public int threads = ParallelKit.availableParallelism();
+        /**
+         * How many encoded files can be waiting to be written before dithering threads wait for the writer.
+         */
+        public int pendingWrites = 64;
+
+        /**
+         * Adds an image file, or every file in a folder (not including sub-folders), to {@link #inputs}.
+         * @param fileOrFolder an image file or a folder of image files
+         * @return this, for chaining
+         */
+        public Job addInputs(File fileOrFolder) {
+            if (fileOrFolder.isDirectory()) {
+                final File[] files = fileOrFolder.listFiles();
+                if (files != null) {
+                    Arrays.sort(files);
+                    for (File file : files) {
+                        if (file.isFile())
+                            inputs.add(file);
+                    }
+                }
+            } else {
+                inputs.add(fileOrFolder);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a palette to {@link #palettes}, replacing any palette with the same name.
+         * @param name    used in the names of result files
+         * @param palette an array of RGBA8888 ints, usually with 0 (transparent) first
+         * @return this, for chaining
+         */
+        public Job addPalette(String name, int[] palette) {
+            palettes.put(name, palette);
+            return this;
+        }
+
+        /**
+         * Adds a .hex palette file, or every .hex file in a folder, to {@link #palettes}; each is named after its file,
+         * in lower case and without the extension. See {@link BatchPalettizer#readHex(File)} for the format.
+         * @param fileOrFolder a .hex file or a folder containing .hex files
+         * @return this, for chaining
+         * @throws IOException if a .hex file can't be read
+         */
+        public Job addPalettes(File fileOrFolder) throws IOException {
+            if (fileOrFolder.isDirectory()) {
+                final File[] files = fileOrFolder.listFiles();
+                if (files != null) {
+                    Arrays.sort(files);
+                    for (File file : files) {
+                        if (file.isFile() && file.getName().endsWith(".hex"))
+                            addPalettes(file);
+                    }
+                }
+            } else {
+                final String name = fileOrFolder.getName();
+                final int dot = name.lastIndexOf('.');
+                addPalette((dot > 0 ? name.substring(0, dot) : name).toLowerCase(), readHex(fileOrFolder));
+            }
+            return this;
+        }
+
+        /**
+         * Adds dithers to {@link #dithers} by name, such as "Solid", "FloydSteinberg", or "Neue". A name can be followed
+         * by a colon and the name to use in result files, such as "Knoll:Knoll_G".
+         * @param names the parts of PaletteReducer method names after "reduce", each optionally followed by a colon
+         *              and a file name part
+         * @return this, for chaining
+         */
+        public Job addDithers(String... names) {
+            dithers.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * Loads a Job from a properties file. Relative paths are resolved from the folder the file is in, and lists are
+         * separated by commas. The keys are:
+         * <ul>
+         *     <li>{@code input}: image files or folders of images (required)</li>
+         *     <li>{@code palettes}: .hex files or folders of .hex files (required)</li>
+         *     <li>{@code dithers}: dither names, as in {@link #dithers} (default Solid)</li>
+         *     <li>{@code output}: the output folder (default output_images)</li>
+         *     <li>{@code metric}: the name of a ColorMetric field in PaletteReducer (default oklabCarefulMetric)</li>
+         *     <li>{@code cache}: a PreloadCache folder (default none)</li>
+         *     <li>{@code strength}, {@code compression}, {@code threads}, {@code pendingWrites}: as the fields with
+         *     those names</li>
+         * </ul>
+         * @param file a properties file
+         * @return a new Job
+         * @throws IOException if the file or any palette can't be read, or a value isn't valid
+         */
+        public static Job load(File file) throws IOException {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+            final File base = file.getAbsoluteFile().getParentFile();
+            final Job job = new Job();
+            for (String s : list(properties, "input"))
+                job.addInputs(resolve(base, s));
+            for (String s : list(properties, "palettes"))
+                job.addPalettes(resolve(base, s));
+            job.dithers.addAll(list(properties, "dithers"));
+            if (job.dithers.isEmpty())
+                job.dithers.add("Solid");
+            if (job.inputs.isEmpty() || job.palettes.isEmpty())
+                throw new IOException("A job needs at least one input image and one palette: " + file);
+            job.output = resolve(base, properties.getProperty("output", "output_images").trim());
+            if (properties.getProperty("cache") != null)
+                job.cache = resolve(base, properties.getProperty("cache").trim());
+            if (properties.getProperty("metric") != null)
+                job.metric = metric(properties.getProperty("metric").trim());
+            try {
+                job.ditherStrength = Float.parseFloat(properties.getProperty("strength", "1").trim());
+                job.compression = Integer.parseInt(properties.getProperty("compression", "7").trim());
+                job.threads = Integer.parseInt(properties.getProperty("threads", String.valueOf(job.threads)).trim());
+                job.pendingWrites = Integer.parseInt(properties.getProperty("pendingWrites", "64").trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number in job file " + file, e);
+            }
+            return job;
+        }
+
+        private static List<String> list(Properties properties, String key) {
+            final List<String> items = new ArrayList<>();
+            final String value = properties.getProperty(key);
+            if (value != null) {
+                for (String s : value.split(",")) {
+                    if (!(s = s.trim()).isEmpty())
+                        items.add(s);
+                }
+            }
+            return items;
+        }
+
+        private static File resolve(File base, String path) {
+            final File file = new File(path);
+            return file.isAbsolute() ? file : new File(base, path);
+        }
+
+        private static ColorMetric metric(String name) throws IOException {
+            try {
+                final Field field = PaletteReducer.class.getField(name);
+                if (ColorMetric.class.isAssignableFrom(field.getType()))
+                    return (ColorMetric) field.get(null);
+            } catch (NoSuchFieldException | IllegalAccessException ignored) {
+            }
+            throw new IOException("No ColorMetric named " + name + " in PaletteReducer");
+        }
+    }
+
+    /**
+     * Reads a .hex palette, which has one RGB color per line as 6 hex digits (a leading '#' is allowed, and 8 digits
+     * are read as RGBA). Blank lines are skipped. The returned palette has 0 (transparent) at index 0, followed by
+     * every color in the file, fully opaque unless it had an alpha.
+     * @param file a .hex file
+     * @return an array of RGBA8888 ints, with transparent first
+     * @throws IOException if the file can't be read
+     */
+    public static int[] readHex(File file) throws IOException {
+        final String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        final String[] lines = text.split("\\s+");
+        final int[] palette = new int[lines.length + 1];
+        int size = 1;
+        for (String line : lines) {
+            final int start = line.startsWith("#") ? 1 : 0, len = line.length() - start;
+            if (len == 6)
+                palette[size++] = StringKit.intFromHex(line, start, start + 6) << 8 | 0xFF;
+            else if (len == 8)
+                palette[size++] = StringKit.intFromHex(line, start, start + 8);
+        }
+        return Arrays.copyOf(palette, size);
+    }
+
+    /**
+     * Runs a job file if one is given as the only argument, or otherwise runs {@link FolderPalettizer}'s job.
+     * @param args optionally, the path to a job properties file; see {@link Job#load(File)}
+     * @throws IOException if the job file can't be read, or if any image in the batch failed
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            final long start = System.nanoTime();
+            final int written = run(Job.load(new File(args[0])));
+            System.out.println("Wrote " + written + " images in " + (System.nanoTime() - start) / 1000000L + " ms");
+        } else {
+            FolderPalettizer.main(args);
+        }
+    }
+
+    /**
+     * Runs every image in {@code job} with every palette and dither, writing the results to {@link Job#output}. This
+     * blocks until every file has been written. If some images fail, the others are still processed, each failure is
+     * printed to {@link System#err}, and an IOException is thrown once everything else is done.
+     * @param job describes the images, palettes, and dithers to use
+     * @return how many files were written
+     * @throws IOException if the output folder can't be created or any image failed to load, dither, or write
+     */
+    public static int run(final Job job) throws IOException {
+        GdxNativesLoader.load();
+        final File output = job.output;
+        if (!output.isDirectory() && !output.mkdirs())
+            throw new IOException("Could not create output folder " + output);
+        final String[] ditherNames = job.dithers.toArray(new String[0]);
+        final Method[] dithers = new Method[ditherNames.length];
+        for (int i = 0; i < dithers.length; i++) {
+            final int colon = ditherNames[i].indexOf(':');
+            final String method = colon < 0 ? ditherNames[i] : ditherNames[i].substring(0, colon);
+            if (colon >= 0)
+                ditherNames[i] = ditherNames[i].substring(colon + 1);
+            try {
+                dithers[i] = PaletteReducer.class.getMethod("reduce" + method, Pixmap.class);
+            } catch (NoSuchMethodException e) {
+                throw new IOException("No dither named " + method + " in PaletteReducer", e);
+            }
+        }
+        final int threads = Math.max(job.threads, 1);
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, daemons("palettizer"));
+        final ExecutorService writer = Executors.newSingleThreadExecutor(daemons("palettizer-writer"));
+        final Semaphore queued = new Semaphore(threads * 2), writes = new Semaphore(Math.max(job.pendingWrites, 1));
+        final AtomicInteger written = new AtomicInteger(0), failed = new AtomicInteger(0);
+        final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        final ArrayBlockingQueue<PNG8> encoders = new ArrayBlockingQueue<>(threads);
+        try {
+            final String[] paletteNames = job.palettes.keySet().toArray(new String[0]);
+            final SharedPalette[] palettes = buildPalettes(job, paletteNames, workers, threads);
+            for (int i = 0; i < threads; i++) {
+                final PNG8 png8 = new PNG8();
+                png8.setCompression(job.compression);
+                png8.setFlipY(false);
+                encoders.add(png8);
+            }
+            final int parallelism = Math.max(1, threads / Math.max(1, Math.min(job.inputs.size(), threads)));
+            for (final File input : job.inputs) {
+                queued.acquireUninterruptibly();
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            palettize(input, job, palettes, paletteNames, dithers, ditherNames, parallelism,
+                                    encoders, writer, writes, written, failed, firstFailure);
+                        } finally {
+                            queued.release();
+                        }
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writer.shutdown();
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while palettizing", e);
+        } finally {
+            workers.shutdownNow();
+            writer.shutdownNow();
+            for (PNG8 png8 : encoders)
+                png8.dispose();
+        }
+        if (failed.get() > 0)
+            throw new IOException(failed.get() + " of " + (job.inputs.size() * job.palettes.size() * dithers.length)
+                    + " images failed; the first failure is the cause", firstFailure.get());
+        return written.get();
+    }
+
+    /**
+     * Builds every palette's mapping, one palette per thread; if there are fewer palettes than threads, each mapping
+     * build is itself split across the spare threads.
+     */
+    private static SharedPalette[] buildPalettes(final Job job, final String[] names, ExecutorService workers,
+                                                 int threads) throws IOException, InterruptedException {
+        final PreloadCache cache = job.cache == null ? null : new PreloadCache(job.cache);
+        final int parallelism = Math.max(1, threads / Math.max(1, Math.min(names.length, threads)));
+        final List<Callable<SharedPalette>> builds = new ArrayList<>(names.length);
+        for (final String name : names) {
+            builds.add(new Callable<SharedPalette>() {
+                @Override
+                public SharedPalette call() {
+                    final PaletteReducer reducer = new PaletteReducer();
+                    reducer.setParallelism(parallelism);
+                    if (cache == null)
+                        reducer.exact(job.palettes.get(name), job.metric);
+                    else
+                        cache.exact(reducer, job.palettes.get(name), job.metric);
+                    return new SharedPalette(reducer);
+                }
+            });
+        }
+        final SharedPalette[] palettes = new SharedPalette[names.length];
+        final List<Future<SharedPalette>> results = workers.invokeAll(builds);
+        for (int i = 0; i < palettes.length; i++) {
+            try {
+                palettes[i] = results.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IOException("Could not build palette " + names[i], e.getCause());
+            }
+        }
+        return palettes;
+    }
+
+    /**
+     * Decodes one input and writes it with every palette and dither; failures are recorded rather than thrown.
+     */
+    private static void palettize(File input, Job job, SharedPalette[] palettes, String[] paletteNames,
+                                  Method[] dithers, String[] ditherNames, int parallelism,
+                                  ArrayBlockingQueue<PNG8> encoders, ExecutorService writer, final Semaphore writes,
+                                  final AtomicInteger written, final AtomicInteger failed,
+                                  final AtomicReference<Throwable> firstFailure) {
+        final String name = input.getName();
+        final String stem = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+        final Pixmap source, scratch;
+        try {
+            source = decode(input);
+        } catch (IOException | RuntimeException e) {
+            fail(input.getPath(), e, palettes.length * dithers.length, failed, firstFailure);
+            return;
+        }
+        scratch = new Pixmap(source.getWidth(), source.getHeight(), Pixmap.Format.RGBA8888);
+        scratch.setBlending(Pixmap.Blending.None);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(source.getWidth() * source.getHeight() + 1024);
+        // there is one encoder per worker thread, so this never has to wait
+        final PNG8 png8 = encoders.poll();
+        try {
+            for (int p = 0; p < palettes.length; p++) {
+                final SharedPalette palette = palettes[p];
+                final PaletteReducer reducer = palette.reducer();
+                reducer.setParallelism(parallelism);
+                reducer.setDitherStrength(job.ditherStrength);
+                final int[] exact = Arrays.copyOf(palette.copyPalette(), palette.colorCount);
+                for (int d = 0; d < dithers.length; d++) {
+                    final File file = new File(job.output, stem + "_" + ditherNames[d] + "_" + paletteNames[p] + ".png");
+                    try {
+                        scratch.drawPixmap(source, 0, 0);
+                        final Pixmap result = (Pixmap) dithers[d].invoke(reducer, scratch);
+                        bytes.reset();
+                        png8.writePrecisely(bytes, result, exact, false, 0);
+                    } catch (InvocationTargetException e) {
+                        fail(file.getPath(), e.getCause(), 1, failed, firstFailure);
+                        continue;
+                    } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+                        fail(file.getPath(), e, 1, failed, firstFailure);
+                        continue;
+                    }
+                    final byte[] png = bytes.toByteArray();
+                    writes.acquireUninterruptibly();
+                    writer.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                Files.write(file.toPath(), png);
+                                written.incrementAndGet();
+                            } catch (IOException | RuntimeException e) {
+                                fail(file.getPath(), e, 1, failed, firstFailure);
+                            } finally {
+                                writes.release();
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            encoders.add(png8);
+            scratch.dispose();
+            source.dispose();
+        }
+    }
+
+    /**
+     * Decodes an image file into an RGBA8888 Pixmap, converting it if it was decoded in another format.
+     */
+    private static Pixmap decode(File input) throws IOException {
+        final byte[] encoded = Files.readAllBytes(input.toPath());
+        final Pixmap decoded = new Pixmap(encoded, 0, encoded.length);
+        if (decoded.getFormat() == Pixmap.Format.RGBA8888)
+            return decoded;
+        final Pixmap converted = new Pixmap(decoded.getWidth(), decoded.getHeight(), Pixmap.Format.RGBA8888);
+        converted.setBlending(Pixmap.Blending.None);
+        converted.drawPixmap(decoded, 0, 0);
+        decoded.dispose();
+        return converted;
+    }
+
+    private static void fail(String what, Throwable cause, int count, AtomicInteger failed,
+                             AtomicReference<Throwable> firstFailure) {
+        failed.addAndGet(count);
+        firstFailure.compareAndSet(null, cause);
+        System.err.println("Failed on " + what + ": " + cause);
+    }
+
+    private static ThreadFactory daemons(final String name) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
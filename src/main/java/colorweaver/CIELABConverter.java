@@ -528,6 +528,151 @@ Delta CMC = sqrt( xSL ^ 2 + xSC ^ 2 + xSH ^ 2 )
 		
 		return L * L * 11.0 * biasL + A * A * 1.6 * biasA + B * B * biasB;
 	}
+
+	/**
+	 * Each possible 8-bit sRGB channel value converted to linear RGB, using the same steps as {@link Lab#Lab(int)}.
+	 */
+	private static final double[] LINEAR = new double[256];
+	static {
+		for (int i = 0; i < 256; i++) {
+			final double c = i * 0x1.010101010101p-8;
+			LINEAR[i] = (c > 0.04045) ? Math.pow((c + 0.055) / 1.055, 2.4) : c / 12.92;
+		}
+	}
+
+	/**
+	 * Converts {@code count} RGBA8888 colors from {@code rgba}, starting at {@code offset}, to CIE L*A*B* and stores
+	 * the channels in separate arrays, starting at {@code planeOffset} in each. This gives the same values as
+	 * {@link Lab#Lab(int)} (rounded to float), but doesn't allocate anything and only looks up the gamma curve in a
+	 * table, so it is a good fit when a whole palette needs converting and then comparing many times, such as with
+	 * {@link #delta(float[], float[], float[], int, int, int, double, double, double, double[])}.
+	 * @param rgba        RGBA8888 colors to read
+	 * @param offset      the first index in rgba to read
+	 * @param L           receives lightness, from 0 to 100
+	 * @param A           receives the A channel, green when low, red when high
+	 * @param B           receives the B channel, blue when low, yellow when high
+	 * @param alpha       receives alpha, from 0 to 1; may be null if alpha isn't needed
+	 * @param planeOffset the first index in L, A, B, and alpha to write
+	 * @param count       how many colors to convert
+	 */
+	public static void rgbaToLab(final int[] rgba, final int offset,
+								 final float[] L, final float[] A, final float[] B, final float[] alpha,
+								 final int planeOffset, final int count)
+	{
+		double r, g, b, x, y, z;
+		for (int i = 0; i < count; i++) {
+			final int color = rgba[offset + i];
+			r = LINEAR[color >>> 24];
+			g = LINEAR[color >>> 16 & 0xFF];
+			b = LINEAR[color >>> 8 & 0xFF];
+
+			x = (r * 0.4124 + g * 0.3576 + b * 0.1805) / 0.950489;
+			y = (r * 0.2126 + g * 0.7152 + b * 0.0722) / 1.000000;
+			z = (r * 0.0193 + g * 0.1192 + b * 0.9505) / 1.088840;
+
+			x = (x > 0.008856) ? Math.cbrt(x) : (7.787037037037037 * x) + 0.13793103448275862;
+			y = (y > 0.008856) ? Math.cbrt(y) : (7.787037037037037 * y) + 0.13793103448275862;
+			z = (z > 0.008856) ? Math.cbrt(z) : (7.787037037037037 * z) + 0.13793103448275862;
+
+			final int p = planeOffset + i;
+			L[p] = (float) ((116.0 * y) - 16.0);
+			A[p] = (float) (500.0 * (x - y));
+			B[p] = (float) (200.0 * (y - z));
+			if (alpha != null)
+				alpha[p] = (float) ((color & 0xFF) * 0x1.010101010101p-8);
+		}
+	}
+
+	/**
+	 * Converts {@code count} CIE L*A*B* colors, stored as separate channel arrays starting at {@code planeOffset}, to
+	 * RGBA8888 colors, writing them into {@code rgba} starting at {@code offset}. This gives the same results as
+	 * {@link Lab#toRGBA()}, without allocating anything.
+	 * @param L           lightness, from 0 to 100
+	 * @param A           the A channel, green when low, red when high
+	 * @param B           the B channel, blue when low, yellow when high
+	 * @param alpha       alpha, from 0 to 1; may be null to make every color opaque
+	 * @param planeOffset the first index in L, A, B, and alpha to read
+	 * @param rgba        receives RGBA8888 colors
+	 * @param offset      the first index in rgba to write
+	 * @param count       how many colors to convert
+	 */
+	public static void labToRgba(final float[] L, final float[] A, final float[] B, final float[] alpha,
+								 final int planeOffset, final int[] rgba, final int offset, final int count)
+	{
+		double r, g, b, x, y, z;
+		for (int i = 0; i < count; i++) {
+			final int p = planeOffset + i;
+			y = (L[p] + 16.0) / 116.0;
+			x = A[p] / 500.0 + y;
+			z = y - B[p] / 200.0;
+
+			x = 0.95047 * ((x > 0.2068930344229638) ? x * x * x : (x - 16.0 / 116.0) / 7.787);
+			y = 1.00000 * ((y > 0.2068930344229638) ? y * y * y : (y - 16.0 / 116.0) / 7.787);
+			z = 1.08883 * ((z > 0.2068930344229638) ? z * z * z : (z - 16.0 / 116.0) / 7.787);
+
+			r = x *  3.2406 + y * -1.5372 + z * -0.4986;
+			g = x * -0.9689 + y *  1.8758 + z *  0.0415;
+			b = x *  0.0557 + y * -0.2040 + z *  1.0570;
+
+			r = ((r > 0.0031308) ? (1.055 * Math.pow(r, 1.0 / 2.4) - 0.055) : 12.92 * r) * 255.5;
+			g = ((g > 0.0031308) ? (1.055 * Math.pow(g, 1.0 / 2.4) - 0.055) : 12.92 * g) * 255.5;
+			b = ((b > 0.0031308) ? (1.055 * Math.pow(b, 1.0 / 2.4) - 0.055) : 12.92 * b) * 255.5;
+
+			rgba[offset + i] = Math.max(0, Math.min(255, (int) r)) << 24 |
+					Math.max(0, Math.min(255, (int) g)) << 16 |
+					Math.max(0, Math.min(255, (int) b)) << 8 |
+					(alpha == null ? 0xFF : Math.max(0, Math.min(255, (int) (alpha[p] * 255.5))));
+		}
+	}
+
+	/**
+	 * Compares the color at {@code index} in the given CIE L*A*B* planes with each color from {@code start}
+	 * (inclusive) to {@code end} (exclusive), writing each difference into {@code out} at the same index. The
+	 * differences are the same as {@link #delta(Lab, Lab, double, double, double)} would give for the same colors, so
+	 * they are squared distances, with L weighted by {@code 11.0 * biasL} and A by {@code 1.6 * biasA}. The loop has no
+	 * branches or calls, so it is much faster than calling delta() once per pair of Lab objects.
+	 * @param L     lightness plane, as produced by {@link #rgbaToLab(int[], int, float[], float[], float[], float[], int, int)}
+	 * @param A     A channel plane
+	 * @param B     B channel plane
+	 * @param index the index in the planes of the color to compare against
+	 * @param start the first index in the planes to compare, inclusive
+	 * @param end   the last index in the planes to compare, exclusive
+	 * @param biasL multiplier for the L difference; 1.0 is normal
+	 * @param biasA multiplier for the A difference; 1.0 is normal
+	 * @param biasB multiplier for the B difference; 1.0 is normal
+	 * @param out   receives the differences, from index start to end - 1
+	 */
+	public static void delta(final float[] L, final float[] A, final float[] B, final int index,
+							 final int start, final int end,
+							 final double biasL, final double biasA, final double biasB, final double[] out)
+	{
+		final double l = L[index], a = A[index], b = B[index];
+		for (int j = start; j < end; j++) {
+			final double dL = l - L[j], dA = a - A[j], dB = b - B[j];
+			out[j] = dL * dL * 11.0 * biasL + dA * dA * biasA * 1.6 + dB * dB * biasB;
+		}
+	}
+
+	/**
+	 * Gets the difference between two colors stored in CIE L*A*B* planes, the same as
+	 * {@link #delta(Lab, Lab, double, double, double)} but without needing Lab objects.
+	 * @param L     lightness plane, as produced by {@link #rgbaToLab(int[], int, float[], float[], float[], float[], int, int)}
+	 * @param A     A channel plane
+	 * @param B     B channel plane
+	 * @param i     the index in the planes of the first color
+	 * @param j     the index in the planes of the second color
+	 * @param biasL multiplier for the L difference; 1.0 is normal
+	 * @param biasA multiplier for the A difference; 1.0 is normal
+	 * @param biasB multiplier for the B difference; 1.0 is normal
+	 * @return the squared, weighted difference between the two colors
+	 */
+	public static double delta(final float[] L, final float[] A, final float[] B, final int i, final int j,
+							   final double biasL, final double biasA, final double biasB)
+	{
+		final double dL = L[i] - L[j], dA = A[i] - A[j], dB = B[i] - B[j];
+		return dL * dL * 11.0 * biasL + dA * dA * biasA * 1.6 + dB * dB * biasB;
+	}
+
 	public static double[][] makeLAB15()
 	{
 //		double[] minA = new double[20], maxA = new double[20], minB = new double[20], maxB = new double[20];
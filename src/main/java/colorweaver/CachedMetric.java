@@ -0,0 +1,215 @@
+package colorweaver;
+
+import colorweaver.PaletteReducer.ColorMetric;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ColorMetric} that remembers the results of another ColorMetric's {@link #difference(int, int)}, so asking
+ * for the difference between the same two RGBA8888 colors again only costs a table lookup. This is meant for palette
+ * analysis with an expensive metric, such as {@link PaletteReducer#oklabCarefulMetric}: the threshold loops in
+ * {@link PaletteReducer#analyze(com.badlogic.gdx.graphics.Pixmap, int, int, ColorMetric)} compare each candidate color
+ * with every palette color chosen so far, and when the same or similar images are analyzed more than once (frames of
+ * an animation, or one image with several thresholds or limits), most of those pairs come up again.
+ * <br>
+ * The cache has a fixed size, set when this is constructed, and never allocates after that. It is open-addressed,
+ * with both colors packed into one long key, and each key can only go in one bucket of {@link #WAYS} slots. When a
+ * bucket is full, a slot is evicted using the clock (second-chance) algorithm: each slot has a bit that is set when it
+ * is used, and the bucket's hand skips over (and clears) set bits until it finds a slot that hasn't been used since the
+ * hand last passed it. This keeps frequently-compared pairs cached while old pairs fall out.
+ * <br>
+ * Only {@link #difference(int, int)} is cached. The overloads that take separate channels are used to fill a
+ * {@link PaletteReducer#paletteMapping}, where each pair of cell and palette color is only compared once, so they
+ * call the wrapped metric directly; {@link PaletteReducer#nearestFinder(ColorMetric, int[], int, double)} also uses
+ * the wrapped metric when given a CachedMetric, so the faster paths for built-in metrics still apply.
+ * <br>
+ * Like PaletteReducer, this isn't safe to use from several threads at once, since lookups change the cache.
+ */
+public class CachedMetric implements ColorMetric {
+    /**
+     * How many slots are in each bucket; a key can only be stored in the bucket its hash picks.
+     */
+    public static final int WAYS = 8;
+    /**
+     * The largest capacity a CachedMetric can have, 2 to the 30; larger requested capacities are reduced to this.
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    protected final ColorMetric metric;
+    protected final long[] keys;
+    protected final double[] values;
+    /**
+     * 0 for an empty slot, 1 for a full slot that hasn't been used since the clock hand passed it, or 2 for a full
+     * slot that has been used.
+     */
+    protected final byte[] marks;
+    /**
+     * The clock hand for each bucket, as an offset from 0 to {@link #WAYS} - 1 into that bucket.
+     */
+    protected final byte[] hands;
+    protected final int mask;
+    protected long hits, misses, evictions;
+
+    /**
+     * Wraps {@code metric} with a cache that holds 65536 pairs of colors, using about 1.1 MB.
+     * @param metric the ColorMetric to cache; often {@link PaletteReducer#oklabCarefulMetric}
+     */
+    public CachedMetric(ColorMetric metric) {
+        this(metric, 1 << 16);
+    }
+
+    /**
+     * Wraps {@code metric} with a cache that holds at least {@code capacity} pairs of colors; capacity is rounded up to
+     * a power of two, and is at least {@link #WAYS} and at most {@link #MAX_CAPACITY}. Each pair uses 17 bytes, plus a
+     * little for the clock hands.
+     * @param metric   the ColorMetric to cache; often {@link PaletteReducer#oklabCarefulMetric}
+     * @param capacity how many pairs of colors the cache can hold; capacities above {@link #MAX_CAPACITY} are reduced
+     *                 to it
+     */
+    public CachedMetric(ColorMetric metric, int capacity) {
+        this.metric = metric;
+        final int size = capacity >= MAX_CAPACITY ? MAX_CAPACITY
+                : Math.max(WAYS, Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1);
+        keys = new long[size];
+        values = new double[size];
+        marks = new byte[size];
+        hands = new byte[size / WAYS];
+        mask = size - WAYS;
+    }
+
+    /**
+     * Gets the ColorMetric this caches.
+     * @return the wrapped ColorMetric
+     */
+    public ColorMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Gets the difference between two RGBA8888 colors from the wrapped metric, looking it up in the cache first and
+     * storing it there if it wasn't present.
+     * @param color1 an RGBA8888 color
+     * @param color2 an RGBA8888 color
+     * @return the same difference the wrapped metric would return
+     */
+    @Override
+    public double difference(final int color1, final int color2) {
+        final long key = (long) color1 << 32 | (color2 & 0xFFFFFFFFL);
+        long h = key * 0xD1342543DE82EF95L;
+        h ^= h >>> 29;
+        final int bucket = (int) (h ^ h >>> 32) & mask;
+        int empty = -1;
+        for (int i = bucket, end = bucket + WAYS; i < end; i++) {
+            if (marks[i] == 0) {
+                if (empty < 0) empty = i;
+            } else if (keys[i] == key) {
+                marks[i] = 2;
+                hits++;
+                return values[i];
+            }
+        }
+        misses++;
+        final double value = metric.difference(color1, color2);
+        if (empty < 0) {
+            final int b = bucket / WAYS;
+            int hand = hands[b];
+            while (marks[bucket + hand] == 2) {
+                marks[bucket + hand] = 1;
+                hand = hand + 1 & WAYS - 1;
+            }
+            empty = bucket + hand;
+            hands[b] = (byte) (hand + 1 & WAYS - 1);
+            evictions++;
+        }
+        keys[empty] = key;
+        values[empty] = value;
+        marks[empty] = 1;
+        return value;
+    }
+
+    /**
+     * Not cached; calls the wrapped metric directly.
+     */
+    @Override
+    public double difference(final int color1, final int r2, final int g2, final int b2) {
+        return metric.difference(color1, r2, g2, b2);
+    }
+
+    /**
+     * Not cached; calls the wrapped metric directly.
+     */
+    @Override
+    public double difference(final int r1, final int g1, final int b1, final int r2, final int g2, final int b2) {
+        return metric.difference(r1, g1, b1, r2, g2, b2);
+    }
+
+    /**
+     * Gets how many pairs of colors the cache can hold.
+     * @return the capacity of the cache, always a power of two
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets how many calls to {@link #difference(int, int)} were answered from the cache since this was created or
+     * {@link #resetStats()} was last called.
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets how many calls to {@link #difference(int, int)} had to use the wrapped metric since this was created or
+     * {@link #resetStats()} was last called.
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets how many cached pairs were removed to make room for new ones since this was created or
+     * {@link #resetStats()} was last called.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the fraction of calls to {@link #difference(int, int)} that were answered from the cache, from 0.0 to 1.0,
+     * or 0.0 if there haven't been any calls.
+     * @return the hit rate since this was created or {@link #resetStats()} was last called
+     */
+    public double getHitRate() {
+        final long total = hits + misses;
+        return total == 0L ? 0.0 : hits / (double) total;
+    }
+
+    /**
+     * Sets the hit, miss, and eviction counts to 0, without changing what is cached.
+     */
+    public void resetStats() {
+        hits = 0L;
+        misses = 0L;
+        evictions = 0L;
+    }
+
+    /**
+     * Removes every cached pair and resets the statistics; this is needed if the wrapped metric's results change,
+     * for instance if it depends on a table that was replaced.
+     */
+    public void clear() {
+        Arrays.fill(marks, (byte) 0);
+        Arrays.fill(hands, (byte) 0);
+        resetStats();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedMetric{capacity=" + keys.length + ", hits=" + hits + ", misses=" + misses +
+                ", evictions=" + evictions + ", hitRate=" + getHitRate() + '}';
+    }
+}
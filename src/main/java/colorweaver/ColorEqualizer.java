@@ -1,36 +1,94 @@
 package colorweaver;
 
+import colorweaver.tools.ParallelKit;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.math.MathUtils;
 
-import java.util.Arrays;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 
 /**
  * Created by Tommy Ettinger on 8/2/2019.
  */
 public class ColorEqualizer {
     private final float[] lumas = new float[4081];
+    private int parallelism = 1;
     public ColorEqualizer()
     {
     }
-    public Pixmap process(Pixmap pm)
+
+    /**
+     * Gets how many threads are used to count the lightness histogram of an image and to recolor it.
+     * @return the parallelism level; 1 by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many threads are used to count the lightness histogram of an image and to recolor it; each thread counts
+     * a strip of rows into its own array, and the arrays are added together after, then each thread recolors its own
+     * strips of rows. The result is the same for any parallelism. {@link ParallelKit#availableParallelism()} uses
+     * every core.
+     * @param parallelism how many threads to use; at least 1
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Fills {@link #lumas} with how many pixels with at least 50% alpha have each lightness, using
+     * {@link #getParallelism()} threads. Lightness is measured as in {@link #processDB(Pixmap)} if db is true, or as in
+     * {@link #process(Pixmap)} otherwise.
+     * @return how many pixels had less than 50% alpha
+     */
+    private int countLumas(final Pixmap pm, final boolean db)
+    {
+        final int w = pm.getWidth();
+        final IntBuffer view = rgbaView(pm);
+        final int[] counts = ParallelKit.countBins(parallelism, 0, pm.getHeight(), 16, 4082, new ParallelKit.BinTask() {
+            @Override
+            public void run(int start, int end, int[] bins) {
+                int c;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        c = view == null ? pm.getPixel(x, y) : view.get(i);
+                        if((c & 0x80) == 0)
+                            bins[4081]++;
+                        else if(db)
+                            bins[(c >>> 22 & 0x3FC) + (c >>> 13 & 0x7F8) + (c >>> 16 & 0xFF) + (c >>> 7 & 0x1FE) + (c >>> 8 & 0xFF)]++;
+                        else
+                            bins[(c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF)]++;
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < 4081; i++) {
+            lumas[i] = counts[i];
+        }
+        return counts[4081];
+    }
+
+    /**
+     * Views the pixels of an RGBA8888 Pixmap as big-endian ints, so each int is an RGBA8888 color and pixel (x, y) is
+     * at index {@code x + y * width}. Other formats return null, and have to use getPixel() and drawPixel() instead.
+     */
+    private static IntBuffer rgbaView(Pixmap pm)
+    {
+        if(pm.getFormat() != Pixmap.Format.RGBA8888)
+            return null;
+        return pm.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
+    public Pixmap process(final Pixmap pm)
     {
         final int w = pm.getWidth();
         final int h = pm.getHeight();
         float area = (w * h - 1f);
         if((w == 1 && h == 1) || w == 0 || h == 0)
             return pm;
-        Arrays.fill(lumas, 0);
-        int c, t;
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                if((c & 0x80) != 0)
-                    lumas[(c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF)]++;
-                else
-                    area--;
-            }
-        }
+        int c;
+        area -= countLumas(pm, false);
         final float invArea = 255f / 4f / area;
 
         c = 0;
@@ -55,25 +113,36 @@ public class ColorEqualizer {
             }
         }
 //        maxLuma = 2048 + maxLuma >>> 4;
-        float luma, warm, mild;
-
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                t = (c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF);
-//                luma = lumas[t];
-                luma = (lumas[t] + (t >>> 4) + (t >>> 5)); // 3/4 from actual lightness, 1/4 equalized
-//                luma = (lumas[t] + (t >>> 4)); // 1/2 from actual lightness, 1/2 equalized
-                warm = (c >>> 24) - (c >>> 8 & 0xFF);
-                mild = ((c >>> 16 & 0xFF) - (c >>> 8 & 0xFF)) * 0.5f;
-                pm.drawPixel(x, y,
-                        MathUtils.clamp((int) (luma + 0.625f * warm - mild), 0, 255)<<24|
+        final IntBuffer view = rgbaView(pm);
+        final Pixmap.Blending blending = pm.getBlending();
+        pm.setBlending(Pixmap.Blending.None);
+        ParallelKit.forRange(parallelism, 0, h, 16, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int c, t;
+                float luma, warm, mild;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        c = view == null ? pm.getPixel(x, y) : view.get(i);
+                        t = (c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF);
+//                        luma = lumas[t];
+                        luma = (lumas[t] + (t >>> 4) + (t >>> 5)); // 3/4 from actual lightness, 1/4 equalized
+//                        luma = (lumas[t] + (t >>> 4)); // 1/2 from actual lightness, 1/2 equalized
+                        warm = (c >>> 24) - (c >>> 8 & 0xFF);
+                        mild = ((c >>> 16 & 0xFF) - (c >>> 8 & 0xFF)) * 0.5f;
+                        c = MathUtils.clamp((int) (luma + 0.625f * warm - mild), 0, 255)<<24|
                                 MathUtils.clamp((int) (luma - 0.375f * warm + mild), 0, 255)<<16|
                                 MathUtils.clamp((int) (luma - 0.375f * warm - mild), 0, 255)<<8|
-                                (c & 0xFF));
-
+                                (c & 0xFF);
+                        if(view == null)
+                            pm.drawPixel(x, y, c);
+                        else
+                            view.put(i, c);
+                    }
+                }
             }
-        }
+        });
+        pm.setBlending(blending);
         return pm;
     }
 
@@ -83,24 +152,15 @@ public class ColorEqualizer {
      * @param pm a Pixmap that will be modified in place
      * @return the given Pixmap, after modifications
      */
-    public Pixmap processDB(Pixmap pm)
+    public Pixmap processDB(final Pixmap pm)
     {
         final int w = pm.getWidth();
         final int h = pm.getHeight();
         float area = (w * h - 1f), work;
         if((w == 1 && h == 1) || w == 0 || h == 0)
             return pm;
-        Arrays.fill(lumas, 0);
-        int c, t;
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                if((c & 0x80) != 0)
-                    lumas[(c >>> 22 & 0x3FC) + (c >>> 13 & 0x7F8) + (c >>> 16 & 0xFF) + (c >>> 7 & 0x1FE) + (c >>> 8 & 0xFF)]++;
-                else
-                    area--;
-            }
-        }
+        int c;
+        area -= countLumas(pm, true);
         final float invArea = 1f / area;
 
         c = 0;
@@ -126,41 +186,53 @@ public class ColorEqualizer {
             }
         }
 //        maxLuma = 2048 + maxLuma >>> 4;
-        float luma, warm, mild;
-
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                t = (c >>> 22 & 0x3FC) + (c >>> 13 & 0x7F8) + (c >>> 16 & 0xFF) + (c >>> 7 & 0x1FE) + (c >>> 8 & 0xFF);
-//                luma = lumas[t];
-                luma = (lumas[t] + (t >>> 5) + (t >>> 6)); // 3/4 from actual lightness, 1/4 equalized
-//                luma = (lumas[t] + (t >>> 5)); // 1/2 from actual lightness, 1/2 equalized
-                warm = (c >>> 24) - (c >>> 8 & 0xFF);
-                mild = ((c >>> 16 & 0xFF) - (c >>> 8 & 0xFF));
-                //+0.2500 +0.5625 +0.1875
-                //+1.0000 +0.0000 -1.0000
-                //+0.0000 +1.0000 -1.0000
-                
-                //luma + 0.7500 * warm - 0.5625 * mild
-                //luma - 0.2500 * warm + 0.4375 * mild
-                //luma - 0.2500 * warm - 0.5625 * mild
-                pm.drawPixel(x, y,
-                                MathUtils.clamp((int) (luma + 0.75f * warm - 0.5625f * mild), 0, 255)<<24|
+        final IntBuffer view = rgbaView(pm);
+        final Pixmap.Blending blending = pm.getBlending();
+        pm.setBlending(Pixmap.Blending.None);
+        ParallelKit.forRange(parallelism, 0, h, 16, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int c, t;
+                float luma, warm, mild;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        c = view == null ? pm.getPixel(x, y) : view.get(i);
+                        t = (c >>> 22 & 0x3FC) + (c >>> 13 & 0x7F8) + (c >>> 16 & 0xFF) + (c >>> 7 & 0x1FE) + (c >>> 8 & 0xFF);
+//                        luma = lumas[t];
+                        luma = (lumas[t] + (t >>> 5) + (t >>> 6)); // 3/4 from actual lightness, 1/4 equalized
+//                        luma = (lumas[t] + (t >>> 5)); // 1/2 from actual lightness, 1/2 equalized
+                        warm = (c >>> 24) - (c >>> 8 & 0xFF);
+                        mild = ((c >>> 16 & 0xFF) - (c >>> 8 & 0xFF));
+                        //+0.2500 +0.5625 +0.1875
+                        //+1.0000 +0.0000 -1.0000
+                        //+0.0000 +1.0000 -1.0000
+
+                        //luma + 0.7500 * warm - 0.5625 * mild
+                        //luma - 0.2500 * warm + 0.4375 * mild
+                        //luma - 0.2500 * warm - 0.5625 * mild
+                        c = MathUtils.clamp((int) (luma + 0.75f * warm - 0.5625f * mild), 0, 255)<<24|
                                 MathUtils.clamp((int) (luma - 0.25f * warm + 0.4375f * mild), 0, 255)<<16|
                                 MathUtils.clamp((int) (luma - 0.25f * warm - 0.5625f * mild), 0, 255)<<8|
-                                (c & 0xFF));
-
-                //old
-                //+0.3750 +0.5000 +0.1250
-                //+1.0000 +0.0000 -1.0000
-                //+0.0000 +1.0000 -1.0000
-                
-                //red
-                //+0.3750 +0.6250 +0.0000
-                //+0.5000 +0.0000 -0.5000
-                //+0.1250 -0.6250 +0.5000
+                                (c & 0xFF);
+                        if(view == null)
+                            pm.drawPixel(x, y, c);
+                        else
+                            view.put(i, c);
+
+                        //old
+                        //+0.3750 +0.5000 +0.1250
+                        //+1.0000 +0.0000 -1.0000
+                        //+0.0000 +1.0000 -1.0000
+
+                        //red
+                        //+0.3750 +0.6250 +0.0000
+                        //+0.5000 +0.0000 -0.5000
+                        //+0.1250 -0.6250 +0.5000
+                    }
+                }
             }
-        }
+        });
+        pm.setBlending(blending);
         return pm;
     }
 }
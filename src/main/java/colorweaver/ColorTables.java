@@ -0,0 +1,245 @@
+package colorweaver;
+
+import com.badlogic.gdx.math.MathUtils;
+
+import java.util.HashMap;
+
+/**
+ * Lookup tables that convert RGB555 colors to other color spaces, built the first time each one is requested. Each
+ * table is an array of channel arrays, each with 32768 floats, indexed by an RGB555 color with red in bits 10-14,
+ * green in bits 5-9, and blue in bits 0-4; {@link PaletteReducer#shrink(int)} gets that index from an RGBA8888 color.
+ * <br>
+ * Every table lives in its own holder class, so the JVM only builds a table when something first asks for it, and
+ * only once even if many threads ask at the same time. Loading {@link PaletteReducer} doesn't build any of these, and
+ * a program that only uses one metric only pays for that metric's table. The Oklab table is shared by
+ * {@link PaletteReducer} and {@link colorweaver.a8.A8PaletteReducer}. The tables are stored as floats, which is more
+ * precision than 5 bits per channel can use, and half the memory of doubles.
+ * <br>
+ * The arrays returned are the shared tables, not copies, and must not be modified.
+ * <br>
+ * A {@link TableBundle} that has been {@link TableBundle#install() installed} can supply any of these tables, so they
+ * are read from the bundle instead of being computed; this only affects tables that haven't been requested yet.
+ */
+public final class ColorTables {
+    private static final HashMap<String, float[][]> presets = new HashMap<>(8);
+
+    private ColorTables() {
+    }
+
+    /**
+     * Makes the table with the given name use {@code table} instead of computing it, if that table hasn't been built
+     * yet. The name is the name of the method that gets the table, such as "oklab" or "iptFlat". Used by
+     * {@link TableBundle#install()}.
+     * @param name  the name of a table, the same as the method that gets it
+     * @param table the contents to use for that table; will be shared, not copied
+     */
+    static void preset(String name, float[][] table) {
+        synchronized (presets) {
+            presets.put(name, table);
+        }
+    }
+
+    /**
+     * Gets the table given to {@link #preset(String, float[][])} for name, if it has the right shape.
+     * @param name     the name of a table, the same as the method that gets it
+     * @param channels how many channel arrays the table should have
+     * @return the preset table, or null if there isn't a usable one
+     */
+    private static float[][] preset(String name, int channels) {
+        final float[][] table;
+        synchronized (presets) {
+            table = presets.get(name);
+        }
+        if (table == null || table.length != channels) return null;
+        for (int i = 0; i < channels; i++) {
+            if (table[i] == null || table[i].length != 0x8000) return null;
+        }
+        return table;
+    }
+
+    /**
+     * Gets the Oklab table, building it if this is the first request. Item 0 stores L (lightness) from 0.0 to 1.0,
+     * using {@link PaletteReducer#forwardLight(double)} on the lightness. Item 1 stores A, which is something like a
+     * green-red axis, from -0.5 (green) to 0.5 (red). Item 2 stores B, which is something like a blue-yellow axis, from
+     * -0.5 (blue) to 0.5 (yellow). Item 3 stores the hue in radians from -PI to PI, with red at 0, yellow at PI/2, and
+     * blue at -PI/2.
+     * @return the shared Oklab table, as 4 float arrays indexed by RGB555 color; do not modify
+     */
+    public static float[][] oklab() {
+        return OklabHolder.TABLE;
+    }
+
+    /**
+     * Gets the CIE L*A*B* table, building it if this is the first request. Item 0 stores luma (ranging from 0 to 100),
+     * item 1 stores A chroma (representing red for positive values and green for negative, very roughly, with a
+     * strange range of about -120 to 120), and item 2 stores B chroma (representing yellow for positive values and
+     * blue for negative values, very roughly, with a strange range of about -120 to 120).
+     * @return the shared CIE L*A*B* table, as 3 float arrays indexed by RGB555 color; do not modify
+     */
+    public static float[][] lab() {
+        return LabHolder.TABLE;
+    }
+
+    /**
+     * Gets the IPT table, building it if this is the first request. This uses the usual 0.43 power between the LMS and
+     * IPT steps. Item 0 stores I (intensity), item 1 stores P (protan, a red-green axis), and item 2 stores T
+     * (tritan, a yellow-blue axis).
+     * @return the shared IPT table, as 3 float arrays indexed by RGB555 color; do not modify
+     */
+    public static float[][] ipt() {
+        return IptHolder.TABLE;
+    }
+
+    /**
+     * Gets the "flat" IPT table, building it if this is the first request. This skips the power curve between the LMS
+     * and IPT steps, so it is linear in each 5-bit channel. Item 0 stores I (intensity), item 1 stores P (protan, a
+     * red-green axis), and item 2 stores T (tritan, a yellow-blue axis).
+     * @return the shared flat IPT table, as 3 float arrays indexed by RGB555 color; do not modify
+     */
+    public static float[][] iptFlat() {
+        return IptFlatHolder.TABLE;
+    }
+
+    private static final class OklabHolder {
+        static final float[][] TABLE;
+        static {
+            final float[][] preset = preset("oklab", 4);
+            TABLE = preset != null ? preset : build();
+        }
+
+        private static float[][] build() {
+            final float[][] table = new float[4][0x8000];
+            final float[] L = table[0], A = table[1], B = table[2], H = table[3];
+            double r, g, b, l, m, s;
+            int idx = 0;
+            for (int ri = 0; ri < 32; ri++) {
+                r = ri * ri * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
+                for (int gi = 0; gi < 32; gi++) {
+                    g = gi * gi * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
+                    for (int bi = 0; bi < 32; bi++) {
+                        b = bi * bi * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
+
+                        l = Math.cbrt(0.4121656120 * r + 0.5362752080 * g + 0.0514575653 * b);
+                        m = Math.cbrt(0.2118591070 * r + 0.6807189584 * g + 0.1074065790 * b);
+                        s = Math.cbrt(0.0883097947 * r + 0.2818474174 * g + 0.6302613616 * b);
+
+                        // PaletteReducer.forwardLight(), written out so building this doesn't initialize PaletteReducer
+                        L[idx] = (float) Math.pow(0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s, 1.5);
+                        A[idx] = (float) (1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s);
+                        B[idx] = (float) (0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s);
+                        H[idx] = MathUtils.atan2(B[idx], A[idx]);
+
+                        idx++;
+                    }
+                }
+            }
+            return table;
+        }
+    }
+
+    private static final class LabHolder {
+        static final float[][] TABLE;
+        static {
+            final float[][] preset = preset("lab", 3);
+            TABLE = preset != null ? preset : build();
+        }
+
+        private static float[][] build() {
+            final float[][] table = new float[3][0x8000];
+            final double[] linear = new double[32];
+            for (int i = 0; i < 32; i++) {
+                final double c = i / 31.0;
+                linear[i] = ((c > 0.04045) ? Math.pow((c + 0.055) / 1.055, 2.4) : c / 12.92);
+            }
+            double r, g, b, x, y, z;
+            int idx = 0;
+            for (int ri = 0; ri < 32; ri++) {
+                r = linear[ri];
+                for (int gi = 0; gi < 32; gi++) {
+                    g = linear[gi];
+                    for (int bi = 0; bi < 32; bi++) {
+                        b = linear[bi];
+
+                        x = (r * 0.4124 + g * 0.3576 + b * 0.1805) / 0.950489; // 0.96422;
+                        y = (r * 0.2126 + g * 0.7152 + b * 0.0722) / 1.000000; // 1.00000;
+                        z = (r * 0.0193 + g * 0.1192 + b * 0.9505) / 1.088840; // 0.82521;
+
+                        x = (x > 0.008856) ? Math.cbrt(x) : (7.787037037037037 * x) + 0.13793103448275862;
+                        y = (y > 0.008856) ? Math.cbrt(y) : (7.787037037037037 * y) + 0.13793103448275862;
+                        z = (z > 0.008856) ? Math.cbrt(z) : (7.787037037037037 * z) + 0.13793103448275862;
+
+                        table[0][idx] = (float) ((116.0 * y) - 16.0);
+                        table[1][idx] = (float) (500.0 * (x - y));
+                        table[2][idx] = (float) (200.0 * (y - z));
+                        idx++;
+                    }
+                }
+            }
+            return table;
+        }
+    }
+
+    private static final class IptHolder {
+        static final float[][] TABLE;
+        static {
+            final float[][] preset = preset("ipt", 3);
+            TABLE = preset != null ? preset : build();
+        }
+
+        private static float[][] build() {
+            final float[][] table = new float[3][0x8000];
+            double r, g, b, l, m, s;
+            int idx = 0;
+            for (int ri = 0; ri < 32; ri++) {
+                r = ri * ri * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
+                for (int gi = 0; gi < 32; gi++) {
+                    g = gi * gi * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
+                    for (int bi = 0; bi < 32; bi++) {
+                        b = bi * bi * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
+
+                        l = Math.pow(0.313921 * r + 0.639468 * g + 0.0465970 * b, 0.43);
+                        m = Math.pow(0.151693 * r + 0.748209 * g + 0.1000044 * b, 0.43);
+                        s = Math.pow(0.017753 * r + 0.109468 * g + 0.8729690 * b, 0.43);
+
+                        table[0][idx] = (float) (0.4000 * l + 0.4000 * m + 0.2000 * s);
+                        table[1][idx] = (float) (4.4550 * l - 4.8510 * m + 0.3960 * s);
+                        table[2][idx] = (float) (0.8056 * l + 0.3572 * m - 1.1628 * s);
+
+                        idx++;
+                    }
+                }
+            }
+            return table;
+        }
+    }
+
+    private static final class IptFlatHolder {
+        static final float[][] TABLE;
+        static {
+            final float[][] preset = preset("iptFlat", 3);
+            TABLE = preset != null ? preset : build();
+        }
+
+        private static float[][] build() {
+            final float[][] table = new float[3][0x8000];
+            double l, m, s;
+            int idx = 0;
+            for (int ri = 0; ri < 32; ri++) {
+                for (int gi = 0; gi < 32; gi++) {
+                    for (int bi = 0; bi < 32; bi++) {
+                        l = (0.010126483870967743) * ri + (0.020628) * gi + (0.0015031290322580645) * bi;
+                        m = (0.004893322580645161) * ri + (0.024135774193548388) * gi + (0.003225948387096774) * bi;
+                        s = (5.726774193548388E-4) * ri + (0.0035312258064516128) * gi + (0.028160290322580644) * bi;
+
+                        table[0][idx] = (float) (0.4000 * l + 0.4000 * m + 0.2000 * s);
+                        table[1][idx] = (float) (4.4550 * l - 4.8510 * m + 0.3960 * s);
+                        table[2][idx] = (float) (0.8056 * l + 0.3572 * m - 1.1628 * s);
+
+                        idx++;
+                    }
+                }
+            }
+            return table;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package colorweaver;
 
+import colorweaver.tools.ParallelKit;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.math.MathUtils;
 
-import java.util.Arrays;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 
 /**
  * Meant to help applications adapt their visuals to be perceptible by users with either type of red-green colorblindness.
@@ -15,39 +17,91 @@ public class ColorblindnessAdapter {
     private final float[] lumas = new float[1025];
     private final float[] cbs = new float[1025];
     private final float[] crs = new float[1025];
+    private int parallelism = 1;
     public ColorblindnessAdapter ()
     {
     }
-    public Pixmap process(Pixmap pm)
+
+    /**
+     * Gets how many threads are used to count the histograms of an image and to recolor it.
+     * @return the parallelism level; 1 by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many threads are used to count the histograms of an image and to recolor it; each thread counts a strip
+     * of rows into its own arrays, and the arrays are added together after, then each thread recolors its own strips
+     * of rows. The result is the same for any parallelism. {@link ParallelKit#availableParallelism()} uses every core.
+     * @param parallelism how many threads to use; at least 1
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Fills {@link #lumas}, {@link #cbs}, and {@link #crs} with how many pixels with at least 50% alpha have each
+     * value of Y, Cb, and Cr, using {@link #getParallelism()} threads.
+     * @return how many pixels had less than 50% alpha
+     */
+    private int countChannels(final Pixmap pm)
+    {
+        final int w = pm.getWidth();
+        final IntBuffer view = rgbaView(pm);
+        final int[] counts = ParallelKit.countBins(parallelism, 0, pm.getHeight(), 16, 1025 * 3 + 1, new ParallelKit.BinTask() {
+            @Override
+            public void run(int start, int end, int[] bins) {
+                int c;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        c = view == null ? pm.getPixel(x, y) : view.get(i);
+                        if((c & 0x80) != 0)
+                        {
+                            bins[(int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
+                               (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
+                               (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f)]++;
+                            bins[1025 + (int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
+                               (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
+                               (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f)]++;
+                            bins[2050 + (int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
+                               (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
+                               (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f)]++;
+                        }
+                        else
+                            bins[3075]++;
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < 1025; i++) {
+            lumas[i] = counts[i];
+            cbs[i] = counts[1025 + i];
+            crs[i] = counts[2050 + i];
+        }
+        return counts[3075];
+    }
+
+    /**
+     * Views the pixels of an RGBA8888 Pixmap as big-endian ints, so each int is an RGBA8888 color and pixel (x, y) is
+     * at index {@code x + y * width}. Other formats return null, and have to use getPixel() and drawPixel() instead.
+     */
+    private static IntBuffer rgbaView(Pixmap pm)
+    {
+        if(pm.getFormat() != Pixmap.Format.RGBA8888)
+            return null;
+        return pm.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
+    public Pixmap process(final Pixmap pm)
     {
         final int w = pm.getWidth();
         final int h = pm.getHeight();
         int area = (w * h - 1);
         if(area <= 0)
             return pm;
-        Arrays.fill(lumas, 0);
-        Arrays.fill(cbs, 0);
-        Arrays.fill(crs, 0);
-        int c, u, b, r;
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                if((c & 0x80) != 0)
-                {
-                    lumas[(int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
-                       (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
-                       (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f)]++;
-                    cbs[(int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
-                       (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
-                       (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f)]++;
-                    crs[(int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
-                       (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
-                       (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f)]++;
-                }
-                else
-                    area--;
-            }
-        }
+        int u, b, r;
+        area -= countChannels(pm);
         final float invArea = 63.75f / area;
 
         u = 0;
@@ -68,62 +122,53 @@ public class ColorblindnessAdapter {
                 crs[i] = r * invArea;
             }
         }
-        float luma, cb, cr;
-
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                u = (int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
-                   (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
-                   (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f);
-                b = (int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
-                   (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
-                   (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f);
-                r = (int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
-                   (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
-                   (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f);
-                cb = (cbs[b] + (b >>> 3) + (b >>> 4)) - 127.5f;
-                cr = (crs[r] + (r >>> 3) + (r >>> 4)) - 127.5f;
-                luma = (lumas[u] + (u >>> 3) + (u >>> 4)); // 3/4 from actual lightness, 1/4 equalized
-                pm.drawPixel(x, y,
-                   MathUtils.clamp((int)(luma + cr * 1.402f + 0.5f), 0, 255)<<24|
-                      MathUtils.clamp((int)(luma - cb * 0.344136f - cr * 0.714136f + 0.5f), 0, 255)<<16|
-                      MathUtils.clamp((int)(luma + cb * 1.772f + 0.5f), 0, 255)<<8|
-                      (c & 0xFF));
+        final IntBuffer view = rgbaView(pm);
+        final Pixmap.Blending blending = pm.getBlending();
+        pm.setBlending(Pixmap.Blending.None);
+        ParallelKit.forRange(parallelism, 0, h, 16, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int c, u, b, r;
+                float luma, cb, cr;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        c = view == null ? pm.getPixel(x, y) : view.get(i);
+                        u = (int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
+                           (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
+                           (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f);
+                        b = (int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
+                           (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
+                           (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f);
+                        r = (int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
+                           (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
+                           (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f);
+                        cb = (cbs[b] + (b >>> 3) + (b >>> 4)) - 127.5f;
+                        cr = (crs[r] + (r >>> 3) + (r >>> 4)) - 127.5f;
+                        luma = (lumas[u] + (u >>> 3) + (u >>> 4)); // 3/4 from actual lightness, 1/4 equalized
+                        c = MathUtils.clamp((int)(luma + cr * 1.402f + 0.5f), 0, 255)<<24|
+                           MathUtils.clamp((int)(luma - cb * 0.344136f - cr * 0.714136f + 0.5f), 0, 255)<<16|
+                           MathUtils.clamp((int)(luma + cb * 1.772f + 0.5f), 0, 255)<<8|
+                           (c & 0xFF);
+                        if(view == null)
+                            pm.drawPixel(x, y, c);
+                        else
+                            view.put(i, c);
+                    }
+                }
             }
-        }
+        });
+        pm.setBlending(blending);
         return pm;
     }
-    public Pixmap processRoughness(Pixmap pm)
+    public Pixmap processRoughness(final Pixmap pm)
     {
         final int w = pm.getWidth();
         final int h = pm.getHeight();
         int area = (w * h - 1);
         if(area <= 0)
             return pm;
-        Arrays.fill(lumas, 0);
-        Arrays.fill(cbs, 0);
-        Arrays.fill(crs, 0);
-        int c, u, b, r;
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                if((c & 0x80) != 0)
-                {
-                    lumas[(int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
-                       (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
-                       (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f)]++;
-                    cbs[(int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
-                       (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
-                       (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f)]++;
-                    crs[(int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
-                       (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
-                       (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f)]++;
-                }
-                else
-                    area--;
-            }
-        }
+        int u, b, r;
+        area -= countChannels(pm);
         final float invArea = 63.75f / area;
 
         u = 0;
@@ -144,31 +189,43 @@ public class ColorblindnessAdapter {
                 crs[i] = r * invArea;
             }
         }
-        float luma, cb, cr;
-
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                u = (int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
-                   (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
-                   (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f);
-                b = (int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
-                   (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
-                   (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f);
-                r = (int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
-                   (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
-                   (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f);
-                cb = (cbs[b] + (b >>> 3) + (b >>> 4)) - 127.5f; // 3/4 from actual value, 1/4 equalized
-                cr = (crs[r] + (r >>> 3) + (r >>> 4)) - 127.5f;
-                luma = Math.max(0f, -0.1f + cr) * 1.5f; // temporary
-                luma = (lumas[u] + (u >>> 3) + (u >>> 4)) + (((x ^ y >>> 1) & 1) - 0.5f) * luma;
-                pm.drawPixel(x, y,
-                   MathUtils.clamp((int)(luma + cr * 1.402f + 0.5f), 0, 255)<<24|
-                      MathUtils.clamp((int)(luma - cb * 0.344136f - cr * 0.714136f + 0.5f), 0, 255)<<16|
-                      MathUtils.clamp((int)(luma + cb * 1.772f + 0.5f), 0, 255)<<8|
-                      (c & 0xFF));
+        final IntBuffer view = rgbaView(pm);
+        final Pixmap.Blending blending = pm.getBlending();
+        pm.setBlending(Pixmap.Blending.None);
+        ParallelKit.forRange(parallelism, 0, h, 16, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int c, u, b, r;
+                float luma, cb, cr;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0, i = y * w; x < w; x++, i++) {
+                        c = view == null ? pm.getPixel(x, y) : view.get(i);
+                        u = (int)((c >>> 24) * (0x1.010102p+2f * 0.299f) +
+                           (c & 0x00ff0000) * (0x1.010102p-14f * 0.587f) +
+                           (c & 0x0000ff00) * (0x1.010102p-6f * 0.114f) + 0.5f);
+                        b = (int)((c >>> 24) * (0x1.010102p+2f * -0.168736f) +
+                           (c & 0x00ff0000) * (0x1.010102p-14f * -0.331264f) +
+                           (c & 0x0000ff00) * (0x1.010102p-6f * 0.5f) + 512.5f);
+                        r = (int)((c >>> 24) * (0x1.010102p0f * 0.5f) +
+                           (c & 0x00ff0000) * (0x1.010102p-16f * -0.418688f) +
+                           (c & 0x0000ff00) * (0x1.010102p-8f * -0.081312f) + 512.5f);
+                        cb = (cbs[b] + (b >>> 3) + (b >>> 4)) - 127.5f; // 3/4 from actual value, 1/4 equalized
+                        cr = (crs[r] + (r >>> 3) + (r >>> 4)) - 127.5f;
+                        luma = Math.max(0f, -0.1f + cr) * 1.5f; // temporary
+                        luma = (lumas[u] + (u >>> 3) + (u >>> 4)) + (((x ^ y >>> 1) & 1) - 0.5f) * luma;
+                        c = MathUtils.clamp((int)(luma + cr * 1.402f + 0.5f), 0, 255)<<24|
+                           MathUtils.clamp((int)(luma - cb * 0.344136f - cr * 0.714136f + 0.5f), 0, 255)<<16|
+                           MathUtils.clamp((int)(luma + cb * 1.772f + 0.5f), 0, 255)<<8|
+                           (c & 0xFF);
+                        if(view == null)
+                            pm.drawPixel(x, y, c);
+                        else
+                            view.put(i, c);
+                    }
+                }
             }
-        }
+        });
+        pm.setBlending(blending);
         return pm;
     }
 }
@@ -1,8 +1,12 @@
 package colorweaver;
 
+import colorweaver.tools.ParallelKit;
 import com.badlogic.gdx.math.MathUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -1138,6 +1142,437 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
      */
     protected void setReducer(PaletteReducer reducer) {
         this.reducer = reducer;
+        clearTables();
+    }
+
+    /**
+     * How many shades brighter or darker {@link #colorizeTable()} covers; calls to
+     * {@link #colorize(byte[], int, int, int, byte[], int)} with a brightness outside this range call
+     * {@link #colorize(byte, int)} for each voxel instead.
+     */
+    protected static final int COLORIZE_RANGE = 4;
+    /**
+     * Bulk calls that cover fewer voxels than this always run on the calling thread.
+     */
+    protected static final int PARALLEL_MINIMUM = 1 << 16;
+
+    protected int parallelism = 1;
+    private int[] dimmerTable;
+    private byte[] colorizeTable;
+    private int tableSize;
+
+    /**
+     * Gets how many threads are used by the bulk shading methods, such as
+     * {@link #dimmer(int, byte[], int, int, int[], int)}.
+     * @return the parallelism level; 1 by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many threads are used by the bulk shading methods, such as
+     * {@link #dimmer(int, byte[], int, int, int[], int)}, when they are given at least 65536 voxels. Each thread
+     * shades its own range of voxels, so the result is the same for any parallelism.
+     * {@link ParallelKit#availableParallelism()} uses every core.
+     * @param parallelism how many threads to use; at least 1
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Gets a table of every result of {@link #dimmer(int, byte)} for brightness 0 to 3, built the first time this is
+     * called. The table is flattened, so the RGBA8888 color for {@code brightness} and {@code voxel} is at
+     * {@code brightness << 8 | (voxel & 0xFF)}. Only voxels below the reducer's color count are filled in; the bulk
+     * methods call dimmer() for any others. The returned array must not be modified.
+     * @return the flattened [brightness][index] table of RGBA8888 colors, with 1024 items
+     */
+    public synchronized int[] dimmerTable() {
+        if (dimmerTable == null) {
+            final int[] table = new int[1024];
+            final int size = Math.min(reducer.colorCount, 256);
+            for (int b = 0; b < 4; b++) {
+                for (int i = 0; i < size; i++) {
+                    table[b << 8 | i] = dimmer(b, (byte) i);
+                }
+            }
+            tableSize = size;
+            dimmerTable = table;
+        }
+        return dimmerTable;
+    }
+
+    /**
+     * Gets a table of every result of {@link #colorize(byte, int)} for brightness from -4 to 4, built the first time
+     * this is called. The table is flattened, so the index for {@code brightness} and {@code voxel} is at
+     * {@code brightness + 4 << 8 | (voxel & 0xFF)}. Only voxels below the reducer's color count are filled in; the
+     * bulk methods call colorize() for any others. The returned array must not be modified.
+     * @return the flattened [brightness][index] table of palette indices, with 2304 items
+     */
+    public synchronized byte[] colorizeTable() {
+        if (colorizeTable == null) {
+            final byte[] table = new byte[COLORIZE_RANGE * 2 + 1 << 8];
+            final int size = Math.min(reducer.colorCount, 256);
+            for (int b = -COLORIZE_RANGE; b <= COLORIZE_RANGE; b++) {
+                for (int i = 0; i < size; i++) {
+                    table[b + COLORIZE_RANGE << 8 | i] = colorize((byte) i, b);
+                }
+            }
+            tableSize = size;
+            colorizeTable = table;
+        }
+        return colorizeTable;
+    }
+
+    /**
+     * Discards the tables used by the bulk shading methods, so they will be built again when next needed. This only
+     * needs to be called if the results of {@link #dimmer(int, byte)} or {@link #colorize(byte, int)} change, which
+     * none of the Colorizers here do unless {@link #setReducer(PaletteReducer)} is called (which calls this).
+     */
+    public synchronized void clearTables() {
+        dimmerTable = null;
+        colorizeTable = null;
+    }
+
+    private synchronized int tableSize() {
+        return tableSize;
+    }
+
+    /**
+     * Runs {@code task} over the range from start to end, on several threads if {@link #parallelism} is more than 1
+     * and the range is large enough.
+     */
+    private void forVoxels(int start, int end, ParallelKit.RangeTask task) {
+        final int count = end - start;
+        if (parallelism <= 1 || count < PARALLEL_MINIMUM)
+            task.run(start, end);
+        else
+            ParallelKit.forRange(parallelism, start, end, Math.max(1 << 14, count / (parallelism << 2)), task);
+    }
+
+    /**
+     * Shades every voxel in {@code voxels} from {@code start} (inclusive) to {@code end} (exclusive) with the same
+     * brightness, writing the same RGBA8888 colors as {@link #dimmer(int, byte)} would into {@code out}, starting at
+     * {@code outStart}. For brightness from 0 to 3, this looks each voxel up in {@link #dimmerTable()} instead of
+     * making a virtual call per voxel; other brightness values call dimmer() for each voxel.
+     * @param brightness 0 for dark, 1 for dim, 2 for medium and 3 for bright
+     * @param voxels     color indices of voxels
+     * @param start      the first index in voxels to shade, inclusive
+     * @param end        the last index in voxels to shade, exclusive
+     * @param out        receives RGBA8888 colors
+     * @param outStart   the index in out that receives the color for {@code voxels[start]}
+     */
+    public void dimmer(final int brightness, final byte[] voxels, final int start, final int end,
+                       final int[] out, final int outStart) {
+        if ((brightness & -4) != 0) {
+            for (int i = start, o = outStart; i < end; i++, o++) {
+                out[o] = dimmer(brightness, voxels[i]);
+            }
+            return;
+        }
+        final int[] table = dimmerTable();
+        final int size = tableSize(), base = brightness << 8, shift = outStart - start;
+        forVoxels(start, end, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int s, int e) {
+                for (int i = s; i < e; i++) {
+                    final int v = voxels[i] & 0xFF;
+                    out[i + shift] = v < size ? table[base | v] : dimmer(brightness, voxels[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Shades every voxel in {@code voxels} from {@code start} (inclusive) to {@code end} (exclusive), each with its own
+     * brightness from the same position in {@code brightness}, writing the same RGBA8888 colors as
+     * {@link #dimmer(int, byte)} would into {@code out}, starting at {@code outStart}. This suits a rendered slice of a
+     * model, where each pixel has a voxel and the brightness its face was lit with. Brightness values from 0 to 3 are
+     * looked up in {@link #dimmerTable()}; others call dimmer() for that voxel.
+     * @param brightness the brightness for each voxel, 0 for dark, 1 for dim, 2 for medium and 3 for bright
+     * @param voxels     color indices of voxels
+     * @param start      the first index in voxels and brightness to shade, inclusive
+     * @param end        the last index in voxels and brightness to shade, exclusive
+     * @param out        receives RGBA8888 colors
+     * @param outStart   the index in out that receives the color for {@code voxels[start]}
+     */
+    public void dimmer(final byte[] brightness, final byte[] voxels, final int start, final int end,
+                       final int[] out, final int outStart) {
+        final int[] table = dimmerTable();
+        final int size = tableSize(), shift = outStart - start;
+        forVoxels(start, end, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int s, int e) {
+                for (int i = s; i < e; i++) {
+                    final int v = voxels[i] & 0xFF, b = brightness[i];
+                    out[i + shift] = v < size && (b & -4) == 0 ? table[b << 8 | v] : dimmer(b, voxels[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Changes the brightness of every voxel in {@code voxels} from {@code start} (inclusive) to {@code end}
+     * (exclusive), writing the same indices as {@link #colorize(byte, int)} would into {@code out}, starting at
+     * {@code outStart}. out may be the same array as voxels if outStart is equal to start. For brightness from -4 to
+     * 4, this looks each voxel up in {@link #colorizeTable()}; other brightness values call colorize() for each voxel.
+     * @param voxels     color indices of voxels
+     * @param start      the first index in voxels to change, inclusive
+     * @param end        the last index in voxels to change, exclusive
+     * @param brightness how many shades brighter (if positive) or darker (if negative) the results should be
+     * @param out        receives color indices
+     * @param outStart   the index in out that receives the index for {@code voxels[start]}
+     */
+    public void colorize(final byte[] voxels, final int start, final int end, final int brightness,
+                         final byte[] out, final int outStart) {
+        if (brightness < -COLORIZE_RANGE || brightness > COLORIZE_RANGE) {
+            for (int i = start, o = outStart; i < end; i++, o++) {
+                out[o] = colorize(voxels[i], brightness);
+            }
+            return;
+        }
+        final byte[] table = colorizeTable();
+        final int size = tableSize(), base = brightness + COLORIZE_RANGE << 8, shift = outStart - start;
+        forVoxels(start, end, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int s, int e) {
+                for (int i = s; i < e; i++) {
+                    final int v = voxels[i] & 0xFF;
+                    out[i + shift] = v < size ? table[base | v] : colorize(voxels[i], brightness);
+                }
+            }
+        });
+    }
+
+    private static volatile int buildParallelism = 1;
+
+    /**
+     * Gets how many threads the arbitrary Colorizer factories, such as {@link #arbitraryColorizer(int[])}, use to build
+     * their mappings.
+     * @return the parallelism level used when building Colorizers; 1 by default
+     */
+    public static int getBuildParallelism() {
+        return buildParallelism;
+    }
+
+    /**
+     * Sets how many threads the arbitrary Colorizer factories, such as {@link #arbitraryColorizer(int[])}, use to build
+     * the PaletteReducer's mapping and the 64K mapping used to find ramps. The Colorizers they build are the same for
+     * any parallelism. {@link ParallelKit#availableParallelism()} uses every core.
+     * @param parallelism how many threads to use; at least 1
+     */
+    public static void setBuildParallelism(int parallelism) {
+        buildParallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Makes a PaletteReducer for palette the same way {@link PaletteReducer#PaletteReducer(int[])} does, but building
+     * its mapping with {@link #getBuildParallelism()} threads. The returned PaletteReducer has a parallelism of 1, as
+     * it would from the constructor, so the Colorizer that holds it doesn't dither on several threads unless asked to.
+     */
+    private static PaletteReducer buildReducer(final int[] palette) {
+        final int parallelism = buildParallelism;
+        if (parallelism <= 1)
+            return new PaletteReducer(palette);
+        final PaletteReducer reducer = new PaletteReducer();
+        reducer.setParallelism(parallelism);
+        reducer.exact(palette);
+        reducer.setParallelism(1);
+        return reducer;
+    }
+
+    /**
+     * How many palettes the cachedArbitrary methods, such as {@link #cachedArbitraryColorizer(int[])}, keep built
+     * before discarding the least-recently-used one.
+     */
+    public static final int CACHE_LIMIT = 64;
+
+    /**
+     * Identifies a cached palette by which factory built it, any extra parameter (as int bits), and a copy of its
+     * palette, which is compared in full, so two palettes with the same hash never share a Colorizer.
+     */
+    private static final class PaletteKey {
+        final int kind, extra, hash;
+        final int[] palette;
+
+        PaletteKey(int kind, int extra, int[] palette) {
+            this.kind = kind;
+            this.extra = extra;
+            this.palette = palette;
+            hash = (Arrays.hashCode(palette) * 31 + kind) * 31 + extra;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PaletteKey)) return false;
+            PaletteKey k = (PaletteKey) o;
+            return hash == k.hash && kind == k.kind && extra == k.extra && Arrays.equals(palette, k.palette);
+        }
+    }
+
+    /**
+     * The parts of a built Colorizer that never change: a Colorizer that is only used to shade (it is never returned,
+     * so its reducer, parallelism, and arrays can't be changed by callers), and the palette and mapping of its
+     * reducer as a {@link SharedPalette}.
+     */
+    private static final class CachedParts {
+        final Colorizer shading;
+        final SharedPalette palette;
+
+        CachedParts(Colorizer shading) {
+            this.shading = shading;
+            palette = new SharedPalette(shading.reducer);
+        }
+
+        /**
+         * Makes a new Colorizer that shades like {@link #shading}, with its own PaletteReducer (sharing the cached
+         * mapping), its own copies of the main and grayscale colors, a parallelism of 1, and its own tables.
+         */
+        Colorizer newColorizer() {
+            final byte[] primary = shading.mainColors().clone(), grays = shading.grayscale().clone();
+            return new Colorizer(palette.newReducer()) {
+                @Override
+                public byte[] mainColors() {
+                    return primary;
+                }
+
+                @Override
+                public byte[] grayscale() {
+                    return grays;
+                }
+
+                @Override
+                public byte brighten(byte voxel) {
+                    return shading.brighten(voxel);
+                }
+
+                @Override
+                public byte darken(byte voxel) {
+                    return shading.darken(voxel);
+                }
+
+                @Override
+                public int dimmer(int brightness, byte voxel) {
+                    return shading.dimmer(brightness, voxel);
+                }
+
+                @Override
+                public int getShadeBit() {
+                    return shading.getShadeBit();
+                }
+
+                @Override
+                public int getWaveBit() {
+                    return shading.getWaveBit();
+                }
+            };
+        }
+    }
+
+    private static final LinkedHashMap<PaletteKey, CachedParts> cache = new LinkedHashMap<PaletteKey, CachedParts>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PaletteKey, CachedParts> eldest) {
+            return size() > CACHE_LIMIT;
+        }
+    };
+
+    private static final int ARBITRARY = 0, LAB = 1, BONUS = 2, WARMING = 3;
+
+    /**
+     * Gets a new Colorizer for the given kind of factory and palette, using cached parts if they were built already,
+     * or building them from a copy of palette and caching them. If two threads request the same uncached palette at
+     * once, both may build it, but only the first one finished is cached and used by both.
+     */
+    private static Colorizer cached(final int kind, final int extra, final int[] palette) {
+        final PaletteKey key = new PaletteKey(kind, extra, palette.clone());
+        CachedParts parts;
+        synchronized (cache) {
+            parts = cache.get(key);
+        }
+        if (parts != null)
+            return parts.newColorizer();
+        final Colorizer colorizer;
+        switch (kind) {
+            case ARBITRARY: colorizer = arbitraryColorizer(key.palette);
+                break;
+            case LAB: colorizer = arbitraryLABColorizer(key.palette);
+                break;
+            case BONUS: colorizer = arbitraryBonusColorizer(key.palette);
+                break;
+            default: colorizer = arbitraryWarmingColorizer(key.palette, Float.intBitsToFloat(extra));
+        }
+        synchronized (cache) {
+            parts = cache.get(key);
+            if (parts == null) {
+                parts = new CachedParts(colorizer);
+                cache.put(key, parts);
+            }
+        }
+        return parts.newColorizer();
+    }
+
+    /**
+     * Like {@link #arbitraryColorizer(int[])}, but only builds the ramps and mapping for a palette once, reusing them
+     * when called again with a palette that has the same colors, as long as it is still among the last
+     * {@link #CACHE_LIMIT} cached palettes. The palette is copied, so changing it afterwards doesn't affect the cache.
+     * Each call returns a new Colorizer with its own PaletteReducer (which shares the cached 32KB mapping, as with
+     * {@link SharedPalette}), so changing its parallelism, reducer, or dither settings doesn't affect other callers.
+     * Because the mapping is shared, the reducer's {@link PaletteReducer#paletteMapping} must not be modified.
+     *
+     * @param palette an array of RGBA8888 colors; index 0 is not used
+     * @return a new Colorizer for palette
+     */
+    public static Colorizer cachedArbitraryColorizer(final int[] palette) {
+        return cached(ARBITRARY, 0, palette);
+    }
+
+    /**
+     * Like {@link #arbitraryLABColorizer(int[])}, but cached the same way as {@link #cachedArbitraryColorizer(int[])}.
+     *
+     * @param palette an array of RGBA8888 colors
+     * @return a new Colorizer for palette
+     */
+    public static Colorizer cachedArbitraryLABColorizer(final int[] palette) {
+        return cached(LAB, 0, palette);
+    }
+
+    /**
+     * Like {@link #arbitraryBonusColorizer(int[])}, but cached the same way as
+     * {@link #cachedArbitraryColorizer(int[])}.
+     *
+     * @param palette an array of RGBA8888 colors; index 0 is not used
+     * @return a new Colorizer for palette
+     */
+    public static Colorizer cachedArbitraryBonusColorizer(final int[] palette) {
+        return cached(BONUS, 0, palette);
+    }
+
+    /**
+     * Like {@link #arbitraryWarmingColorizer(int[], float)}, but cached the same way as
+     * {@link #cachedArbitraryColorizer(int[])}; the same palette with a different heat is cached separately.
+     *
+     * @param palette an array of RGBA8888 colors; index 0 is not used
+     * @param heat    typically between -1.0f and 1.0f, with positive values making lighter colors use warmer hues
+     * @return a new Colorizer for palette and heat
+     */
+    public static Colorizer cachedArbitraryWarmingColorizer(final int[] palette, final float heat) {
+        return cached(WARMING, Float.floatToIntBits(heat), palette);
+    }
+
+    /**
+     * Removes every palette cached by the cachedArbitrary methods, such as {@link #cachedArbitraryColorizer(int[])}.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
     }
 
     private static int luma(final int r, final int g, final int b) {
@@ -1168,6 +1603,244 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
         return ((y1 - y2) * (y1 - y2) << 2) + (((co1 - co2) * (co1 - co2) + (cg1 - cg2) * (cg1 - cg2)) * 3);
     }
 
+    /**
+     * Fills the luma, chroma, and reverse arrays for each color in palette using the YCoCg space that
+     * {@link #arbitraryColorizer(int[])} and {@link #arbitraryBonusColorizer(int[])} use, and gets the 64K mapping from
+     * that space to the nearest palette index. If a {@link TableBundle} is installed and has this mapping for palette,
+     * it is used; otherwise the mapping is built here, which takes a while for large palettes. Either way, the mapping
+     * must not be modified.
+     *
+     * @param palette an array of RGBA8888 colors; index 0 is not used
+     * @param reverse will be filled with the position of each palette color in the mapping
+     * @param lumas   will be filled with the luma of each color, from 0 to 63, or a very negative number if transparent
+     * @param cos     will be filled with the chrominance orange of each color, from 0 to 31
+     * @param cgs     will be filled with the chrominance green of each color, from 0 to 31
+     * @return a 65536-element mapping, indexed by luma in bits 0-5, Co in bits 6-10, and Cg in bits 11-15
+     */
+    static byte[] ycocgMapping(final int[] palette, final int[] reverse, final int[] lumas, final int[] cos, final int[] cgs) {
+        final int COUNT = palette.length;
+        final int yLim = 63, coLim = 31, cgLim = 31, shift1 = 6, shift2 = 11;
+        int color, r, g, b, co, cg, t;
+        for (int i = 1; i < COUNT; i++) {
+            color = palette[i];
+            if((color & 0x80) == 0)
+            {
+                lumas[i] = -0x70000000; // very very negative, blocks transparent colors from mixing into opaque ones
+                continue;
+            }
+            r = (color >>> 24);
+            g = (color >>> 16 & 0xFF);
+            b = (color >>> 8 & 0xFF);
+            co = r - b;
+            t = b + (co >> 1);
+            cg = g - t;
+            reverse[i] = (lumas[i] = luma(r, g, b) >>> 11)
+                    | (cos[i] = co + 255 >>> 4) << shift1
+                    | (cgs[i] = cg + 255 >>> 4) << shift2;
+        }
+        final byte[] bundled = TableBundle.installedData(TableBundle.YCOCG, palette);
+        if (bundled != null && bundled.length == 1 << 16)
+            return bundled;
+
+        return buildMapping(palette, reverse, lumas, cos, cgs, true);
+    }
+
+    /**
+     * Like {@link #ycocgMapping(int[], int[], int[], int[], int[])}, but for the luma, warm, and mild space that
+     * {@link #arbitraryWarmingColorizer(int[], float)} uses, where warm is related to {@code red - blue} and mild is
+     * related to {@code green - blue}. If a {@link TableBundle} is installed and has this mapping for palette, it is
+     * used; otherwise the mapping is built here. Either way, the mapping must not be modified.
+     *
+     * @param palette an array of RGBA8888 colors; index 0 is not used
+     * @param reverse will be filled with the position of each palette color in the mapping
+     * @param lumas   will be filled with the luma of each color, from 0 to 63, or a very negative number if transparent
+     * @param cws     will be filled with the warm chroma of each color, from 0 to 31
+     * @param cms     will be filled with the mild chroma of each color, from 0 to 31
+     * @return a 65536-element mapping, indexed by luma in bits 0-5, warm in bits 6-10, and mild in bits 11-15
+     */
+    static byte[] ycwcmMapping(final int[] palette, final int[] reverse, final int[] lumas, final int[] cws, final int[] cms) {
+        final int COUNT = palette.length;
+        final int yLim = 63, cwLim = 31, cmLim = 31, shift1 = 6, shift2 = 11;
+        int color, r, g, b, cw, cm;
+        for (int i = 1; i < COUNT; i++) {
+            color = palette[i];
+            if((color & 0x80) == 0)
+            {
+                lumas[i] = -0x70000000; // very very negative, blocks transparent colors from mixing into opaque ones
+                continue;
+            }
+            r = (color >>> 24);
+            g = (color >>> 16 & 0xFF);
+            b = (color >>> 8 & 0xFF);
+            cw = r - b;
+            cm = g - b;
+            reverse[i] = (lumas[i] = luma(r, g, b) >>> 11)
+                    | (cws[i] = cw + 255 >>> 4) << shift1
+                    | (cms[i] = cm + 255 >>> 4) << shift2;
+        }
+        final byte[] bundled = TableBundle.installedData(TableBundle.YCWCM, palette);
+        if (bundled != null && bundled.length == 1 << 16)
+            return bundled;
+
+        return buildMapping(palette, reverse, lumas, cws, cms, false);
+    }
+
+    /**
+     * Builds the 64K mapping shared by {@link #ycocgMapping(int[], int[], int[], int[], int[])} and
+     * {@link #ycwcmMapping(int[], int[], int[], int[], int[])}. Each cell holds luma in bits 0-5 and two chroma values
+     * in bits 6-10 and 11-15, and gets the palette index with the smallest {@link #difference(int, int, int, int, int, int)}
+     * (the lowest index if there is a tie), just like checking every palette color would. Instead of checking every
+     * palette color, though, opaque colors are grouped by luma, and each cell checks the groups closest in luma
+     * first, stopping once the luma difference alone is greater than the best difference found, and skipping any
+     * group whose bounding box of chroma values is too far away to beat it; most cells only check a few groups. If {@code lumaWindow} is true, colors with a luma 28 or more away from a cell are
+     * never picked for it. Transparent colors, which have a very negative luma, are checked for every cell (unless
+     * lumaWindow excludes them), since their difference can overflow. Small palettes just check every color. The 32 slices of the mapping are built using
+     * {@link #getBuildParallelism()} threads.
+     *
+     * @param palette    an array of RGBA8888 colors; index 0 is not used
+     * @param reverse    the position of each palette color in the mapping
+     * @param lumas      the luma of each color, from 0 to 63, or a very negative number if transparent
+     * @param c1s        the chroma of each color stored in bits 6-10
+     * @param c2s        the chroma of each color stored in bits 11-15
+     * @param lumaWindow if true, only colors with a luma less than 28 away from a cell can be used for it
+     * @return a new 65536-element mapping
+     */
+    private static byte[] buildMapping(final int[] palette, final int[] reverse, final int[] lumas, final int[] c1s,
+                                       final int[] c2s, final boolean lumaWindow) {
+        final int COUNT = palette.length;
+        final byte[] paletteMapping = new byte[1 << 16];
+        final int[] starts = new int[65];
+        int strayCount = 0;
+        for (int i = 1; i < COUNT; i++) {
+            if ((palette[i] & 0x80) != 0) {
+                paletteMapping[reverse[i]] = (byte) i;
+                starts[lumas[i] + 1]++;
+            } else if (!lumaWindow)
+                strayCount++;
+        }
+        for (int y = 0; y < 64; y++) {
+            starts[y + 1] += starts[y];
+        }
+        final int[] sorted = new int[starts[64]], strays = new int[strayCount], fill = new int[64],
+                low1 = new int[64], high1 = new int[64], low2 = new int[64], high2 = new int[64];
+        System.arraycopy(starts, 0, fill, 0, 64);
+        Arrays.fill(low1, 31);
+        Arrays.fill(low2, 31);
+        strayCount = 0;
+        for (int i = 1; i < COUNT; i++) {
+            if ((palette[i] & 0x80) != 0) {
+                final int y = lumas[i];
+                sorted[fill[y]++] = i;
+                low1[y] = Math.min(low1[y], c1s[i]);
+                high1[y] = Math.max(high1[y], c1s[i]);
+                low2[y] = Math.min(low2[y], c2s[i]);
+                high2[y] = Math.max(high2[y], c2s[i]);
+            }
+            else if (!lumaWindow)
+                strays[strayCount++] = i;
+        }
+        ParallelKit.forRange(buildParallelism, 0, 32, 1,
+                new MappingBuilder(paletteMapping, lumas, c1s, c2s, COUNT, lumaWindow, sorted, starts, strays,
+                        low1, high1, low2, high2));
+        return paletteMapping;
+    }
+
+    /**
+     * Fills slices of the mapping for {@link #buildMapping(int[], int[], int[], int[], int[], boolean)}; each slice
+     * has one value of the chroma in bits 11-15, so different slices can be filled at the same time.
+     */
+    private static final class MappingBuilder implements ParallelKit.RangeTask {
+        final byte[] paletteMapping;
+        final int[] lumas, c1s, c2s, sorted, starts, strays, low1, high1, low2, high2;
+        final int count, lumaLimit;
+        final boolean lumaWindow;
+
+        MappingBuilder(byte[] paletteMapping, int[] lumas, int[] c1s, int[] c2s, int count, boolean lumaWindow,
+                       int[] sorted, int[] starts, int[] strays, int[] low1, int[] high1, int[] low2, int[] high2) {
+            this.paletteMapping = paletteMapping;
+            this.lumas = lumas;
+            this.c1s = c1s;
+            this.c2s = c2s;
+            this.count = count;
+            this.lumaWindow = lumaWindow;
+            this.sorted = sorted;
+            this.starts = starts;
+            this.strays = strays;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            lumaLimit = lumaWindow ? 28 : 64;
+        }
+
+        @Override
+        public void run(int start, int end) {
+            // with few colors, skipping groups saves less than it costs, so every color is checked
+            if (count < 48)
+                fillEvery(start, end);
+            else
+                fillNear(start, end);
+        }
+
+        private void fillEvery(int start, int end) {
+            for (int cell = start << 11, stop = end << 11; cell < stop; cell++) {
+                if (paletteMapping[cell] != 0)
+                    continue;
+                final int iy = cell & 63, ic1 = cell >>> 6 & 31, ic2 = cell >>> 11;
+                int dist = 0x7FFFFFFF;
+                for (int i = 1; i < count; i++) {
+                    if ((!lumaWindow || Math.abs(lumas[i] - iy) < 28) && dist > (dist = Math.min(dist, difference(lumas[i], c1s[i], c2s[i], iy, ic1, ic2))))
+                        paletteMapping[cell] = (byte) i;
+                }
+            }
+        }
+
+        private void fillNear(int start, int end) {
+            for (int ic2 = start; ic2 < end; ic2++) {
+                for (int ic1 = 0; ic1 < 32; ic1++) {
+                    int seed = 0;
+                    for (int iy = 0; iy < 64; iy++) {
+                        final int cell = ic2 << 11 | ic1 << 6 | iy;
+                        if (paletteMapping[cell] != 0)
+                            continue;
+                        int dist = 0x7FFFFFFF, best = 0, d;
+                        // the previous cell's pick is usually close, so starting with it lets more groups be skipped
+                        if (seed != 0 && (!lumaWindow || Math.abs(lumas[seed] - iy) < 28)) {
+                            dist = difference(lumas[seed], c1s[seed], c2s[seed], iy, ic1, ic2);
+                            best = seed;
+                        }
+                        for (int i : strays) {
+                            if ((d = difference(lumas[i], c1s[i], c2s[i], iy, ic1, ic2)) < dist || (d == dist && i < best)) {
+                                dist = d;
+                                best = i;
+                            }
+                        }
+                        for (int dy = 0; dy < lumaLimit && dy * dy << 2 <= dist; dy++) {
+                            for (int side = dy == 0 ? 1 : 0; side < 2; side++) {
+                                final int y = side == 0 ? iy - dy : iy + dy;
+                                if (y < 0 || y > 63 || starts[y] == starts[y + 1])
+                                    continue;
+                                final int out1 = Math.max(0, Math.max(low1[y] - ic1, ic1 - high1[y])),
+                                        out2 = Math.max(0, Math.max(low2[y] - ic2, ic2 - high2[y]));
+                                if ((dy * dy << 2) + (out1 * out1 + out2 * out2) * 3 > dist)
+                                    continue;
+                                for (int s = starts[y], e = starts[y + 1]; s < e; s++) {
+                                    final int i = sorted[s];
+                                    if ((d = difference(y, c1s[i], c2s[i], iy, ic1, ic2)) < dist || (d == dist && i < best)) {
+                                        dist = d;
+                                        best = i;
+                                    }
+                                }
+                            }
+                        }
+                        if (best != 0)
+                            paletteMapping[cell] = (byte) (seed = best);
+                    }
+                }
+            }
+        }
+    }
+
 
     /**
      * Bytes that correspond to palette indices to use when shading an Aurora-palette model.
@@ -4612,7 +5285,7 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
 
     public static Colorizer arbitraryColorizer(final int[] palette) {
         final int COUNT = palette.length;
-        PaletteReducer reducer = new PaletteReducer(palette);
+        PaletteReducer reducer = buildReducer(palette);
 
         final byte[] primary = {
                 reducer.reduceIndex(0xFF0000FF), reducer.reduceIndex(0xFFFF00FF), reducer.reduceIndex(0x00FF00FF),
@@ -4622,46 +5295,12 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
                 reducer.reduceIndex(0xCCCCCCFF), reducer.reduceIndex(0xFFFFFFFF)
         };
         final int THRESHOLD = 64;//0.011; // threshold controls the "stark-ness" of color changes; must not be negative.
-        final byte[] paletteMapping = new byte[1 << 16];
         final int[] reverse = new int[COUNT];
         final byte[][] ramps = new byte[COUNT][4];
         final int[] lumas = new int[COUNT], cos = new int[COUNT], cgs = new int[COUNT];
         final int yLim = 63, coLim = 31, cgLim = 31, shift1 = 6, shift2 = 11;
-        int color, r, g, b, co, cg, t;
-        for (int i = 1; i < COUNT; i++) {
-            color = palette[i];
-            if((color & 0x80) == 0)
-            {
-                lumas[i] = -0x70000000; // very very negative, blocks transparent colors from mixing into opaque ones
-                continue;
-            }
-            r = (color >>> 24);
-            g = (color >>> 16 & 0xFF);
-            b = (color >>> 8 & 0xFF);
-            co = r - b;
-            t = b + (co >> 1);
-            cg = g - t;
-            paletteMapping[
-                    reverse[i] = 
-                              (lumas[i] = luma(r, g, b) >>> 11)
-                            | (cos[i] = co + 255 >>> 4) << shift1
-                            | (cgs[i] = cg + 255 >>> 4) << shift2] = (byte) i;
-        }
-
-        for (int icg = 0; icg <= cgLim; icg++) {
-            for (int ico = 0; ico <= coLim; ico++) {
-                for (int iy = 0; iy <= yLim; iy++) {
-                    final int c2 = icg << shift2 | ico << shift1 | iy;
-                    if (paletteMapping[c2] == 0) {
-                        int dist = 0x7FFFFFFF;
-                        for (int i = 1; i < COUNT; i++) {
-                            if (Math.abs(lumas[i] - iy) < 28 && dist > (dist = Math.min(dist, difference(lumas[i], cos[i], cgs[i], iy, ico, icg))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        int co, cg;
+        final byte[] paletteMapping = ycocgMapping(palette, reverse, lumas, cos, cgs);
 
         float adj, cof, cgf;
         int idx2;
@@ -4795,7 +5434,7 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
     }
     public static Colorizer arbitraryLABColorizer(final int[] palette) {
         final int COUNT = palette.length;
-        PaletteReducer reducer = new PaletteReducer(palette);
+        PaletteReducer reducer = buildReducer(palette);
 
         final byte[] primary = {
                 reducer.reduceIndex(0xFF0000FF), reducer.reduceIndex(0xFFFF00FF), reducer.reduceIndex(0x00FF00FF),
@@ -4804,43 +5443,49 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
                 reducer.reduceIndex(0x000000FF), reducer.reduceIndex(0x444444FF), reducer.reduceIndex(0x888888FF),
                 reducer.reduceIndex(0xCCCCCCFF), reducer.reduceIndex(0xFFFFFFFF)
         };
-        final CIELABConverter.Lab[] labs = new CIELABConverter.Lab[COUNT];
+        final float[] ls = new float[COUNT], as = new float[COUNT], bs = new float[COUNT], alphas = new float[COUNT];
+        final double[] lighters = new double[COUNT], dimmers = new double[COUNT];
+        CIELABConverter.rgbaToLab(palette, 0, ls, as, bs, alphas, 0, COUNT);
         final byte[][] ramps = new byte[COUNT][4];
         for (int i = 0; i < COUNT; i++) {
-            labs[i] = new CIELABConverter.Lab(palette[i]);
             ramps[i][2] = (byte)i;
         }
-        CIELABConverter.Lab lab, lab2;
+        double L, L2;
         for (int i = 0; i < COUNT; i++) {
-            if((lab = labs[i]).alpha == 0.0) {
+            if(alphas[i] == 0f) {
                 ramps[i][0] = ramps[i][1] = ramps[i][3] = (byte)i;
                 continue;
             }
+            L = ls[i];
             ramps[i][0] = grays[0];
             ramps[i][1] = grays[0];
             ramps[i][3] = grays[4];
             int dimIndex = ramps[i][1] & 0xFF;
             double lighter = Double.POSITIVE_INFINITY, dimmer = Double.POSITIVE_INFINITY, temp;
+            CIELABConverter.delta(ls, as, bs, i, 0, COUNT, 1.0, 13.0, 18.0, lighters);
+            CIELABConverter.delta(ls, as, bs, i, 0, COUNT, 1.0, 11.0, 16.0, dimmers);
             for (int j = 0; j < COUNT; j++) {
-                if(i == j || (lab2 = labs[j]).alpha == 0.0) continue;
-                if(lab2.L >= Math.min(lab.L + 3, lab.L * 1.06) && lighter > (temp = CIELABConverter.delta(lab, lab2, 1.0, 13.0, 18.0)))
+                if(i == j || alphas[j] == 0f) continue;
+                L2 = ls[j];
+                if(L2 >= Math.min(L + 3, L * 1.06) && lighter > (temp = lighters[j]))
                 {
                     lighter = temp;
                     ramps[i][3] = (byte)j;
                 } 
-                else if(lab2.L <= Math.max(lab.L - 8, lab.L * 0.84) && dimmer > (temp = CIELABConverter.delta(lab, lab2, 1.0, 11.0, 16.0)))
+                else if(L2 <= Math.max(L - 8, L * 0.84) && dimmer > (temp = dimmers[j]))
                 {
                     dimmer = temp;
                     ramps[i][1] = (byte)j;
                     dimIndex = j;
                 }
             }
-            lighter = Math.max(labs[dimIndex].L - 10, labs[dimIndex].L * 0.8);
+            lighter = Math.max(ls[dimIndex] - 10, ls[dimIndex] * 0.8);
             dimmer = Double.POSITIVE_INFINITY;
+            CIELABConverter.delta(ls, as, bs, i, 0, COUNT, 1.0, 12.0, 17.0, dimmers);
             for (int j = 0; j < COUNT; j++) {
-                if (i == j || j == dimIndex || (lab2 = labs[j]).alpha == 0.0)
+                if (i == j || j == dimIndex || alphas[j] == 0f)
                     continue;
-                if (lab2.L <= lighter && dimmer > (temp = CIELABConverter.delta(lab, lab2, 1.0, 12.0, 17.0))) {
+                if (ls[j] <= lighter && dimmer > (temp = dimmers[j])) {
                     dimmer = temp;
                     ramps[i][0] = (byte)j;
                 }
@@ -4891,7 +5536,7 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
     }
     public static Colorizer arbitraryBonusColorizer(final int[] palette) {
         final int COUNT = palette.length;
-        PaletteReducer reducer = new PaletteReducer(palette);
+        PaletteReducer reducer = buildReducer(palette);
 
         final byte[] primary = {
                 reducer.reduceIndex(0xFF0000FF), reducer.reduceIndex(0xFFFF00FF), reducer.reduceIndex(0x00FF00FF),
@@ -4901,48 +5546,14 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
                 reducer.reduceIndex(0xCCCCCCFF), reducer.reduceIndex(0xFFFFFFFF)
         };
         final int THRESHOLD = 64;//0.011; // threshold controls the "stark-ness" of color changes; must not be negative.
-        final byte[] paletteMapping = new byte[1 << 16];
         final int[] reverse = new int[COUNT];
         final byte[][] ramps = new byte[COUNT][4];
         final int[][] values = new int[COUNT][4];
         
         final int[] lumas = new int[COUNT], cos = new int[COUNT], cgs = new int[COUNT];
         final int yLim = 63, coLim = 31, cgLim = 31, shift1 = 6, shift2 = 11;
-        int color, r, g, b, co, cg, t;
-        for (int i = 1; i < COUNT; i++) {
-            color = palette[i];
-            if((color & 0x80) == 0)
-            {
-                lumas[i] = -0x70000000; // very very negative, blocks transparent colors from mixing into opaque ones
-                continue;
-            }
-            r = (color >>> 24);
-            g = (color >>> 16 & 0xFF);
-            b = (color >>> 8 & 0xFF);
-            co = r - b;
-            t = b + (co >> 1);
-            cg = g - t;
-            paletteMapping[
-                    reverse[i] = 
-                              (lumas[i] = luma(r, g, b) >>> 11)
-                            | (cos[i] = co + 255 >>> 4) << shift1
-                            | (cgs[i] = cg + 255 >>> 4) << shift2] = (byte) i;
-        }
-
-        for (int icg = 0; icg <= cgLim; icg++) {
-            for (int ico = 0; ico <= coLim; ico++) {
-                for (int iy = 0; iy <= yLim; iy++) {
-                    final int c2 = icg << shift2 | ico << shift1 | iy;
-                    if (paletteMapping[c2] == 0) {
-                        int dist = 0x7FFFFFFF;
-                        for (int i = 1; i < COUNT; i++) {
-                            if (Math.abs(lumas[i] - iy) < 28 && dist > (dist = Math.min(dist, difference(lumas[i], cos[i], cgs[i], iy, ico, icg))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        int r, g, b, co, cg, t;
+        final byte[] paletteMapping = ycocgMapping(palette, reverse, lumas, cos, cgs);
 
         float adj, cof, cgf;
         int idx2;
@@ -5107,7 +5718,7 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
      */
     public static Colorizer arbitraryWarmingColorizer(final int[] palette, float heat) {
         final int COUNT = palette.length;
-        PaletteReducer reducer = new PaletteReducer(palette);
+        PaletteReducer reducer = buildReducer(palette);
 
         final byte[] primary = {
                 reducer.reduceIndex(0xFF0000FF), reducer.reduceIndex(0xFFFF00FF), reducer.reduceIndex(0x00FF00FF),
@@ -5117,47 +5728,14 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
                 reducer.reduceIndex(0xCCCCCCFF), reducer.reduceIndex(0xFFFFFFFF)
         };
         final int THRESHOLD = 64;//0.011; // threshold controls the "stark-ness" of color changes; must not be negative.
-        final byte[] paletteMapping = new byte[1 << 16];
         final int[] reverse = new int[COUNT];
         final byte[][] ramps = new byte[COUNT][4];
         final int[][] values = new int[COUNT][4];
 
         final int[] lumas = new int[COUNT], cws = new int[COUNT], cms = new int[COUNT];
         final int yLim = 63, cwLim = 31, cmLim = 31, shift1 = 6, shift2 = 11;
-        int color, r, g, b, cw, cm, t;
-        for (int i = 1; i < COUNT; i++) {
-            color = palette[i];
-            if((color & 0x80) == 0)
-            {
-                lumas[i] = -0x70000000; // very very negative, blocks transparent colors from mixing into opaque ones
-                continue;
-            }
-            r = (color >>> 24);
-            g = (color >>> 16 & 0xFF);
-            b = (color >>> 8 & 0xFF);
-            cw = r - b;
-            cm = g - b;
-            paletteMapping[
-                    reverse[i] =
-                            (lumas[i] = luma(r, g, b) >>> 11)
-                                    | (cws[i] = cw + 255 >>> 4) << shift1
-                                    | (cms[i] = cm + 255 >>> 4) << shift2] = (byte) i;
-        }
-
-        for (int icw = 0; icw <= cmLim; icw++) {
-            for (int icm = 0; icm <= cwLim; icm++) {
-                for (int iy = 0; iy <= yLim; iy++) {
-                    final int c2 = iy | icw << shift1 | icm << shift2;
-                    if (paletteMapping[c2] == 0) {
-                        int dist = 0x7FFFFFFF;
-                        for (int i = 1; i < COUNT; i++) {
-                            if (dist > (dist = Math.min(dist, difference(lumas[i], cws[i], cms[i], iy, icw, icm))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        int r, g, b, cw, cm;
+        final byte[] paletteMapping = ycwcmMapping(palette, reverse, lumas, cws, cms);
 
         float adj, cwf, cmf;
         int idx2;
@@ -46,28 +46,24 @@ public class HSLUVConverter {
     private static double kappa = 903.2962962;
     private static double epsilon = 0.0088564516;
 
-    private static final double[][] bounds = new double[6][2];
-    
-    private static void getBounds(double L) {
-        //double[][] result = new double[6][];
-
-        double sub1 = Math.pow(L + 16, 3) / 1560896;
-        double sub2 = sub1 > epsilon ? sub1 : L / kappa;
-
-        for (int c = 0; c < 3; ++c) {
-            double m1 = m[c][0];
-            double m2 = m[c][1];
-            double m3 = m[c][2];
-
-            for (int t = 0; t < 2; ++t) {
-                double top1 = (284517 * m1 - 94839 * m3) * sub2;
-                double top2 = (838422 * m3 + 769860 * m2 + 731718 * m1) * L * sub2 - 769860 * t * L;
-                double bottom = (632260 * m3 - 126452 * m2) * sub2 + 126452 * t;
-
-                bounds[c << 1 | t][0] = top1 / bottom;
-                bounds[c << 1 | t][1] = top2 / bottom;
-            }
-        }
+    /**
+     * Finds the chroma limit for one of the six lines that bound the sRGB gamut at lightness L, along the ray at the
+     * angle with the given sine and cosine. The line for channel c (0 to 2) and t (0 or 1) is computed here rather than
+     * stored anywhere, so this can be called from many threads at once.
+     */
+    private static double lengthOfRayUntilIntersect(double sin, double cos, double L, double sub2, int c, int t) {
+        final double m1 = m[c][0];
+        final double m2 = m[c][1];
+        final double m3 = m[c][2];
+        final double top1 = (284517 * m1 - 94839 * m3) * sub2;
+        final double top2 = (838422 * m3 + 769860 * m2 + 731718 * m1) * L * sub2 - 769860 * t * L;
+        final double bottom = (632260 * m3 - 126452 * m2) * sub2 + 126452 * t;
+        return (top2 / bottom) / (sin - (top1 / bottom) * cos);
+    }
+
+    private static double boundsSub(double L) {
+        final double sub1 = Math.pow(L + 16, 3) / 1560896;
+        return sub1 > epsilon ? sub1 : L / kappa;
     }
 
     private static double intersectLineLine(double ax, double ay, double bx, double by) {
@@ -78,19 +74,21 @@ public class HSLUVConverter {
         return Math.sqrt(a * a + b * b);
     }
 
-    private static double lengthOfRayUntilIntersect(double theta, double[] line) {
-        return line[1] / (TrigTools.sin(theta) - line[0] * TrigTools.cos(theta));
-    }
-
     private static double maxSafeChromaForL(double L) {
-        getBounds(L);
+        final double sub2 = boundsSub(L);
         double min = Double.MAX_VALUE;
 
-        for (int i = 0; i < 2; ++i) {
-            double m1 = bounds[i][0];
-            double b1 = bounds[i][1];
-            double x = intersectLineLine(m1, b1, -1 / m1, 0);
-            double length = distanceFromPole(x, b1 + x * m1);
+        final double m1 = m[0][0];
+        final double m2 = m[0][1];
+        final double m3 = m[0][2];
+        for (int t = 0; t < 2; ++t) {
+            final double top1 = (284517 * m1 - 94839 * m3) * sub2;
+            final double top2 = (838422 * m3 + 769860 * m2 + 731718 * m1) * L * sub2 - 769860 * t * L;
+            final double bottom = (632260 * m3 - 126452 * m2) * sub2 + 126452 * t;
+            final double slope = top1 / bottom;
+            final double intercept = top2 / bottom;
+            double x = intersectLineLine(slope, intercept, -1 / slope, 0);
+            double length = distanceFromPole(x, intercept + x * slope);
 
             min = Math.min(min, length);
         }
@@ -99,14 +97,17 @@ public class HSLUVConverter {
     }
 
     private static double maxChromaForLH(double L, double H) {
-        double hrad = H / 360 * Math.PI * 2;
-        getBounds(L);
+        final double hrad = H / 360 * Math.PI * 2;
+        final double sin = TrigTools.sin(hrad), cos = TrigTools.cos(hrad);
+        final double sub2 = boundsSub(L);
         double min = Double.MAX_VALUE;
 
-        for (double[] bound : bounds) {
-            double length = lengthOfRayUntilIntersect(hrad, bound);
-            if (length >= 0.0) {
-                min = Math.min(min, length);
+        for (int c = 0; c < 3; ++c) {
+            for (int t = 0; t < 2; ++t) {
+                double length = lengthOfRayUntilIntersect(sin, cos, L, sub2, c, t);
+                if (length >= 0.0) {
+                    min = Math.min(min, length);
+                }
             }
         }
 
@@ -144,19 +145,22 @@ public class HSLUVConverter {
     }
 
     public static void xyzToRgb(double[] tuple, double[] result) {
-        result[0] = fromLinear(dotProduct(m[0], tuple));
-        result[1] = fromLinear(dotProduct(m[1], tuple));
-        result[2] = fromLinear(dotProduct(m[2], tuple));
+        final double r = fromLinear(dotProduct(m[0], tuple));
+        final double g = fromLinear(dotProduct(m[1], tuple));
+        final double b = fromLinear(dotProduct(m[2], tuple));
+        result[0] = r;
+        result[1] = g;
+        result[2] = b;
     }
 
     public static void rgbToXyz(double[] tuple, double[] result) {
-        result[0] = toLinear(tuple[0]);
-        result[1] = toLinear(tuple[1]);
-        result[2] = toLinear(tuple[2]);
-        
-        result[0] = dotProduct(minv[0], result);         
-        result[1] = dotProduct(minv[1], result);
-        result[2] = dotProduct(minv[2], result);
+        final double r = toLinear(tuple[0]);
+        final double g = toLinear(tuple[1]);
+        final double b = toLinear(tuple[2]);
+
+        result[0] = minv[0][0] * r + minv[0][1] * g + minv[0][2] * b;
+        result[1] = minv[1][0] * r + minv[1][1] * g + minv[1][2] * b;
+        result[2] = minv[2][0] * r + minv[2][1] * g + minv[2][2] * b;
     }
 
     private static double yToL(double Y) {
@@ -344,8 +348,8 @@ public class HSLUVConverter {
         }
 
         double max = maxSafeChromaForL(L);
-        result[0] = H;
         result[1] = C / max * 100;
+        result[2] = L;
     }
 
     public static String rgbToHex(double[] tuple) {
@@ -443,4 +447,247 @@ public class HSLUVConverter {
         return rgbToHpluv(hexToRgb(s));
     }
 
+    // Bulk conversions between RGBA8888 ints and float planes
+
+    /**
+     * Linear RGB for each 8-bit sRGB channel value, so bulk conversions don't need to call {@link Math#pow(double, double)}
+     * for every channel of every pixel.
+     */
+    private static final double[] LINEAR = new double[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            LINEAR[i] = toLinear(i / 255.0);
+        }
+    }
+
+    private static final int CHROMA_L = 128, CHROMA_H = 256;
+    private static volatile float[] chromaTable;
+
+    /**
+     * Gets the table of {@link #maxChromaForLH(double, double)} results used when a bulk conversion is asked to use a
+     * lookup, building it the first time. If two threads build it at once, both get the same values.
+     */
+    private static float[] chromaTable() {
+        float[] table = chromaTable;
+        if (table == null) {
+            table = new float[(CHROMA_L + 1) * (CHROMA_H + 1)];
+            for (int l = 0, i = 0; l <= CHROMA_L; l++) {
+                final double L = l * (100.0 / CHROMA_L);
+                for (int h = 0; h <= CHROMA_H; h++) {
+                    table[i++] = (float) maxChromaForLH(L, h * (360.0 / CHROMA_H));
+                }
+            }
+            chromaTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Approximates {@link #maxChromaForLH(double, double)} by interpolating between the nearest items in
+     * {@link #chromaTable()}.
+     */
+    private static double maxChromaLookup(double L, double H) {
+        final float[] table = chromaTable();
+        final double lf = L * (CHROMA_L / 100.0), hf = H * (CHROMA_H / 360.0);
+        final int l = Math.min(Math.max((int) lf, 0), CHROMA_L - 1), h = Math.min(Math.max((int) hf, 0), CHROMA_H - 1);
+        final double lt = lf - l, ht = hf - h;
+        final int i = l * (CHROMA_H + 1) + h, j = i + CHROMA_H + 1;
+        return (table[i] + (table[i + 1] - table[i]) * ht) * (1 - lt) + (table[j] + (table[j + 1] - table[j]) * ht) * lt;
+    }
+
+    private static final int HSLUV = 0, HSLUV_LOOKUP = 1, HPLUV = 2;
+
+    private static void rgbaToPlanes(final int mode, final int[] rgba, final int rgbaOffset, final float[] hue,
+                                     final float[] saturation, final float[] lightness, final int planeOffset,
+                                     final int count) {
+        for (int i = 0; i < count; i++) {
+            final int color = rgba[rgbaOffset + i];
+            final double r = LINEAR[color >>> 24], g = LINEAR[color >>> 16 & 0xFF], b = LINEAR[color >>> 8 & 0xFF];
+            final double X = minv[0][0] * r + minv[0][1] * g + minv[0][2] * b;
+            final double Y = minv[1][0] * r + minv[1][1] * g + minv[1][2] * b;
+            final double Z = minv[2][0] * r + minv[2][1] * g + minv[2][2] * b;
+            final double L = yToL(Y);
+            double C = 0.0, H = 0.0, S = 0.0;
+            if (L != 0) {
+                final double varU = (4 * X) / (X + (15 * Y) + (3 * Z));
+                final double varV = (9 * Y) / (X + (15 * Y) + (3 * Z));
+                final double U = 13 * L * (varU - refU), V = 13 * L * (varV - refV);
+                C = Math.sqrt(U * U + V * V);
+                if (C >= 0.00000001) {
+                    H = (Math.atan2(V, U) * 180.0) / 3.1415926535897932;
+                    if (H < 0) {
+                        H = 360 + H;
+                    }
+                }
+            }
+            final int p = planeOffset + i;
+            hue[p] = (float) H;
+            if (L > 99.9999999) {
+                lightness[p] = 100f;
+            } else if (L < 0.00000001) {
+                lightness[p] = 0f;
+            } else {
+                switch (mode) {
+                    case HSLUV: S = C / maxChromaForLH(L, H) * 100; break;
+                    case HSLUV_LOOKUP: S = C / maxChromaLookup(L, H) * 100; break;
+                    default: S = C / maxSafeChromaForL(L) * 100;
+                }
+                lightness[p] = (float) L;
+            }
+            saturation[p] = (float) S;
+        }
+    }
+
+    private static void planesToRgba(final int mode, final float[] hue, final float[] saturation,
+                                     final float[] lightness, final int planeOffset, final int[] rgba,
+                                     final int rgbaOffset, final int count) {
+        for (int i = 0; i < count; i++) {
+            final int p = planeOffset + i;
+            final double H = hue[p], S = saturation[p];
+            double L = lightness[p], C;
+            if (L > 99.9999999) {
+                L = 100.0;
+                C = 0.0;
+            } else if (L < 0.00000001) {
+                L = 0.0;
+                C = 0.0;
+            } else {
+                switch (mode) {
+                    case HSLUV: C = maxChromaForLH(L, H) / 100 * S; break;
+                    case HSLUV_LOOKUP: C = maxChromaLookup(L, H) / 100 * S; break;
+                    default: C = maxSafeChromaForL(L) / 100 * S;
+                }
+            }
+            double r = 0.0, g = 0.0, b = 0.0;
+            if (L != 0) {
+                final double Hrad = (H / 360.0) * 6.283185307179586;
+                final double U = Math.cos(Hrad) * C, V = Math.sin(Hrad) * C;
+                final double varU = U / (13 * L) + refU;
+                final double varV = V / (13 * L) + refV;
+                final double Y = lToY(L);
+                final double X = 0 - (9 * Y * varU) / ((varU - 4) * varV - varU * varV);
+                final double Z = (9 * Y - (15 * varV * Y) - (varV * X)) / (3 * varV);
+                r = fromLinear(m[0][0] * X + m[0][1] * Y + m[0][2] * Z);
+                g = fromLinear(m[1][0] * X + m[1][1] * Y + m[1][2] * Z);
+                b = fromLinear(m[2][0] * X + m[2][1] * Y + m[2][2] * Z);
+            }
+            final int q = rgbaOffset + i;
+            rgba[q] = (int) (Math.min(Math.max(r, 0.0), 1.0) * 255 + 0.5) << 24
+                    | (int) (Math.min(Math.max(g, 0.0), 1.0) * 255 + 0.5) << 16
+                    | (int) (Math.min(Math.max(b, 0.0), 1.0) * 255 + 0.5) << 8
+                    | (rgba[q] & 0xFF);
+        }
+    }
+
+    /**
+     * Converts {@code count} RGBA8888 colors from {@code rgba}, starting at {@code rgbaOffset}, to HSLuv, storing hue
+     * (0 to 360), saturation (0 to 100), and lightness (0 to 100) in the three planes starting at
+     * {@code planeOffset}. Alpha is ignored. This doesn't allocate anything and doesn't share any state between
+     * calls, so different threads can convert different parts of an image at once. The bulk conversions use the
+     * trigonometry in {@link Math} rather than the approximations in {@link TrigTools}, so converting to HSLuv and back
+     * with {@link #hsluvToRgba(float[], float[], float[], int, int[], int, int)} gives back the exact same colors.
+     * @param rgba        RGBA8888 colors to read
+     * @param rgbaOffset  the first index in rgba to read
+     * @param hue         will receive hue, from 0 to 360
+     * @param saturation  will receive saturation, from 0 to 100
+     * @param lightness   will receive lightness, from 0 to 100
+     * @param planeOffset the first index in each plane to write
+     * @param count       how many colors to convert
+     */
+    public static void rgbaToHsluv(int[] rgba, int rgbaOffset, float[] hue, float[] saturation, float[] lightness,
+                                   int planeOffset, int count) {
+        rgbaToPlanes(HSLUV, rgba, rgbaOffset, hue, saturation, lightness, planeOffset, count);
+    }
+
+    /**
+     * Like {@link #rgbaToHsluv(int[], int, float[], float[], float[], int, int)}, but if {@code lookup} is true, the
+     * chroma limit for each color is interpolated from a small table (built once, the first time it is needed) instead
+     * of computed exactly. That is faster, and the saturation it gives is very close but not always identical.
+     * @param rgba        RGBA8888 colors to read
+     * @param rgbaOffset  the first index in rgba to read
+     * @param hue         will receive hue, from 0 to 360
+     * @param saturation  will receive saturation, from 0 to 100
+     * @param lightness   will receive lightness, from 0 to 100
+     * @param planeOffset the first index in each plane to write
+     * @param count       how many colors to convert
+     * @param lookup      if true, uses a table for the chroma limit
+     */
+    public static void rgbaToHsluv(int[] rgba, int rgbaOffset, float[] hue, float[] saturation, float[] lightness,
+                                   int planeOffset, int count, boolean lookup) {
+        rgbaToPlanes(lookup ? HSLUV_LOOKUP : HSLUV, rgba, rgbaOffset, hue, saturation, lightness, planeOffset, count);
+    }
+
+    /**
+     * Converts {@code count} HSLuv colors from the three planes, starting at {@code planeOffset}, to RGBA8888, storing
+     * them in {@code rgba} starting at {@code rgbaOffset}. The alpha of each item already in rgba is kept, so converting
+     * an image to HSLuv, editing the planes, and converting back doesn't change its alpha. This doesn't allocate
+     * anything and doesn't share any state between calls, so different threads can convert different parts of an image
+     * at once.
+     * @param hue         hue, from 0 to 360
+     * @param saturation  saturation, from 0 to 100
+     * @param lightness   lightness, from 0 to 100
+     * @param planeOffset the first index in each plane to read
+     * @param rgba        will receive RGBA8888 colors, keeping the alpha already there
+     * @param rgbaOffset  the first index in rgba to write
+     * @param count       how many colors to convert
+     */
+    public static void hsluvToRgba(float[] hue, float[] saturation, float[] lightness, int planeOffset,
+                                   int[] rgba, int rgbaOffset, int count) {
+        planesToRgba(HSLUV, hue, saturation, lightness, planeOffset, rgba, rgbaOffset, count);
+    }
+
+    /**
+     * Like {@link #hsluvToRgba(float[], float[], float[], int, int[], int, int)}, but if {@code lookup} is true, the
+     * chroma limit for each color is interpolated from a small table (built once, the first time it is needed) instead
+     * of computed exactly. That is faster, and the colors it gives are very close but not always identical.
+     * @param hue         hue, from 0 to 360
+     * @param saturation  saturation, from 0 to 100
+     * @param lightness   lightness, from 0 to 100
+     * @param planeOffset the first index in each plane to read
+     * @param rgba        will receive RGBA8888 colors, keeping the alpha already there
+     * @param rgbaOffset  the first index in rgba to write
+     * @param count       how many colors to convert
+     * @param lookup      if true, uses a table for the chroma limit
+     */
+    public static void hsluvToRgba(float[] hue, float[] saturation, float[] lightness, int planeOffset,
+                                   int[] rgba, int rgbaOffset, int count, boolean lookup) {
+        planesToRgba(lookup ? HSLUV_LOOKUP : HSLUV, hue, saturation, lightness, planeOffset, rgba, rgbaOffset, count);
+    }
+
+    /**
+     * Converts {@code count} RGBA8888 colors from {@code rgba}, starting at {@code rgbaOffset}, to HPLuv, storing hue
+     * (0 to 360), saturation (0 to 100), and lightness (0 to 100) in the three planes starting at
+     * {@code planeOffset}. Alpha is ignored. This doesn't allocate anything and doesn't share any state between
+     * calls, so different threads can convert different parts of an image at once.
+     * @param rgba        RGBA8888 colors to read
+     * @param rgbaOffset  the first index in rgba to read
+     * @param hue         will receive hue, from 0 to 360
+     * @param saturation  will receive saturation, from 0 to 100
+     * @param lightness   will receive lightness, from 0 to 100
+     * @param planeOffset the first index in each plane to write
+     * @param count       how many colors to convert
+     */
+    public static void rgbaToHpluv(int[] rgba, int rgbaOffset, float[] hue, float[] saturation, float[] lightness,
+                                   int planeOffset, int count) {
+        rgbaToPlanes(HPLUV, rgba, rgbaOffset, hue, saturation, lightness, planeOffset, count);
+    }
+
+    /**
+     * Converts {@code count} HPLuv colors from the three planes, starting at {@code planeOffset}, to RGBA8888, storing
+     * them in {@code rgba} starting at {@code rgbaOffset}. The alpha of each item already in rgba is kept. This doesn't
+     * allocate anything and doesn't share any state between calls, so different threads can convert different parts of
+     * an image at once.
+     * @param hue         hue, from 0 to 360
+     * @param saturation  saturation, from 0 to 100
+     * @param lightness   lightness, from 0 to 100
+     * @param planeOffset the first index in each plane to read
+     * @param rgba        will receive RGBA8888 colors, keeping the alpha already there
+     * @param rgbaOffset  the first index in rgba to write
+     * @param count       how many colors to convert
+     */
+    public static void hpluvToRgba(float[] hue, float[] saturation, float[] lightness, int planeOffset,
+                                   int[] rgba, int rgbaOffset, int count) {
+        planesToRgba(HPLUV, hue, saturation, lightness, planeOffset, rgba, rgbaOffset, count);
+    }
+
 }
\ No newline at end of file
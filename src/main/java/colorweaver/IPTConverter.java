@@ -103,6 +103,120 @@ public class IPTConverter {
 			return r << 24 | g << 16 | b << 8 | a;
 		}
 	}
+
+	/**
+	 * Converts {@code count} RGBA8888 colors from {@code rgba}, starting at {@code offset}, to IPT and stores the
+	 * channels in separate arrays, starting at {@code planeOffset} in each. This gives the same values as
+	 * {@link IPT#IPT(int)} (rounded to float), but doesn't allocate anything, so it is a good fit when a whole palette
+	 * needs converting and then comparing many times, such as with
+	 * {@link #difference(float[], float[], float[], int, int, int, double, double, double, double[])}.
+	 * @param rgba        RGBA8888 colors to read
+	 * @param offset      the first index in rgba to read
+	 * @param I           receives intensity, from 0 to 1
+	 * @param P           receives protan, green when low, red when high
+	 * @param T           receives tritan, blue when low, yellow when high
+	 * @param alpha       receives alpha, from 0 to 1; may be null if alpha isn't needed
+	 * @param planeOffset the first index in I, P, T, and alpha to write
+	 * @param count       how many colors to convert
+	 */
+	public static void rgbaToIpt(final int[] rgba, final int offset,
+								 final float[] I, final float[] P, final float[] T, final float[] alpha,
+								 final int planeOffset, final int count)
+	{
+		for (int n = 0; n < count; n++) {
+			final int color = rgba[offset + n];
+			final double r = (color >>> 24) * 0x1.010101010101p-8,
+					g = (color >>> 16 & 0xFF) * 0x1.010101010101p-8,
+					b = (color >>> 8 & 0xFF) * 0x1.010101010101p-8;
+			final double l = Math.pow(0.313921 * r + 0.639468 * g + 0.0465970 * b, 0.43);
+			final double m = Math.pow(0.151693 * r + 0.748209 * g + 0.1000044 * b, 0.43);
+			final double s = Math.pow(0.017700 * r + 0.109400 * g + 0.8729000 * b, 0.43);
+
+			final int p = planeOffset + n;
+			I[p] = (float) (0.4000f * l + 0.4000f * m + 0.2000f * s);
+			P[p] = (float) (6.6825 * l - 7.2765 * m + 0.5940 * s);
+			T[p] = (float) (1.0741 * l + 0.4763 * m - 1.5504 * s);
+			if (alpha != null)
+				alpha[p] = (float) ((color & 0xFF) * 0x1.010101010101p-8);
+		}
+	}
+
+	/**
+	 * Converts {@code count} IPT colors, stored as separate channel arrays starting at {@code planeOffset}, to
+	 * RGBA8888 colors, writing them into {@code rgba} starting at {@code offset}. This gives the same results as
+	 * {@link IPT#rgba8888()}, without allocating anything.
+	 * @param I           intensity, from 0 to 1
+	 * @param P           protan, green when low, red when high
+	 * @param T           tritan, blue when low, yellow when high
+	 * @param alpha       alpha, from 0 to 1; may be null to make every color opaque
+	 * @param planeOffset the first index in I, P, T, and alpha to read
+	 * @param rgba        receives RGBA8888 colors
+	 * @param offset      the first index in rgba to write
+	 * @param count       how many colors to convert
+	 */
+	public static void iptToRgba(final float[] I, final float[] P, final float[] T, final float[] alpha,
+								 final int planeOffset, final int[] rgba, final int offset, final int count)
+	{
+		for (int n = 0; n < count; n++) {
+			final int p = planeOffset + n;
+			final double i = I[p], pr = P[p], t = T[p];
+			final double lPrime = i + 0.06503950 * pr + 0.15391950 * t;
+			final double mPrime = i - 0.07591241 * pr + 0.09991275 * t;
+			final double sPrime = i + 0.02174116 * pr - 0.50766750 * t;
+			final double l = Math.copySign(Math.pow(Math.abs(lPrime), 2.3256), lPrime);
+			final double m = Math.copySign(Math.pow(Math.abs(mPrime), 2.3256), mPrime);
+			final double s = Math.copySign(Math.pow(Math.abs(sPrime), 2.3256), sPrime);
+			final int r = MathUtils.clamp((int) ((5.432622 * l - 4.679100 * m + 0.246257 * s) * 255.99999), 0, 255);
+			final int g = MathUtils.clamp((int) ((-1.10517 * l + 2.311198 * m - 0.205880 * s) * 255.99999), 0, 255);
+			final int b = MathUtils.clamp((int) ((0.028104 * l - 0.194660 * m + 1.166325 * s) * 255.99999), 0, 255);
+			rgba[offset + n] = r << 24 | g << 16 | b << 8 | (alpha == null ? 0xFF : (int) (alpha[p] * 255.99999));
+		}
+	}
+
+	/**
+	 * Compares the color at {@code index} in the given IPT planes with each color from {@code start} (inclusive) to
+	 * {@code end} (exclusive), writing each squared, weighted difference into {@code out} at the same index.
+	 * @param I     intensity plane, as produced by {@link #rgbaToIpt(int[], int, float[], float[], float[], float[], int, int)}
+	 * @param P     protan plane
+	 * @param T     tritan plane
+	 * @param index the index in the planes of the color to compare against
+	 * @param start the first index in the planes to compare, inclusive
+	 * @param end   the last index in the planes to compare, exclusive
+	 * @param biasI multiplier for the I difference
+	 * @param biasP multiplier for the P difference
+	 * @param biasT multiplier for the T difference
+	 * @param out   receives the differences, from index start to end - 1
+	 */
+	public static void difference(final float[] I, final float[] P, final float[] T, final int index,
+								  final int start, final int end,
+								  final double biasI, final double biasP, final double biasT, final double[] out)
+	{
+		final double i = I[index], p = P[index], t = T[index];
+		for (int j = start; j < end; j++) {
+			final double dI = i - I[j], dP = p - P[j], dT = t - T[j];
+			out[j] = dI * dI * biasI + dP * dP * biasP + dT * dT * biasT;
+		}
+	}
+
+	/**
+	 * Gets the squared, weighted difference between two colors stored in IPT planes.
+	 * @param I     intensity plane, as produced by {@link #rgbaToIpt(int[], int, float[], float[], float[], float[], int, int)}
+	 * @param P     protan plane
+	 * @param T     tritan plane
+	 * @param a     the index in the planes of the first color
+	 * @param b     the index in the planes of the second color
+	 * @param biasI multiplier for the I difference
+	 * @param biasP multiplier for the P difference
+	 * @param biasT multiplier for the T difference
+	 * @return the squared, weighted difference between the two colors
+	 */
+	public static double difference(final float[] I, final float[] P, final float[] T, final int a, final int b,
+									final double biasI, final double biasP, final double biasT)
+	{
+		final double dI = I[a] - I[b], dP = P[a] - P[b], dT = T[a] - T[b];
+		return dI * dI * biasI + dP * dP * biasP + dT * dT * biasT;
+	}
+
 	public static double[][] makeIPT15()
 	{
 		final double[][] ipts = new double[3][0x8000];
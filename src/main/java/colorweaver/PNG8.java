@@ -1,6 +1,7 @@
 package colorweaver;
 
 import colorweaver.annotation.GwtIncompatible;
+import colorweaver.tools.ScanlineFilter;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
@@ -8,6 +9,8 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedOutputStream;
@@ -26,6 +29,10 @@ import java.util.zip.DeflaterOutputStream;
  * {@link #write(FileHandle, Pixmap, boolean, boolean)}, since writePrecisely will attempt to reproduce the exact colors
  * if there are 256 colors or less in the Pixmap, and will automatically change to calling write() if there are more
  * than 256 colors.
+ * <br>
+ * Each write method that takes an OutputStream also has a version that takes a {@link WritableByteChannel}, such as a
+ * FileChannel; those deflate straight into a buffer that is reused for every image, instead of going through several
+ * streams and copies, and are the better choice when writing many images.
  * <p>
  * From LibGDX in the class PixmapIO, with modifications to support indexed-mode files, dithering, and other features.
  * <pre>
@@ -71,6 +78,10 @@ public class PNG8 implements Disposable {
 
     private final ChunkBuffer buffer;
     private final Deflater deflater;
+    private final StreamChunkWriter streamWriter;
+    private final ScanlineFilter filter = new ScanlineFilter(1);
+    private ChannelChunkWriter channelWriter;
+    private final int initialBufferSize;
     private ByteArray lineOutBytes, curLineBytes, prevLineBytes;
     private boolean flipY = true;
     private int lastLineLen;
@@ -82,8 +93,10 @@ public class PNG8 implements Disposable {
     }
 
     public PNG8(int initialBufferSize) {
+        this.initialBufferSize = initialBufferSize;
         buffer = new ChunkBuffer(initialBufferSize);
         deflater = new Deflater();
+        streamWriter = new StreamChunkWriter(buffer, deflater);
     }
 
     /** If true, the resulting PNG is flipped vertically. Default is true. */
@@ -96,6 +109,24 @@ public class PNG8 implements Disposable {
         deflater.setLevel(level);
     }
 
+    /**
+     * Gets the scanline filter mode; see {@link ScanlineFilter.Mode}.
+     * @return the current filter mode, {@link ScanlineFilter.Mode#NONE} by default
+     */
+    public ScanlineFilter.Mode getFilterMode () {
+        return filter.getMode();
+    }
+
+    /**
+     * Sets how rows are filtered before they are deflated. The default, {@link ScanlineFilter.Mode#NONE}, doesn't
+     * filter; {@link ScanlineFilter.Mode#ADAPTIVE} or {@link ScanlineFilter.Mode#TRIAL} choose a filter for each row,
+     * which usually makes dithered files smaller at some cost in speed.
+     * @param mode a ScanlineFilter.Mode; null is treated as NONE
+     */
+    public void setFilterMode (ScanlineFilter.Mode mode) {
+        filter.setMode(mode);
+    }
+
     /**
      * Writes the given Pixmap to the requested FileHandle, computing an 8-bit palette from the most common colors in
      * pixmap. If there are 256 or less colors and none are transparent, this will use 256 colors in its palette exactly
@@ -220,6 +251,27 @@ public class PNG8 implements Disposable {
      * @param threshold the analysis threshold to use if computePalette is true (min 0, practical max is over 100000)
      */
     public void write (OutputStream output, Pixmap pixmap, boolean computePalette, boolean dither, int threshold) throws IOException
+    {
+        write(streamWriter(output), pixmap, computePalette, dither, threshold);
+    }
+
+    /**
+     * Writes the pixmap to the channel without closing the channel, optionally computing an 8-bit palette from the
+     * given Pixmap. This is the same as {@link #write(OutputStream, Pixmap, boolean, boolean, int)}, but deflates
+     * straight into a reused buffer; see {@link #writeSolid(WritableByteChannel, Pixmap)}.
+     * @param channel a WritableByteChannel that will not be closed
+     * @param pixmap a Pixmap to write to the given channel
+     * @param computePalette if true, this will analyze the Pixmap and use the most common colors
+     * @param dither true if this should dither colors that can't be represented exactly
+     * @param threshold the analysis threshold to use if computePalette is true (min 0, practical max is over 100000)
+     * @throws IOException if the channel can't be written to
+     */
+    public void write (WritableByteChannel channel, Pixmap pixmap, boolean computePalette, boolean dither, int threshold) throws IOException
+    {
+        write(channelWriter(channel), pixmap, computePalette, dither, threshold);
+    }
+
+    private void write (ChunkWriter out, Pixmap pixmap, boolean computePalette, boolean dither, int threshold) throws IOException
     {
         if(palette == null)
         {
@@ -230,8 +282,8 @@ public class PNG8 implements Disposable {
             palette.analyze(pixmap, threshold, 256, PaletteReducer.rgbStupidMetric);
         }
 
-        if(dither) writeDithered(output, pixmap);
-        else writeSolid(output, pixmap);
+        if(dither) writeDithered(out, pixmap);
+        else writeSolid(out, pixmap);
     }
     /**
      * Attempts to write the given Pixmap exactly as a PNG-8 image to file; this attempt will only succeed if there
@@ -355,6 +407,25 @@ public class PNG8 implements Disposable {
      * @throws IOException if OutputStream things fail for any reason
      */
     public void writePrecisely(OutputStream output, Pixmap pixmap, int[] exactPalette, boolean ditherFallback, int threshold) throws IOException {
+        writePrecisely(streamWriter(output), pixmap, exactPalette, ditherFallback, threshold);
+    }
+
+    /**
+     * Attempts to write the given Pixmap exactly as a PNG-8 image to channel; this is the same as
+     * {@link #writePrecisely(OutputStream, Pixmap, int[], boolean, int)}, but deflates straight into a reused buffer;
+     * see {@link #writeSolid(WritableByteChannel, Pixmap)}.
+     * @param channel a WritableByteChannel that will not be closed
+     * @param pixmap a Pixmap to write to the given channel
+     * @param exactPalette if non-null, will try to use this palette exactly, in order and including unused colors
+     * @param ditherFallback if the Pixmap contains too many colors, this determines whether it will dither the output
+     * @param threshold the analysis threshold to use if there are too many colors (min 0, practical max is over 100000)
+     * @throws IOException if the channel can't be written to
+     */
+    public void writePrecisely(WritableByteChannel channel, Pixmap pixmap, int[] exactPalette, boolean ditherFallback, int threshold) throws IOException {
+        writePrecisely(channelWriter(channel), pixmap, exactPalette, ditherFallback, threshold);
+    }
+
+    private void writePrecisely(ChunkWriter out, Pixmap pixmap, int[] exactPalette, boolean ditherFallback, int threshold) throws IOException {
         IntIntMap colorToIndex = new IntIntMap(256);
         colorToIndex.put(0, 0);
         int color;
@@ -368,7 +439,7 @@ public class PNG8 implements Disposable {
                     color = pixmap.getPixel(px, py);
                     if ((color & 0xFE) != 0xFE && !colorToIndex.containsKey(color)) {
                         if (hasTransparent == 0 && colorToIndex.size >= 256) {
-                            write(output, pixmap, true, ditherFallback, threshold);
+                            write(out, pixmap, true, ditherFallback, threshold);
                             return;
                         }
                         hasTransparent = 1;
@@ -378,7 +449,7 @@ public class PNG8 implements Disposable {
                             colorToIndex.remove(0, 0);
                         }
                         if (colorToIndex.size > 256) {
-                            write(output, pixmap, true, ditherFallback, threshold);
+                            write(out, pixmap, true, ditherFallback, threshold);
                             return;
                         }
                     }
@@ -395,37 +466,36 @@ public class PNG8 implements Disposable {
                 colorToIndex.put(paletteArray[i], i);
             }
         }
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
-        DataOutputStream dataOutput = new DataOutputStream(output);
-
-        dataOutput.write(SIGNATURE);
-
-        buffer.writeInt(IHDR);
-        buffer.writeInt(pixmap.getWidth());
-        buffer.writeInt(pixmap.getHeight());
-        buffer.writeByte(8); // 8 bits per component.
-        buffer.writeByte(COLOR_INDEXED);
-        buffer.writeByte(COMPRESSION_DEFLATE);
-        buffer.writeByte(FILTER_NONE);
-        buffer.writeByte(INTERLACE_NONE);
-        buffer.endChunk(dataOutput);
-
-        buffer.writeInt(PLTE);
+
+        out.signature();
+
+        out.writeInt(IHDR);
+        out.writeInt(pixmap.getWidth());
+        out.writeInt(pixmap.getHeight());
+        out.write(8); // 8 bits per component.
+        out.write(COLOR_INDEXED);
+        out.write(COMPRESSION_DEFLATE);
+        out.write(FILTER_NONE);
+        out.write(INTERLACE_NONE);
+        out.endChunk();
+
+        out.writeInt(PLTE);
         for (int i = 0; i < paletteArray.length; i++) {
             int p = paletteArray[i];
-            buffer.write(p >>> 24);
-            buffer.write(p >>> 16);
-            buffer.write(p >>> 8);
+            out.write(p >>> 24);
+            out.write(p >>> 16);
+            out.write(p >>> 8);
         }
-        buffer.endChunk(dataOutput);
+        out.endChunk();
 
         if (hasTransparent == 1) {
-            buffer.writeInt(TRNS);
-            buffer.write(0);
-            buffer.endChunk(dataOutput);
+            out.writeInt(TRNS);
+            out.write(0);
+            out.endChunk();
         }
-        buffer.writeInt(IDAT);
+        out.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
         int lineLen = pixmap.getWidth();
 //            byte[] lineOut, curLine, prevLine;
@@ -467,16 +537,15 @@ public class PNG8 implements Disposable {
 //                deflaterOutput.write(PAETH);
 //                deflaterOutput.write(lineOut, 0, lineLen);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, lineLen);
+            out.deflate(filter.apply(curLine, lineLen), 0, lineLen + 1);
         }
-        deflaterOutput.finish();
-        buffer.endChunk(dataOutput);
+        out.finishDeflate();
+        out.endChunk();
 
-        buffer.writeInt(IEND);
-        buffer.endChunk(dataOutput);
+        out.writeInt(IEND);
+        out.endChunk();
 
-        output.flush();
+        out.flush();
     }
     /**
      * Attempts to write the given Pixmap exactly as a PNG-8 image to file; this attempt will only succeed if there
@@ -510,6 +579,22 @@ public class PNG8 implements Disposable {
      * @throws IOException if OutputStream things fail for any reason
      */
     public void writePreciseSection(OutputStream output, Pixmap pixmap, int[] exactPalette, int startX, int startY, int width, int height) throws IOException {
+        writePreciseSection(streamWriter(output), pixmap, exactPalette, startX, startY, width, height);
+    }
+
+    /**
+     * Attempts to write a section of the given Pixmap exactly as a PNG-8 image to channel; this is the same as
+     * {@link #writePreciseSection(OutputStream, Pixmap, int[], int, int, int, int)}, but deflates straight into a
+     * reused buffer; see {@link #writeSolid(WritableByteChannel, Pixmap)}.
+     * @param channel a WritableByteChannel that will not be closed
+     * @param pixmap a Pixmap to write to the given channel
+     * @throws IOException if the channel can't be written to
+     */
+    public void writePreciseSection(WritableByteChannel channel, Pixmap pixmap, int[] exactPalette, int startX, int startY, int width, int height) throws IOException {
+        writePreciseSection(channelWriter(channel), pixmap, exactPalette, startX, startY, width, height);
+    }
+
+    private void writePreciseSection(ChunkWriter out, Pixmap pixmap, int[] exactPalette, int startX, int startY, int width, int height) throws IOException {
         IntIntMap colorToIndex = new IntIntMap(256);
         colorToIndex.put(0, 0);
         int color;
@@ -550,36 +635,35 @@ public class PNG8 implements Disposable {
                 colorToIndex.put(paletteArray[i], i);
             }
         }
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
-        DataOutputStream dataOutput = new DataOutputStream(output);
-        dataOutput.write(SIGNATURE);
-
-        buffer.writeInt(IHDR);
-        buffer.writeInt(width);
-        buffer.writeInt(height);
-        buffer.writeByte(8); // 8 bits per component.
-        buffer.writeByte(COLOR_INDEXED);
-        buffer.writeByte(COMPRESSION_DEFLATE);
-        buffer.writeByte(FILTER_NONE);
-        buffer.writeByte(INTERLACE_NONE);
-        buffer.endChunk(dataOutput);
-
-        buffer.writeInt(PLTE);
+        out.signature();
+
+        out.writeInt(IHDR);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.write(8); // 8 bits per component.
+        out.write(COLOR_INDEXED);
+        out.write(COMPRESSION_DEFLATE);
+        out.write(FILTER_NONE);
+        out.write(INTERLACE_NONE);
+        out.endChunk();
+
+        out.writeInt(PLTE);
         for (int i = 0; i < paletteArray.length; i++) {
             int p = paletteArray[i];
-            buffer.write(p>>>24);
-            buffer.write(p>>>16);
-            buffer.write(p>>>8);
+            out.write(p>>>24);
+            out.write(p>>>16);
+            out.write(p>>>8);
         }
-        buffer.endChunk(dataOutput);
+        out.endChunk();
 
         if(hasTransparent == 1) {
-            buffer.writeInt(TRNS);
-            buffer.write(0);
-            buffer.endChunk(dataOutput);
+            out.writeInt(TRNS);
+            out.write(0);
+            out.endChunk();
         }
-        buffer.writeInt(IDAT);
+        out.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
         byte[] curLine;
         if (lineOutBytes == null) {
@@ -621,55 +705,72 @@ public class PNG8 implements Disposable {
 //                deflaterOutput.write(PAETH);
 //                deflaterOutput.write(lineOut, 0, lineLen);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, width);
+            out.deflate(filter.apply(curLine, width), 0, width + 1);
         }
-        deflaterOutput.finish();
-        buffer.endChunk(dataOutput);
+        out.finishDeflate();
+        out.endChunk();
 
-        buffer.writeInt(IEND);
-        buffer.endChunk(dataOutput);
+        out.writeInt(IEND);
+        out.endChunk();
 
-        output.flush();
+        out.flush();
 
     }
 
     public void writeSolid (OutputStream output, Pixmap pixmap) throws IOException {
+        writeSolid(streamWriter(output), pixmap);
+    }
+
+    /**
+     * Writes the pixmap to the channel without closing the channel, using the current {@link #palette} without
+     * dithering. Like every method here that writes to a WritableByteChannel, this skips the intermediate streams the
+     * OutputStream methods use: image data is deflated straight into a buffer this reuses for every image, each chunk's
+     * CRC is computed on that buffer in place, and the buffer is written to the channel whenever it fills (so a large
+     * image is split across several IDAT chunks, which any PNG decoder reads the same way). After the first image, this
+     * doesn't allocate anything proportional to the image size.
+     * @param channel a WritableByteChannel that will not be closed, such as a {@link java.nio.channels.FileChannel}
+     * @param pixmap a Pixmap to write to the given channel
+     * @throws IOException if the channel can't be written to
+     */
+    public void writeSolid (WritableByteChannel channel, Pixmap pixmap) throws IOException {
+        writeSolid(channelWriter(channel), pixmap);
+    }
+
+    private void writeSolid (ChunkWriter out, Pixmap pixmap) throws IOException {
         final int[] paletteArray = palette.paletteArray;
         final byte[] paletteMapping = palette.paletteMapping;
 
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
-        DataOutputStream dataOutput = new DataOutputStream(output);
-        dataOutput.write(SIGNATURE);
-
-        buffer.writeInt(IHDR);
-        buffer.writeInt(pixmap.getWidth());
-        buffer.writeInt(pixmap.getHeight());
-        buffer.writeByte(8); // 8 bits per component.
-        buffer.writeByte(COLOR_INDEXED);
-        buffer.writeByte(COMPRESSION_DEFLATE);
-        buffer.writeByte(FILTER_NONE);
-        buffer.writeByte(INTERLACE_NONE);
-        buffer.endChunk(dataOutput);
-
-        buffer.writeInt(PLTE);
+        out.signature();
+
+        out.writeInt(IHDR);
+        out.writeInt(pixmap.getWidth());
+        out.writeInt(pixmap.getHeight());
+        out.write(8); // 8 bits per component.
+        out.write(COLOR_INDEXED);
+        out.write(COMPRESSION_DEFLATE);
+        out.write(FILTER_NONE);
+        out.write(INTERLACE_NONE);
+        out.endChunk();
+
+        out.writeInt(PLTE);
         for (int i = 0; i < paletteArray.length; i++) {
             int p = paletteArray[i];
-            buffer.write(p >>> 24);
-            buffer.write(p >>> 16);
-            buffer.write(p >>> 8);
+            out.write(p >>> 24);
+            out.write(p >>> 16);
+            out.write(p >>> 8);
         }
-        buffer.endChunk(dataOutput);
+        out.endChunk();
 
         boolean hasTransparent = false;
         if (paletteArray[0] == 0) {
             hasTransparent = true;
-            buffer.writeInt(TRNS);
-            buffer.write(0);
-            buffer.endChunk(dataOutput);
+            out.writeInt(TRNS);
+            out.write(0);
+            out.endChunk();
         }
-        buffer.writeInt(IDAT);
+        out.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
         int lineLen = pixmap.getWidth();
 //        byte[] lineOut, curLine, prevLine;
@@ -722,55 +823,53 @@ public class PNG8 implements Disposable {
 //            deflaterOutput.write(FILTER_PAETH);
 //            deflaterOutput.write(lineOut, 0, lineLen);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, lineLen);
+            out.deflate(filter.apply(curLine, lineLen), 0, lineLen + 1);
         }
-        deflaterOutput.finish();
-        buffer.endChunk(dataOutput);
+        out.finishDeflate();
+        out.endChunk();
 
-        buffer.writeInt(IEND);
-        buffer.endChunk(dataOutput);
+        out.writeInt(IEND);
+        out.endChunk();
 
-        output.flush();
+        out.flush();
     }
 
-    private void writeDithered (OutputStream output, Pixmap pixmap) throws IOException{
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+    private void writeDithered (ChunkWriter out, Pixmap pixmap) throws IOException{
         final int[] paletteArray = palette.paletteArray;
         final byte[] paletteMapping = palette.paletteMapping;
 
 
-        DataOutputStream dataOutput = new DataOutputStream(output);
-        dataOutput.write(SIGNATURE);
+        out.signature();
 
-        buffer.writeInt(IHDR);
-        buffer.writeInt(pixmap.getWidth());
-        buffer.writeInt(pixmap.getHeight());
-        buffer.writeByte(8); // 8 bits per component.
-        buffer.writeByte(COLOR_INDEXED);
-        buffer.writeByte(COMPRESSION_DEFLATE);
-        buffer.writeByte(FILTER_NONE);
-        buffer.writeByte(INTERLACE_NONE);
-        buffer.endChunk(dataOutput);
+        out.writeInt(IHDR);
+        out.writeInt(pixmap.getWidth());
+        out.writeInt(pixmap.getHeight());
+        out.write(8); // 8 bits per component.
+        out.write(COLOR_INDEXED);
+        out.write(COMPRESSION_DEFLATE);
+        out.write(FILTER_NONE);
+        out.write(INTERLACE_NONE);
+        out.endChunk();
 
-        buffer.writeInt(PLTE);
+        out.writeInt(PLTE);
         for (int i = 0; i < paletteArray.length; i++) {
             int p = paletteArray[i];
-            buffer.write(p>>>24);
-            buffer.write(p>>>16);
-            buffer.write(p>>>8);
+            out.write(p>>>24);
+            out.write(p>>>16);
+            out.write(p>>>8);
         }
-        buffer.endChunk(dataOutput);
+        out.endChunk();
 
         boolean hasTransparent = false;
         if(paletteArray[0] == 0) {
             hasTransparent = true;
-            buffer.writeInt(TRNS);
-            buffer.write(0);
-            buffer.endChunk(dataOutput);
+            out.writeInt(TRNS);
+            out.write(0);
+            out.endChunk();
         }
-        buffer.writeInt(IDAT);
+        out.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
         final int w = pixmap.getWidth(), h = pixmap.getHeight();
         byte[] lineOut, curLine, prevLine;
@@ -897,31 +996,44 @@ public class PNG8 implements Disposable {
 //                deflaterOutput.write(PAETH);
 //                deflaterOutput.write(lineOut, 0, w);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, w);
+            out.deflate(filter.apply(curLine, w), 0, w + 1);
 
             byte[] temp = curLine;
             curLine = prevLine;
             prevLine = temp;
         }
-        deflaterOutput.finish();
-        buffer.endChunk(dataOutput);
+        out.finishDeflate();
+        out.endChunk();
+
+        out.writeInt(IEND);
+        out.endChunk();
 
-        buffer.writeInt(IEND);
-        buffer.endChunk(dataOutput);
+        out.flush();
+    }
+
+    private ChunkWriter streamWriter (OutputStream output) {
+        streamWriter.output = output;
+        return streamWriter;
+    }
 
-        output.flush();
+    private ChunkWriter channelWriter (WritableByteChannel channel) {
+        if (channelWriter == null)
+            channelWriter = new ChannelChunkWriter(initialBufferSize, deflater);
+        channelWriter.start(channel);
+        return channelWriter;
     }
 
     /** Disposal will happen automatically in {@link #finalize()} but can be done explicitly if desired. */
     public void dispose () {
         deflater.end();
+        filter.dispose();
     }
 
     @GwtIncompatible
     static class ChunkBuffer extends DataOutputStream {
         final ByteArrayOutputStream buffer;
         final CRC32 crc;
+        private final byte[] intBytes = new byte[4];
 
         ChunkBuffer (int initialSize) {
             this(new ByteArrayOutputStream(initialSize), new CRC32());
@@ -933,14 +1045,211 @@ public class PNG8 implements Disposable {
             this.crc = crc;
         }
 
-        public void endChunk (DataOutputStream target) throws IOException {
+        public void endChunk (OutputStream target) throws IOException {
             flush();
-            target.writeInt(buffer.size() - 4);
+            writeInt(target, buffer.size() - 4);
             buffer.writeTo(target);
-            target.writeInt((int)crc.getValue());
+            writeInt(target, (int)crc.getValue());
             buffer.reset();
             crc.reset();
         }
+
+        private void writeInt (OutputStream target, int v) throws IOException {
+            intBytes[0] = (byte)(v >>> 24);
+            intBytes[1] = (byte)(v >>> 16);
+            intBytes[2] = (byte)(v >>> 8);
+            intBytes[3] = (byte)v;
+            target.write(intBytes, 0, 4);
+        }
+    }
+
+    /**
+     * Where the chunks of one PNG go while it is written. A chunk is started by writing its type with
+     * {@link #writeInt(int)}, filled with {@link #write(int)} and {@link #writeInt(int)} (or, for IDAT, with the
+     * deflate methods), and finished with {@link #endChunk()}, which adds its length and CRC.
+     */
+    @GwtIncompatible
+    static abstract class ChunkWriter {
+        abstract void signature () throws IOException;
+        abstract void writeInt (int v) throws IOException;
+        abstract void write (int b) throws IOException;
+        abstract void endChunk () throws IOException;
+        abstract void deflate (byte[] b, int off, int len) throws IOException;
+        abstract void finishDeflate () throws IOException;
+        abstract void flush () throws IOException;
+
+        final byte[] single = new byte[1];
+
+        void deflate (int b) throws IOException {
+            single[0] = (byte)b;
+            deflate(single, 0, 1);
+        }
+    }
+
+    /**
+     * Writes chunks to an OutputStream through a {@link ChunkBuffer}, as PNG8 always has.
+     */
+    @GwtIncompatible
+    static class StreamChunkWriter extends ChunkWriter {
+        final ChunkBuffer buffer;
+        final DeflaterOutputStream deflaterOutput;
+        OutputStream output;
+
+        StreamChunkWriter (ChunkBuffer buffer, Deflater deflater) {
+            this.buffer = buffer;
+            deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+        }
+
+        void signature () throws IOException {
+            output.write(SIGNATURE);
+        }
+
+        void writeInt (int v) throws IOException {
+            buffer.writeInt(v);
+        }
+
+        void write (int b) throws IOException {
+            buffer.write(b);
+        }
+
+        void endChunk () throws IOException {
+            buffer.endChunk(output);
+        }
+
+        void deflate (byte[] b, int off, int len) throws IOException {
+            deflaterOutput.write(b, off, len);
+        }
+
+        void finishDeflate () throws IOException {
+            deflaterOutput.finish();
+        }
+
+        void flush () throws IOException {
+            output.flush();
+        }
+    }
+
+    /**
+     * Writes chunks to a WritableByteChannel from one reused byte array. The Deflater writes compressed data directly
+     * into that array, the CRC is computed over it in place, and the array is only written to the channel when it
+     * fills up or the image is done. When an IDAT chunk fills the array, that chunk is ended and a new IDAT chunk is
+     * started, so the array never needs to grow.
+     */
+    @GwtIncompatible
+    static class ChannelChunkWriter extends ChunkWriter {
+        final byte[] bytes;
+        final ByteBuffer view;
+        final CRC32 crc = new CRC32();
+        final Deflater deflater;
+        WritableByteChannel channel;
+        int position, chunkStart;
+
+        ChannelChunkWriter (int size, Deflater deflater) {
+            bytes = new byte[Math.max(size, 4096)];
+            view = ByteBuffer.wrap(bytes);
+            this.deflater = deflater;
+        }
+
+        void start (WritableByteChannel channel) {
+            this.channel = channel;
+            position = 0;
+            chunkStart = -1;
+        }
+
+        void signature () throws IOException {
+            room(SIGNATURE.length);
+            System.arraycopy(SIGNATURE, 0, bytes, position, SIGNATURE.length);
+            position += SIGNATURE.length;
+        }
+
+        void writeInt (int v) throws IOException {
+            if (chunkStart < 0) {
+                // leaves space for the length, which endChunk() fills in
+                room(8);
+                chunkStart = position;
+                position += 4;
+            } else {
+                room(4);
+            }
+            putInt(position, v);
+            position += 4;
+        }
+
+        void write (int b) throws IOException {
+            room(1);
+            bytes[position++] = (byte)b;
+        }
+
+        void endChunk () {
+            final int length = position - chunkStart - 8;
+            putInt(chunkStart, length);
+            crc.reset();
+            crc.update(bytes, chunkStart + 4, length + 4);
+            // room() always keeps 4 bytes free for this
+            putInt(position, (int)crc.getValue());
+            position += 4;
+            chunkStart = -1;
+        }
+
+        void deflate (byte[] b, int off, int len) throws IOException {
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput())
+                deflateSome();
+        }
+
+        void finishDeflate () throws IOException {
+            deflater.finish();
+            while (!deflater.finished())
+                deflateSome();
+        }
+
+        void flush () throws IOException {
+            drain();
+        }
+
+        private void deflateSome () throws IOException {
+            if (position + 4 >= bytes.length) {
+                final int type = (bytes[chunkStart + 4] & 0xFF) << 24 | (bytes[chunkStart + 5] & 0xFF) << 16
+                        | (bytes[chunkStart + 6] & 0xFF) << 8 | (bytes[chunkStart + 7] & 0xFF);
+                endChunk();
+                drain();
+                writeInt(type);
+            }
+            position += deflater.deflate(bytes, position, bytes.length - 4 - position);
+        }
+
+        /**
+         * Makes sure n more bytes, plus 4 for the CRC of the current chunk, fit in the array.
+         */
+        private void room (int n) throws IOException {
+            if (position + n + 4 > bytes.length) {
+                drain();
+                if (position + n + 4 > bytes.length)
+                    throw new IOException("PNG chunk is too large for the buffer");
+            }
+        }
+
+        /**
+         * Writes every finished chunk to the channel, and moves any unfinished chunk to the start of the array.
+         */
+        private void drain () throws IOException {
+            final int end = chunkStart < 0 ? position : chunkStart;
+            view.clear();
+            view.limit(end);
+            while (view.hasRemaining())
+                channel.write(view);
+            System.arraycopy(bytes, end, bytes, 0, position - end);
+            position -= end;
+            if (chunkStart >= 0)
+                chunkStart = 0;
+        }
+
+        private void putInt (int index, int v) {
+            bytes[index] = (byte)(v >>> 24);
+            bytes[index + 1] = (byte)(v >>> 16);
+            bytes[index + 2] = (byte)(v >>> 8);
+            bytes[index + 3] = (byte)v;
+        }
     }
 
     /**
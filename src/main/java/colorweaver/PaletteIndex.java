@@ -0,0 +1,432 @@
+package colorweaver;
+
+import colorweaver.PaletteReducer.ColorMetric;
+import colorweaver.PaletteReducer.NearestFinder;
+
+/**
+ * A k-d tree over the colors of a palette, used to find the closest palette color to a cell of the RGB555 cube
+ * without checking every palette entry. This gives exactly the same answer as checking every entry in order, with
+ * the same tie-breaking (the lowest index wins), as long as the {@link Space} it is given matches the difference
+ * function it is given. The Space places each color in a 3D space where the difference function is a sum of one
+ * non-negative term per axis, and each term only grows as the gap on that axis grows; the tree uses those per-axis
+ * terms to skip whole groups of palette colors that can't be closer than the best one found so far. The actual
+ * difference is still always computed by the difference function, never by the Space.
+ * <br>
+ * Spaces are provided for most of the built-in metrics in {@link PaletteReducer}; {@link #spaceFor(ColorMetric)} gets
+ * the matching one, or null for metrics that don't fit this form (such as {@link PaletteReducer#basicMetric}).
+ * {@link PaletteReducer#nearestFinder(ColorMetric, int[], int, double)} uses this when it can, and falls back to
+ * checking every color otherwise.
+ * <br>
+ * Once built, a PaletteIndex is never modified, so {@link #nearest(int, int, int)} can be called from many threads at
+ * once.
+ */
+public class PaletteIndex implements NearestFinder {
+
+    /**
+     * Places colors in a 3D space and measures the part of a difference that comes from one axis of that space.
+     * Implementations must use exactly the same arithmetic as the difference function they are paired with, or the
+     * results of a PaletteIndex can differ from checking every color.
+     */
+    public interface Space {
+        /**
+         * Gets the coordinates of the given color in this space, and stores them in {@code out}.
+         * @param c1  first channel, usually red, from 0 to 255
+         * @param c2  second channel, usually green, from 0 to 255
+         * @param c3  third channel, usually blue, from 0 to 255
+         * @param out will have its first 3 items set to the coordinates
+         */
+        void coordinates(int c1, int c2, int c3, double[] out);
+
+        /**
+         * Gets the term that {@code axis} adds to the difference between two colors, given their coordinates on that
+         * axis. The total difference must never be less than this, and this must not shrink as a and b move apart.
+         * @param axis 0, 1, or 2
+         * @param a    the coordinate of the first color on axis
+         * @param b    the coordinate of the second color on axis
+         * @return the term that axis contributes to the difference
+         */
+        double axisDifference(int axis, double a, double b);
+    }
+
+    /**
+     * Measures how different the palette color at some index is from a color given as three channels. This is the
+     * difference function a PaletteIndex minimizes.
+     */
+    public interface Distance {
+        double difference(int index, int c1, int c2, int c3);
+    }
+
+    /**
+     * Per-axis terms are multiplied by this before comparing them with the best difference so far, so that a
+     * last-bit rounding difference between a Space and its metric can never cause a closer color to be skipped.
+     */
+    private static final double SLACK = 1.0 - 0x1p-24;
+
+    protected final Space space;
+    protected final Distance distance;
+    protected final double initial;
+    /**
+     * Palette indices in tree order; the root of any range [lo,hi) is at the middle of that range.
+     */
+    protected final int[] order;
+    /**
+     * The split axis for the node at each position in {@link #order}.
+     */
+    protected final byte[] axes;
+    /**
+     * Coordinates of each palette index, 3 per index.
+     */
+    protected final double[] coords;
+
+    /**
+     * Builds a PaletteIndex over the palette colors from index 1 up to (but not including) {@code count}, with the
+     * channels of each color given by {@code c1}, {@code c2}, and {@code c3}. Index 0 is never picked by
+     * {@link #nearest(int, int, int)} unless no color has a difference less than {@code initial}.
+     * @param space    places colors so the tree can skip far-away groups; must match distance
+     * @param distance the difference function to minimize
+     * @param c1       first channel of each palette color, usually red
+     * @param c2       second channel of each palette color, usually green
+     * @param c3       third channel of each palette color, usually blue
+     * @param count    how many items of the channel arrays to consider, including index 0
+     * @param initial  any difference must be less than this to be picked
+     */
+    public PaletteIndex(Space space, Distance distance, int[] c1, int[] c2, int[] c3, int count, double initial) {
+        this.space = space;
+        this.distance = distance;
+        this.initial = initial;
+        count = Math.max(count, 1);
+        coords = new double[count * 3];
+        order = new int[count - 1];
+        axes = new byte[count - 1];
+        final double[] out = new double[3];
+        for (int i = 1; i < count; i++) {
+            space.coordinates(c1[i], c2[i], c3[i], out);
+            coords[i * 3] = out[0];
+            coords[i * 3 + 1] = out[1];
+            coords[i * 3 + 2] = out[2];
+            order[i - 1] = i;
+        }
+        build(0, order.length);
+    }
+
+    /**
+     * Builds a PaletteIndex over RGBA8888 palette colors, using {@link ColorMetric#difference(int, int, int, int)}
+     * from {@code metric} as the difference function. This matches
+     * {@link PaletteReducer#colorFinder(ColorMetric, int[], int, double)}.
+     * @param space   should be {@link #spaceFor(ColorMetric)} for metric
+     * @param metric  used to compare palette colors with each cell
+     * @param palette RGBA8888 colors; only indices from 1 to count - 1 are checked
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a new PaletteIndex
+     */
+    public static PaletteIndex forColors(Space space, final ColorMetric metric, final int[] palette, int count, double initial) {
+        count = Math.max(count, 1);
+        final int[] r = new int[count], g = new int[count], b = new int[count];
+        for (int i = 1; i < count; i++) {
+            r[i] = palette[i] >>> 24;
+            g[i] = palette[i] >>> 16 & 0xFF;
+            b[i] = palette[i] >>> 8 & 0xFF;
+        }
+        return new PaletteIndex(space, new Distance() {
+            @Override
+            public double difference(int index, int c1, int c2, int c3) {
+                return metric.difference(palette[index], c1, c2, c3);
+            }
+        }, r, g, b, count, initial);
+    }
+
+    /**
+     * Builds a PaletteIndex over colors given as parallel channel arrays, using
+     * {@link ColorMetric#difference(int, int, int, int, int, int)} from {@code metric} as the difference function.
+     * This matches {@link PaletteReducer#channelFinder(ColorMetric, int[], int[], int[], int, double)}.
+     * @param space   should be {@link #spaceFor(ColorMetric)} for metric
+     * @param metric  used to compare palette colors with each cell
+     * @param c1      first channel of each palette color, usually red
+     * @param c2      second channel of each palette color, usually green
+     * @param c3      third channel of each palette color, usually blue
+     * @param count   how many items of the channel arrays to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a new PaletteIndex
+     */
+    public static PaletteIndex forChannels(Space space, final ColorMetric metric, final int[] c1, final int[] c2,
+                                           final int[] c3, int count, double initial) {
+        return new PaletteIndex(space, new Distance() {
+            @Override
+            public double difference(int index, int r, int g, int b) {
+                return metric.difference(c1[index], c2[index], c3[index], r, g, b);
+            }
+        }, c1, c2, c3, count, initial);
+    }
+
+    private void build(final int lo, final int hi) {
+        if (hi - lo <= 0) return;
+        double spread = -1.0;
+        int axis = 0;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                final double c = coords[order[i] * 3 + a];
+                min = Math.min(min, c);
+                max = Math.max(max, c);
+            }
+            if (max - min > spread) {
+                spread = max - min;
+                axis = a;
+            }
+        }
+        // insertion sort on the chosen axis; palettes are small, and this keeps equal coordinates in index order
+        for (int i = lo + 1; i < hi; i++) {
+            final int item = order[i];
+            final double c = coords[item * 3 + axis];
+            int j = i - 1;
+            while (j >= lo && coords[order[j] * 3 + axis] > c) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = item;
+        }
+        final int mid = lo + hi >>> 1;
+        axes[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Finds the palette index with the smallest difference from the given color, picking the lowest index if there is
+     * a tie, or 0 if no difference is less than the initial value this was built with.
+     * @param c1 first channel, usually red, from 0 to 255
+     * @param c2 second channel, usually green, from 0 to 255
+     * @param c3 third channel, usually blue, from 0 to 255
+     * @return the index of the closest palette color, or 0 if none were close enough
+     */
+    @Override
+    public int nearest(int c1, int c2, int c3) {
+        final Query q = new Query(c1, c2, c3, initial);
+        space.coordinates(c1, c2, c3, q.coords);
+        search(0, order.length, q);
+        return q.best;
+    }
+
+    private void search(final int lo, final int hi, final Query q) {
+        if (hi - lo <= 0) return;
+        final int mid = lo + hi >>> 1, index = order[mid], axis = axes[mid];
+        final double d = distance.difference(index, q.c1, q.c2, q.c3);
+        if (d < q.dist || (d == q.dist && index < q.best)) {
+            q.dist = d;
+            q.best = index;
+        }
+        final double split = coords[index * 3 + axis], at = q.coords[axis];
+        if (at < split) {
+            search(lo, mid, q);
+            if (space.axisDifference(axis, split, at) * SLACK <= q.dist)
+                search(mid + 1, hi, q);
+        } else {
+            search(mid + 1, hi, q);
+            if (space.axisDifference(axis, split, at) * SLACK <= q.dist)
+                search(lo, mid, q);
+        }
+    }
+
+    private static final class Query {
+        final int c1, c2, c3;
+        final double[] coords = new double[3];
+        double dist;
+        int best;
+
+        Query(int c1, int c2, int c3, double dist) {
+            this.c1 = c1;
+            this.c2 = c2;
+            this.c3 = c3;
+            this.dist = dist;
+        }
+    }
+
+    private static void tableCoordinates(final float[][] table, int c1, int c2, int c3, double[] out) {
+        final int index = (c1 << 7 & 0x7C00) | (c2 << 2 & 0x3E0) | (c3 >>> 3);
+        out[0] = table[0][index];
+        out[1] = table[1][index];
+        out[2] = table[2][index];
+    }
+
+    /**
+     * Matches {@link PaletteReducer#oklabMetric}, using {@link ColorTables#oklab()}.
+     */
+    public static final Space OKLAB_QUARTIC = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            tableCoordinates(ColorTables.oklab(), c1, c2, c3, out);
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            double d = a - b;
+            d *= d;
+            return d * d * 0x1.2p+22;
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#labQuickMetric}, using {@link ColorTables#lab()}.
+     */
+    public static final Space LAB_QUICK = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            tableCoordinates(ColorTables.lab(), c1, c2, c3, out);
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            return labTerm(axis, a - b);
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#iptQuickMetric}, using {@link ColorTables#iptFlat()}.
+     */
+    public static final Space IPT_QUICK = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            tableCoordinates(ColorTables.iptFlat(), c1, c2, c3, out);
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            final double d = a - b;
+            return axis == 0 ? d * d * 3.0 * 0x1p13 : d * d * 0x1p13;
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#iptGoodMetric}, using {@link ColorTables#ipt()}.
+     */
+    public static final Space IPT_GOOD = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            tableCoordinates(ColorTables.ipt(), c1, c2, c3, out);
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            final double d = a - b;
+            return d * d * 0x1p13;
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#oklabCarefulMetric} (also called {@link PaletteReducer#oklabSmoothMetric}), which
+     * calculates Oklab coordinates without a lookup table.
+     */
+    public static final Space OKLAB_CAREFUL = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            double r = c1 * 0.00392156862745098; r *= r;
+            double g = c2 * 0.00392156862745098; g *= g;
+            double b = c3 * 0.00392156862745098; b *= b;
+
+            final double l = Math.cbrt(0.4121656120 * r + 0.5362752080 * g + 0.0514575653 * b);
+            final double m = Math.cbrt(0.2118591070 * r + 0.6807189584 * g + 0.1074065790 * b);
+            final double s = Math.cbrt(0.0883097947 * r + 0.2818474174 * g + 0.6302613616 * b);
+
+            out[0] = PaletteReducer.forwardLight(0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s);
+            out[1] = 1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s;
+            out[2] = 0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s;
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            final double d = a - b;
+            return d * d * 0x1p+21;
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#oklabLABMetric}, where the three channels are already L, A, and B.
+     */
+    public static final Space OKLAB_CHANNELS = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            out[0] = c1 * 0.00392156862745098;
+            out[1] = c2 * 0.00392156862745098;
+            out[2] = c3 * 0.00392156862745098;
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            final double d = a - b;
+            return d * d * 0x1p+21;
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#labMetric}, which calculates CIE L*A*B* coordinates without a lookup table.
+     */
+    public static final Space LAB_EUCLIDEAN = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            final double[] LUT = PaletteReducer.LABEuclideanColorMetric.LUT;
+            final double r = LUT[c1], g = LUT[c2], b = LUT[c3];
+            double x, y, z;
+            x = (r * 0.4124 + g * 0.3576 + b * 0.1805) / 0.950489; // 0.96422;
+            y = (r * 0.2126 + g * 0.7152 + b * 0.0722) / 1.000000; // 1.00000;
+            z = (r * 0.0193 + g * 0.1192 + b * 0.9505) / 1.088840; // 0.82521;
+
+            x = (x > 0.008856) ? Math.cbrt(x) : (7.787037037037037 * x) + 0.13793103448275862;
+            y = (y > 0.008856) ? Math.cbrt(y) : (7.787037037037037 * y) + 0.13793103448275862;
+            z = (z > 0.008856) ? Math.cbrt(z) : (7.787037037037037 * z) + 0.13793103448275862;
+
+            out[0] = (116.0 * y) - 16.0;
+            out[1] = 500.0 * (x - y);
+            out[2] = 200.0 * (y - z);
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            return labTerm(axis, a - b);
+        }
+    };
+
+    /**
+     * Matches {@link PaletteReducer#rgbStupiderMetric}, which is plain squared Euclidean distance in RGB.
+     */
+    public static final Space RGB = new Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            out[0] = c1;
+            out[1] = c2;
+            out[2] = c3;
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            final double d = a - b;
+            return d * d;
+        }
+    };
+
+    private static double labTerm(int axis, double d) {
+        switch (axis) {
+            case 0: return d * d * 11.0;
+            case 1: return d * d * 1.6;
+            default: return d * d;
+        }
+    }
+
+    /**
+     * Gets the Space that matches one of the built-in metrics in {@link PaletteReducer}, or null if metric isn't one of
+     * those this knows about. A null result means a PaletteIndex can't be used with that metric.
+     * @param metric a ColorMetric, usually one of the constants in PaletteReducer
+     * @return the matching Space, or null if there isn't one
+     */
+    public static Space spaceFor(ColorMetric metric) {
+        if (metric == PaletteReducer.oklabMetric) return OKLAB_QUARTIC;
+        if (metric == PaletteReducer.oklabCarefulMetric) return OKLAB_CAREFUL;
+        if (metric == PaletteReducer.oklabLABMetric) return OKLAB_CHANNELS;
+        if (metric == PaletteReducer.labQuickMetric) return LAB_QUICK;
+        if (metric == PaletteReducer.iptQuickMetric) return IPT_QUICK;
+        if (metric == PaletteReducer.iptGoodMetric) return IPT_GOOD;
+        if (metric == PaletteReducer.labMetric) return LAB_EUCLIDEAN;
+        if (metric == PaletteReducer.rgbStupiderMetric) return RGB;
+        return null;
+    }
+}
@@ -0,0 +1,309 @@
+package colorweaver;
+
+import colorweaver.PaletteReducer.ColorMetric;
+import colorweaver.PaletteReducer.NearestFinder;
+
+/**
+ * A palette stored as a structure of arrays, with one float array per channel of a color space, used to find the
+ * closest palette color to cells of the RGB555 cube by checking every palette color with a flat loop. This gives
+ * exactly the same answer as {@link PaletteReducer#colorFinder(ColorMetric, int[], int, double)} with the same
+ * metric, including the tie-breaking (the lowest index wins), but it doesn't call the metric through an interface or
+ * unpack each palette color from RGBA8888 and look it up in a {@link ColorTables} table once per cell; each palette
+ * color is looked up once, when this is built.
+ * <br>
+ * The main speedup comes from {@link #fill(byte[], int, int)}, which handles a row of 32 cells at a time: the inner
+ * loop runs over those 32 cells for one palette color, with no calls and no dependencies between iterations, which
+ * the JIT compiler can unroll and (on some JVMs) turn into SIMD instructions. This is faster than a
+ * {@link PaletteIndex} for small and medium palettes, and slower for large ones, so
+ * {@link PaletteReducer#nearestFinder(ColorMetric, int[], int, double)} only uses this for palettes with at most
+ * {@link #LIMIT} colors.
+ * <br>
+ * Only the metrics that are a simple weighted sum over one table are supported: {@link PaletteReducer#oklabMetric},
+ * {@link PaletteReducer#labQuickMetric}, {@link PaletteReducer#iptQuickMetric}, and
+ * {@link PaletteReducer#iptGoodMetric}. The arithmetic here must stay the same as in those metrics.
+ * <br>
+ * Once built, a PaletteKernel is never modified, so it can be used from many threads at once.
+ */
+public class PaletteKernel implements NearestFinder {
+    /**
+     * The largest palette size (including index 0) that
+     * {@link PaletteReducer#nearestFinder(ColorMetric, int[], int, double)} uses a PaletteKernel for; bigger palettes
+     * are faster with a {@link PaletteIndex}.
+     */
+    public static final int LIMIT = 128;
+
+    private static final int OKLAB = 0, LAB_QUICK = 1, IPT_QUICK = 2, IPT_GOOD = 3;
+
+    protected final int kind;
+    protected final float[][] table;
+    protected final double initial;
+    /**
+     * How many palette colors this checks; transparent colors, which a metric never picks, aren't counted.
+     */
+    protected final int size;
+    /**
+     * The palette index of each color this checks, in increasing order.
+     */
+    protected final int[] indices;
+    /**
+     * The coordinates of each color this checks in the metric's table, one array per channel.
+     */
+    protected final float[] p1, p2, p3;
+
+    protected PaletteKernel(int kind, float[][] table, double initial, int[] indices, int size) {
+        this.kind = kind;
+        this.table = table;
+        this.initial = initial;
+        this.indices = indices;
+        this.size = size;
+        p1 = new float[size];
+        p2 = new float[size];
+        p3 = new float[size];
+    }
+
+    private static int kindFor(ColorMetric metric) {
+        if (metric == PaletteReducer.oklabMetric) return OKLAB;
+        if (metric == PaletteReducer.labQuickMetric) return LAB_QUICK;
+        if (metric == PaletteReducer.iptQuickMetric) return IPT_QUICK;
+        if (metric == PaletteReducer.iptGoodMetric) return IPT_GOOD;
+        return -1;
+    }
+
+    private static float[][] tableFor(int kind) {
+        switch (kind) {
+            case OKLAB: return ColorTables.oklab();
+            case LAB_QUICK: return ColorTables.lab();
+            case IPT_QUICK: return ColorTables.iptFlat();
+            default: return ColorTables.ipt();
+        }
+    }
+
+    /**
+     * Checks if a PaletteKernel can be built for the given metric.
+     * @param metric a ColorMetric, usually one of the constants in PaletteReducer
+     * @return true if {@link #forColors(ColorMetric, int[], int, double)} won't return null for metric
+     */
+    public static boolean supports(ColorMetric metric) {
+        return kindFor(metric) >= 0;
+    }
+
+    /**
+     * Builds a PaletteKernel over RGBA8888 palette colors from index 1 up to (but not including) {@code count}. This
+     * matches {@link PaletteReducer#colorFinder(ColorMetric, int[], int, double)}, so colors with less than half alpha
+     * are never picked.
+     * @param metric  one of the metrics this supports; see {@link #supports(ColorMetric)}
+     * @param palette RGBA8888 colors; only indices from 1 to count - 1 are checked
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a new PaletteKernel, or null if metric isn't supported
+     */
+    public static PaletteKernel forColors(ColorMetric metric, int[] palette, int count, double initial) {
+        final int kind = kindFor(metric);
+        if (kind < 0) return null;
+        final float[][] table = tableFor(kind);
+        final int[] indices = new int[Math.max(count - 1, 0)];
+        int size = 0;
+        for (int i = 1; i < count; i++) {
+            if ((palette[i] & 0x80) != 0)
+                indices[size++] = i;
+        }
+        final PaletteKernel kernel = new PaletteKernel(kind, table, initial, indices, size);
+        for (int n = 0; n < size; n++) {
+            final int color = palette[indices[n]];
+            kernel.place(n, color >>> 24, color >>> 16 & 0xFF, color >>> 8 & 0xFF);
+        }
+        return kernel;
+    }
+
+    /**
+     * Builds a PaletteKernel over colors given as parallel channel arrays, from index 1 up to (but not including)
+     * {@code count}. This matches {@link PaletteReducer#channelFinder(ColorMetric, int[], int[], int[], int, double)}.
+     * @param metric one of the metrics this supports; see {@link #supports(ColorMetric)}
+     * @param c1     first channel of each palette color, usually red
+     * @param c2     second channel of each palette color, usually green
+     * @param c3     third channel of each palette color, usually blue
+     * @param count  how many items of the channel arrays to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a new PaletteKernel, or null if metric isn't supported
+     */
+    public static PaletteKernel forChannels(ColorMetric metric, int[] c1, int[] c2, int[] c3, int count, double initial) {
+        final int kind = kindFor(metric);
+        if (kind < 0) return null;
+        final float[][] table = tableFor(kind);
+        final int size = Math.max(count - 1, 0);
+        final int[] indices = new int[size];
+        final PaletteKernel kernel = new PaletteKernel(kind, table, initial, indices, size);
+        for (int n = 0; n < size; n++) {
+            indices[n] = n + 1;
+            kernel.place(n, c1[n + 1], c2[n + 1], c3[n + 1]);
+        }
+        return kernel;
+    }
+
+    private void place(int n, int r, int g, int b) {
+        final int index = (r << 7 & 0x7C00) | (g << 2 & 0x3E0) | (b >>> 3);
+        p1[n] = table[0][index];
+        p2[n] = table[1][index];
+        p3[n] = table[2][index];
+    }
+
+    /**
+     * Finds the palette index with the smallest difference from the given color, picking the lowest index if there is
+     * a tie, or 0 if no difference is less than the initial value this was built with. This checks one color at a
+     * time with the same arithmetic as {@link #fill(byte[], int, int)}, and doesn't allocate.
+     * @param c1 first channel, usually red, from 0 to 255
+     * @param c2 second channel, usually green, from 0 to 255
+     * @param c3 third channel, usually blue, from 0 to 255
+     * @return the index of the closest palette color, or 0 if none were close enough
+     */
+    @Override
+    public int nearest(int c1, int c2, int c3) {
+        final int cell = (c1 << 7 & 0x7C00) | (c2 << 2 & 0x3E0) | (c3 >>> 3);
+        final double q1 = table[0][cell], q2 = table[1][cell], q3 = table[2][cell];
+        double best = initial;
+        int pick = 0;
+        switch (kind) {
+            case OKLAB:
+                for (int i = 0; i < size; i++) {
+                    double L = p1[i] - q1, A = p2[i] - q2, B = p3[i] - q3;
+                    L *= L;
+                    A *= A;
+                    B *= B;
+                    final double d = (L * L + A * A + B * B) * 0x1.2p+22;
+                    if (d < best) {
+                        best = d;
+                        pick = indices[i];
+                    }
+                }
+                break;
+            case LAB_QUICK:
+                for (int i = 0; i < size; i++) {
+                    final double L = p1[i] - q1, A = p2[i] - q2, B = p3[i] - q3;
+                    final double d = L * L * 11.0 + A * A * 1.6 + B * B;
+                    if (d < best) {
+                        best = d;
+                        pick = indices[i];
+                    }
+                }
+                break;
+            case IPT_QUICK:
+                for (int i = 0; i < size; i++) {
+                    final double I = p1[i] - q1, P = p2[i] - q2, T = p3[i] - q3;
+                    final double d = (I * I * 3.0 + P * P + T * T) * 0x1p13;
+                    if (d < best) {
+                        best = d;
+                        pick = indices[i];
+                    }
+                }
+                break;
+            default:
+                for (int i = 0; i < size; i++) {
+                    final double I = p1[i] - q1, P = p2[i] - q2, T = p3[i] - q3;
+                    final double d = (I * I + P * P + T * T) * 0x1p13;
+                    if (d < best) {
+                        best = d;
+                        pick = indices[i];
+                    }
+                }
+        }
+        return pick;
+    }
+
+    /**
+     * Fills the still-0 cells of {@code mapping} whose first coordinate is between {@code start} (inclusive) and
+     * {@code end} (exclusive), in rows of 32 cells. This is what
+     * {@link PaletteReducer#fillMapping(byte[], NearestFinder, int, int)} does with a PaletteKernel, and it only
+     * writes to those cells, so different ranges can safely be filled at the same time.
+     * @param mapping a 32768-element byte array, like {@link PaletteReducer#paletteMapping}
+     * @param start   the first 5-bit coordinate for the first channel, inclusive
+     * @param end     the last 5-bit coordinate for the first channel, exclusive
+     */
+    public void fill(final byte[] mapping, final int start, final int end) {
+        final double[] q1 = new double[32], q2 = new double[32], q3 = new double[32], best = new double[32];
+        final int[] pick = new int[32];
+        final float[] t1 = table[0], t2 = table[1], t3 = table[2];
+        for (int rg = start << 5, rgEnd = end << 5; rg < rgEnd; rg++) {
+            final int base = rg << 5;
+            for (int j = 0; j < 32; j++) {
+                q1[j] = t1[base | j];
+                q2[j] = t2[base | j];
+                q3[j] = t3[base | j];
+                best[j] = initial;
+                pick[j] = 0;
+            }
+            search(q1, q2, q3, 32, best, pick);
+            for (int j = 0; j < 32; j++) {
+                if (mapping[base | j] == 0 && pick[j] != 0)
+                    mapping[base | j] = (byte) pick[j];
+            }
+        }
+    }
+
+    /**
+     * The batched distance kernel. For each palette color in order, updates the best difference and picked index for
+     * each of the first {@code n} cells, whose coordinates are in q1, q2, and q3.
+     */
+    private void search(final double[] q1, final double[] q2, final double[] q3, final int n,
+                        final double[] best, final int[] pick) {
+        switch (kind) {
+            case OKLAB:
+                for (int i = 0; i < size; i++) {
+                    final double a1 = p1[i], a2 = p2[i], a3 = p3[i];
+                    final int index = indices[i];
+                    for (int j = 0; j < n; j++) {
+                        double L = a1 - q1[j], A = a2 - q2[j], B = a3 - q3[j];
+                        L *= L;
+                        A *= A;
+                        B *= B;
+                        final double d = (L * L + A * A + B * B) * 0x1.2p+22;
+                        if (d < best[j]) {
+                            best[j] = d;
+                            pick[j] = index;
+                        }
+                    }
+                }
+                break;
+            case LAB_QUICK:
+                for (int i = 0; i < size; i++) {
+                    final double a1 = p1[i], a2 = p2[i], a3 = p3[i];
+                    final int index = indices[i];
+                    for (int j = 0; j < n; j++) {
+                        final double L = a1 - q1[j], A = a2 - q2[j], B = a3 - q3[j];
+                        final double d = L * L * 11.0 + A * A * 1.6 + B * B;
+                        if (d < best[j]) {
+                            best[j] = d;
+                            pick[j] = index;
+                        }
+                    }
+                }
+                break;
+            case IPT_QUICK:
+                for (int i = 0; i < size; i++) {
+                    final double a1 = p1[i], a2 = p2[i], a3 = p3[i];
+                    final int index = indices[i];
+                    for (int j = 0; j < n; j++) {
+                        final double I = a1 - q1[j], P = a2 - q2[j], T = a3 - q3[j];
+                        final double d = (I * I * 3.0 + P * P + T * T) * 0x1p13;
+                        if (d < best[j]) {
+                            best[j] = d;
+                            pick[j] = index;
+                        }
+                    }
+                }
+                break;
+            default:
+                for (int i = 0; i < size; i++) {
+                    final double a1 = p1[i], a2 = p2[i], a3 = p3[i];
+                    final int index = indices[i];
+                    for (int j = 0; j < n; j++) {
+                        final double I = a1 - q1[j], P = a2 - q2[j], T = a3 - q3[j];
+                        final double d = (I * I + P * P + T * T) * 0x1p13;
+                        if (d < best[j]) {
+                            best[j] = d;
+                            pick[j] = index;
+                        }
+                    }
+                }
+        }
+    }
+}
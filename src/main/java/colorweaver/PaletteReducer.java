@@ -1,12 +1,19 @@
 package colorweaver;
 
+import colorweaver.a8.A8PaletteReducer;
 import colorweaver.a8.ConstantData;
+import colorweaver.a8.Dithered;
+import colorweaver.tools.ColorHistogram;
 import colorweaver.tools.OtherMath;
+import colorweaver.tools.ParallelKit;
+import colorweaver.tools.PixelSurface;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.*;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Collections;
@@ -15,8 +22,9 @@ import java.util.Collections;
  * Data that can be used to limit the colors present in a Pixmap or other image, here with the goal of using 256 or less
  * colors in the image (for saving indexed-mode images).
  * <br>
- * This class does a not-insignificant amount of work in static initializers, so it may penalize startup time slightly.
- * The {@link #labs} array needs close to a hundred-thousand calls to {@link Math#cbrt(double)}, for instance.
+ * The color space lookup tables used by some metrics and dithers are in {@link ColorTables}, and each is only built the
+ * first time it is needed; the Oklab table, for instance, needs close to a hundred-thousand calls to
+ * {@link Math#cbrt(double)}, but a program that never uses it never pays for it.
  * <br>
  * Created by Tommy Ettinger on 6/23/2018.
  */
@@ -27,6 +35,17 @@ public class PaletteReducer {
         double difference(final int color1, int r2, int g2, int b2);
         double difference(final int r1, final int g1, final int b1, final int r2, final int g2, final int b2);
     }
+
+    /**
+     * Finds the palette index that should be used for one cell of the 32x32x32 cube that {@link #paletteMapping}
+     * covers. Each cell is given as three 8-bit channels, each made from a 5-bit coordinate with its top 3 bits
+     * repeated at the bottom (the same as {@link #stretch(int)} does). Returning 0 leaves the cell at index 0. Cells
+     * may be requested in any order and from several threads at once, so implementations shouldn't keep mutable
+     * state between calls.
+     */
+    public interface NearestFinder {
+        int nearest(int c1, int c2, int c3);
+    }
     public static class BasicColorMetric implements ColorMetric{
         /**
          * Color difference metric; returns large numbers even for smallish differences.
@@ -391,7 +410,7 @@ public class PaletteReducer {
     }
 
     /**
-     * Converts an RGBA8888 int color to the RGB555 format used by {@link #labs} to look up colors.
+     * Converts an RGBA8888 int color to the RGB555 format used by the tables in {@link ColorTables} to look up colors.
      * @param color an RGBA8888 int color
      * @return an RGB555 int color
      */
@@ -414,45 +433,6 @@ public class PaletteReducer {
         return (color << 17 & 0xF8000000) | (color << 12 & 0x07000000) | (color << 14 & 0xF80000) | (color << 9 & 0x070000) | (color << 11 & 0xF800) | (color << 6 & 0x0700) | 0xFF;
     }
 
-    /**
-     * Stores CIE L*A*B* components for 32768 colors (the full RGB555 range). The first sub-array stores luma (ranging
-     * from 0 to 100), the second sub-array stores A chroma (representing red for positive values and green for
-     * negative, very roughly, with a strange range of about -120 to 120), and the third sub-array stores B chroma
-     * (representing yellow for positive values and blue for negative values, very roughly, with a strange range of
-     * about -120 to 120). Inside each array are 32768 double values, storing the L, A, or B for the RGB555 color at
-     * that index. You can convert a (normal) RGBA8888 color to RGB555 with {@link #shrink(int)}.
-     */
-    public static final double[][] labs = new double[3][0x8000];
-    static {
-        double r, g, b, x, y, z;
-        int idx = 0;
-        for (int ri = 0; ri < 32; ri++) {
-            r = ri / 31.0;
-            r = ((r > 0.04045) ? Math.pow((r + 0.055) / 1.055, 2.4) : r / 12.92);
-            for (int gi = 0; gi < 32; gi++) {
-                g = gi / 31.0;
-                g = ((g > 0.04045) ? Math.pow((g + 0.055) / 1.055, 2.4) : g / 12.92);
-                for (int bi = 0; bi < 32; bi++) {
-                    b = bi / 31.0;
-                    b = ((b > 0.04045) ? Math.pow((b + 0.055) / 1.055, 2.4) : b / 12.92);
-
-                    x = (r * 0.4124 + g * 0.3576 + b * 0.1805) / 0.950489; // 0.96422;
-                    y = (r * 0.2126 + g * 0.7152 + b * 0.0722) / 1.000000; // 1.00000;
-                    z = (r * 0.0193 + g * 0.1192 + b * 0.9505) / 1.088840; // 0.82521;
-
-                    x = (x > 0.008856) ? Math.cbrt(x) : (7.787037037037037 * x) + 0.13793103448275862;
-                    y = (y > 0.008856) ? Math.cbrt(y) : (7.787037037037037 * y) + 0.13793103448275862;
-                    z = (z > 0.008856) ? Math.cbrt(z) : (7.787037037037037 * z) + 0.13793103448275862;
-
-                    labs[0][idx] = (116.0 * y) - 16.0;
-                    labs[1][idx] = 500.0 * (x - y);
-                    labs[2][idx] = 200.0 * (y - z);
-                    idx++;
-                }
-            }
-        }
-    }
-
     public static final ColorMetric labQuickMetric = new ColorMetric(){
         public double difference(int color1, int color2) {
             if(((color1 ^ color2) & 0x80) == 0x80) return Double.POSITIVE_INFINITY;
@@ -465,68 +445,17 @@ public class PaletteReducer {
         }
 
         public double difference(int r1, int g1, int b1, int r2, int g2, int b2) {
+            final float[][] lab = ColorTables.lab();
             int indexA = (r1 << 7 & 0x7C00) | (g1 << 2 & 0x3E0) | (b1 >>> 3),
                     indexB = (r2 << 7 & 0x7C00) | (g2 << 2 & 0x3E0) | (b2 >>> 3);
             final double
-                    L = labs[0][indexA] - labs[0][indexB],
-                    A = labs[1][indexA] - labs[1][indexB],
-                    B = labs[2][indexA] - labs[2][indexB];
+                    L = lab[0][indexA] - (double) lab[0][indexB],
+                    A = lab[1][indexA] - (double) lab[1][indexB],
+                    B = lab[2][indexA] - (double) lab[2][indexB];
             return L * L * 11.0 + A * A * 1.6 + B * B;
         }
     };
 
-    public static final double[][] IPT = new double[3][0x8000];
-    public static final double[][] IPT_FLAT = new double[3][0x8000];
-    public static final double[][] OKLAB = new double[3][0x8000];
-    static {
-        double r, g, b, l, m, s;
-        int idx = 0;
-        for (int ri = 0; ri < 32; ri++) {
-            r = ri * ri * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
-            for (int gi = 0; gi < 32; gi++) {
-                g = gi * gi * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
-                for (int bi = 0; bi < 32; bi++) {
-                    b = bi * bi * 0.0010405827263267429; // 1.0 / 31.0 / 31.0
-
-                    l = Math.pow(0.313921 * r + 0.639468 * g + 0.0465970 * b, 0.43);
-                    m = Math.pow(0.151693 * r + 0.748209 * g + 0.1000044 * b, 0.43);
-                    s = Math.pow(0.017753 * r + 0.109468 * g + 0.8729690 * b, 0.43);
-
-                    IPT[0][idx] = 0.4000 * l + 0.4000 * m + 0.2000 * s;
-                    IPT[1][idx] = 4.4550 * l - 4.8510 * m + 0.3960 * s;
-                    IPT[2][idx] = 0.8056 * l + 0.3572 * m - 1.1628 * s;
-
-                    l = Math.cbrt(0.4121656120 * r + 0.5362752080 * g + 0.0514575653 * b);
-                    m = Math.cbrt(0.2118591070 * r + 0.6807189584 * g + 0.1074065790 * b);
-                    s = Math.cbrt(0.0883097947 * r + 0.2818474174 * g + 0.6302613616 * b);
-
-                    OKLAB[0][idx] = forwardLight(0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s);
-                    OKLAB[1][idx] = 1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s;
-                    OKLAB[2][idx] = 0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s;
-
-                    idx++;
-                }
-            }
-        }
-
-        idx = 0;
-        for (int ri = 0; ri < 32; ri++) {
-            for (int gi = 0; gi < 32; gi++) {
-                for (int bi = 0; bi < 32; bi++) {
-                    l = (0.010126483870967743) * ri + (0.020628) * gi + (0.0015031290322580645) * bi;
-                    m = (0.004893322580645161) * ri + (0.024135774193548388) * gi + (0.003225948387096774) * bi;
-                    s = (5.726774193548388E-4) * ri + (0.0035312258064516128) * gi + (0.028160290322580644) * bi;
-
-                    IPT_FLAT[0][idx] = 0.4000 * l + 0.4000 * m + 0.2000 * s;
-                    IPT_FLAT[1][idx] = 4.4550 * l - 4.8510 * m + 0.3960 * s;
-                    IPT_FLAT[2][idx] = 0.8056 * l + 0.3572 * m - 1.1628 * s;
-
-                    idx++;
-                }
-            }
-        }
-    }
-
     public static final ColorMetric iptQuickMetric = new ColorMetric(){
         public double difference(int color1, int color2) {
             if(((color1 ^ color2) & 0x80) == 0x80) return Double.POSITIVE_INFINITY;
@@ -539,12 +468,13 @@ public class PaletteReducer {
         }
 
         public double difference(int r1, int g1, int b1, int r2, int g2, int b2) {
+            final float[][] iptFlat = ColorTables.iptFlat();
             int indexA = (r1 << 7 & 0x7C00) | (g1 << 2 & 0x3E0) | (b1 >>> 3),
                     indexB = (r2 << 7 & 0x7C00) | (g2 << 2 & 0x3E0) | (b2 >>> 3);
             final double
-                    i = IPT_FLAT[0][indexA] - IPT_FLAT[0][indexB],
-                    p = IPT_FLAT[1][indexA] - IPT_FLAT[1][indexB],
-                    t = IPT_FLAT[2][indexA] - IPT_FLAT[2][indexB];
+                    i = iptFlat[0][indexA] - (double) iptFlat[0][indexB],
+                    p = iptFlat[1][indexA] - (double) iptFlat[1][indexB],
+                    t = iptFlat[2][indexA] - (double) iptFlat[2][indexB];
             return (i * i * 3.0 + p * p + t * t) * 0x1p13;
 //            return i * i * 16.0 + p * p * 9.0 + t * t * 9.0;
         }
@@ -562,12 +492,13 @@ public class PaletteReducer {
         }
 
         public double difference(int r1, int g1, int b1, int r2, int g2, int b2) {
+            final float[][] ipt = ColorTables.ipt();
             int indexA = (r1 << 7 & 0x7C00) | (g1 << 2 & 0x3E0) | (b1 >>> 3),
                     indexB = (r2 << 7 & 0x7C00) | (g2 << 2 & 0x3E0) | (b2 >>> 3);
             final double
-                    i = IPT[0][indexA] - IPT[0][indexB],
-                    p = IPT[1][indexA] - IPT[1][indexB],
-                    t = IPT[2][indexA] - IPT[2][indexB];
+                    i = ipt[0][indexA] - (double) ipt[0][indexB],
+                    p = ipt[1][indexA] - (double) ipt[1][indexB],
+                    t = ipt[2][indexA] - (double) ipt[2][indexB];
             return (i * i + p * p + t * t) * 0x1p13;
         }
     };
@@ -648,12 +579,13 @@ public class PaletteReducer {
         }
 
         public double difference(int r1, int g1, int b1, int r2, int g2, int b2) {
+            final float[][] oklab = ColorTables.oklab();
             final int indexA = (r1 << 7 & 0x7C00) | (g1 << 2 & 0x3E0) | (b1 >>> 3),
                     indexB = (r2 << 7 & 0x7C00) | (g2 << 2 & 0x3E0) | (b2 >>> 3);
             double
-                    L = OKLAB[0][indexA] - OKLAB[0][indexB],
-                    A = OKLAB[1][indexA] - OKLAB[1][indexB],
-                    B = OKLAB[2][indexA] - OKLAB[2][indexB];
+                    L = oklab[0][indexA] - (double) oklab[0][indexB],
+                    A = oklab[1][indexA] - (double) oklab[1][indexB],
+                    B = oklab[2][indexA] - (double) oklab[2][indexB];
             L *= L;
             A *= A;
             B *= B;
@@ -1116,22 +1048,38 @@ public class PaletteReducer {
         }
 
         public double difference(int r1, int g1, int b1, int r2, int g2, int b2) {
+            final float[][] oklab = ColorTables.oklab();
             double rf = (r1 - r2);
             double gf = (g1 - g2);
             double bf = (b1 - b2);
-            double lf = 100000 * Math.abs(OKLAB[0][(r1 << 7 & 0x7C00) | (g1 << 2 & 0x3E0) | (b1 >>> 3)] - OKLAB[0][(r2 << 7 & 0x7C00) | (g2 << 2 & 0x3E0) | (b2 >>> 3)]);
+            double lf = 100000 * Math.abs(oklab[0][(r1 << 7 & 0x7C00) | (g1 << 2 & 0x3E0) | (b1 >>> 3)] - (double) oklab[0][(r2 << 7 & 0x7C00) | (g2 << 2 & 0x3E0) | (b2 >>> 3)]);
             return (rf * rf + gf * gf + bf * bf + lf);
         }
     };
     public static final BasicColorMetric basicMetric = new BasicColorMetric(); // has no state, should be fine static
     public static final LABEuclideanColorMetric labMetric = new LABEuclideanColorMetric();
     public static final LABRoughColorMetric labRoughMetric = new LABRoughColorMetric();
+    /**
+     * Maps each RGB555 color (as given by {@link #shrink(int)}) to the index in {@link #paletteArray} it reduces to.
+     * This array may be shared with other PaletteReducers, and with other threads: it is the preload array given to
+     * {@link #exact(int[], byte[])}, or the mapping of a {@link SharedPalette} after {@link #exact(SharedPalette)} or
+     * {@link SharedPalette#newReducer()}. The methods here that build a palette allocate a new mapping instead of
+     * changing a shared one, but writing to this array directly would change it for every PaletteReducer that shares
+     * it, so it should be treated as read-only unless this PaletteReducer built it; assign a copy first if it has to be
+     * changed.
+     */
     public byte[] paletteMapping;
     public final int[] paletteArray = new int[256];
     public final double[] paletteLightness = new double[256];
     FloatArray curErrorRedFloats, nextErrorRedFloats, curErrorGreenFloats, nextErrorGreenFloats, curErrorBlueFloats, nextErrorBlueFloats;
     public int colorCount;
     double ditherStrength = 1.0, populationBias = 0.5;
+    int parallelism = 1;
+    /**
+     * True when {@link #paletteMapping} is an array this doesn't own, such as a preload array or the mapping of a
+     * {@link SharedPalette}; {@link #clearMapping()} allocates a new array instead of changing a shared one.
+     */
+    boolean sharedMapping;
 
     /**
      * This stores a preload code for a PaletteReducer using {@link Coloring#AURORA} with {@link #oklabMetric}. Using
@@ -1222,6 +1170,17 @@ public class PaletteReducer {
     {
         exact(palette, preload);
     }
+    /**
+     * Constructs a PaletteReducer that uses the palette and mapping of a {@link SharedPalette}, without copying the
+     * mapping. This is the usual way to get one PaletteReducer per thread when several threads dither with the same
+     * palette; see {@link #exact(SharedPalette)}.
+     *
+     * @param palette a SharedPalette, which may be used by other PaletteReducers at the same time
+     */
+    public PaletteReducer(SharedPalette palette)
+    {
+        exact(palette);
+    }
     /**
      * Constructs a PaletteReducer that analyzes the given Pixmap for color count and frequency to generate a palette
      * (see {@link #analyze(Pixmap, int)} for more info).
@@ -1310,6 +1269,250 @@ public class PaletteReducer {
 //        return NumberUtils.intBitsToFloat((seed & 0x7FFFFF & ((seed >>> 11 & 0x600000)|0x1FFFFF)) | 0x3f800000) - 1.3f;
     }
 
+    /**
+     * Gets how many threads {@link #exact(int[])}, {@link #analyze(Pixmap)}, and their overloads use to fill
+     * {@link #paletteMapping}, and that the ordered dithers listed in {@link #setParallelism(int)} use. The default is
+     * 1, which does all the work on the calling thread.
+     * @return the parallelism level used when building the palette mapping and running ordered dithers
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many threads {@link #exact(int[])}, {@link #analyze(Pixmap)}, and their overloads use to fill
+     * {@link #paletteMapping}. Any value 1 or less builds the mapping on the calling thread, as before; higher values
+     * split the 32 red slices of the RGB555 cube across a ForkJoinPool with that many threads (see
+     * {@link ParallelKit#pool(int)}). The mapping this produces is byte-for-byte identical regardless of parallelism,
+     * since each cell only depends on the palette and the metric. Note that this only affects building the mapping;
+     * the ColorMetric in use must be safe to call from several threads, which all the metrics here are.
+     * <br>
+     * This also splits the rows of a Pixmap into bands, each run on its own thread, for the dithers that only use a
+     * pixel's position and color: {@link #reduceWithRoberts(Pixmap)}, {@link #reduceIGN(Pixmap)},
+     * {@link #reduceTrueBlue3(Pixmap)}, {@link #reduceTrueBlue4(Pixmap)}, {@link #reduceTrueBlue5(Pixmap)}, and
+     * {@link #reduceGourd(Pixmap)}. Their output is the same for any parallelism.
+     * <br>
+     * The error-diffusion dithers {@link #reduceFloydSteinberg(Pixmap)}, {@link #reduceBurkes(Pixmap)}, {@link #reduceSierraLite(Pixmap)},
+     * {@link #reduceOceanic(Pixmap)}, {@link #reduceSeaside(Pixmap)}, {@link #reduceNeue(Pixmap)}, and
+     * {@link #reduceOverboard2(Pixmap)} run as a wavefront instead, with each row trailing the row above it by a few
+     * pixels so that the error it needs has already been added; their output is also the same for any parallelism.
+     * @param parallelism how many threads to use when building the palette mapping; {@link ParallelKit#availableParallelism()} uses every core
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Runs {@code task} over the rows of an image with the given height, split into bands that run on
+     * {@link #getParallelism()} threads. Each band is a range of rows; the task must only write to pixels in those
+     * rows. With a parallelism of 1, this just runs every row on the calling thread.
+     * @param height how many rows are in the image
+     * @param task   the work to run on each band of rows
+     */
+    protected void forEachRowBand(int height, ParallelKit.RangeTask task) {
+        ParallelKit.forRange(parallelism, 0, height, Math.max(16, height / (parallelism << 2)), task);
+    }
+
+    /**
+     * Runs an error-diffusion dither over an image with the given width and height, one row at a time. With a
+     * parallelism of 1, this runs each row on the calling thread from top to bottom, reusing this reducer's error
+     * arrays. With a higher parallelism, it uses {@link ParallelKit#diffuse(int, int, int, int, ParallelKit.DiffusionTask)}
+     * to dither several rows at once as a wavefront, which gives exactly the same result.
+     * @param width  how many pixels are in each row
+     * @param height how many rows there are
+     * @param reach  how far left or right of a pixel the dither can send error
+     * @param task   dithers part of one row
+     */
+    protected void diffuse(int width, int height, int reach, ParallelKit.DiffusionTask task) {
+        if (parallelism > 1 && height > 1) {
+            ParallelKit.diffuse(parallelism, width, height, reach, task);
+            return;
+        }
+        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
+        if (curErrorRedFloats == null) {
+            curErrorRed = (curErrorRedFloats = new FloatArray(width)).items;
+            nextErrorRed = (nextErrorRedFloats = new FloatArray(width)).items;
+            curErrorGreen = (curErrorGreenFloats = new FloatArray(width)).items;
+            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(width)).items;
+            curErrorBlue = (curErrorBlueFloats = new FloatArray(width)).items;
+            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(width)).items;
+        } else {
+            curErrorRed = curErrorRedFloats.ensureCapacity(width);
+            nextErrorRed = nextErrorRedFloats.ensureCapacity(width);
+            curErrorGreen = curErrorGreenFloats.ensureCapacity(width);
+            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(width);
+            curErrorBlue = curErrorBlueFloats.ensureCapacity(width);
+            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(width);
+
+            Arrays.fill(nextErrorRed, 0, width, 0);
+            Arrays.fill(nextErrorGreen, 0, width, 0);
+            Arrays.fill(nextErrorBlue, 0, width, 0);
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, width);
+            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, width);
+            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, width);
+
+            Arrays.fill(nextErrorRed, 0, width, 0);
+            Arrays.fill(nextErrorGreen, 0, width, 0);
+            Arrays.fill(nextErrorBlue, 0, width, 0);
+
+            task.run(y, 0, width, curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue);
+        }
+    }
+
+    /**
+     * Fills every cell of {@link #paletteMapping} that is still 0 with the index {@code finder} picks for it, using
+     * {@link #getParallelism()} threads. Cells that are already non-zero, such as ones that exactly match a palette
+     * color, are left alone.
+     * @param finder picks the palette index for each cell; see {@link #colorFinder(ColorMetric, int[], int, double)}
+     */
+    protected void fillMapping(final NearestFinder finder) {
+        final byte[] mapping = paletteMapping;
+        ParallelKit.forRange(parallelism, 0, 32, 1, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                fillMapping(mapping, finder, start, end);
+            }
+        });
+    }
+
+    /**
+     * Fills the still-0 cells of {@code mapping} whose first coordinate is between {@code start} (inclusive) and
+     * {@code end} (exclusive), using {@code finder} to pick an index for each. This only writes to those cells, so
+     * different ranges can safely be filled at the same time. A {@link PaletteKernel} fills whole rows of cells at
+     * once, using {@link PaletteKernel#fill(byte[], int, int)}.
+     * @param mapping a 32768-element byte array, like {@link #paletteMapping}
+     * @param finder  picks the palette index for each cell
+     * @param start   the first 5-bit coordinate for the first channel, inclusive
+     * @param end     the last 5-bit coordinate for the first channel, exclusive
+     */
+    public static void fillMapping(final byte[] mapping, final NearestFinder finder, final int start, final int end) {
+        if (finder instanceof PaletteKernel) {
+            ((PaletteKernel) finder).fill(mapping, start, end);
+            return;
+        }
+        int c2, best;
+        for (int r = start; r < end; r++) {
+            final int rr = (r << 3 | r >>> 2);
+            for (int g = 0; g < 32; g++) {
+                final int gg = (g << 3 | g >>> 2);
+                for (int b = 0; b < 32; b++) {
+                    c2 = r << 10 | g << 5 | b;
+                    if (mapping[c2] == 0 && (best = finder.nearest(rr, gg, b << 3 | b >>> 2)) != 0)
+                        mapping[c2] = (byte) best;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes a NearestFinder that checks every RGBA8888 color in {@code palette} from index 1 up to (but not including)
+     * {@code count}, using {@link ColorMetric#difference(int, int, int, int)}, and picks the first closest one. A
+     * color is only picked if its difference is less than {@code initial}; if none are, this picks index 0.
+     * @param metric  used to compare palette colors with each cell
+     * @param palette RGBA8888 colors; only indices from 1 to count - 1 are checked
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(NearestFinder)}
+     */
+    public static NearestFinder colorFinder(final ColorMetric metric, final int[] palette, final int count, final double initial) {
+        return new NearestFinder() {
+            @Override
+            public int nearest(int rr, int gg, int bb) {
+                double dist = initial;
+                int best = 0;
+                for (int i = 1; i < count; i++) {
+                    if (dist > (dist = Math.min(dist, metric.difference(palette[i], rr, gg, bb))))
+                        best = i;
+                }
+                return best;
+            }
+        };
+    }
+
+    /**
+     * Makes a NearestFinder that checks every color given by the parallel arrays {@code c1}, {@code c2}, and
+     * {@code c3}, from index 1 up to (but not including) {@code count}, using
+     * {@link ColorMetric#difference(int, int, int, int, int, int)}, and picks the first closest one. A color is only
+     * picked if its difference is less than {@code initial}; if none are, this picks index 0.
+     * @param metric used to compare palette colors with each cell
+     * @param c1     first channel of each palette color, usually red
+     * @param c2     second channel of each palette color, usually green
+     * @param c3     third channel of each palette color, usually blue
+     * @param count  how many items of the channel arrays to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(NearestFinder)}
+     */
+    public static NearestFinder channelFinder(final ColorMetric metric, final int[] c1, final int[] c2, final int[] c3,
+                                              final int count, final double initial) {
+        return new NearestFinder() {
+            @Override
+            public int nearest(int rr, int gg, int bb) {
+                double dist = initial;
+                int best = 0;
+                for (int i = 1; i < count; i++) {
+                    if (dist > (dist = Math.min(dist, metric.difference(c1[i], c2[i], c3[i], rr, gg, bb))))
+                        best = i;
+                }
+                return best;
+            }
+        };
+    }
+
+    /**
+     * Makes a NearestFinder that picks the same indices as {@link #colorFinder(ColorMetric, int[], int, double)}, but
+     * is faster for the built-in metrics. Palettes with at most {@link PaletteKernel#LIMIT} colors use a
+     * {@link PaletteKernel} if it {@link PaletteKernel#supports(ColorMetric) supports} {@code metric}, which checks
+     * every palette color with a flat loop; otherwise, a {@link PaletteIndex} is used to avoid checking every palette
+     * color when {@code metric} is one of the built-in metrics that {@link PaletteIndex#spaceFor(ColorMetric)} knows
+     * about. Other metrics, and very small palettes, just use colorFinder. A {@link CachedMetric} is
+     * replaced by the metric it wraps, since its cache doesn't help here.
+     * @param metric  used to compare palette colors with each cell
+     * @param palette RGBA8888 colors; only indices from 1 to count - 1 are checked
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(NearestFinder)}
+     */
+    public static NearestFinder nearestFinder(final ColorMetric metric, final int[] palette, final int count, final double initial) {
+        if (metric instanceof CachedMetric)
+            return nearestFinder(((CachedMetric) metric).getMetric(), palette, count, initial);
+        if (count <= PaletteKernel.LIMIT && PaletteKernel.supports(metric))
+            return PaletteKernel.forColors(metric, palette, count, initial);
+        final PaletteIndex.Space space = PaletteIndex.spaceFor(metric);
+        if (space == null || count <= 16)
+            return colorFinder(metric, palette, count, initial);
+        return PaletteIndex.forColors(space, metric, palette, count, initial);
+    }
+
+    /**
+     * Makes a NearestFinder that picks the same indices as
+     * {@link #channelFinder(ColorMetric, int[], int[], int[], int, double)}, but is faster for the built-in metrics.
+     * Palettes with at most {@link PaletteKernel#LIMIT} colors use a {@link PaletteKernel} if it supports
+     * {@code metric}; otherwise, a {@link PaletteIndex} is used to avoid checking every palette color when
+     * {@code metric} is one of the built-in metrics that {@link PaletteIndex#spaceFor(ColorMetric)} knows about. Other
+     * metrics, and very small palettes, just use channelFinder. A {@link CachedMetric} is
+     * replaced by the metric it wraps.
+     * @param metric used to compare palette colors with each cell
+     * @param c1     first channel of each palette color, usually red
+     * @param c2     second channel of each palette color, usually green
+     * @param c3     third channel of each palette color, usually blue
+     * @param count  how many items of the channel arrays to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(NearestFinder)}
+     */
+    public static NearestFinder nearestFinder(final ColorMetric metric, final int[] c1, final int[] c2, final int[] c3,
+                                              final int count, final double initial) {
+        if (metric instanceof CachedMetric)
+            return nearestFinder(((CachedMetric) metric).getMetric(), c1, c2, c3, count, initial);
+        if (count <= PaletteKernel.LIMIT && PaletteKernel.supports(metric))
+            return PaletteKernel.forChannels(metric, c1, c2, c3, count, initial);
+        final PaletteIndex.Space space = PaletteIndex.spaceFor(metric);
+        if (space == null || count <= 16)
+            return channelFinder(metric, c1, c2, c3, count, initial);
+        return PaletteIndex.forChannels(space, metric, c1, c2, c3, count, initial);
+    }
+
     /**
      * Builds the palette information this PNG8 stores from the RGBA8888 ints in {@code rgbaPalette}, up to 256 colors.
      * Alpha is not preserved except for the first item in rgbaPalette, and only if it is {@code 0} (fully transparent
@@ -1359,13 +1562,15 @@ public class PaletteReducer {
             exact(Coloring.AURORA, ENCODED_AURORA);
             return;
         }
+        final TableBundle bundle = TableBundle.installed();
+        if (bundle != null && bundle.exact(this, rgbaPalette, limit, metric))
+            return;
         Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
+        clearMapping();
         final int plen = Math.min(Math.min(256, limit), rgbaPalette.length);
         colorCount = plen;
         populationBias = Math.exp(-1.375/colorCount);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = rgbaPalette[i];
             if ((color & 0x80) != 0) {
@@ -1373,68 +1578,35 @@ public class PaletteReducer {
                 paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
             }
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 0x7FFFFFFF;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, metric.difference(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(nearestFinder(metric, paletteArray, plen, 0x7FFFFFFF));
     }
 
     public void exactLAB(int[] rgbaPalette, int limit) {
+        final float[][] oklab = ColorTables.oklab();
         if (rgbaPalette == null || rgbaPalette.length < 2 || limit < 2) {
             exact(Coloring.AURORA, ENCODED_AURORA);
             return;
         }
         Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
+        clearMapping();
         final int plen = Math.min(Math.min(256, limit), rgbaPalette.length);
         colorCount = plen;
         populationBias = Math.exp(-1.375/colorCount);
-        int color, c2;
-        double dist;
+        int color;
         int[] Ls = new int[plen], As = new int[plen], Bs = new int[plen];
         for (int i = 0; i < plen; i++) {
             color = rgbaPalette[i];
             if ((color & 0x80) != 0) {
                 paletteArray[i] = color;
                 color = shrink(color);
-                Ls[i] = Math.min(Math.max((int) (OKLAB[0][color] * 255.999), 0), 255);
-                As[i] = Math.min(Math.max((int) ((OKLAB[1][color] + 0.5) * 255.999), 0), 255);
-                Bs[i] = Math.min(Math.max((int) ((OKLAB[2][color] + 0.5) * 255.999), 0), 255);
+                Ls[i] = Math.min(Math.max((int) (oklab[0][color] * 255.999), 0), 255);
+                As[i] = Math.min(Math.max((int) ((oklab[1][color] + 0.5) * 255.999), 0), 255);
+                Bs[i] = Math.min(Math.max((int) ((oklab[2][color] + 0.5) * 255.999), 0), 255);
                 color = (Ls[i] << 7 & 0x7C00) | (As[i] << 2 & 0x3E0) | (Bs[i] >>> 3);
                 paletteMapping[color] = (byte) i;
             }
         }
-        for (int L = 0; L < 32; L++) {
-            int LL = (L << 3 | L >>> 2);
-            for (int A = 0; A < 32; A++) {
-                int AA = (A << 3 | A >>> 2);
-                for (int B = 0; B < 32; B++) {
-                    c2 = L << 10 | A << 5 | B;
-                    if (paletteMapping[c2] == 0) {
-                        int BB = (B << 3 | B >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, oklabLABMetric.difference(Ls[i], As[i], Bs[i], LL, AA, BB))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(nearestFinder(oklabLABMetric, Ls, As, Bs, plen, Double.MAX_VALUE));
     }
 
     /**
@@ -1455,10 +1627,43 @@ public class PaletteReducer {
                 paletteArray[i] = color;
         }
         paletteMapping = preload;
+        sharedMapping = true;
         colorCount = palette.length;
         populationBias = Math.exp(-1.375/colorCount);
     }
 
+    /**
+     * Makes this PaletteReducer use the palette and mapping from {@code palette}. The 32KB mapping is shared, not
+     * copied, so this is cheap enough to do for each thread that needs to dither with the same palette; only the
+     * 256-color palette array is copied. If this PaletteReducer later builds a new palette with {@link #exact(int[])},
+     * {@link #analyze(Pixmap)}, or a similar method, it allocates its own mapping rather than changing the shared one.
+     * Because {@link #paletteMapping} is then the shared array, it must not be modified directly.
+     *
+     * @param palette a SharedPalette, which may be used by other PaletteReducers at the same time
+     */
+    public void exact(SharedPalette palette)
+    {
+        System.arraycopy(palette.paletteArray, 0, paletteArray, 0, 256);
+        paletteMapping = palette.paletteMapping;
+        sharedMapping = true;
+        colorCount = palette.colorCount;
+        populationBias = palette.populationBias;
+    }
+
+    /**
+     * Gets {@link #paletteMapping} ready to be rebuilt, filling it with 0. If the mapping is shared with a preload
+     * array or a {@link SharedPalette}, this allocates a new array for this PaletteReducer instead, so the shared one
+     * is never changed.
+     */
+    protected void clearMapping() {
+        if (sharedMapping || paletteMapping == null) {
+            paletteMapping = new byte[0x8000];
+            sharedMapping = false;
+        } else {
+            Arrays.fill(paletteMapping, (byte) 0);
+        }
+    }
+
     /**
      * Builds the palette information this PaletteReducer stores from the Color objects in {@code colorPalette}, up to
      * 256 colors.
@@ -1521,76 +1726,42 @@ public class PaletteReducer {
             return;
         }
         Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
+        clearMapping();
         final int plen = Math.min(Math.min(256, colorPalette.length), limit);
         colorCount = plen;
         populationBias = Math.exp(-1.125/colorCount);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = Color.rgba8888(colorPalette[i]);
             paletteArray[i] = color;
             paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 0x7FFFFFFF;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, metric.difference(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(nearestFinder(metric, paletteArray, plen, 0x7FFFFFFF));
     }
     public void exactLAB(Color[] colorPalette, int limit) {
+        final float[][] oklab = ColorTables.oklab();
         if (colorPalette == null || colorPalette.length < 2 || limit < 2) {
             exact(Coloring.AURORA, ENCODED_AURORA);
             return;
         }
         Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
+        clearMapping();
         final int plen = Math.min(Math.min(256, colorPalette.length), limit);
         colorCount = plen;
         populationBias = Math.exp(-1.125/colorCount);
-        int color, c2;
-        double dist;
+        int color;
         int[] Ls = new int[plen], As = new int[plen], Bs = new int[plen];
         for (int i = 0; i < plen; i++) {
             color = Color.rgba8888(colorPalette[i]);
             paletteArray[i] = color;
             color = shrink(color);
-            Ls[i] = Math.min(Math.max((int)(OKLAB[0][color] * 255.999), 0), 255);
-            As[i] = Math.min(Math.max((int)((OKLAB[1][color] + 0.5) * 255.999), 0), 255);
-            Bs[i] = Math.min(Math.max((int)((OKLAB[2][color] + 0.5) * 255.999), 0), 255);
+            Ls[i] = Math.min(Math.max((int)(oklab[0][color] * 255.999), 0), 255);
+            As[i] = Math.min(Math.max((int)((oklab[1][color] + 0.5) * 255.999), 0), 255);
+            Bs[i] = Math.min(Math.max((int)((oklab[2][color] + 0.5) * 255.999), 0), 255);
             color = (Ls[i] << 7 & 0x7C00) | (As[i] << 2 & 0x3E0) | (Bs[i] >>> 3);
             paletteMapping[color] = (byte) i;
         }
-        for (int L = 0; L < 32; L++) {
-            int LL = (L << 3 | L >>> 2);
-            for (int A = 0; A < 32; A++) {
-                int AA = (A << 3 | A >>> 2);
-                for (int B = 0; B < 32; B++) {
-                    c2 = L << 10 | A << 5 | B;
-                    if (paletteMapping[c2] == 0) {
-                        int BB = (B << 3 | B >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, oklabLABMetric.difference(Ls[i], As[i], Bs[i], LL, AA, BB))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(nearestFinder(oklabLABMetric, Ls, As, Bs, plen, Double.MAX_VALUE));
     }
     /**
      * Analyzes {@code pixmap} for color count and frequency, building a palette with at most 256 colors if there are
@@ -1657,24 +1828,67 @@ public class PaletteReducer {
      * @param threshold a minimum color difference as produced by {@link ColorMetric#difference(int, int)}; usually between 250 and 1000, 400 is a good default
      */
     public void analyze(Pixmap pixmap, int threshold, int limit, ColorMetric metric) {
-        Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
-        int color;
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
-        int hasTransparent = 0;
-        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y);
-                if ((color & 0x80) != 0) {
-//                    color |= (color >>> 5 & 0x07070700) | 0xFE;
-                    counts.getAndIncrement(color, 0, 1);
-                } else {
-                    hasTransparent = 1;
+        final boolean hasTransparent = tallyColors(pixmap, counts);
+        analyze(counts, hasTransparent ? 1 : 0, threshold, limit, metric);
+    }
+
+    /**
+     * Counts every color in pixmap with at least 50% alpha into counts, using {@link #getParallelism()} threads; the
+     * counts and their iteration order are the same for any parallelism.
+     * @return true if any pixel had less than 50% alpha
+     */
+    private boolean tallyColors(final Pixmap pixmap, IntIntMap counts) {
+        final int width = pixmap.getWidth();
+        final ParallelKit.ColorTally tally = new ParallelKit.ColorTally(counts);
+        ParallelKit.tally(parallelism, 0, pixmap.getHeight(), 16, tally, new ParallelKit.TallyTask() {
+            @Override
+            public void run(int start, int end, ParallelKit.ColorTally tally) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0; x < width; x++) {
+                        color = pixmap.getPixel(x, y);
+                        if ((color & 0x80) != 0) {
+//                            color |= (color >>> 5 & 0x07070700) | 0xFE;
+                            tally.add(color);
+                        } else {
+                            tally.transparent = true;
+                        }
+                    }
                 }
             }
-        }
+        });
+        return tally.transparent;
+    }
+
+    /**
+     * Analyzes every image counted by {@code histogram}, the same way {@link #analyze(Pixmap, int, int, ColorMetric)}
+     * analyzes one image. If the histogram saw {@link ColorHistogram#EXACT_LIMIT} or fewer distinct colors, this uses
+     * their exact counts, so a set of images that shares a small palette gets that palette back; otherwise, it uses
+     * the histogram's bins, so the palette's colors have the histogram's precision (15 or 18 bits) before they are
+     * chosen. This never needs more than one image in memory at a time, since images are counted as they are added to
+     * the histogram.
+     *
+     * @param histogram a ColorHistogram that has already counted every image the palette should fit
+     * @param threshold a minimum color difference as produced by {@link ColorMetric#difference(int, int)}; usually between 250 and 1000, 400 is a good default
+     * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
+     * @param metric    the ColorMetric used to keep similar colors out of the palette and to build the mapping
+     */
+    public void analyze(ColorHistogram histogram, int threshold, int limit, ColorMetric metric) {
+        IntIntMap counts = histogram.getExactColors();
+        if (counts == null)
+            counts = histogram.getColorCounts(histogram.getBits());
+        analyze(counts, histogram.hasTransparent() ? 1 : 0, threshold, limit, metric);
+    }
+
+    /**
+     * Builds the palette from a map of colors to their counts; used by both kinds of analyze().
+     */
+    private void analyze(IntIntMap counts, int hasTransparent, int threshold, int limit, ColorMetric metric) {
+        Arrays.fill(paletteArray, 0);
+        clearMapping();
+        int color;
+        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
         final int cs = counts.size;
         ArrayList<IntIntMap.Entry> es = new ArrayList<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -1720,46 +1934,17 @@ public class PaletteReducer {
             colorCount = i;
             populationBias = Math.exp(-1.375/colorCount);
         }
-        int c2;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            int rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                int gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        int bb = (b << 3 | b >>> 2);
-                        dist = Double.POSITIVE_INFINITY;
-                        for (int i = 1; i < limit; i++) {
-                            if (dist > (dist = Math.min(dist, metric.difference(reds[i], greens[i], blues[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(nearestFinder(metric, reds, greens, blues, limit, Double.POSITIVE_INFINITY));
     }
 
     public void analyzeLAB(Pixmap pixmap, int threshold, int limit) {
+        final float[][] oklab = ColorTables.oklab();
         Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
+        clearMapping();
         int color;
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
-        int hasTransparent = 0;
+        final int hasTransparent = tallyColors(pixmap, counts) ? 1 : 0;
         int[] Ls = new int[limit], As = new int[limit], Bs = new int[limit];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y);
-                if ((color & 0x80) != 0) {
-//                    color |= (color >>> 5 & 0x07070700) | 0xFE;
-                    counts.getAndIncrement(color, 0, 1);
-                } else {
-                    hasTransparent = 1;
-                }
-            }
-        }
         final int cs = counts.size;
         ArrayList<IntIntMap.Entry> es = new ArrayList<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -1776,9 +1961,9 @@ public class PaletteReducer {
                 color = e.key;
                 paletteArray[i] = color;
                 color = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
-                Ls[i] = Math.min(Math.max((int)(OKLAB[0][color] * 255.999), 0), 255);
-                As[i] = Math.min(Math.max((int)((OKLAB[1][color] + 0.5) * 255.999), 0), 255);
-                Bs[i] = Math.min(Math.max((int)((OKLAB[2][color] + 0.5) * 255.999), 0), 255);
+                Ls[i] = Math.min(Math.max((int)(oklab[0][color] * 255.999), 0), 255);
+                As[i] = Math.min(Math.max((int)((oklab[1][color] + 0.5) * 255.999), 0), 255);
+                Bs[i] = Math.min(Math.max((int)((oklab[2][color] + 0.5) * 255.999), 0), 255);
                 color = (Ls[i] << 7 & 0x7C00) | (As[i] << 2 & 0x3E0) | (Bs[i] >>> 3);
                 paletteMapping[color] = (byte) i;
                 i++;
@@ -1797,9 +1982,9 @@ public class PaletteReducer {
                 }
                 paletteArray[i] = color;
                 color = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
-                Ls[i] = Math.min(Math.max((int)(OKLAB[0][color] * 255.999), 0), 255);
-                As[i] = Math.min(Math.max((int)((OKLAB[1][color] + 0.5) * 255.999), 0), 255);
-                Bs[i] = Math.min(Math.max((int)((OKLAB[2][color] + 0.5) * 255.999), 0), 255);
+                Ls[i] = Math.min(Math.max((int)(oklab[0][color] * 255.999), 0), 255);
+                As[i] = Math.min(Math.max((int)((oklab[1][color] + 0.5) * 255.999), 0), 255);
+                Bs[i] = Math.min(Math.max((int)((oklab[2][color] + 0.5) * 255.999), 0), 255);
                 color = (Ls[i] << 7 & 0x7C00) | (As[i] << 2 & 0x3E0) | (Bs[i] >>> 3);
                 paletteMapping[color] = (byte) i;
 
@@ -1808,25 +1993,7 @@ public class PaletteReducer {
             colorCount = i;
             populationBias = Math.exp(-1.375/colorCount);
         }
-        int c2;
-        double dist;
-        for (int L = 0; L < 32; L++) {
-            int LL = (L << 3 | L >>> 2);
-            for (int A = 0; A < 32; A++) {
-                int AA = (A << 3 | A >>> 2);
-                for (int B = 0; B < 32; B++) {
-                    c2 = L << 10 | A << 5 | B;
-                    if (paletteMapping[c2] == 0) {
-                        int BB = (B << 3 | B >>> 2);
-                        dist = Double.POSITIVE_INFINITY;
-                        for (int i = 1; i < limit; i++) {
-                            if (dist > (dist = Math.min(dist, oklabLABMetric.difference(Ls[i], As[i], Bs[i], LL, AA, BB))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(nearestFinder(oklabLABMetric, Ls, As, Bs, limit, Double.POSITIVE_INFINITY));
     }
 
     /**
@@ -1856,6 +2023,179 @@ public class PaletteReducer {
         return reduceFloydSteinberg(pixmap);
     }
 
+    /**
+     * Uses the given {@link Dithered.DitherAlgorithm} to decide how to dither {@code pixmap}.
+     * PaletteReducer doesn't have every dither A8PaletteReducer has, so some algorithms use the closest one here:
+     * GRADIENT_NOISE uses {@link #reduceIGN(Pixmap)}, BLUE_NOISE uses {@link #reduceTrueBlue3(Pixmap)}, ROBERTS uses
+     * {@link #reduceWithRoberts(Pixmap)}, WOVEN uses {@link #reduceWeave(Pixmap)}, and OVERBOARD uses
+     * {@link #reduceOverboard2(Pixmap)}; the rest use the method with the matching name.
+     * @param pixmap a pixmap that will be modified in-place
+     * @param ditherAlgorithm a dithering algorithm enum value; if not recognized, defaults to {@link Dithered.DitherAlgorithm#DIFFUSION}
+     * @return {@code pixmap} after modifications
+     */
+    public Pixmap reduce(Pixmap pixmap, Dithered.DitherAlgorithm ditherAlgorithm){
+        if(pixmap == null) return null;
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduce(PixelSurface.of(pixmap), ditherAlgorithm);
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduce(Pixmap, Dithered.DitherAlgorithm)}, but reads and writes pixels through a
+     * {@link PixelSurface}, which can wrap an int array or a buffer as well as a Pixmap. Every
+     * {@link Dithered.DitherAlgorithm} gives the same colors here as it does for an RGBA8888 Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#DIFFUSION}
+     */
+    public void reduce(PixelSurface surface, Dithered.DitherAlgorithm ditherAlgorithm){
+        if(ditherAlgorithm == null) {
+            reduceFloydSteinberg(surface);
+            return;
+        }
+        switch (ditherAlgorithm) {
+            case NONE:
+                reduceSolid(surface);
+                break;
+            case GRADIENT_NOISE:
+                reduceIGN(surface);
+                break;
+            case PATTERN:
+                reduceKnoll(surface);
+                break;
+            case CHAOTIC_NOISE:
+                reduceChaoticNoise(surface);
+                break;
+            case BLUE_NOISE:
+                reduceTrueBlue3(surface);
+                break;
+            case SCATTER:
+                reduceScatter(surface);
+                break;
+            case ROBERTS:
+                reduceWithRoberts(surface);
+                break;
+            case WOVEN:
+                reduceWeave(surface);
+                break;
+            case DODGY:
+                reduceDodgy(surface);
+                break;
+            case LOAF:
+                reduceLoaf(surface);
+                break;
+            case NEUE:
+                reduceNeue(surface);
+                break;
+            case BURKES:
+                reduceBurkes(surface);
+                break;
+            case WREN:
+                reduceWren(surface);
+                break;
+            case OCEANIC:
+                reduceOceanic(surface);
+                break;
+            case SEASIDE:
+                reduceSeaside(surface);
+                break;
+            case GOURD:
+                reduceGourd(surface);
+                break;
+            case SIERRA_LITE:
+                reduceSierraLite(surface);
+                break;
+            case BAYER:
+                reduceBayer(surface);
+                break;
+            case OVERBOARD:
+                reduceOverboard2(surface);
+                break;
+            case DIFFUSION:
+            default:
+                reduceFloydSteinberg(surface);
+        }
+    }
+
+    /**
+     * Like {@link #reduce(Pixmap)}, but works on an array of RGBA8888 ints instead of a Pixmap, which avoids the
+     * per-pixel cost of {@link Pixmap#getPixel(int, int)} and {@link Pixmap#drawPixel(int, int, int)} and doesn't need
+     * a Pixmap (or libGDX's native code) at all. This uses Floyd-Steinberg dithering, the same as reduce(Pixmap).
+     * Pixel {@code (x, y)} is read from {@code pixels[offset + y * stride + x]}. If {@code indices} is null, the
+     * reduced color is written back to that position in pixels; otherwise, pixels is left unchanged and the palette
+     * index is written to {@code indices[y * width + x]}, which is the layout PNG8 uses for its image data.
+     * <br>
+     * For an RGBA8888 Pixmap, this gives the same colors that reduce(Pixmap) would.
+     * @param pixels  RGBA8888 colors; will be modified in place if indices is null
+     * @param offset  the index in pixels of the top-left pixel
+     * @param width   how many pixels are in each row
+     * @param height  how many rows there are
+     * @param stride  how many ints apart the starts of each row are in pixels; often equal to width
+     * @param indices if non-null, receives palette indices and must have at least {@code width * height} items
+     */
+    public void reduce (int[] pixels, int offset, int width, int height, int stride, byte[] indices) {
+        reduce(pixels, offset, width, height, stride, indices, null);
+    }
+
+    /**
+     * Like {@link #reduce(Pixmap, Dithered.DitherAlgorithm)}, but works on an array of RGBA8888 ints; see
+     * {@link #reduce(int[], int, int, int, int, byte[])} for how the other arguments are used. Every
+     * {@link Dithered.DitherAlgorithm} is supported, and gives the same colors it would for an RGBA8888 Pixmap.
+     * @param pixels          RGBA8888 colors; will be modified in place if indices is null
+     * @param offset          the index in pixels of the top-left pixel
+     * @param width           how many pixels are in each row
+     * @param height          how many rows there are
+     * @param stride          how many ints apart the starts of each row are in pixels; often equal to width
+     * @param indices         if non-null, receives palette indices and must have at least {@code width * height} items
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#DIFFUSION}
+     */
+    public void reduce (int[] pixels, int offset, int width, int height, int stride, byte[] indices,
+                        Dithered.DitherAlgorithm ditherAlgorithm) {
+        reduce(bulkSurface(PixelSurface.of(pixels, offset, width, height, stride), indices), ditherAlgorithm);
+    }
+
+    /**
+     * Like {@link #reduce(int[], int, int, int, int, byte[], Dithered.DitherAlgorithm)}, but reads pixels from an
+     * IntBuffer of RGBA8888 colors, starting at its current position. If the buffer is backed by an array, that array
+     * is used directly; otherwise, the buffer is read and written in place with its absolute get and put methods, so
+     * nothing the size of the image is allocated. The buffer's position is not changed.
+     * @param pixels          RGBA8888 colors, starting at the buffer's position; will be modified if indices is null
+     * @param width           how many pixels are in each row
+     * @param height          how many rows there are
+     * @param stride          how many ints apart the starts of each row are in pixels; often equal to width
+     * @param indices         if non-null, receives palette indices and must have at least {@code width * height} items
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#DIFFUSION}
+     */
+    public void reduce (IntBuffer pixels, int width, int height, int stride, byte[] indices,
+                        Dithered.DitherAlgorithm ditherAlgorithm) {
+        reduce(bulkSurface(PixelSurface.of(pixels, width, height, stride), indices), ditherAlgorithm);
+    }
+
+    /**
+     * Like {@link #reduce(IntBuffer, int, int, int, byte[], Dithered.DitherAlgorithm)}, but reads RGBA8888 pixels as 4
+     * bytes each (red, green, blue, alpha, in that order) from a ByteBuffer, such as the one returned by
+     * {@link Pixmap#getPixels()} for an RGBA8888 Pixmap. The buffer's position and byte order are not changed.
+     * @param pixels          RGBA8888 pixels as bytes, starting at the buffer's position; will be modified if indices is null
+     * @param width           how many pixels are in each row
+     * @param height          how many rows there are
+     * @param stride          how many pixels (not bytes) apart the starts of each row are; often equal to width
+     * @param indices         if non-null, receives palette indices and must have at least {@code width * height} items
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#DIFFUSION}
+     */
+    public void reduce (ByteBuffer pixels, int width, int height, int stride, byte[] indices,
+                        Dithered.DitherAlgorithm ditherAlgorithm) {
+        reduce(bulkSurface(PixelSurface.of(pixels, width, height, stride), indices), ditherAlgorithm);
+    }
+
+    /**
+     * Returns {@code pixels} if indices is null, or otherwise wraps it so that dithering writes palette indices into
+     * {@code indices} and leaves pixels unchanged.
+     */
+    private PixelSurface bulkSurface (PixelSurface pixels, byte[] indices) {
+        return indices == null ? pixels : PixelSurface.indexed(pixels, indices, paletteArray, paletteMapping);
+    }
+
     /**
      * Modifies the given Pixmap so it only uses colors present in this PaletteReducer, without dithering. This produces
      * blocky solid sections of color in most images where the palette isn't exact, instead of checkerboard-like
@@ -1867,21 +2207,32 @@ public class PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceSolid (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceSolid(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceSolid(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceSolid (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color;
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int rr = ((color >>> 24)       );
                     int gg = ((color >>> 16) & 0xFF);
                     int bb = ((color >>> 8)  & 0xFF);
-                    pixmap.drawPixel(px, y, paletteArray[
+                    surface.drawPixel(px, y, paletteArray[
                             paletteMapping[((rr << 7) & 0x7C00)
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))] & 0xFF]);
@@ -1889,8 +2240,6 @@ public class PaletteReducer {
             }
 
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
     public static double BURKES_MULTIPLIER = 0.1;
 
@@ -2018,6 +2367,7 @@ public class PaletteReducer {
     }
 
     public Pixmap reduceBurkes0LAB (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         float r4, r2, r1, g4, g2, g1, b4, b2, b1;
@@ -2067,9 +2417,9 @@ public class PaletteReducer {
                     eg = curErrorGreen[px];
                     eb = curErrorBlue[px];
                     int shrunk = shrink(color);
-                    int L = Math.min(Math.max((int)(OKLAB[0][shrunk] * 256), 0), 255);
-                    int A = Math.min(Math.max((int)(OKLAB[1][shrunk] * 256 + 128), 0), 255);
-                    int B = Math.min(Math.max((int)(OKLAB[2][shrunk] * 256 + 128), 0), 255);
+                    int L = Math.min(Math.max((int)(oklab[0][shrunk] * 256), 0), 255);
+                    int A = Math.min(Math.max((int)(oklab[1][shrunk] * 256 + 128), 0), 255);
+                    int B = Math.min(Math.max((int)(oklab[2][shrunk] * 256 + 128), 0), 255);
                     int rr = Math.min(Math.max((int)(L + er + 0.5f), 0), 0xFF);
                     int gg = Math.min(Math.max((int)(A + eg + 0.5f), 0), 0xFF);
                     int bb = Math.min(Math.max((int)(B + eb + 0.5f), 0), 0xFF);
@@ -2081,9 +2431,9 @@ public class PaletteReducer {
                     used = paletteArray[paletteIndex & 0xFF];
                     pixmap.drawPixel(px, y, used);
                     shrunk = shrink(used);
-                    int Lu = Math.min(Math.max((int)(OKLAB[0][shrunk] * 256), 0), 255);
-                    int Au = Math.min(Math.max((int)(OKLAB[1][shrunk] * 256 + 128), 0), 255);
-                    int Bu = Math.min(Math.max((int)(OKLAB[2][shrunk] * 256 + 128), 0), 255);
+                    int Lu = Math.min(Math.max((int)(oklab[0][shrunk] * 256), 0), 255);
+                    int Au = Math.min(Math.max((int)(oklab[1][shrunk] * 256 + 128), 0), 255);
+                    int Bu = Math.min(Math.max((int)(oklab[2][shrunk] * 256 + 128), 0), 255);
                     rdiff = L - Lu;
                     gdiff = A - Au;
                     bdiff = B - Bu;
@@ -2163,119 +2513,103 @@ public class PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceBurkes (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceBurkes(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceBurkes(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceBurkes (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
 //        float strength = (float) (BURKES_MULTIPLIER * ditherStrength * (populationBias * populationBias));
         float strength = 0.14f * (float) Math.tanh(ditherStrength / (populationBias * populationBias));
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    float er = curErrorRed[px];
-                    float eg = curErrorGreen[px];
-                    float eb = curErrorBlue[px];
-                    int rr = Math.min(Math.max((int)(((color >>> 24)       ) + er + 0.5f), 0), 0xFF);
-                    int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0), 0xFF);
-                    int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0), 0xFF);
-                    byte paletteIndex = paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))];
-                    int used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    int rdiff = (color >>> 24) - (used >>> 24);
-                    int gdiff = (color >>> 16 & 255) - (used >>> 16 & 255);
-                    int bdiff = (color >>> 8 & 255) - (used >>> 8 & 255);
-                    r1 = rdiff * strength;
-                    g1 = gdiff * strength;
-                    b1 = bdiff * strength;
-                    r2 = r1 + r1;
-                    g2 = g1 + g1;
-                    b2 = b1 + b1;
-                    r4 = r2 + r2;
-                    g4 = g2 + g2;
-                    b4 = b2 + b2;
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += r4;
-                        curErrorGreen[px+1] += g4;
-                        curErrorBlue[px+1]  += b4;
-                        if(px < lineLen - 2)
-                        {
-                            curErrorRed[px+2]   += r2;
-                            curErrorGreen[px+2] += g2;
-                            curErrorBlue[px+2]  += b2;
-                        }
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+        diffuse(lineLen, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    int color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        float er = curErrorRed[px];
+                        float eg = curErrorGreen[px];
+                        float eb = curErrorBlue[px];
+                        int rr = Math.min(Math.max((int)(((color >>> 24)       ) + er + 0.5f), 0), 0xFF);
+                        int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0), 0xFF);
+                        int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0), 0xFF);
+                        byte paletteIndex = paletteMapping[((rr << 7) & 0x7C00)
+                                | ((gg << 2) & 0x3E0)
+                                | ((bb >>> 3))];
+                        int used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        int rdiff = (color >>> 24) - (used >>> 24);
+                        int gdiff = (color >>> 16 & 255) - (used >>> 16 & 255);
+                        int bdiff = (color >>> 8 & 255) - (used >>> 8 & 255);
+                        r1 = rdiff * strength;
+                        g1 = gdiff * strength;
+                        b1 = bdiff * strength;
+                        r2 = r1 + r1;
+                        g2 = g1 + g1;
+                        b2 = b1 + b1;
+                        r4 = r2 + r2;
+                        g4 = g2 + g2;
+                        b4 = b2 + b2;
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += r2;
-                            nextErrorGreen[px-1] += g2;
-                            nextErrorBlue[px-1]  += b2;
-                            if(px > 1)
+                            curErrorRed[px+1]   += r4;
+                            curErrorGreen[px+1] += g4;
+                            curErrorBlue[px+1]  += b4;
+                            if(px < lineLen - 2)
                             {
-                                nextErrorRed[px-2]   += r1;
-                                nextErrorGreen[px-2] += g1;
-                                nextErrorBlue[px-2]  += b1;
+                                curErrorRed[px+2]   += r2;
+                                curErrorGreen[px+2] += g2;
+                                curErrorBlue[px+2]  += b2;
                             }
                         }
-                        nextErrorRed[px]   += r4;
-                        nextErrorGreen[px] += g4;
-                        nextErrorBlue[px]  += b4;
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[px+1]   += r2;
-                            nextErrorGreen[px+1] += g2;
-                            nextErrorBlue[px+1]  += b2;
-                            if(px < lineLen - 2)
+                            if(px > 0)
                             {
-                                nextErrorRed[px+2]   += r1;
-                                nextErrorGreen[px+2] += g1;
-                                nextErrorBlue[px+2]  += b1;
+                                nextErrorRed[px-1]   += r2;
+                                nextErrorGreen[px-1] += g2;
+                                nextErrorBlue[px-1]  += b2;
+                                if(px > 1)
+                                {
+                                    nextErrorRed[px-2]   += r1;
+                                    nextErrorGreen[px-2] += g1;
+                                    nextErrorBlue[px-2]  += b1;
+                                }
+                            }
+                            nextErrorRed[px]   += r4;
+                            nextErrorGreen[px] += g4;
+                            nextErrorBlue[px]  += b4;
+                            if(px < lineLen - 1)
+                            {
+                                nextErrorRed[px+1]   += r2;
+                                nextErrorGreen[px+1] += g2;
+                                nextErrorBlue[px+1]  += b2;
+                                if(px < lineLen - 2)
+                                {
+                                    nextErrorRed[px+2]   += r1;
+                                    nextErrorGreen[px+2] += g1;
+                                    nextErrorBlue[px+2]  += b1;
+                                }
                             }
                         }
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceBurkes2 (Pixmap pixmap) {
@@ -2514,136 +2848,121 @@ public class PaletteReducer {
     }
 
     public Pixmap reduceOceanic (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceOceanic(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceOceanic(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceOceanic (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float[] noise = TRI_BLUE_NOISE_MULTIPLIERS_A;
-        float r4, r2, r1, g4, g2, g1, b4, b2, b1;
         final float s = (float) (0.175 * ditherStrength * (populationBias * populationBias * populationBias)),
                 strength = s * 0.29f / (0.19f + s);
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
-        int color, used, rdiff, gdiff, bdiff;
-        float er, eg, eb;
-        byte paletteIndex;
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    er = curErrorRed[px];
-                    eg = curErrorGreen[px];
-                    eb = curErrorBlue[px];
-                    int rr = Math.min(Math.max((int)(((color >>> 24)       ) + er + 0.5f), 0), 0xFF);
-                    int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0), 0xFF);
-                    int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0), 0xFF);
-
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    rdiff = (color>>>24)-    (used>>>24);
-                    gdiff = (color>>>16&255)-(used>>>16&255);
-                    bdiff = (color>>>8&255)- (used>>>8&255);
-                    r1 = rdiff * strength;
-                    g1 = gdiff * strength;
-                    b1 = bdiff * strength;
-                    r2 = r1 + r1;
-                    g2 = g1 + g1;
-                    b2 = b1 + b1;
-                    r4 = r2 + r2;
-                    g4 = g2 + g2;
-                    b4 = b2 + b2;
-                    float modifier;
-                    if(px < lineLen - 1)
-                    {
-                        modifier = noise[(px + 1 & 127) | (py & 127) << 7];
-                        curErrorRed[px+1]   += r4 * modifier;
-                        curErrorGreen[px+1] += g4 * modifier;
-                        curErrorBlue[px+1]  += b4 * modifier;
-                        if(px < lineLen - 2)
-                        {
-                            modifier = noise[(px + 2 & 127) | (py & 127) << 7];
-                            curErrorRed[px+2]   += r2 * modifier;
-                            curErrorGreen[px+2] += g2 * modifier;
-                            curErrorBlue[px+2]  += b2 * modifier;
-                        }
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+        diffuse(lineLen, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+                int color, used, rdiff, gdiff, bdiff;
+                float er, eg, eb;
+                byte paletteIndex;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        er = curErrorRed[px];
+                        eg = curErrorGreen[px];
+                        eb = curErrorBlue[px];
+                        int rr = Math.min(Math.max((int)(((color >>> 24)       ) + er + 0.5f), 0), 0xFF);
+                        int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0), 0xFF);
+                        int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0), 0xFF);
+
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        rdiff = (color>>>24)-    (used>>>24);
+                        gdiff = (color>>>16&255)-(used>>>16&255);
+                        bdiff = (color>>>8&255)- (used>>>8&255);
+                        r1 = rdiff * strength;
+                        g1 = gdiff * strength;
+                        b1 = bdiff * strength;
+                        r2 = r1 + r1;
+                        g2 = g1 + g1;
+                        b2 = b1 + b1;
+                        r4 = r2 + r2;
+                        g4 = g2 + g2;
+                        b4 = b2 + b2;
+                        float modifier;
+                        if(px < lineLen - 1)
                         {
-                            modifier = noise[(px - 1 & 127) | (ny & 127) << 7];
-                            nextErrorRed[px-1]   += r2 * modifier;
-                            nextErrorGreen[px-1] += g2 * modifier;
-                            nextErrorBlue[px-1]  += b2 * modifier;
-                            if(px > 1)
+                            modifier = noise[(px + 1 & 127) | (py & 127) << 7];
+                            curErrorRed[px+1]   += r4 * modifier;
+                            curErrorGreen[px+1] += g4 * modifier;
+                            curErrorBlue[px+1]  += b4 * modifier;
+                            if(px < lineLen - 2)
                             {
-                                modifier = noise[(px - 2 & 127) | (ny & 127) << 7];
-                                nextErrorRed[px-2]   += r1 * modifier;
-                                nextErrorGreen[px-2] += g1 * modifier;
-                                nextErrorBlue[px-2]  += b1 * modifier;
+                                modifier = noise[(px + 2 & 127) | (py & 127) << 7];
+                                curErrorRed[px+2]   += r2 * modifier;
+                                curErrorGreen[px+2] += g2 * modifier;
+                                curErrorBlue[px+2]  += b2 * modifier;
                             }
                         }
-                        modifier = noise[(px & 127) | (ny & 127) << 7];
-                        nextErrorRed[px]   += r4 * modifier;
-                        nextErrorGreen[px] += g4 * modifier;
-                        nextErrorBlue[px]  += b4 * modifier;
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            modifier = noise[(px + 1 & 127) | (ny & 127) << 7];
-                            nextErrorRed[px+1]   += r2 * modifier;
-                            nextErrorGreen[px+1] += g2 * modifier;
-                            nextErrorBlue[px+1]  += b2 * modifier;
-                            if(px < lineLen - 2)
+                            if(px > 0)
                             {
-                                modifier = noise[(px + 2 & 127) | (ny & 127) << 7];
-                                nextErrorRed[px+2]   += r1 * modifier;
-                                nextErrorGreen[px+2] += g1 * modifier;
-                                nextErrorBlue[px+2]  += b1 * modifier;
+                                modifier = noise[(px - 1 & 127) | (ny & 127) << 7];
+                                nextErrorRed[px-1]   += r2 * modifier;
+                                nextErrorGreen[px-1] += g2 * modifier;
+                                nextErrorBlue[px-1]  += b2 * modifier;
+                                if(px > 1)
+                                {
+                                    modifier = noise[(px - 2 & 127) | (ny & 127) << 7];
+                                    nextErrorRed[px-2]   += r1 * modifier;
+                                    nextErrorGreen[px-2] += g1 * modifier;
+                                    nextErrorBlue[px-2]  += b1 * modifier;
+                                }
+                            }
+                            modifier = noise[(px & 127) | (ny & 127) << 7];
+                            nextErrorRed[px]   += r4 * modifier;
+                            nextErrorGreen[px] += g4 * modifier;
+                            nextErrorBlue[px]  += b4 * modifier;
+                            if(px < lineLen - 1)
+                            {
+                                modifier = noise[(px + 1 & 127) | (ny & 127) << 7];
+                                nextErrorRed[px+1]   += r2 * modifier;
+                                nextErrorGreen[px+1] += g2 * modifier;
+                                nextErrorBlue[px+1]  += b2 * modifier;
+                                if(px < lineLen - 2)
+                                {
+                                    modifier = noise[(px + 2 & 127) | (ny & 127) << 7];
+                                    nextErrorRed[px+2]   += r1 * modifier;
+                                    nextErrorGreen[px+2] += g1 * modifier;
+                                    nextErrorBlue[px+2]  += b1 * modifier;
+                                }
                             }
                         }
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceOceanicLAB (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         final float[] noise = TRI_BLUE_NOISE_MULTIPLIERS_A;
@@ -2695,9 +3014,9 @@ public class PaletteReducer {
                     eg = curErrorGreen[px];
                     eb = curErrorBlue[px];
                     int shrunk = shrink(color);
-                    int L = Math.min(Math.max((int)(OKLAB[0][shrunk] * 256), 0), 255);
-                    int A = Math.min(Math.max((int)(OKLAB[1][shrunk] * 256 + 128), 0), 255);
-                    int B = Math.min(Math.max((int)(OKLAB[2][shrunk] * 256 + 128), 0), 255);
+                    int L = Math.min(Math.max((int)(oklab[0][shrunk] * 256), 0), 255);
+                    int A = Math.min(Math.max((int)(oklab[1][shrunk] * 256 + 128), 0), 255);
+                    int B = Math.min(Math.max((int)(oklab[2][shrunk] * 256 + 128), 0), 255);
 
                     int rr = Math.min(Math.max((int)(L + er + 0.5f), 0), 0xFF);
                     int gg = Math.min(Math.max((int)(A + eg + 0.5f), 0), 0xFF);
@@ -2710,9 +3029,9 @@ public class PaletteReducer {
                     used = paletteArray[paletteIndex & 0xFF];
                     pixmap.drawPixel(px, py, used);
                     shrunk = shrink(used);
-                    int Lu = Math.min(Math.max((int)(OKLAB[0][shrunk] * 256), 0), 255);
-                    int Au = Math.min(Math.max((int)(OKLAB[1][shrunk] * 256 + 128), 0), 255);
-                    int Bu = Math.min(Math.max((int)(OKLAB[2][shrunk] * 256 + 128), 0), 255);
+                    int Lu = Math.min(Math.max((int)(oklab[0][shrunk] * 256), 0), 255);
+                    int Au = Math.min(Math.max((int)(oklab[1][shrunk] * 256 + 128), 0), 255);
+                    int Bu = Math.min(Math.max((int)(oklab[2][shrunk] * 256 + 128), 0), 255);
                     rdiff = L - Lu;
                     gdiff = A - Au;
                     bdiff = B - Bu;
@@ -2783,145 +3102,130 @@ public class PaletteReducer {
     }
 
     public Pixmap reduceSeaside (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceSeaside(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceSeaside(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceSeaside (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int w = pixmap.getWidth(), h = pixmap.getHeight();
+        final int w = surface.getWidth(), h = surface.getHeight();
         final float[] noiseA = TRI_BLUE_NOISE_MULTIPLIERS_A;
         final float[] noiseB = TRI_BLUE_NOISE_MULTIPLIERS_B;
         final float[] noiseC = TRI_BLUE_NOISE_MULTIPLIERS_C;
         final float s = (float) (0.13 * ditherStrength * (populationBias * populationBias)),
                 strength = s * 0.29f / (0.18f + s);
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(w)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(w)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(w)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(w)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(w)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(w)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(w);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(w);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(w);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(w);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(w);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(w);
-
-            Arrays.fill(nextErrorRed, 0, w, 0);
-            Arrays.fill(nextErrorGreen, 0, w, 0);
-            Arrays.fill(nextErrorBlue, 0, w, 0);
-        }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
-        int color, used, rdiff, gdiff, bdiff;
-        float er, eg, eb;
-        byte paletteIndex;
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, w);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, w);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, w);
-
-            Arrays.fill(nextErrorRed, 0, w, 0);
-            Arrays.fill(nextErrorGreen, 0, w, 0);
-            Arrays.fill(nextErrorBlue, 0, w, 0);
-
-            for (int px = 0; px < w; px++) {
-                color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    er = curErrorRed[px];
-                    eg = curErrorGreen[px];
-                    eb = curErrorBlue[px];
-                    int rr = Math.min(Math.max((int)(((color >>> 24)       ) + er + 0.5f), 0), 0xFF);
-                    int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0), 0xFF);
-                    int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0), 0xFF);
+        diffuse(w, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used, rdiff, gdiff, bdiff;
+                float er, eg, eb;
+                byte paletteIndex;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        er = curErrorRed[px];
+                        eg = curErrorGreen[px];
+                        eb = curErrorBlue[px];
+                        int rr = Math.min(Math.max((int)(((color >>> 24)       ) + er + 0.5f), 0), 0xFF);
+                        int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0), 0xFF);
+                        int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0), 0xFF);
+
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        rdiff = (color>>>24)-    (used>>>24);
+                        gdiff = (color>>>16&255)-(used>>>16&255);
+                        bdiff = (color>>>8&255)- (used>>>8&255);
+                        int modifier = (px & 127) | (py & 127) << 7;
+                        final float r1 = rdiff * strength * noiseA[modifier];
+                        final float g1 = gdiff * strength * noiseB[modifier];
+                        final float b1 = bdiff * strength * noiseC[modifier];
+                        final float r2 = r1 + r1;
+                        final float g2 = g1 + g1;
+                        final float b2 = b1 + b1;
+                        final float r4 = r2 + r2;
+                        final float g4 = g2 + g2;
+                        final float b4 = b2 + b2;
 
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    rdiff = (color>>>24)-    (used>>>24);
-                    gdiff = (color>>>16&255)-(used>>>16&255);
-                    bdiff = (color>>>8&255)- (used>>>8&255);
-                    int modifier = (px & 127) | (py & 127) << 7;
-                    final float r1 = rdiff * strength * noiseA[modifier];
-                    final float g1 = gdiff * strength * noiseB[modifier];
-                    final float b1 = bdiff * strength * noiseC[modifier];
-                    final float r2 = r1 + r1;
-                    final float g2 = g1 + g1;
-                    final float b2 = b1 + b1;
-                    final float r4 = r2 + r2;
-                    final float g4 = g2 + g2;
-                    final float b4 = b2 + b2;
-
-                    if(px < w - 1)
-                    {
-                        modifier = (px + 1 & 127) | (py & 127) << 7;
-                        curErrorRed[px+1]   += r4 * noiseA[modifier];
-                        curErrorGreen[px+1] += g4 * noiseB[modifier];
-                        curErrorBlue[px+1]  += b4 * noiseC[modifier];
-                        if(px < w - 2)
-                        {
-                            modifier = (px + 2 & 127) | (py & 127) << 7;
-                            curErrorRed[px+2]   += r2 * noiseA[modifier];
-                            curErrorGreen[px+2] += g2 * noiseB[modifier];
-                            curErrorBlue[px+2]  += b2 * noiseC[modifier];
-                        }
-                        if(px < w - 3)
-                        {
-                            modifier = (px + 3 & 127) | (py & 127) << 7;
-                            curErrorRed[px+2]   += r1 * noiseA[modifier];
-                            curErrorGreen[px+2] += g1 * noiseB[modifier];
-                            curErrorBlue[px+2]  += b1 * noiseC[modifier];
-                        }
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+                        if(px < w - 1)
                         {
-                            modifier = (px - 1 & 127) | (ny & 127) << 7;
-                            nextErrorRed[px-1]   += r2 * noiseA[modifier];
-                            nextErrorGreen[px-1] += g2 * noiseB[modifier];
-                            nextErrorBlue[px-1]  += b2 * noiseC[modifier];
-                            if(px > 1)
+                            modifier = (px + 1 & 127) | (py & 127) << 7;
+                            curErrorRed[px+1]   += r4 * noiseA[modifier];
+                            curErrorGreen[px+1] += g4 * noiseB[modifier];
+                            curErrorBlue[px+1]  += b4 * noiseC[modifier];
+                            if(px < w - 2)
                             {
-                                modifier = (px - 2 & 127) | (ny & 127) << 7;
-                                nextErrorRed[px-2]   += r1 * noiseA[modifier];
-                                nextErrorGreen[px-2] += g1 * noiseB[modifier];
-                                nextErrorBlue[px-2]  += b1 * noiseC[modifier];
+                                modifier = (px + 2 & 127) | (py & 127) << 7;
+                                curErrorRed[px+2]   += r2 * noiseA[modifier];
+                                curErrorGreen[px+2] += g2 * noiseB[modifier];
+                                curErrorBlue[px+2]  += b2 * noiseC[modifier];
+                            }
+                            if(px < w - 3)
+                            {
+                                modifier = (px + 3 & 127) | (py & 127) << 7;
+                                curErrorRed[px+2]   += r1 * noiseA[modifier];
+                                curErrorGreen[px+2] += g1 * noiseB[modifier];
+                                curErrorBlue[px+2]  += b1 * noiseC[modifier];
                             }
                         }
-                        modifier = (px & 127) | (ny & 127) << 7;
-                        nextErrorRed[px]   += r4 * noiseA[modifier];
-                        nextErrorGreen[px] += g4 * noiseB[modifier];
-                        nextErrorBlue[px]  += b4 * noiseC[modifier];
-                        if(px < w - 1)
+                        if(ny < h)
                         {
-                            modifier = (px + 1 & 127) | (ny & 127) << 7;
-                            nextErrorRed[px+1]   += r2 * noiseA[modifier];
-                            nextErrorGreen[px+1] += g2 * noiseB[modifier];
-                            nextErrorBlue[px+1]  += b2 * noiseC[modifier];
-                            if(px < w - 2)
+                            if(px > 0)
                             {
-                                modifier = (px + 2 & 127) | (ny & 127) << 7;
-                                nextErrorRed[px+2]   += r1 * noiseA[modifier];
-                                nextErrorGreen[px+2] += g1 * noiseB[modifier];
-                                nextErrorBlue[px+2]  += b1 * noiseC[modifier];
+                                modifier = (px - 1 & 127) | (ny & 127) << 7;
+                                nextErrorRed[px-1]   += r2 * noiseA[modifier];
+                                nextErrorGreen[px-1] += g2 * noiseB[modifier];
+                                nextErrorBlue[px-1]  += b2 * noiseC[modifier];
+                                if(px > 1)
+                                {
+                                    modifier = (px - 2 & 127) | (ny & 127) << 7;
+                                    nextErrorRed[px-2]   += r1 * noiseA[modifier];
+                                    nextErrorGreen[px-2] += g1 * noiseB[modifier];
+                                    nextErrorBlue[px-2]  += b1 * noiseC[modifier];
+                                }
+                            }
+                            modifier = (px & 127) | (ny & 127) << 7;
+                            nextErrorRed[px]   += r4 * noiseA[modifier];
+                            nextErrorGreen[px] += g4 * noiseB[modifier];
+                            nextErrorBlue[px]  += b4 * noiseC[modifier];
+                            if(px < w - 1)
+                            {
+                                modifier = (px + 1 & 127) | (ny & 127) << 7;
+                                nextErrorRed[px+1]   += r2 * noiseA[modifier];
+                                nextErrorGreen[px+1] += g2 * noiseB[modifier];
+                                nextErrorBlue[px+1]  += b2 * noiseC[modifier];
+                                if(px < w - 2)
+                                {
+                                    modifier = (px + 2 & 127) | (ny & 127) << 7;
+                                    nextErrorRed[px+2]   += r1 * noiseA[modifier];
+                                    nextErrorGreen[px+2] += g1 * noiseB[modifier];
+                                    nextErrorBlue[px+2]  += b1 * noiseC[modifier];
+                                }
                             }
                         }
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceSeasideLAB (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         final float[] noise = TRI_BLUE_NOISE_MULTIPLIERS_A;
@@ -2973,9 +3277,9 @@ public class PaletteReducer {
                     eg = curErrorGreen[px];
                     eb = curErrorBlue[px];
                     int shrunk = shrink(color);
-                    int L = Math.min(Math.max((int)(OKLAB[0][shrunk] * 256), 0), 255);
-                    int A = Math.min(Math.max((int)(OKLAB[1][shrunk] * 256 + 128), 0), 255);
-                    int B = Math.min(Math.max((int)(OKLAB[2][shrunk] * 256 + 128), 0), 255);
+                    int L = Math.min(Math.max((int)(oklab[0][shrunk] * 256), 0), 255);
+                    int A = Math.min(Math.max((int)(oklab[1][shrunk] * 256 + 128), 0), 255);
+                    int B = Math.min(Math.max((int)(oklab[2][shrunk] * 256 + 128), 0), 255);
 
                     int rr = Math.min(Math.max((int)(L + er + 0.5f), 0), 0xFF);
                     int gg = Math.min(Math.max((int)(A + eg + 0.5f), 0), 0xFF);
@@ -2988,9 +3292,9 @@ public class PaletteReducer {
                     used = paletteArray[paletteIndex & 0xFF];
                     pixmap.drawPixel(px, py, used);
                     shrunk = shrink(used);
-                    int Lu = Math.min(Math.max((int)(OKLAB[0][shrunk] * 256), 0), 255);
-                    int Au = Math.min(Math.max((int)(OKLAB[1][shrunk] * 256 + 128), 0), 255);
-                    int Bu = Math.min(Math.max((int)(OKLAB[2][shrunk] * 256 + 128), 0), 255);
+                    int Lu = Math.min(Math.max((int)(oklab[0][shrunk] * 256), 0), 255);
+                    int Au = Math.min(Math.max((int)(oklab[1][shrunk] * 256 + 128), 0), 255);
+                    int Bu = Math.min(Math.max((int)(oklab[2][shrunk] * 256 + 128), 0), 255);
                     rdiff = L - Lu;
                     gdiff = A - Au;
                     bdiff = B - Bu;
@@ -3399,94 +3703,78 @@ public class PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceSierraLite (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-            for (int i = 0; i < lineLen; i++) {
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used;
-        float rdiff, gdiff, bdiff;
-        float er, eg, eb;
-        byte paletteIndex;
-        float ditherStrength = (float)(this.ditherStrength * 0.2), halfDitherStrength = ditherStrength * 0.5f;
-        for (int y = 0; y < h; y++) {
-            int ny = y + 1;
-            for (int i = 0; i < lineLen; i++) {
-                curErrorRed[i] = nextErrorRed[i];
-                curErrorGreen[i] = nextErrorGreen[i];
-                curErrorBlue[i] = nextErrorBlue[i];
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    er = curErrorRed[px];
-                    eg = curErrorGreen[px];
-                    eb = curErrorBlue[px];
-//                    color |= (color >>> 5 & 0x07070700) | 0xFE;
-                    int rr = MathUtils.clamp((int)(((color >>> 24)       ) + er + 0.5f), 0, 0xFF);
-                    int gg = MathUtils.clamp((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0, 0xFF);
-                    int bb = MathUtils.clamp((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0, 0xFF);
+        reduceSierraLite(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
-                    rdiff = (color>>>24)-    (used>>>24)    ;
-                    gdiff = (color>>>16&255)-(used>>>16&255);
-                    bdiff = (color>>>8&255)- (used>>>8&255) ;
-//                    rdiff = OtherMath.cbrtShape(0x2.4p-8f * ((color>>>24)-    (used>>>24))    );
-//                    gdiff = OtherMath.cbrtShape(0x2.4p-8f * ((color>>>16&255)-(used>>>16&255)));
-//                    bdiff = OtherMath.cbrtShape(0x2.4p-8f * ((color>>>8&255)- (used>>>8&255)) );
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += rdiff * ditherStrength;
-                        curErrorGreen[px+1] += gdiff * ditherStrength;
-                        curErrorBlue[px+1]  += bdiff * ditherStrength;
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+    /**
+     * Like {@link #reduceSierraLite(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceSierraLite (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        float ditherStrength = (float)(this.ditherStrength * 0.2), halfDitherStrength = ditherStrength * 0.5f;
+        diffuse(lineLen, h, 1, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                float er, eg, eb;
+                byte paletteIndex;
+                int ny = y + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, y);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, y, 0);
+                    else {
+                        er = curErrorRed[px];
+                        eg = curErrorGreen[px];
+                        eb = curErrorBlue[px];
+//                        color |= (color >>> 5 & 0x07070700) | 0xFE;
+                        int rr = MathUtils.clamp((int)(((color >>> 24)       ) + er + 0.5f), 0, 0xFF);
+                        int gg = MathUtils.clamp((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0, 0xFF);
+                        int bb = MathUtils.clamp((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0, 0xFF);
+
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, y, used);
+                        rdiff = (color>>>24)-    (used>>>24)    ;
+                        gdiff = (color>>>16&255)-(used>>>16&255);
+                        bdiff = (color>>>8&255)- (used>>>8&255) ;
+//                        rdiff = OtherMath.cbrtShape(0x2.4p-8f * ((color>>>24)-    (used>>>24))    );
+//                        gdiff = OtherMath.cbrtShape(0x2.4p-8f * ((color>>>16&255)-(used>>>16&255)));
+//                        bdiff = OtherMath.cbrtShape(0x2.4p-8f * ((color>>>8&255)- (used>>>8&255)) );
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += rdiff * halfDitherStrength;
-                            nextErrorGreen[px-1] += gdiff * halfDitherStrength;
-                            nextErrorBlue[px-1]  += bdiff * halfDitherStrength;
+                            curErrorRed[px+1]   += rdiff * ditherStrength;
+                            curErrorGreen[px+1] += gdiff * ditherStrength;
+                            curErrorBlue[px+1]  += bdiff * ditherStrength;
+                        }
+                        if(ny < h)
+                        {
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += rdiff * halfDitherStrength;
+                                nextErrorGreen[px-1] += gdiff * halfDitherStrength;
+                                nextErrorBlue[px-1]  += bdiff * halfDitherStrength;
+                            }
+                            nextErrorRed[px]   += rdiff * halfDitherStrength;
+                            nextErrorGreen[px] += gdiff * halfDitherStrength;
+                            nextErrorBlue[px]  += bdiff * halfDitherStrength;
                         }
-                        nextErrorRed[px]   += rdiff * halfDitherStrength;
-                        nextErrorGreen[px] += gdiff * halfDitherStrength;
-                        nextErrorBlue[px]  += bdiff * halfDitherStrength;
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public static double FS_MULTIPLIER = 0.03;
@@ -3590,134 +3878,131 @@ public class PaletteReducer {
     }
 
     public Pixmap reduceFloydSteinberg (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-            for (int i = 0; i < lineLen; i++) {
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used;
-        float rdiff, gdiff, bdiff;
-        byte paletteIndex;
+        reduceFloydSteinberg(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceFloydSteinberg(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceFloydSteinberg (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float w1 = (float)(ditherStrength * 4), w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f;
-        for (int y = 0; y < h; y++) {
-            int ny = y + 1;
-            for (int i = 0; i < lineLen; i++) {
-                curErrorRed[i] = nextErrorRed[i];
-                curErrorGreen[i] = nextErrorGreen[i];
-                curErrorBlue[i] = nextErrorBlue[i];
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = Math.min(Math.max((int)(((color >>> 24)       ) + curErrorRed[px]   + 0.5f), 0), 0xFF);
-                    int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + curErrorGreen[px] + 0.5f), 0), 0xFF);
-                    int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + curErrorBlue[px]  + 0.5f), 0), 0xFF);
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
-//                    rdiff = OtherMath.cbrtShape(0x1.8p-8f * ((color>>>24)-    (used>>>24))    );
-//                    gdiff = OtherMath.cbrtShape(0x1.8p-8f * ((color>>>16&255)-(used>>>16&255)));
-//                    bdiff = OtherMath.cbrtShape(0x1.8p-8f * ((color>>>8&255)- (used>>>8&255)) );
-                    rdiff = (0x1.8p-8f * ((color>>>24)-    (used>>>24))    );
-                    gdiff = (0x1.8p-8f * ((color>>>16&255)-(used>>>16&255)));
-                    bdiff = (0x1.8p-8f * ((color>>>8&255)- (used>>>8&255)) );
-                    rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
-                    gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
-                    bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += rdiff * w7;
-                        curErrorGreen[px+1] += gdiff * w7;
-                        curErrorBlue[px+1]  += bdiff * w7;
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+        diffuse(lineLen, h, 1, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                byte paletteIndex;
+                int ny = y + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, y);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, y, 0);
+                    else {
+                        int rr = Math.min(Math.max((int)(((color >>> 24)       ) + curErrorRed[px]   + 0.5f), 0), 0xFF);
+                        int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + curErrorGreen[px] + 0.5f), 0), 0xFF);
+                        int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + curErrorBlue[px]  + 0.5f), 0), 0xFF);
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, y, used);
+//                        rdiff = OtherMath.cbrtShape(0x1.8p-8f * ((color>>>24)-    (used>>>24))    );
+//                        gdiff = OtherMath.cbrtShape(0x1.8p-8f * ((color>>>16&255)-(used>>>16&255)));
+//                        bdiff = OtherMath.cbrtShape(0x1.8p-8f * ((color>>>8&255)- (used>>>8&255)) );
+                        rdiff = (0x1.8p-8f * ((color>>>24)-    (used>>>24))    );
+                        gdiff = (0x1.8p-8f * ((color>>>16&255)-(used>>>16&255)));
+                        bdiff = (0x1.8p-8f * ((color>>>8&255)- (used>>>8&255)) );
+                        rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
+                        gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
+                        bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += rdiff * w3;
-                            nextErrorGreen[px-1] += gdiff * w3;
-                            nextErrorBlue[px-1]  += bdiff * w3;
+                            curErrorRed[px+1]   += rdiff * w7;
+                            curErrorGreen[px+1] += gdiff * w7;
+                            curErrorBlue[px+1]  += bdiff * w7;
                         }
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[px+1]   += rdiff * w1;
-                            nextErrorGreen[px+1] += gdiff * w1;
-                            nextErrorBlue[px+1]  += bdiff * w1;
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += rdiff * w3;
+                                nextErrorGreen[px-1] += gdiff * w3;
+                                nextErrorBlue[px-1]  += bdiff * w3;
+                            }
+                            if(px < lineLen - 1)
+                            {
+                                nextErrorRed[px+1]   += rdiff * w1;
+                                nextErrorGreen[px+1] += gdiff * w1;
+                                nextErrorBlue[px+1]  += bdiff * w1;
+                            }
+                            nextErrorRed[px]   += rdiff * w5;
+                            nextErrorGreen[px] += gdiff * w5;
+                            nextErrorBlue[px]  += bdiff * w5;
                         }
-                        nextErrorRed[px]   += rdiff * w5;
-                        nextErrorGreen[px] += gdiff * w5;
-                        nextErrorBlue[px]  += bdiff * w5;
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceWithRoberts (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used, adj;
-        byte paletteIndex;
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    adj = (int)((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL >> 57) * ditherStrength);
-                    adj ^= adj >> 31;
-                    //adj = (-(adj >>> 4 & 1) ^ adj) & 7;
-                    adj -= 32 * ditherStrength;
-//                    color |= (color >>> 5 & 0x07070700) | 0xFE;
-                    int rr = MathUtils.clamp(((color >>> 24)       ) + (adj), 0, 0xFF);
-                    int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (adj), 0, 0xFF);
-                    int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (adj), 0, 0xFF);
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
-                }
-            }
-
-        }
+        reduceWithRoberts(PixelSurface.of(pixmap));
         pixmap.setBlending(blending);
         return pixmap;
     }
 
+    /**
+     * Like {@link #reduceWithRoberts(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceWithRoberts (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color, used, adj;
+                byte paletteIndex;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            adj = (int)((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL >> 57) * ditherStrength);
+                            adj ^= adj >> 31;
+                            //adj = (-(adj >>> 4 & 1) ^ adj) & 7;
+                            adj -= 32 * ditherStrength;
+//                            color |= (color >>> 5 & 0x07070700) | 0xFE;
+                            int rr = MathUtils.clamp(((color >>> 24)       ) + (adj), 0, 0xFF);
+                            int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (adj), 0, 0xFF);
+                            int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (adj), 0, 0xFF);
+                            paletteIndex =
+                                    paletteMapping[((rr << 7) & 0x7C00)
+                                            | ((gg << 2) & 0x3E0)
+                                            | ((bb >>> 3))];
+                            used = paletteArray[paletteIndex & 0xFF];
+                            surface.drawPixel(px, y, used);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     public Pixmap reduceRobertsMul (Pixmap pixmap) {
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
@@ -3891,6 +4176,7 @@ public class PaletteReducer {
     }
 
     public Pixmap reduceRobertsLAB (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
@@ -3909,9 +4195,9 @@ public class PaletteReducer {
                     int gg = ((color >>> 16) & 0xFF);
                     int bb = ((color >>> 8)  & 0xFF);
                     int shrunk = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
-                    double L = OKLAB[0][shrunk];
-                    double A = OKLAB[1][shrunk];
-                    double B = OKLAB[2][shrunk];
+                    double L = oklab[0][shrunk];
+                    double A = oklab[1][shrunk];
+                    double B = oklab[2][shrunk];
 //                    long rob = ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >>> 41);
 //                    L = Math.min(Math.max((L + (rob * 0x1.1p-22f - 0x1.1p0f) * str), 0), 1f);
 //                    A = Math.min(Math.max((A + (rob * 0x0.9p-22f - 0x0.9p0f) * str), -1f), 1f);
@@ -3948,29 +4234,38 @@ public class PaletteReducer {
      * @return
      */
     public Pixmap reduceLoaf(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceLoaf(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceLoaf(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceLoaf(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color;
         final int strength = (int) (11 * ditherStrength / (populationBias * populationBias) + 0.5);
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int adj = ((px & 1) + (y & 1) - 1) * strength * (2 + (((px ^ y) & 2) - 1));
                     int rr = Math.min(Math.max(((color >>> 24)       ) + adj, 0), 255);
                     int gg = Math.min(Math.max(((color >>> 16) & 0xFF) + adj, 0), 255);
                     int bb = Math.min(Math.max(((color >>> 8)  & 0xFF) + adj, 0), 255);
                     int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
 
@@ -4162,42 +4457,56 @@ public class PaletteReducer {
      * @return
      */
     public Pixmap reduceIGN(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
-        float pos;
-        final float strength = (float) (40 * ditherStrength / (populationBias * populationBias * populationBias));
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    pos = (px * 0.06711056f + y * 0.00583715f);
-                    pos -= (int) pos;
-                    pos *= 52.9829189f;
-                    pos -= (int) pos;
-                    pos = (pos - 0.5f) * strength;
-//                    pos = OtherMath.cbrt(pos) * strength + 0.5f;
-//                    pos = pos * pos * pos * strength + 0.5f;
-//                    pos = (((pos > 0.5f) ? 1f - (float)Math.sqrt(2f - pos - pos) : (float)Math.sqrt(pos + pos) - 1f)) * strength + 0.5f;
-//                    pos = (pos-0.5f) * strength + 0.5f;
-
-//                    pos = pos * pos * pos * strength + ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL >>> 41) * 0x1p-20f - 3f);
+        reduceIGN(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
-                    int rr = Math.min(Math.max((int)(((color >>> 24)       ) + pos), 0), 255);
-                    int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + pos), 0), 255);
-                    int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + pos), 0), 255);
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+    /**
+     * Like {@link #reduceIGN(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceIGN(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        final float strength = (float) (40 * ditherStrength / (populationBias * populationBias * populationBias));
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                float pos;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            pos = (px * 0.06711056f + y * 0.00583715f);
+                            pos -= (int) pos;
+                            pos *= 52.9829189f;
+                            pos -= (int) pos;
+                            pos = (pos - 0.5f) * strength;
+//                            pos = OtherMath.cbrt(pos) * strength + 0.5f;
+//                            pos = pos * pos * pos * strength + 0.5f;
+//                            pos = (((pos > 0.5f) ? 1f - (float)Math.sqrt(2f - pos - pos) : (float)Math.sqrt(pos + pos) - 1f)) * strength + 0.5f;
+//                            pos = (pos-0.5f) * strength + 0.5f;
+
+//                            pos = pos * pos * pos * strength + ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL >>> 41) * 0x1p-20f - 3f);
+
+                            int rr = Math.min(Math.max((int)(((color >>> 24)       ) + pos), 0), 255);
+                            int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + pos), 0), 255);
+                            int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + pos), 0), 255);
+                            surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceIgneous(Pixmap pixmap) {
@@ -4360,33 +4669,47 @@ public class PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceTrueBlue3(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
+        reduceTrueBlue3(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceTrueBlue3(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceTrueBlue3(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
 //        float adj, strength = (float) (48.0 * ditherStrength / populationBias), pos;
-        float adj, strength = (float) (0.1375 * ditherStrength / populationBias);
+        final float strength = (float) (0.1375 * ditherStrength / populationBias);
 //        float adj, strength = (float) (36.0 * ditherStrength / populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    float pos = (PaletteReducer.thresholdMatrix64[(px & 7) | (y & 7) << 3] - 31.5f) * 0.2f;
-                    adj = ((BlueNoise.getSeededTriangular(px, y, 0x11111) + 0.5f) * strength) + pos; int rr = MathUtils.clamp((int) (adj + ((color >>> 24)       )), 0, 255);
-                    adj = ((BlueNoise.getSeededTriangular(px, y, 0x22222) + 0.5f) * strength) + pos; int gg = MathUtils.clamp((int) (adj + ((color >>> 16) & 0xFF)), 0, 255);
-                    adj = ((BlueNoise.getSeededTriangular(px, y, 0x33333) + 0.5f) * strength) + pos; int bb = MathUtils.clamp((int) (adj + ((color >>> 8)  & 0xFF)), 0, 255);
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                float adj;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            float pos = (PaletteReducer.thresholdMatrix64[(px & 7) | (y & 7) << 3] - 31.5f) * 0.2f;
+                            adj = ((BlueNoise.getSeededTriangular(px, y, 0x11111) + 0.5f) * strength) + pos; int rr = MathUtils.clamp((int) (adj + ((color >>> 24)       )), 0, 255);
+                            adj = ((BlueNoise.getSeededTriangular(px, y, 0x22222) + 0.5f) * strength) + pos; int gg = MathUtils.clamp((int) (adj + ((color >>> 16) & 0xFF)), 0, 255);
+                            adj = ((BlueNoise.getSeededTriangular(px, y, 0x33333) + 0.5f) * strength) + pos; int bb = MathUtils.clamp((int) (adj + ((color >>> 8)  & 0xFF)), 0, 255);
+                            surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
     /**
      * A blue-noise-based dither that uses a tiling 64x64 noise texture to add error to an image.
@@ -4401,30 +4724,35 @@ public class PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
-        float adj, strength = (float) (40.0 * ditherStrength / (populationBias * populationBias));
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int ti = (px & 127) | (y & 127) << 7;
-                    float variation = (strength + 0x1p-5f * (BlueNoise.TILE_TRI_NOISE[0][ti] + 0.5f)) * 0.007f;
-                    adj = ((BlueNoise.TILE_TRI_NOISE[1][ti] + 0.5f) * variation);
-                    int rr = MathUtils.clamp((int) (adj + ((color >>> 24)       )), 0, 255);
-                    adj = ((BlueNoise.TILE_TRI_NOISE[2][ti] + 0.5f) * variation);
-                    int gg = MathUtils.clamp((int) (adj + ((color >>> 16) & 0xFF)), 0, 255);
-                    adj = ((BlueNoise.TILE_TRI_NOISE[3][ti] + 0.5f) * variation);
-                    int bb = MathUtils.clamp((int) (adj + ((color >>> 8)  & 0xFF)), 0, 255);
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        final float strength = (float) (40.0 * ditherStrength / (populationBias * populationBias));
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                float adj;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int ti = (px & 127) | (y & 127) << 7;
+                            float variation = (strength + 0x1p-5f * (BlueNoise.TILE_TRI_NOISE[0][ti] + 0.5f)) * 0.007f;
+                            adj = ((BlueNoise.TILE_TRI_NOISE[1][ti] + 0.5f) * variation);
+                            int rr = MathUtils.clamp((int) (adj + ((color >>> 24)       )), 0, 255);
+                            adj = ((BlueNoise.TILE_TRI_NOISE[2][ti] + 0.5f) * variation);
+                            int gg = MathUtils.clamp((int) (adj + ((color >>> 16) & 0xFF)), 0, 255);
+                            adj = ((BlueNoise.TILE_TRI_NOISE[3][ti] + 0.5f) * variation);
+                            int bb = MathUtils.clamp((int) (adj + ((color >>> 8)  & 0xFF)), 0, 255);
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4440,35 +4768,40 @@ public class PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
 //        float adj, strength = (float) (48.0 * ditherStrength / populationBias), pos;
 //        float adj, strength = (float) (0.1375 * ditherStrength / populationBias);
 //        float adj, strength = (float) (36.0 * ditherStrength / populationBias);
-        float adj, strength = (float) (32 * ditherStrength / (populationBias));
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-//                    float pos = (PaletteReducer.thresholdMatrix64[(px & 7) | (y & 7) << 3] - 31.5f) * 0.2f + 0.5f;
-                    int ti = (px & 127) | (y & 127) << 7;
-                    adj = ((BlueNoise.TILE_TRI_NOISE[1][ti] + 0.5f));
-                    adj = adj * strength / (12f + Math.abs(adj));
-                    int rr = Math.min(Math.max((int) (adj + ((color >>> 24)       ) + 0.5f), 0), 255);
-                    adj = ((BlueNoise.TILE_TRI_NOISE[2][ti] + 0.5f));
-                    adj = adj * strength / (12f + Math.abs(adj));
-                    int gg = Math.min(Math.max((int) (adj + ((color >>> 16) & 0xFF) + 0.5f), 0), 255);
-                    adj = ((BlueNoise.TILE_TRI_NOISE[3][ti] + 0.5f));
-                    adj = adj * strength / (12f + Math.abs(adj));
-                    int bb = Math.min(Math.max((int) (adj + ((color >>> 8)  & 0xFF) + 0.5f), 0), 255);
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        final float strength = (float) (32 * ditherStrength / (populationBias));
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                float adj;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+//                            float pos = (PaletteReducer.thresholdMatrix64[(px & 7) | (y & 7) << 3] - 31.5f) * 0.2f + 0.5f;
+                            int ti = (px & 127) | (y & 127) << 7;
+                            adj = ((BlueNoise.TILE_TRI_NOISE[1][ti] + 0.5f));
+                            adj = adj * strength / (12f + Math.abs(adj));
+                            int rr = Math.min(Math.max((int) (adj + ((color >>> 24)       ) + 0.5f), 0), 255);
+                            adj = ((BlueNoise.TILE_TRI_NOISE[2][ti] + 0.5f));
+                            adj = adj * strength / (12f + Math.abs(adj));
+                            int gg = Math.min(Math.max((int) (adj + ((color >>> 16) & 0xFF) + 0.5f), 0), 255);
+                            adj = ((BlueNoise.TILE_TRI_NOISE[3][ti] + 0.5f));
+                            adj = adj * strength / (12f + Math.abs(adj));
+                            int bb = Math.min(Math.max((int) (adj + ((color >>> 8)  & 0xFF) + 0.5f), 0), 255);
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4682,106 +5015,103 @@ public class PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceNeue(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-            for (int i = 0; i < lineLen; i++) {
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used;
-        float rdiff, gdiff, bdiff;
-        float er, eg, eb;
-        byte paletteIndex;
+        reduceNeue(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceNeue(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceNeue(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float w1 = (float) ditherStrength * 7f, w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f,
-                adj, strength = (float) (32.0 * 0.005f * ditherStrength / (populationBias * populationBias)),
+                strength = (float) (32.0 * 0.005f * ditherStrength / (populationBias * populationBias)),
                 limit = (float) Math.pow(80, 1.635 - populationBias);
 
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-            for (int i = 0; i < lineLen; i++) {
-                curErrorRed[i] = nextErrorRed[i];
-                curErrorGreen[i] = nextErrorGreen[i];
-                curErrorBlue[i] = nextErrorBlue[i];
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    adj = ((BlueNoise.getSeededTriangular(px, py, 0x12345) + 0.5f) * strength); // plus or minus 255/400
-                    adj = Math.min(Math.max(adj, -limit), limit);
-                    er = adj + (curErrorRed[px]);
-                    eg = adj + (curErrorGreen[px]);
-                    eb = adj + (curErrorBlue[px]);
-
-                    int rr = MathUtils.clamp((int)(((color >>> 24)       ) + er + 0.5f), 0, 0xFF);
-                    int gg = MathUtils.clamp((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0, 0xFF);
-                    int bb = MathUtils.clamp((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0, 0xFF);
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    rdiff = OtherMath.cbrtShape(0x1.7p-10f * ((color>>>24)-    (used>>>24))    );
-                    gdiff = OtherMath.cbrtShape(0x1.7p-10f * ((color>>>16&255)-(used>>>16&255)));
-                    bdiff = OtherMath.cbrtShape(0x1.7p-10f * ((color>>>8&255)- (used>>>8&255)) );
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += rdiff * w7;
-                        curErrorGreen[px+1] += gdiff * w7;
-                        curErrorBlue[px+1]  += bdiff * w7;
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+        diffuse(lineLen, h, 1, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                float er, eg, eb, adj;
+                byte paletteIndex;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        adj = ((BlueNoise.getSeededTriangular(px, py, 0x12345) + 0.5f) * strength); // plus or minus 255/400
+                        adj = Math.min(Math.max(adj, -limit), limit);
+                        er = adj + (curErrorRed[px]);
+                        eg = adj + (curErrorGreen[px]);
+                        eb = adj + (curErrorBlue[px]);
+
+                        int rr = MathUtils.clamp((int)(((color >>> 24)       ) + er + 0.5f), 0, 0xFF);
+                        int gg = MathUtils.clamp((int)(((color >>> 16) & 0xFF) + eg + 0.5f), 0, 0xFF);
+                        int bb = MathUtils.clamp((int)(((color >>> 8)  & 0xFF) + eb + 0.5f), 0, 0xFF);
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        rdiff = OtherMath.cbrtShape(0x1.7p-10f * ((color>>>24)-    (used>>>24))    );
+                        gdiff = OtherMath.cbrtShape(0x1.7p-10f * ((color>>>16&255)-(used>>>16&255)));
+                        bdiff = OtherMath.cbrtShape(0x1.7p-10f * ((color>>>8&255)- (used>>>8&255)) );
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += rdiff * w3;
-                            nextErrorGreen[px-1] += gdiff * w3;
-                            nextErrorBlue[px-1]  += bdiff * w3;
+                            curErrorRed[px+1]   += rdiff * w7;
+                            curErrorGreen[px+1] += gdiff * w7;
+                            curErrorBlue[px+1]  += bdiff * w7;
                         }
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[px+1]   += rdiff * w1;
-                            nextErrorGreen[px+1] += gdiff * w1;
-                            nextErrorBlue[px+1]  += bdiff * w1;
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += rdiff * w3;
+                                nextErrorGreen[px-1] += gdiff * w3;
+                                nextErrorBlue[px-1]  += bdiff * w3;
+                            }
+                            if(px < lineLen - 1)
+                            {
+                                nextErrorRed[px+1]   += rdiff * w1;
+                                nextErrorGreen[px+1] += gdiff * w1;
+                                nextErrorBlue[px+1]  += bdiff * w1;
+                            }
+                            nextErrorRed[px]   += rdiff * w5;
+                            nextErrorGreen[px] += gdiff * w5;
+                            nextErrorBlue[px]  += bdiff * w5;
                         }
-                        nextErrorRed[px]   += rdiff * w5;
-                        nextErrorGreen[px] += gdiff * w5;
-                        nextErrorBlue[px]  += bdiff * w5;
                     }
                 }
             }
-        }
+        });
+    }
+
+    public Pixmap reduceDodgy(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceDodgy(PixelSurface.of(pixmap));
         pixmap.setBlending(blending);
         return pixmap;
     }
 
-    public Pixmap reduceDodgy(Pixmap pixmap) {
+    /**
+     * Like {@link #reduceDodgy(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceDodgy(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -4803,8 +5133,6 @@ public class PaletteReducer {
                 nextErrorBlue[i] = 0;
             }
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -4827,9 +5155,9 @@ public class PaletteReducer {
                 nextErrorBlue[i] = 0;
             }
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, py);
+                color = surface.getPixel(px, py);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
+                    surface.drawPixel(px, py, 0);
                 else {
                     er = Math.min(Math.max(((BlueNoise.getSeededTriangular(px, py, 0x33333) + 0.5f) * strength), -limit), limit) + (curErrorRed[px]);
                     eg = Math.min(Math.max(((BlueNoise.getSeededTriangular(px, py, 0x11111) + 0.5f) * strength), -limit), limit) + (curErrorGreen[px]);
@@ -4843,7 +5171,7 @@ public class PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
+                    surface.drawPixel(px, py, used);
                     rdiff = (dmul * ((color>>>24)-    (used>>>24))    );
                     gdiff = (dmul * ((color>>>16&255)-(used>>>16&255)));
                     bdiff = (dmul * ((color>>>8&255)- (used>>>8&255)) );
@@ -4878,8 +5206,6 @@ public class PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
 
@@ -4978,9 +5304,22 @@ public class PaletteReducer {
         pixmap.setBlending(blending);
         return pixmap;
     }
-    public Pixmap reduceWeave(Pixmap pixmap) {
+    public Pixmap reduceWeave(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceWeave(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceWeave(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceWeave(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -5002,8 +5341,6 @@ public class PaletteReducer {
                 nextErrorBlue[i] = 0;
             }
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -5023,9 +5360,9 @@ public class PaletteReducer {
                 nextErrorBlue[i] = 0;
             }
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, py);
+                color = surface.getPixel(px, py);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
+                    surface.drawPixel(px, py, 0);
                 else {
                     er = Math.min(Math.max(((((px+1) * 0xC13FA9A902A6328FL + (py+1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-23f - 0x1.4p-1f) * strength, -limit), limit) + (curErrorRed[px]);
                     eg = Math.min(Math.max(((((px+3) * 0xC13FA9A902A6328FL + (py-1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-23f - 0x1.4p-1f) * strength, -limit), limit) + (curErrorGreen[px]);
@@ -5039,7 +5376,7 @@ public class PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
+                    surface.drawPixel(px, py, used);
                     rdiff = (dmul * ((color>>>24)-    (used>>>24))    );
                     gdiff = (dmul * ((color>>>16&255)-(used>>>16&255)));
                     bdiff = (dmul * ((color>>>8&255)- (used>>>8&255)) );
@@ -5074,8 +5411,6 @@ public class PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
 //        boolean hasTransparent = (paletteArray[0] == 0);
@@ -5443,18 +5778,29 @@ public class PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceChaoticNoise (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceChaoticNoise(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceChaoticNoise(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceChaoticNoise (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color, used;
         double adj, strength = ditherStrength * populationBias * 1.5;
         long s = 0xC13FA9A902A6328FL;
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
 //                    color |= (color >>> 5 & 0x07070700) | 0xFF;
                     int rr = ((color >>> 24)       );
@@ -5479,14 +5825,12 @@ public class PaletteReducer {
                     rr = MathUtils.clamp((int) (rr + (adj * ((rr - (used >>> 24))))), 0, 0xFF);
                     gg = MathUtils.clamp((int) (gg + (adj * ((gg - (used >>> 16 & 0xFF))))), 0, 0xFF);
                     bb = MathUtils.clamp((int) (bb + (adj * ((bb - (used >>> 8 & 0xFF))))), 0, 0xFF);
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
                             | ((gg << 2) & 0x3E0)
                             | ((bb >>> 3))] & 0xFF]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     public Pixmap reduceGarbage (Pixmap pixmap) {
@@ -5551,8 +5895,21 @@ public class PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceScatter (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceScatter(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceScatter(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceScatter (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -5574,8 +5931,6 @@ public class PaletteReducer {
                 nextErrorBlue[i] = 0;
             }
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -5592,9 +5947,9 @@ public class PaletteReducer {
                 nextErrorBlue[i] = 0;
             }
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     //                    adj = ((TRI_BLUE_NOISE[(px & 63) | (y & 63) << 6] + 0.5f) * 0.007f); // slightly inside -1 to 1 range, should be +/- 0.8925
                     //                    adj = Math.min(Math.max(adj * strength + (px + y << 4 & 16) - 8f, -20f), 20f);
@@ -5614,7 +5969,7 @@ public class PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
+                    surface.drawPixel(px, y, used);
                     rdiff = OtherMath.cbrtShape(0x2.Ep-8f * ((color>>>24)-    (used>>>24))    );
                     gdiff = OtherMath.cbrtShape(0x2.Ep-8f * ((color>>>16&255)-(used>>>16&255)));
                     bdiff = OtherMath.cbrtShape(0x2.Ep-8f * ((color>>>8&255)- (used>>>8&255)) );
@@ -5645,8 +6000,6 @@ public class PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
 //    void computePaletteGamma(){
@@ -5716,14 +6069,15 @@ public class PaletteReducer {
      * Compares items in ints by their luma, looking up items by the indices a and b, and swaps the two given indices if
      * the item at a has higher luma than the item at b. This is protected rather than private because it's more likely
      * that this would be desirable to override than a method that uses it, like {@link #reduceKnoll(Pixmap)}. Uses
-     * {@link #labs} to look up fairly-accurate luma for the given colors in {@code ints} (that contains RGBA8888 colors
-     * while labs uses RGB555, so {@link #shrink(int)} is used to convert).
+     * {@link ColorTables#lab()} to look up fairly-accurate luma for the given colors in {@code ints} (that contains
+     * RGBA8888 colors while that table uses RGB555, so {@link #shrink(int)} is used to convert).
      * @param ints an int array than must be able to take a and b as indices; may be modified in place
      * @param a an index into ints
      * @param b an index into ints
      */
     protected void compareSwap(final int[] ints, final int a, final int b) {
-        if(labs[0][shrink(ints[a])] > labs[0][shrink(ints[b])]) {
+        final float[][] lab = ColorTables.lab();
+        if(lab[0][shrink(ints[a])] > lab[0][shrink(ints[b])]) {
             final int t = ints[a];
             ints[a] = ints[b];
             ints[b] = t;
@@ -5941,17 +6295,28 @@ public class PaletteReducer {
      * @return {@code pixmap}, after modifications
      */
     public Pixmap reduceKnoll (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceKnoll(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceKnoll(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceKnoll (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color, used, cr, cg, cb, usedIndex;
         final float errorMul = (float) (ditherStrength * 0.5 / populationBias);
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int er = 0, eg = 0, eb = 0;
                     cr = (color >>> 24);
@@ -5970,18 +6335,17 @@ public class PaletteReducer {
                         eb += cb - (used >>> 8 & 0xFF);
                     }
                     sort16(candidates);
-                    pixmap.drawPixel(px, y, candidates[thresholdMatrix[((px & 3) | (y & 3) << 2)]]);
+                    surface.drawPixel(px, y, candidates[thresholdMatrix[((px & 3) | (y & 3) << 2)]]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     public Pixmap reduceKnoll2 (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         for (int i = 0; i < colorCount; i++) {
-            paletteLightness[i] = OKLAB[0][shrink(paletteArray[i])];
+            paletteLightness[i] = oklab[0][shrink(paletteArray[i])];
         }
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
@@ -6588,13 +6952,179 @@ public class PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceOverboard2(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceOverboard2(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceOverboard2(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceOverboard2(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float strength = (float) (ditherStrength * 0.5 * (populationBias * populationBias)),
                 noiseStrength = (float) (2.0 / (populationBias)),
                 limit = 5f + 125f / (float)Math.sqrt(colorCount+1.5f);
+        diffuse(lineLen, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                byte paletteIndex;
+                int ny = y + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, y);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, y, 0);
+                    else {
+                        float er = 0f;
+                        float eg = 0f;
+                        float eb = 0f;
+                        switch ((px << 1 & 2) | (y & 1)){
+                            case 0:
+                                er += ((px ^ y) % 9 - 4);
+                                er += ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eg += (BlueNoise.getSeededTriangular(px, y, 0x11111) + 0.5f) * 0x1p-5f;
+                                eg += ((px * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eb += (BlueNoise.getSeededTriangular(px, y, 0x22222) + 0.5f) * 0x1p-6f;
+                                eb += ((y * 0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
+                                break;
+                            case 1:
+                                er += (BlueNoise.getSeededTriangular(px, y, 0x00000) + 0.5f) * 0x1p-5f;
+                                er += ((px * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eg += (BlueNoise.getSeededTriangular(px, y, 0x11111) + 0.5f) * 0x1p-6f;
+                                eg += ((y * 0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
+                                eb += ((px ^ y) % 11 - 5);
+                                eb += ((y * -0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
+                                break;
+                            case 2:
+                                er += (BlueNoise.getSeededTriangular(px, y, 0x00000) + 0.5f) * 0x1p-6f;
+                                er += ((y * 0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
+                                eg += ((px ^ y) % 11 - 5);
+                                eg += ((y * -0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
+                                eb += ((px ^ y) % 9 - 4);
+                                eb += ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                break;
+                            default: // case 3:
+                                er += ((px ^ y) % 11 - 5);
+                                er += ((y * -0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
+                                eg += ((px ^ y) % 9 - 4);
+                                eg += ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eb += (BlueNoise.getSeededTriangular(px, y, 0x22222) + 0.5f) * 0x1p-5f;
+                                eb += ((px * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                break;
+                        }
+                        er = er * noiseStrength + curErrorRed[px];
+                        eg = eg * noiseStrength + curErrorGreen[px];
+                        eb = eb * noiseStrength + curErrorBlue[px];
+                        int rr = Math.min(Math.max((int)(((color >>> 24)       ) + Math.min(Math.max(er, -limit), limit) + 0.5f), 0), 0xFF);
+                        int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + Math.min(Math.max(eg, -limit), limit) + 0.5f), 0), 0xFF);
+                        int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + Math.min(Math.max(eb, -limit), limit) + 0.5f), 0), 0xFF);
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                               | ((gg << 2) & 0x3E0)
+                                               | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, y, used);
+                        rdiff = ((color>>>24)-    (used>>>24)    ) * strength;
+                        gdiff = ((color>>>16&255)-(used>>>16&255)) * strength;
+                        bdiff = ((color>>>8&255)- (used>>>8&255) ) * strength;
+                        r1 = rdiff * 16f / (45f + Math.abs(rdiff));
+                        g1 = gdiff * 16f / (45f + Math.abs(gdiff));
+                        b1 = bdiff * 16f / (45f + Math.abs(bdiff));
+    //                    r1 = rdiff * 16f / (float)Math.sqrt(2048f + rdiff * rdiff);
+    //                    g1 = gdiff * 16f / (float)Math.sqrt(2048f + gdiff * gdiff);
+    //                    b1 = bdiff * 16f / (float)Math.sqrt(2048f + bdiff * bdiff);
+                        r2 = r1 + r1;
+                        g2 = g1 + g1;
+                        b2 = b1 + b1;
+                        r4 = r2 + r2;
+                        g4 = g2 + g2;
+                        b4 = b2 + b2;
+                        if(px < lineLen - 1)
+                        {
+                            curErrorRed[px+1]   += r4;
+                            curErrorGreen[px+1] += g4;
+                            curErrorBlue[px+1]  += b4;
+                            if(px < lineLen - 2)
+                            {
+
+                                curErrorRed[px+2]   += r2;
+                                curErrorGreen[px+2] += g2;
+                                curErrorBlue[px+2]  += b2;
+                            }
+                        }
+                        if(ny < h)
+                        {
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += r2;
+                                nextErrorGreen[px-1] += g2;
+                                nextErrorBlue[px-1]  += b2;
+                                if(px > 1)
+                                {
+                                    nextErrorRed[px-2]   += r1;
+                                    nextErrorGreen[px-2] += g1;
+                                    nextErrorBlue[px-2]  += b1;
+                                }
+                            }
+                            nextErrorRed[px]   += r4;
+                            nextErrorGreen[px] += g4;
+                            nextErrorBlue[px]  += b4;
+                            if(px < lineLen - 1)
+                            {
+                                nextErrorRed[px+1]   += r2;
+                                nextErrorGreen[px+1] += g2;
+                                nextErrorBlue[px+1]  += b2;
+                                if(px < lineLen - 2)
+                                {
+
+                                    nextErrorRed[px+2]   += r1;
+                                    nextErrorGreen[px+2] += g1;
+                                    nextErrorBlue[px+2]  += b1;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * An error-diffusion dither based on Burkes that adds offset copies of the R2 sequence (like
+     * {@link #reduceWeave(Pixmap)}) and seeded blue noise to each RGB channel separately. This is the same algorithm
+     * as {@link A8PaletteReducer#reduceWren(Pixmap)}, including its error handling in linear RGB through
+     * {@link A8PaletteReducer#toLinearLUT} and {@link A8PaletteReducer#fromLinearLUT}; it is here so that
+     * {@link #reduce(Pixmap, Dithered.DitherAlgorithm)} can use {@link Dithered.DitherAlgorithm#WREN}.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceWren(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceWren(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
+    /**
+     * Like {@link #reduceWren(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceWren(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        final float[] toLinearLUT = A8PaletteReducer.toLinearLUT;
+        final byte[] fromLinearLUT = A8PaletteReducer.fromLinearLUT;
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -6610,148 +7140,160 @@ public class PaletteReducer {
             nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
             curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
             nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-            for (int i = 0; i < lineLen; i++) {
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
+
+            Arrays.fill(nextErrorRed, 0, lineLen, 0);
+            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
+            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
+        float er, eg, eb;
         byte paletteIndex;
+        float partialDitherStrength = (float) (0.5 * ditherStrength / (populationBias * populationBias)),
+                strength = (float) (80.0 * ditherStrength / (populationBias * populationBias)),
+                blueStrength = (float) (0.3 * ditherStrength / (populationBias * populationBias)),
+                limit = 5f + 200f / (float)Math.sqrt(colorCount+1.5f),
+                r1, g1, b1, r2, g2, b2, r4, g4, b4;
+
         for (int y = 0; y < h; y++) {
-            int ny = y + 1;
-            for (int i = 0; i < lineLen; i++) {
-                curErrorRed[i] = nextErrorRed[i];
-                curErrorGreen[i] = nextErrorGreen[i];
-                curErrorBlue[i] = nextErrorBlue[i];
-                nextErrorRed[i] = 0;
-                nextErrorGreen[i] = 0;
-                nextErrorBlue[i] = 0;
-            }
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+
+            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
+            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
+            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
+
+            Arrays.fill(nextErrorRed, 0, lineLen, 0);
+            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
+            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
+
+            for (int x = 0; x < lineLen; x++) {
+                color = surface.getPixel(x, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(x, y, 0);
                 else {
-                    float er = 0f;
-                    float eg = 0f;
-                    float eb = 0f;
-                    switch ((px << 1 & 2) | (y & 1)){
-                        case 0:
-                            er += ((px ^ y) % 9 - 4);
-                            er += ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eg += (BlueNoise.getSeededTriangular(px, y, 0x11111) + 0.5f) * 0x1p-5f;
-                            eg += ((px * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eb += (BlueNoise.getSeededTriangular(px, y, 0x22222) + 0.5f) * 0x1p-6f;
-                            eb += ((y * 0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
-                            break;
-                        case 1:
-                            er += (BlueNoise.getSeededTriangular(px, y, 0x00000) + 0.5f) * 0x1p-5f;
-                            er += ((px * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eg += (BlueNoise.getSeededTriangular(px, y, 0x11111) + 0.5f) * 0x1p-6f;
-                            eg += ((y * 0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
-                            eb += ((px ^ y) % 11 - 5);
-                            eb += ((y * -0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
-                            break;
-                        case 2:
-                            er += (BlueNoise.getSeededTriangular(px, y, 0x00000) + 0.5f) * 0x1p-6f;
-                            er += ((y * 0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
-                            eg += ((px ^ y) % 11 - 5);
-                            eg += ((y * -0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
-                            eb += ((px ^ y) % 9 - 4);
-                            eb += ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            break;
-                        default: // case 3:
-                            er += ((px ^ y) % 11 - 5);
-                            er += ((y * -0xC13FA9A902A6328FL + px * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
-                            eg += ((px ^ y) % 9 - 4);
-                            eg += ((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eb += (BlueNoise.getSeededTriangular(px, y, 0x22222) + 0.5f) * 0x1p-5f;
-                            eb += ((px * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            break;
-                    }
-                    er = er * noiseStrength + curErrorRed[px];
-                    eg = eg * noiseStrength + curErrorGreen[px];
-                    eb = eb * noiseStrength + curErrorBlue[px];
-                    int rr = Math.min(Math.max((int)(((color >>> 24)       ) + Math.min(Math.max(er, -limit), limit) + 0.5f), 0), 0xFF);
-                    int gg = Math.min(Math.max((int)(((color >>> 16) & 0xFF) + Math.min(Math.max(eg, -limit), limit) + 0.5f), 0), 0xFF);
-                    int bb = Math.min(Math.max((int)(((color >>> 8)  & 0xFF) + Math.min(Math.max(eb, -limit), limit) + 0.5f), 0), 0xFF);
+                    er = Math.min(Math.max(( ( (BlueNoise.getSeededTriangular(x, y, 0xAAAAA) + 0.5f) * blueStrength + ((((x+1) * 0xC13FA9A902A6328FL + (y+1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-24f - 0x1.4p-2f) * strength)), -limit), limit) + (curErrorRed[x]);
+                    eg = Math.min(Math.max(( ( (BlueNoise.getSeededTriangular(x, y, 0xBBBBB) + 0.5f) * blueStrength + ((((x+3) * 0xC13FA9A902A6328FL + (y-1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-24f - 0x1.4p-2f) * strength)), -limit), limit) + (curErrorGreen[x]);
+                    eb = Math.min(Math.max(( ( (BlueNoise.getSeededTriangular(x, y, 0xCCCCC) + 0.5f) * blueStrength + ((((x+2) * 0xC13FA9A902A6328FL + (y-4) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-24f - 0x1.4p-2f) * strength)), -limit), limit) + (curErrorBlue[x]);
+
+                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
+                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
+                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
                     paletteIndex =
                             paletteMapping[((rr << 7) & 0x7C00)
-                                           | ((gg << 2) & 0x3E0)
-                                           | ((bb >>> 3))];
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
-                    rdiff = ((color>>>24)-    (used>>>24)    ) * strength;
-                    gdiff = ((color>>>16&255)-(used>>>16&255)) * strength;
-                    bdiff = ((color>>>8&255)- (used>>>8&255) ) * strength;
-                    r1 = rdiff * 16f / (45f + Math.abs(rdiff));
-                    g1 = gdiff * 16f / (45f + Math.abs(gdiff));
-                    b1 = bdiff * 16f / (45f + Math.abs(bdiff));
-//                    r1 = rdiff * 16f / (float)Math.sqrt(2048f + rdiff * rdiff);
-//                    g1 = gdiff * 16f / (float)Math.sqrt(2048f + gdiff * gdiff);
-//                    b1 = bdiff * 16f / (float)Math.sqrt(2048f + bdiff * bdiff);
+                    surface.drawPixel(x, y, used);
+                    rdiff = ((color>>>24)-    (used>>>24))     * partialDitherStrength;
+                    gdiff = ((color>>>16&255)-(used>>>16&255)) * partialDitherStrength;
+                    bdiff = ((color>>>8&255)- (used>>>8&255))  * partialDitherStrength;
+
+                    r1 = rdiff * 16f / (float)Math.sqrt(2048f + rdiff * rdiff);
+                    g1 = gdiff * 16f / (float)Math.sqrt(2048f + gdiff * gdiff);
+                    b1 = bdiff * 16f / (float)Math.sqrt(2048f + bdiff * bdiff);
                     r2 = r1 + r1;
                     g2 = g1 + g1;
                     b2 = b1 + b1;
                     r4 = r2 + r2;
                     g4 = g2 + g2;
                     b4 = b2 + b2;
-                    if(px < lineLen - 1)
+                    if(x < lineLen - 1)
                     {
-                        curErrorRed[px+1]   += r4;
-                        curErrorGreen[px+1] += g4;
-                        curErrorBlue[px+1]  += b4;
-                        if(px < lineLen - 2)
+                        curErrorRed[x+1]   += r4;
+                        curErrorGreen[x+1] += g4;
+                        curErrorBlue[x+1]  += b4;
+                        if(x < lineLen - 2)
                         {
 
-                            curErrorRed[px+2]   += r2;
-                            curErrorGreen[px+2] += g2;
-                            curErrorBlue[px+2]  += b2;
+                            curErrorRed[x+2]   += r2;
+                            curErrorGreen[x+2] += g2;
+                            curErrorBlue[x+2]  += b2;
                         }
                     }
-                    if(ny < h)
+                    if(y+1 < h)
                     {
-                        if(px > 0)
+                        if(x > 0)
                         {
-                            nextErrorRed[px-1]   += r2;
-                            nextErrorGreen[px-1] += g2;
-                            nextErrorBlue[px-1]  += b2;
-                            if(px > 1)
+                            nextErrorRed[x-1]   += r2;
+                            nextErrorGreen[x-1] += g2;
+                            nextErrorBlue[x-1]  += b2;
+                            if(x > 1)
                             {
-                                nextErrorRed[px-2]   += r1;
-                                nextErrorGreen[px-2] += g1;
-                                nextErrorBlue[px-2]  += b1;
+                                nextErrorRed[x-2]   += r1;
+                                nextErrorGreen[x-2] += g1;
+                                nextErrorBlue[x-2]  += b1;
                             }
                         }
-                        nextErrorRed[px]   += r4;
-                        nextErrorGreen[px] += g4;
-                        nextErrorBlue[px]  += b4;
-                        if(px < lineLen - 1)
+                        nextErrorRed[x]   += r4;
+                        nextErrorGreen[x] += g4;
+                        nextErrorBlue[x]  += b4;
+                        if(x < lineLen - 1)
                         {
-                            nextErrorRed[px+1]   += r2;
-                            nextErrorGreen[px+1] += g2;
-                            nextErrorBlue[px+1]  += b2;
-                            if(px < lineLen - 2)
+                            nextErrorRed[x+1]   += r2;
+                            nextErrorGreen[x+1] += g2;
+                            nextErrorBlue[x+1]  += b2;
+                            if(x < lineLen - 2)
                             {
 
-                                nextErrorRed[px+2]   += r1;
-                                nextErrorGreen[px+2] += g1;
-                                nextErrorBlue[px+2]  += b1;
+                                nextErrorRed[x+2]   += r1;
+                                nextErrorGreen[x+2] += g1;
+                                nextErrorBlue[x+2]  += b1;
                             }
                         }
                     }
                 }
             }
-
         }
+    }
+
+
+    /**
+     * Simple ordered dither using an 8x8 Bayer matrix (or threshold matrix), adjusting strength using colorCount. This
+     * is the same algorithm as {@link A8PaletteReducer#reduceBayer(Pixmap)}, which works in linear RGB; it is here so
+     * that {@link #reduce(Pixmap, Dithered.DitherAlgorithm)} can use {@link Dithered.DitherAlgorithm#BAYER}.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceBayer(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceBayer(PixelSurface.of(pixmap));
         pixmap.setBlending(blending);
         return pixmap;
     }
 
+    /**
+     * Like {@link #reduceBayer(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceBayer(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        final float[] toLinearLUT = A8PaletteReducer.toLinearLUT;
+        final byte[] fromLinearLUT = A8PaletteReducer.fromLinearLUT;
+        final float strength = (float) (10.0 * ditherStrength * Math.pow(colorCount, -0.4));
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        int color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            float adj = (thresholdMatrix64[((px & 7) | (y & 7) << 3)] - 31.5f) * strength;
+                            int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + adj, 0), 1023)] & 255;
+                            int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + adj, 0), 1023)] & 255;
+                            int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + adj, 0), 1023)] & 255;
+                            int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
+                            surface.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
     private static double signPreservingSquare(double n) {
         return n * Math.abs(n);
     }
@@ -6761,29 +7303,43 @@ public class PaletteReducer {
      * @return
      */
     public Pixmap reduceGourd(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
+        reduceGourd(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceGourd(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceGourd(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float strength = (float)(0x1p-8f * ditherStrength / populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    float adj = (thresholdMatrix64[(px & 7) | (y & 7) << 3] - 31.5f) * strength;
-                    int rr = Math.min(Math.max((int)(signPreservingSquare(Math.sqrt(((color >>> 24)       ) * (1f/255f)) + adj) * 255), 0), 255);
-                    int gg = Math.min(Math.max((int)(signPreservingSquare(Math.sqrt(((color >>> 16) & 0xFF) * (1f/255f)) + adj) * 255), 0), 255);
-                    int bb = Math.min(Math.max((int)(signPreservingSquare(Math.sqrt(((color >>> 8)  & 0xFF) * (1f/255f)) + adj) * 255), 0), 255);
-                    int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            float adj = (thresholdMatrix64[(px & 7) | (y & 7) << 3] - 31.5f) * strength;
+                            int rr = Math.min(Math.max((int)(signPreservingSquare(Math.sqrt(((color >>> 24)       ) * (1f/255f)) + adj) * 255), 0), 255);
+                            int gg = Math.min(Math.max((int)(signPreservingSquare(Math.sqrt(((color >>> 16) & 0xFF) * (1f/255f)) + adj) * 255), 0), 255);
+                            int bb = Math.min(Math.max((int)(signPreservingSquare(Math.sqrt(((color >>> 8)  & 0xFF) * (1f/255f)) + adj) * 255), 0), 255);
+                            int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
+                            surface.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     private static final float[] tempThresholdMatrix = new float[64];
@@ -0,0 +1,217 @@
+package colorweaver;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.util.Arrays;
+
+/**
+ * A higher-precision version of {@link PaletteReducer#paletteMapping}, which finds the nearest palette color using 6
+ * or 7 bits of each channel (an 18-bit or 21-bit key) instead of 5. The 15-bit mapping makes every color in each
+ * 8x8x8 block of RGB888 colors use the same palette color, which shows up as banding when a large palette has many
+ * colors close together, such as a 256-color palette reducing a smooth gradient. This keeps that precision without
+ * building a 256KB or 2MB table up front: the first level is indexed by the same RGB555 cell as paletteMapping, and
+ * each cell only gets a second-level block (8 entries for 6 bits, 64 for 7 bits) the first time a color in that cell
+ * is looked up, and each entry in that block is only filled the first time it is needed. Most images only touch a
+ * small fraction of cells, so memory use and build time grow with the colors actually used.
+ * <br>
+ * The lookup tables used by the {@link PaletteReducer.ColorMetric} constants are themselves indexed by RGB555 colors, so
+ * they can't tell apart the colors this is meant to separate; instead, this computes Oklab coordinates directly from
+ * the full 8-bit channels, and compares colors the same way as {@link PaletteReducer#oklabMetric}.
+ * <br>
+ * Like PaletteReducer, this isn't safe to use from several threads at once, since lookups fill in the table.
+ */
+public class PreciseMapping {
+    /**
+     * How many bits of each channel are used to look up colors; either 6 or 7.
+     */
+    public final int bits;
+    /**
+     * The palette this maps to, copied from a PaletteReducer or given to the constructor.
+     */
+    public final int[] paletteArray = new int[256];
+    public final int colorCount;
+
+    protected final int extra, subMask, candidates;
+    protected final int[] indices;
+    protected final double[] paletteL, paletteA, paletteB;
+    /**
+     * The second-level blocks, one per RGB555 cell, each null until a color in that cell is looked up. Each entry in a
+     * block is 0 until it is filled, or a palette index plus 1 after.
+     */
+    protected final char[][] blocks = new char[0x8000][];
+    protected int blockCount;
+    private final double[] lab = new double[3];
+
+    /**
+     * Creates a PreciseMapping using the palette of {@code reducer} and 6 bits per channel (an 18-bit key).
+     * @param reducer a PaletteReducer that already has the palette to use
+     */
+    public PreciseMapping(PaletteReducer reducer) {
+        this(reducer.paletteArray, reducer.colorCount, 6);
+    }
+
+    /**
+     * Creates a PreciseMapping using the palette of {@code reducer} and the given number of bits per channel.
+     * @param reducer a PaletteReducer that already has the palette to use
+     * @param bits    6 for an 18-bit key or 7 for a 21-bit key; other values are clamped to that range
+     */
+    public PreciseMapping(PaletteReducer reducer, int bits) {
+        this(reducer.paletteArray, reducer.colorCount, bits);
+    }
+
+    /**
+     * Creates a PreciseMapping using up to 256 RGBA8888 colors from {@code palette}. Colors with less than half alpha
+     * are never picked; {@link #reduceIndex(int)} returns 0 for colors with less than half alpha, so index 0 is
+     * usually transparent, but if index 0 is opaque it can be picked like any other color.
+     * @param palette an array of RGBA8888 colors
+     * @param count   how many colors of palette to use, at most 256
+     * @param bits    6 for an 18-bit key or 7 for a 21-bit key; other values are clamped to that range
+     */
+    public PreciseMapping(int[] palette, int count, int bits) {
+        this.bits = Math.min(Math.max(bits, 6), 7);
+        extra = this.bits - 5;
+        subMask = (1 << extra) - 1;
+        colorCount = Math.min(Math.min(count, 256), palette.length);
+        System.arraycopy(palette, 0, paletteArray, 0, colorCount);
+        indices = new int[colorCount];
+        paletteL = new double[colorCount];
+        paletteA = new double[colorCount];
+        paletteB = new double[colorCount];
+        int n = 0;
+        for (int i = 0; i < colorCount; i++) {
+            final int color = paletteArray[i];
+            if ((color & 0x80) == 0) continue;
+            oklab(color >>> 24, color >>> 16 & 0xFF, color >>> 8 & 0xFF, lab);
+            indices[n] = i;
+            paletteL[n] = lab[0];
+            paletteA[n] = lab[1];
+            paletteB[n] = lab[2];
+            n++;
+        }
+        candidates = n;
+    }
+
+    /**
+     * Gets the Oklab coordinates of an RGB888 color, using the same steps as {@link ColorTables#oklab()} but with the
+     * full 8-bit channels.
+     */
+    private static void oklab(int r8, int g8, int b8, double[] out) {
+        final double r = r8 * r8 * 1.5378700499807768E-5, // 1.0 / 255.0 / 255.0
+                g = g8 * g8 * 1.5378700499807768E-5,
+                b = b8 * b8 * 1.5378700499807768E-5;
+        final double l = Math.cbrt(0.4121656120 * r + 0.5362752080 * g + 0.0514575653 * b);
+        final double m = Math.cbrt(0.2118591070 * r + 0.6807189584 * g + 0.1074065790 * b);
+        final double s = Math.cbrt(0.0883097947 * r + 0.2818474174 * g + 0.6302613616 * b);
+        out[0] = PaletteReducer.forwardLight(0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s);
+        out[1] = 1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s;
+        out[2] = 0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s;
+    }
+
+    /**
+     * Finds the palette index closest to the given color, checking every palette color.
+     */
+    private int nearest(int r8, int g8, int b8) {
+        oklab(r8, g8, b8, lab);
+        double dist = Double.POSITIVE_INFINITY;
+        int best = 0;
+        for (int i = 0; i < candidates; i++) {
+            double L = paletteL[i] - lab[0], A = paletteA[i] - lab[1], B = paletteB[i] - lab[2];
+            L *= L;
+            A *= A;
+            B *= B;
+            final double d = L * L + A * A + B * B;
+            if (d < dist) {
+                dist = d;
+                best = indices[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Expands a channel with {@link #bits} bits to 8 bits, repeating its top bits at the bottom.
+     */
+    private int expand(int q) {
+        return (q << 8 - bits | q >>> bits + bits - 8) & 0xFF;
+    }
+
+    /**
+     * Looks up {@code color} and finds the closest color to it in the palette, filling in the table if this is the
+     * first time a color like it has been looked up. The parameter is a RGBA8888 int, the returned color is a byte
+     * index into {@link #paletteArray}.
+     * @param color an RGBA8888 int that represents a color this should try to find a similar color for in its palette
+     * @return a byte index that can be used to look up a color from the {@link #paletteArray}
+     */
+    public byte reduceIndex(int color) {
+        if ((color & 0x80) == 0) // less visible than half-transparent
+            return 0; // transparent
+        final int cell = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
+        char[] block = blocks[cell];
+        if (block == null) {
+            block = blocks[cell] = new char[1 << extra * 3];
+            blockCount++;
+        }
+        final int shift = 8 - bits,
+                r = color >>> 24 + shift, g = color >>> 16 + shift & 0xFF >>> shift, b = color >>> 8 + shift & 0xFF >>> shift,
+                sub = (r & subMask) << extra + extra | (g & subMask) << extra | (b & subMask);
+        int index = block[sub];
+        if (index == 0)
+            block[sub] = (char) (index = nearest(expand(r), expand(g), expand(b)) + 1);
+        return (byte) (index - 1);
+    }
+
+    /**
+     * Looks up {@code color} and finds the closest color to it in the palette, filling in the table if this is the
+     * first time a color like it has been looked up. Both the parameter and the returned color are RGBA8888 ints.
+     * @param color an RGBA8888 int that represents a color this should try to find a similar color for in its palette
+     * @return an RGBA8888 int representing a color from this palette, or 0 if color is mostly transparent
+     */
+    public int reduceSingle(int color) {
+        if ((color & 0x80) == 0) // less visible than half-transparent
+            return 0; // transparent
+        return paletteArray[reduceIndex(color) & 0xFF];
+    }
+
+    /**
+     * Modifies the given Pixmap so it only uses colors present in this palette, without dithering, like
+     * {@link PaletteReducer#reduceSolid(Pixmap)} but with the extra precision this has. This works best on images
+     * with smooth gradients, which would otherwise get visible steps wherever the 15-bit mapping changes color.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceSolid(Pixmap pixmap) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        int color;
+        for (int y = 0; y < h; y++) {
+            for (int px = 0; px < lineLen; px++) {
+                color = pixmap.getPixel(px, y);
+                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                    pixmap.drawPixel(px, y, 0);
+                else
+                    pixmap.drawPixel(px, y, paletteArray[reduceIndex(color | 0x80) & 0xFF]);
+            }
+        }
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Gets how many RGB555 cells have had a second-level block allocated so far; each uses 2 bytes per entry, with
+     * 8 entries when {@link #bits} is 6 or 64 when it is 7.
+     * @return how many second-level blocks have been allocated
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Removes every second-level block, freeing their memory; they will be filled again as colors are looked up.
+     */
+    public void clear() {
+        Arrays.fill(blocks, null);
+        blockCount = 0;
+    }
+}
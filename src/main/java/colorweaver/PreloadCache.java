@@ -0,0 +1,282 @@
+package colorweaver;
+
+import colorweaver.PaletteReducer.ColorMetric;
+import colorweaver.a8.A8PaletteReducer;
+import colorweaver.annotation.GwtIncompatible;
+import colorweaver.tools.StringKit;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Stores the 32KB {@link PaletteReducer#paletteMapping} built for a palette in a directory, so later runs (even in a
+ * different JVM) can load it instead of building it again. This is the automatic version of passing a preload byte
+ * array to {@link PaletteReducer#exact(int[], byte[])}: each file is keyed by a hash of the palette and of the
+ * ColorMetric (or A8PaletteReducer subclass) used to build it, is read with a memory-mapped read, and is written the
+ * first time a palette is seen. Each file also stores the palette it was built from, so a hash collision just causes
+ * the mapping to be built again rather than using the wrong one.
+ * <br>
+ * Built-in metrics are identified by the name of their field in PaletteReducer, such as "oklabMetric"; other metrics
+ * are identified by their class name, so a metric class should always compute the same thing if its results are
+ * cached. Use {@link #clear()} or a new {@link #VERSION} if that ever changes.
+ * <br>
+ * Several threads or processes can share one directory; files are written to a temporary name and then moved into
+ * place, so a reader never sees a partly-written mapping. If the directory can't be read or written, this just builds
+ * the mapping as if there were no cache.
+ */
+@GwtIncompatible
+public class PreloadCache {
+    /**
+     * Changes whenever the way mappings are built changes in a way that would make older cache files wrong.
+     */
+    public static final int VERSION = 3;
+
+    private static final int MAGIC = 0x43574D50; // "CWMP"
+    private static final String SUFFIX = ".cwmap";
+
+    private static final IdentityHashMap<ColorMetric, String> metricNames = new IdentityHashMap<>(32);
+
+    /**
+     * The directory that cache files are stored in; it is created if it doesn't exist.
+     */
+    public final File directory;
+
+    /**
+     * Creates a PreloadCache that reads and writes mappings in the given directory, creating it if needed.
+     * @param directory where to store cached mappings; should not be used for anything else
+     */
+    public PreloadCache(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    /**
+     * Acts like {@link PaletteReducer#exact(int[], ColorMetric)}, but loads the mapping from this cache if it is
+     * present, or builds it and stores it in this cache if it isn't.
+     * @param reducer     the PaletteReducer to change
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items or the length of the array
+     * @param metric      the ColorMetric to build the mapping with
+     */
+    public void exact(PaletteReducer reducer, int[] rgbaPalette, ColorMetric metric) {
+        exact(reducer, rgbaPalette, 256, metric);
+    }
+
+    /**
+     * Acts like {@link PaletteReducer#exact(int[], int, ColorMetric)}, but loads the mapping from this cache if it is
+     * present, or builds it and stores it in this cache if it isn't.
+     * @param reducer     the PaletteReducer to change
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items, limit, or the length of the array
+     * @param limit       a limit on how many int items to use from rgbaPalette
+     * @param metric      the ColorMetric to build the mapping with
+     */
+    public void exact(PaletteReducer reducer, int[] rgbaPalette, int limit, ColorMetric metric) {
+        if (rgbaPalette == null || rgbaPalette.length < 2 || limit < 2) {
+            reducer.exact(rgbaPalette, limit, metric);
+            return;
+        }
+        final int[] palette = opaque(rgbaPalette, limit);
+        final String key = key(metricName(metric), palette);
+        final byte[] mapping = load(key, palette);
+        if (mapping != null) {
+            Arrays.fill(reducer.paletteArray, 0);
+            reducer.exact(palette, mapping);
+        } else {
+            reducer.exact(rgbaPalette, limit, metric);
+            store(key, palette, reducer.paletteMapping);
+        }
+    }
+
+    /**
+     * Acts like {@link A8PaletteReducer#exact(int[])}, but loads the mapping from this cache if it is present, or
+     * builds it and stores it in this cache if it isn't.
+     * @param reducer     the A8PaletteReducer to change
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items or the length of the array
+     */
+    public void exact(A8PaletteReducer reducer, int[] rgbaPalette) {
+        exact(reducer, rgbaPalette, 256);
+    }
+
+    /**
+     * Acts like {@link A8PaletteReducer#exact(int[], int)}, but loads the mapping from this cache if it is present, or
+     * builds it and stores it in this cache if it isn't. Since A8PaletteReducer doesn't use a ColorMetric, the
+     * class of reducer is used to identify how the mapping was built.
+     * @param reducer     the A8PaletteReducer to change
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items, limit, or the length of the array
+     * @param limit       a limit on how many int items to use from rgbaPalette
+     */
+    public void exact(A8PaletteReducer reducer, int[] rgbaPalette, int limit) {
+        if (rgbaPalette == null || rgbaPalette.length < 2 || limit < 2) {
+            reducer.exact(rgbaPalette, limit);
+            return;
+        }
+        final int[] palette = opaque(rgbaPalette, limit);
+        final String key = key(reducer.getClass().getName(), palette);
+        final byte[] mapping = load(key, palette);
+        if (mapping != null) {
+            Arrays.fill(reducer.paletteArray, 0);
+            reducer.exact(palette, mapping);
+        } else {
+            reducer.exact(rgbaPalette, limit);
+            store(key, palette, reducer.paletteMapping);
+        }
+    }
+
+    /**
+     * Copies the part of rgbaPalette that exact() would use, with any color that exact() would skip (because its
+     * alpha is less than half) changed to 0.
+     */
+    static int[] opaque(int[] rgbaPalette, int limit) {
+        final int plen = Math.min(Math.min(256, limit), rgbaPalette.length);
+        final int[] palette = new int[plen];
+        for (int i = 0; i < plen; i++) {
+            if ((rgbaPalette[i] & 0x80) != 0)
+                palette[i] = rgbaPalette[i];
+        }
+        return palette;
+    }
+
+    /**
+     * Gets the name used to identify {@code metric} in cache keys. For the ColorMetric constants in PaletteReducer,
+     * this is the name of the field (the first in alphabetical order if a metric has more than one name); for other
+     * metrics, this is the name of the metric's class. A {@link CachedMetric} gets the name of the metric it wraps,
+     * since it gives the same differences and so builds the same mapping.
+     * @param metric a ColorMetric
+     * @return a name for metric that stays the same between runs
+     */
+    public static String metricName(ColorMetric metric) {
+        while (metric instanceof CachedMetric)
+            metric = ((CachedMetric) metric).getMetric();
+        synchronized (metricNames) {
+            if (metricNames.isEmpty()) {
+                for (Field field : PaletteReducer.class.getFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) && ColorMetric.class.isAssignableFrom(field.getType())) {
+                        try {
+                            final ColorMetric m = (ColorMetric) field.get(null);
+                            final String existing = metricNames.get(m);
+                            if (m != null && (existing == null || field.getName().compareTo(existing) < 0))
+                                metricNames.put(m, field.getName());
+                        } catch (IllegalAccessException ignored) {
+                        }
+                    }
+                }
+            }
+            final String name = metricNames.get(metric);
+            return name == null ? metric.getClass().getName() : name;
+        }
+    }
+
+    /**
+     * Gets the file name (without the directory) that a mapping for the given palette would be stored under.
+     * @param kind    identifies how the mapping is built, such as a metric name from {@link #metricName(ColorMetric)}
+     * @param palette the palette, exactly as it should be stored in {@link PaletteReducer#paletteArray}
+     * @return a file name that depends on kind, palette, and {@link #VERSION}
+     */
+    public static String key(String kind, int[] palette) {
+        long h = 0x9E3779B97F4A7C15L ^ VERSION;
+        for (int i = 0; i < kind.length(); i++) {
+            h = (h ^ kind.charAt(i)) * 0xD1342543DE82EF95L;
+            h ^= h >>> 29;
+        }
+        h = (h ^ palette.length) * 0xD1342543DE82EF95L;
+        for (int i = 0; i < palette.length; i++) {
+            h = (h ^ palette[i]) * 0xD1342543DE82EF95L;
+            h ^= h >>> 29;
+        }
+        final StringBuilder sb = new StringBuilder(kind.length() + 24);
+        for (int i = 0; i < kind.length(); i++) {
+            final char c = kind.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '.' ? c : '_');
+        }
+        return sb.append('-').append(StringKit.hex(h)).append(SUFFIX).toString();
+    }
+
+    /**
+     * Loads a mapping from the file for key, if it exists and was built from exactly {@code palette}. The file is
+     * read with a memory-mapped read.
+     * @param key     a file name from {@link #key(String, int[])}
+     * @param palette the palette the mapping must have been built from
+     * @return a new 32768-element byte array with the mapping, or null if it isn't in the cache
+     */
+    public byte[] load(String key, int[] palette) {
+        final Path path = new File(directory, key).toPath();
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size != 12L + palette.length * 4L + 0x8000) return null;
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != palette.length)
+                return null;
+            for (int i = 0; i < palette.length; i++) {
+                if (buffer.getInt() != palette[i]) return null;
+            }
+            final byte[] mapping = new byte[0x8000];
+            buffer.get(mapping);
+            return mapping;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a mapping in the file for key, replacing any file already there.
+     * @param key     a file name from {@link #key(String, int[])}
+     * @param palette the palette the mapping was built from
+     * @param mapping a 32768-element byte array, such as {@link PaletteReducer#paletteMapping}
+     * @return true if the mapping was stored, or false if it couldn't be written
+     */
+    public boolean store(String key, int[] palette, byte[] mapping) {
+        Path temp = null;
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(12 + palette.length * 4 + 0x8000);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(palette.length);
+            for (int i = 0; i < palette.length; i++) {
+                buffer.putInt(palette[i]);
+            }
+            buffer.put(mapping, 0, 0x8000).flip();
+            temp = Files.createTempFile(directory.toPath(), "map", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            final Path path = new File(directory, key).toPath();
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Deletes every cached mapping in {@link #directory}.
+     */
+    public void clear() {
+        final File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX))
+                file.delete();
+        }
+    }
+}
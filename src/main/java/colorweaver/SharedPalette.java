@@ -0,0 +1,126 @@
+package colorweaver;
+
+import colorweaver.annotation.GwtIncompatible;
+
+/**
+ * An unchangeable palette and its 32KB color mapping, which can be used by any number of {@link PaletteReducer}s on
+ * any number of threads at once. A PaletteReducer mixes the palette data (which only changes when a palette is built)
+ * with scratch state used while dithering, like its error arrays and dither strength, so one PaletteReducer can't
+ * dither on two threads at the same time. A SharedPalette holds just the palette data, and each thread can get its
+ * own PaletteReducer that reads the same mapping with {@link #newReducer()} or {@link #reducer()}; the mapping is
+ * never copied, and no locking is needed.
+ * <br>
+ * Build a palette the usual way with a PaletteReducer (using {@link PaletteReducer#exact(int[])},
+ * {@link PaletteReducer#analyze(com.badlogic.gdx.graphics.Pixmap)}, or a preload), then pass that PaletteReducer to
+ * {@link #SharedPalette(PaletteReducer)}; the palette and mapping are copied once, so changing the original
+ * PaletteReducer afterwards won't affect the SharedPalette.
+ * <br>
+ * The PaletteReducers this hands out store the shared mapping in their public {@link PaletteReducer#paletteMapping}
+ * field. Nothing in PaletteReducer writes to a shared mapping (building a new palette allocates a new one), but code
+ * that writes to that field's array directly would change the mapping for every thread, so it must be treated as
+ * read-only. {@link #copyMapping()} gets a copy that can be changed.
+ */
+public final class SharedPalette {
+    final int[] paletteArray = new int[256];
+    final byte[] paletteMapping;
+    /**
+     * How many colors are in the palette, including any transparent color at index 0.
+     */
+    public final int colorCount;
+    /**
+     * The population bias the palette was built with; this affects how strongly some dithers are applied.
+     */
+    public final double populationBias;
+
+    @GwtIncompatible
+    private final ThreadLocal<PaletteReducer> reducers = new ThreadLocal<PaletteReducer>() {
+        @Override
+        protected PaletteReducer initialValue() {
+            return newReducer();
+        }
+    };
+
+    /**
+     * Copies the current palette and mapping from {@code reducer}.
+     * @param reducer a PaletteReducer that already has the palette this should use
+     */
+    public SharedPalette(PaletteReducer reducer) {
+        System.arraycopy(reducer.paletteArray, 0, paletteArray, 0, 256);
+        paletteMapping = new byte[0x8000];
+        System.arraycopy(reducer.paletteMapping, 0, paletteMapping, 0, 0x8000);
+        colorCount = reducer.colorCount;
+        populationBias = reducer.populationBias;
+    }
+
+    /**
+     * Uses the given palette with a preload mapping, as {@link PaletteReducer#exact(int[], byte[])} would. Both arrays
+     * are copied.
+     * @param palette an array of RGBA8888 ints to use as a palette
+     * @param preload a 32768-element byte array with the mapping for palette
+     */
+    public SharedPalette(int[] palette, byte[] preload) {
+        this(new PaletteReducer(palette, preload));
+    }
+
+    /**
+     * Makes a new PaletteReducer that uses this palette and shares its mapping. The PaletteReducer has its own dither
+     * strength and scratch arrays, so it can dither on one thread while other PaletteReducers using this palette
+     * dither on other threads. Its {@link PaletteReducer#paletteMapping} is the shared array, and must not be modified.
+     * @return a new PaletteReducer using this palette
+     */
+    public PaletteReducer newReducer() {
+        return new PaletteReducer(this);
+    }
+
+    /**
+     * Gets a PaletteReducer that uses this palette, only for use on the current thread. Each thread gets its own
+     * PaletteReducer the first time it calls this, and the same one every time after. Because that PaletteReducer is
+     * reused, any setting changed on it (like {@link PaletteReducer#setDitherStrength(float)}) stays changed for the
+     * next call on the same thread. Its {@link PaletteReducer#paletteMapping} is the shared array, and must not be
+     * modified.
+     * @return a PaletteReducer for the current thread using this palette
+     */
+    @GwtIncompatible
+    public PaletteReducer reducer() {
+        return reducers.get();
+    }
+
+    /**
+     * Gets the RGBA8888 color at the given index in the palette.
+     * @param index a palette index, from 0 to 255
+     * @return the RGBA8888 color at that index
+     */
+    public int getColor(int index) {
+        return paletteArray[index & 255];
+    }
+
+    /**
+     * Gets the palette index that an RGBA8888 color is reduced to, without dithering.
+     * @param rgba an RGBA8888 color
+     * @return the palette index, from 0 to 255
+     */
+    public int indexOf(int rgba) {
+        return paletteMapping[(rgba >>> 17 & 0x7C00) | (rgba >>> 14 & 0x3E0) | (rgba >>> 11 & 0x1F)] & 0xFF;
+    }
+
+    /**
+     * Copies the palette into a new 256-element array of RGBA8888 ints.
+     * @return a copy of the palette
+     */
+    public int[] copyPalette() {
+        final int[] copy = new int[256];
+        System.arraycopy(paletteArray, 0, copy, 0, 256);
+        return copy;
+    }
+
+    /**
+     * Copies the mapping into a new 32768-element byte array, which can be used as a preload with
+     * {@link PaletteReducer#exact(int[], byte[])}.
+     * @return a copy of the mapping
+     */
+    public byte[] copyMapping() {
+        final byte[] copy = new byte[0x8000];
+        System.arraycopy(paletteMapping, 0, copy, 0, 0x8000);
+        return copy;
+    }
+}
@@ -0,0 +1,362 @@
+package colorweaver;
+
+import colorweaver.PaletteReducer.ColorMetric;
+import colorweaver.annotation.GwtIncompatible;
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Many precomputed lookup tables packed into one binary file, so a program can load all of them at startup with one
+ * bulk read instead of computing each one. A bundle can hold the color space tables from {@link ColorTables}, the
+ * 32KB {@link PaletteReducer#paletteMapping} for any palette and {@link ColorMetric}, and the 64KB mappings that
+ * {@link Colorizer#arbitraryColorizer(int[])}, {@link Colorizer#arbitraryBonusColorizer(int[])}, and
+ * {@link Colorizer#arbitraryWarmingColorizer(int[], float)} build for a palette.
+ * <br>
+ * A bundle is written ahead of time, usually as a build step, by running {@link #main(String[])} or by calling the
+ * {@code add} methods and then {@link #write(File)}. At runtime, {@link #read(File)} memory-maps a bundle file,
+ * {@link #read(FileHandle)} or {@link #read(InputStream)} read it all at once (which works for classpath resources and
+ * Android assets too), and {@link #install()} makes ColorTables, PaletteReducer, and Colorizer use whatever the bundle
+ * has. Install a bundle before anything uses those classes, such as before the static Colorizers in
+ * {@link Colorizer} are loaded; tables that were already built aren't replaced. Anything not in the bundle is just
+ * computed as usual, so a bundle built for some palettes never causes wrong results for others.
+ * <br>
+ * Each mapping is stored with the palette it was built from, and is only used for exactly that palette. Mappings for
+ * PaletteReducer are identified by {@link PreloadCache#metricName(ColorMetric)}, so the same rules apply here as in
+ * {@link PreloadCache}: a bundle should be rebuilt whenever a metric changes what it computes.
+ */
+@GwtIncompatible
+public class TableBundle {
+    /**
+     * Changes whenever the file format or the way tables are built changes in a way that would make older bundles
+     * wrong; bundles with a different version can't be read.
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * The kind used for the YCoCg mapping that {@link Colorizer#arbitraryColorizer(int[])} and
+     * {@link Colorizer#arbitraryBonusColorizer(int[])} use.
+     */
+    public static final String YCOCG = "ycocg";
+    /**
+     * The kind used for the luma, warm, and mild mapping that {@link Colorizer#arbitraryWarmingColorizer(int[], float)}
+     * uses.
+     */
+    public static final String YCWCM = "ycwcm";
+
+    private static final int MAGIC = 0x43575442; // "CWTB"
+
+    private static volatile TableBundle installed;
+
+    private final LinkedHashMap<String, float[][]> tables = new LinkedHashMap<>(8);
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(32);
+
+    private static final class Entry {
+        final String kind;
+        final int[] palette;
+        final byte[] data;
+
+        Entry(String kind, int[] palette, byte[] data) {
+            this.kind = kind;
+            this.palette = palette;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Creates an empty TableBundle; use the {@code add} methods to fill it.
+     */
+    public TableBundle() {
+    }
+
+    /**
+     * Gets the bundle that was most recently {@link #install() installed}, if there is one.
+     * @return the installed bundle, or null if none is installed
+     */
+    public static TableBundle installed() {
+        return installed;
+    }
+
+    /**
+     * Makes {@link ColorTables}, {@link PaletteReducer}, and {@link Colorizer} use the tables and mappings in this
+     * bundle instead of computing them. This replaces any bundle that was installed before. Color space tables that
+     * have already been built aren't replaced, so this should be called as early as possible.
+     */
+    public void install() {
+        for (Map.Entry<String, float[][]> e : tables.entrySet()) {
+            ColorTables.preset(e.getKey(), e.getValue());
+        }
+        installed = this;
+    }
+
+    /**
+     * Stops using the installed bundle for mappings, if one is installed. Color space tables that were already read
+     * from it stay in use.
+     */
+    public static void uninstall() {
+        installed = null;
+    }
+
+    /**
+     * Adds the four color space tables from {@link ColorTables} to this bundle, building them if needed.
+     * @return this, for chaining
+     */
+    public TableBundle addTables() {
+        tables.put("oklab", ColorTables.oklab());
+        tables.put("lab", ColorTables.lab());
+        tables.put("ipt", ColorTables.ipt());
+        tables.put("iptFlat", ColorTables.iptFlat());
+        return this;
+    }
+
+    /**
+     * Builds the {@link PaletteReducer#paletteMapping} for palette with metric, as
+     * {@link PaletteReducer#exact(int[], ColorMetric)} would, and adds it to this bundle.
+     * @param palette an array of RGBA8888 ints; all will be used up to 256 items or the length of the array
+     * @param metric  the ColorMetric to build the mapping with
+     * @return this, for chaining
+     */
+    public TableBundle addMapping(int[] palette, ColorMetric metric) {
+        final int[] opaque = PreloadCache.opaque(palette, 256);
+        final PaletteReducer reducer = new PaletteReducer(palette, metric);
+        put(PreloadCache.metricName(metric), opaque, Arrays.copyOf(reducer.paletteMapping, 0x8000));
+        return this;
+    }
+
+    /**
+     * Adds everything that {@link Colorizer#arbitraryColorizer(int[])},
+     * {@link Colorizer#arbitraryBonusColorizer(int[])}, {@link Colorizer#arbitraryWarmingColorizer(int[], float)},
+     * and {@link Colorizer#arbitraryLABColorizer(int[])} would build for palette: the mapping for
+     * {@link PaletteReducer#oklabMetric} and the two 64KB mappings.
+     * @param palette an array of RGBA8888 ints, as would be given to one of those methods
+     * @return this, for chaining
+     */
+    public TableBundle addColorizer(int[] palette) {
+        addMapping(palette, PaletteReducer.oklabMetric);
+        final int n = palette.length;
+        put(YCOCG, palette, Colorizer.ycocgMapping(palette, new int[n], new int[n], new int[n], new int[n]));
+        put(YCWCM, palette, Colorizer.ycwcmMapping(palette, new int[n], new int[n], new int[n], new int[n]));
+        return this;
+    }
+
+    private void put(String kind, int[] palette, byte[] data) {
+        final int[] p = palette.clone();
+        entries.put(PreloadCache.key(kind, p), new Entry(kind, p, data));
+    }
+
+    /**
+     * Gets the data this bundle stores for the given kind and palette, if it has any.
+     * @param kind    a metric name from {@link PreloadCache#metricName(ColorMetric)}, {@link #YCOCG}, or {@link #YCWCM}
+     * @param palette the palette the data must have been built from
+     * @return the stored data, which must not be modified, or null if this doesn't have it
+     */
+    public byte[] data(String kind, int[] palette) {
+        final Entry entry = entries.get(PreloadCache.key(kind, palette));
+        if (entry == null || !entry.kind.equals(kind) || !Arrays.equals(entry.palette, palette)) return null;
+        return entry.data;
+    }
+
+    /**
+     * Calls {@link #data(String, int[])} on the installed bundle, if there is one.
+     */
+    static byte[] installedData(String kind, int[] palette) {
+        final TableBundle bundle = installed;
+        return bundle == null || bundle.entries.isEmpty() ? null : bundle.data(kind, palette);
+    }
+
+    /**
+     * If this bundle has a mapping for the palette and metric, makes reducer use it (sharing it, not copying it) as
+     * {@link PaletteReducer#exact(int[], int, ColorMetric)} would.
+     * @param reducer     the PaletteReducer to change
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items, limit, or the length of the array
+     * @param limit       a limit on how many int items to use from rgbaPalette
+     * @param metric      the ColorMetric the mapping must have been built with
+     * @return true if reducer was changed, or false if this doesn't have the mapping
+     */
+    public boolean exact(PaletteReducer reducer, int[] rgbaPalette, int limit, ColorMetric metric) {
+        if (entries.isEmpty() || rgbaPalette == null || rgbaPalette.length < 2 || limit < 2) return false;
+        final int[] palette = PreloadCache.opaque(rgbaPalette, limit);
+        final byte[] mapping = data(PreloadCache.metricName(metric), palette);
+        if (mapping == null || mapping.length != 0x8000) return false;
+        Arrays.fill(reducer.paletteArray, 0);
+        reducer.exact(palette, mapping);
+        return true;
+    }
+
+    /**
+     * Writes this bundle to the given file, replacing it if it exists.
+     * @param file where to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes this bundle to the given stream, without closing it.
+     * @param stream where to write
+     * @throws IOException if the stream can't be written to
+     */
+    public void write(OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 0x10000));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(tables.size());
+        for (Map.Entry<String, float[][]> e : tables.entrySet()) {
+            writeName(out, e.getKey());
+            final float[][] table = e.getValue();
+            out.writeInt(table.length);
+            out.writeInt(table[0].length);
+            for (float[] channel : table) {
+                for (float f : channel) {
+                    out.writeFloat(f);
+                }
+            }
+        }
+        out.writeInt(entries.size());
+        for (Entry entry : entries.values()) {
+            writeName(out, entry.kind);
+            out.writeInt(entry.palette.length);
+            for (int color : entry.palette) {
+                out.writeInt(color);
+            }
+            out.writeInt(entry.data.length);
+            out.write(entry.data);
+        }
+        out.flush();
+    }
+
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a bundle from a file with a memory-mapped read.
+     * @param file a file written by {@link #write(File)}
+     * @return the bundle in file
+     * @throws IOException if the file can't be read or isn't a bundle this version can read
+     */
+    public static TableBundle read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a bundle from a libGDX FileHandle with one bulk read, which works for internal files and classpath files
+     * as well as local or absolute ones.
+     * @param handle a FileHandle to a file written by {@link #write(File)}
+     * @return the bundle in handle
+     * @throws IOException if the file isn't a bundle this version can read
+     */
+    public static TableBundle read(FileHandle handle) throws IOException {
+        return read(ByteBuffer.wrap(handle.readBytes()));
+    }
+
+    /**
+     * Reads a bundle from all of a stream, then closes it. This works for resources from
+     * {@link Class#getResourceAsStream(String)}.
+     * @param stream an InputStream containing a bundle written by {@link #write(OutputStream)}
+     * @return the bundle in stream
+     * @throws IOException if the stream can't be read or doesn't contain a bundle this version can read
+     */
+    public static TableBundle read(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(in.available(), 0x10000));
+            final byte[] chunk = new byte[0x10000];
+            int n;
+            while ((n = in.read(chunk)) > 0)
+                bytes.write(chunk, 0, n);
+            return read(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+    }
+
+    /**
+     * Reads a bundle from a buffer, starting at its current position. The buffer's byte order is ignored.
+     * @param buffer a ByteBuffer containing a bundle written by {@link #write(OutputStream)}
+     * @return the bundle in buffer
+     * @throws IOException if buffer doesn't contain a bundle this version can read
+     */
+    public static TableBundle read(ByteBuffer buffer) throws IOException {
+        final ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC)
+                throw new IOException("Not a ColorWeaver table bundle");
+            final int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("Table bundle has version " + version + ", but only version " + VERSION + " can be read");
+            final TableBundle bundle = new TableBundle();
+            for (int t = in.getInt(); t > 0; t--) {
+                final String name = readName(in);
+                final float[][] table = new float[in.getInt()][in.getInt()];
+                for (float[] channel : table) {
+                    in.asFloatBuffer().get(channel);
+                    in.position(in.position() + channel.length * 4);
+                }
+                bundle.tables.put(name, table);
+            }
+            for (int e = in.getInt(); e > 0; e--) {
+                final String kind = readName(in);
+                final int[] palette = new int[in.getInt()];
+                in.asIntBuffer().get(palette);
+                in.position(in.position() + palette.length * 4);
+                final byte[] data = new byte[in.getInt()];
+                in.get(data);
+                bundle.entries.put(PreloadCache.key(kind, palette), new Entry(kind, palette, data));
+            }
+            return bundle;
+        } catch (RuntimeException e) {
+            throw new IOException("Table bundle is damaged or incomplete", e);
+        }
+    }
+
+    /**
+     * The build step that writes a bundle file. The first argument is the file to write, defaulting to
+     * "colorweaver.cwtb". The bundle always has the color space tables and the mappings used by the static Colorizers
+     * in {@link Colorizer}; any more arguments are names of palettes in {@link Coloring}, such as "DB32", and each one
+     * has everything the arbitrary Colorizer methods would build for it added with {@link #addColorizer(int[])}.
+     * @param args the file to write, then any palette names from Coloring
+     * @throws Exception if the file can't be written or a palette name isn't in Coloring
+     */
+    public static void main(String[] args) throws Exception {
+        final File file = new File(args.length > 0 ? args[0] : "colorweaver.cwtb");
+        final long start = System.nanoTime();
+        final TableBundle bundle = new TableBundle().addTables()
+                .addMapping(Coloring.WARD, PaletteReducer.oklabMetric)
+                .addMapping(Coloring.TWIRL64, PaletteReducer.oklabMetric)
+                .addMapping(Coloring.SMASH256, PaletteReducer.oklabMetric);
+        for (int i = 1; i < args.length; i++) {
+            final Field field = Coloring.class.getField(args[i]);
+            bundle.addColorizer((int[]) field.get(null));
+        }
+        bundle.write(file);
+        System.out.println("Wrote " + bundle.tables.size() + " tables and " + bundle.entries.size() + " mappings to "
+                + file + " (" + file.length() + " bytes) in " + (System.nanoTime() - start) / 1000000L + " ms");
+    }
+}
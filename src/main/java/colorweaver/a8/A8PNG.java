@@ -18,6 +18,7 @@
 
 package colorweaver.a8;
 
+import colorweaver.tools.ScanlineFilter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
@@ -93,6 +94,7 @@ public class A8PNG implements Disposable {
 
     private final ChunkBuffer buffer;
     private final Deflater deflater;
+    private final ScanlineFilter filter = new ScanlineFilter(4);
     private ByteArray curLineBytes;
     private boolean flipY = true;
 
@@ -131,6 +133,24 @@ public class A8PNG implements Disposable {
         deflater.setLevel(level);
     }
 
+    /**
+     * Gets the scanline filter mode; see {@link ScanlineFilter.Mode}.
+     * @return the current filter mode, {@link ScanlineFilter.Mode#NONE} by default
+     */
+    public ScanlineFilter.Mode getFilterMode() {
+        return filter.getMode();
+    }
+
+    /**
+     * Sets how rows are filtered before they are deflated. The default, {@link ScanlineFilter.Mode#NONE}, doesn't
+     * filter; {@link ScanlineFilter.Mode#ADAPTIVE} or {@link ScanlineFilter.Mode#TRIAL} choose a filter for each row,
+     * which usually makes truecolor files smaller at some cost in speed.
+     * @param mode a ScanlineFilter.Mode; null is treated as NONE
+     */
+    public void setFilterMode (ScanlineFilter.Mode mode) {
+        filter.setMode(mode);
+    }
+
     /**
      * Writes the given Pixmap to the requested FileHandle. This can use all 32-bit colors.
      * @param file a FileHandle that must be writable, and will have the given Pixmap written as a PNG image
@@ -182,6 +202,7 @@ public class A8PNG implements Disposable {
 
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int width = pixmap.getWidth(), height = pixmap.getHeight();
             int lineLen = width * 4;
@@ -201,9 +222,8 @@ public class A8PNG implements Disposable {
                     curLine[x++] = (byte) ((pixel >>> 8) & 0xff);
                     curLine[x++] = (byte) (pixel & 0xff);
                 }
-////NONE filtering
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, lineLen);
+////filtering, set by setFilterMode()
+                deflaterOutput.write(filter.apply(curLine, lineLen), 0, lineLen + 1);
 //// End of filtering code
 //
             }
@@ -228,5 +248,6 @@ public class A8PNG implements Disposable {
     @Override
     public void dispose() {
         deflater.end();
+        filter.dispose();
     }
 }
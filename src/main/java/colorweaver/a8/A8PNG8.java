@@ -18,6 +18,7 @@
 
 package colorweaver.a8;
 
+import colorweaver.tools.ScanlineFilter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
@@ -99,10 +100,14 @@ public class A8PNG8 implements Dithered, Disposable {
     private static final byte FILTER_NONE = 0;
 //    private static final byte FILTER_PAETH = 4;
 
-    private final ChunkBuffer buffer;
-    private final Deflater deflater;
+    final ChunkBuffer buffer;
+    final Deflater deflater;
+    private final ScanlineFilter filter = new ScanlineFilter(1);
     private ByteArray curLineBytes;
-    private boolean flipY = true;
+    private ByteArray frameBytes, previousFrameBytes, deltaLineBytes;
+    private int frameRow;
+    private boolean deltaFrames = false;
+    boolean flipY = true;
 
     public A8PaletteReducer palette;
 
@@ -180,6 +185,50 @@ public class A8PNG8 implements Dithered, Disposable {
         deflater.setLevel(level);
     }
 
+    /**
+     * Gets the scanline filter mode; see {@link ScanlineFilter.Mode}.
+     * @return the current filter mode, {@link ScanlineFilter.Mode#NONE} by default
+     */
+    public ScanlineFilter.Mode getFilterMode () {
+        return filter.getMode();
+    }
+
+    /**
+     * Sets how rows are filtered before they are deflated. The default, {@link ScanlineFilter.Mode#NONE}, doesn't
+     * filter; {@link ScanlineFilter.Mode#ADAPTIVE} or {@link ScanlineFilter.Mode#TRIAL} choose a filter for each row,
+     * which usually makes dithered files smaller at some cost in speed.
+     * @param mode a ScanlineFilter.Mode; null is treated as NONE
+     */
+    public void setFilterMode (ScanlineFilter.Mode mode) {
+        filter.setMode(mode);
+    }
+
+    /**
+     * Returns true if animated PNGs only store the part of each frame that changed; see
+     * {@link #setDeltaFrames(boolean)}.
+     * @return true if delta frames are enabled; false by default
+     */
+    public boolean isDeltaFrames () {
+        return deltaFrames;
+    }
+
+    /**
+     * If true, each frame after the first in an animated PNG only stores the smallest rectangle that contains every
+     * pixel that changed from the previous frame. Inside that rectangle, pixels that didn't change are stored as the
+     * transparent index and drawn with the "over" blend operation, so they leave the previous frame visible; this
+     * makes long runs of identical bytes that compress very well. If a changed pixel is itself transparent, that frame
+     * uses the "source" blend operation instead, storing the whole rectangle as-is. Either way, every frame looks the
+     * same as it would without this; only the file gets smaller and faster to write, especially for sprites where
+     * only a small area moves each frame. This only affects animated output, and has less effect with error-diffusion
+     * dithers, since a change in one place can change the dither everywhere after it.
+     * <br>
+     * This needs to keep two frames' worth of palette indices in memory while writing, which is 2 bytes per pixel.
+     * @param deltaFrames true to only store the changed area of each frame
+     */
+    public void setDeltaFrames (boolean deltaFrames) {
+        this.deltaFrames = deltaFrames;
+    }
+
     /**
      * Writes the given Pixmap to the requested FileHandle, computing an 8-bit palette from the most common colors in
      * pixmap. If there are 256 or less colors and none are transparent, this will use 256 colors in its palette exactly
@@ -579,6 +628,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             //            byte[] lineOut, curLine, prevLine;
             byte[] curLine;
@@ -619,8 +669,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                deflaterOutput.write(FILTER_PAETH);
 //                deflaterOutput.write(lineOut, 0, lineLen);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -742,6 +791,7 @@ public class A8PNG8 implements Dithered, Disposable {
         }
         buffer.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
 //        byte[] lineOut, curLine, prevLine;
         byte[] curLine;
@@ -782,8 +832,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //            deflaterOutput.write(FILTER_PAETH);
 //            deflaterOutput.write(lineOut, 0, lineLen);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, width);
+            deflaterOutput.write(filter.apply(curLine, width), 0, width + 1);
         }
         deflaterOutput.finish();
         buffer.endChunk(dataOutput);
@@ -833,6 +882,7 @@ public class A8PNG8 implements Dithered, Disposable {
         }
         buffer.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
         int lineLen = pixmap.getWidth();
 //        byte[] lineOut, curLine, prevLine;
@@ -885,8 +935,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //            deflaterOutput.write(FILTER_PAETH);
 //            deflaterOutput.write(lineOut, 0, lineLen);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, lineLen);
+            deflaterOutput.write(filter.apply(curLine, lineLen), 0, lineLen + 1);
         }
         deflaterOutput.finish();
         buffer.endChunk(dataOutput);
@@ -937,6 +986,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //            byte[] lineOut, curLine, prevLine;
@@ -992,8 +1042,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1044,6 +1093,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //            byte[] lineOut, curLine, prevLine;
@@ -1103,8 +1153,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1154,6 +1203,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //            byte[] lineOut, curLine, prevLine;
@@ -1181,8 +1231,7 @@ public class A8PNG8 implements Dithered, Disposable {
                     }
                 }
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1233,6 +1282,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //            byte[] lineOut, curLine, prevLine;
@@ -1263,8 +1313,7 @@ public class A8PNG8 implements Dithered, Disposable {
                     }
                 }
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1315,6 +1364,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //            byte[] lineOut, curLine, prevLine;
@@ -1369,8 +1419,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                deflaterOutput.write(FILTER_PAETH);
 //                deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1421,6 +1470,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //            byte[] lineOut, curLine, prevLine;
@@ -1497,8 +1547,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                deflaterOutput.write(FILTER_PAETH);
 //                deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1571,6 +1620,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -1669,8 +1719,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                deflaterOutput.write(FILTER_PAETH);
 //                deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -1721,6 +1770,7 @@ public class A8PNG8 implements Dithered, Disposable {
         }
         buffer.writeInt(IDAT);
         deflater.reset();
+        filter.start();
 
         final int w = pixmap.getWidth(), h = pixmap.getHeight();
 //        byte[] lineOut, curLine, prevLine;
@@ -1785,8 +1835,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //            deflaterOutput.write(FILTER_PAETH);
 //            deflaterOutput.write(lineOut, 0, w);
 
-            deflaterOutput.write(FILTER_NONE);
-            deflaterOutput.write(curLine, 0, w);
+            deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
         }
         deflaterOutput.finish();
         buffer.endChunk(dataOutput);
@@ -1859,6 +1908,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -1959,8 +2009,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -2033,6 +2082,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -2134,8 +2184,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -2208,6 +2257,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -2287,8 +2337,7 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
                 }
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -2362,6 +2411,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -2459,8 +2509,7 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -2534,6 +2583,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -2609,8 +2659,7 @@ public class A8PNG8 implements Dithered, Disposable {
                     }
                 }
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -2683,6 +2732,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             float rdiff, gdiff, bdiff;
@@ -2788,8 +2838,7 @@ public class A8PNG8 implements Dithered, Disposable {
                     }
                 }
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -2863,6 +2912,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             final float populationBias = palette.populationBias;
             final float strength = ditherStrength * 1.5f * (populationBias * populationBias),
@@ -2995,8 +3045,7 @@ public class A8PNG8 implements Dithered, Disposable {
                     }
                 }
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -3074,6 +3123,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             byte paletteIndex;
@@ -3168,8 +3218,7 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
                 }
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -3248,6 +3297,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             byte paletteIndex;
@@ -3350,8 +3400,7 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
                 }
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -3431,6 +3480,7 @@ public class A8PNG8 implements Dithered, Disposable {
             }
             buffer.writeInt(IDAT);
             deflater.reset();
+            filter.start();
 
             int color, used;
             byte paletteIndex;
@@ -3541,8 +3591,7 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
                 }
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, w);
+                deflaterOutput.write(filter.apply(curLine, w), 0, w + 1);
             }
             deflaterOutput.finish();
             buffer.endChunk(dataOutput);
@@ -3629,6 +3678,184 @@ public class A8PNG8 implements Dithered, Disposable {
         if(clearPalette) palette = null;
     }
 
+    /**
+     * Writes the PNG signature and the IHDR, PLTE, tRNS (if the palette has a transparent color at index 0), and acTL
+     * chunks that start an animated PNG with the given size, using the current {@link #palette}. The acTL chunk is
+     * always the last 20 bytes this writes, so a writer that doesn't know its frame count yet can seek back and fix it.
+     */
+    void writeAnimationHeader (DataOutputStream dataOutput, int width, int height, int frameCount) throws IOException {
+        final int[] paletteArray = palette.paletteArray;
+        dataOutput.write(SIGNATURE);
+
+        buffer.writeInt(IHDR);
+        buffer.writeInt(width);
+        buffer.writeInt(height);
+        buffer.writeByte(8); // 8 bits per component.
+        buffer.writeByte(COLOR_INDEXED);
+        buffer.writeByte(COMPRESSION_DEFLATE);
+        buffer.writeByte(FILTER_NONE);
+        buffer.writeByte(INTERLACE_NONE);
+        buffer.endChunk(dataOutput);
+
+        buffer.writeInt(PLTE);
+        for (int i = 0; i < paletteArray.length; i++) {
+            int p = paletteArray[i];
+            buffer.write(p >>> 24);
+            buffer.write(p >>> 16);
+            buffer.write(p >>> 8);
+        }
+        buffer.endChunk(dataOutput);
+
+        if (paletteArray[0] == 0) {
+            buffer.writeInt(TRNS);
+            buffer.write(0);
+            buffer.endChunk(dataOutput);
+        }
+        buffer.writeInt(acTL);
+        buffer.writeInt(frameCount);
+        buffer.writeInt(0);
+        buffer.endChunk(dataOutput);
+    }
+
+    /**
+     * Writes the IEND chunk that ends every PNG.
+     */
+    void writeEnd (DataOutputStream dataOutput) throws IOException {
+        buffer.writeInt(IEND);
+        buffer.endChunk(dataOutput);
+    }
+
+    /**
+     * Starts frame {@code index} of an animated PNG. Normally this writes the frame's full-size fcTL chunk and starts
+     * its IDAT or fdAT chunk; with {@link #setDeltaFrames(boolean)} on, this just prepares to store the frame's rows,
+     * and {@link #endFrame(DeflaterOutputStream, DataOutputStream, int, int, int, int, int)} writes everything.
+     * @return the next sequence number
+     */
+    int beginFrame (DataOutputStream dataOutput, int seq, int index, int width, int height, int fps) throws IOException {
+        if (deltaFrames) {
+            frameRow = 0;
+            if (frameBytes == null) {
+                frameBytes = new ByteArray(width * height);
+                previousFrameBytes = new ByteArray(width * height);
+            }
+            frameBytes.ensureCapacity(width * height);
+            previousFrameBytes.ensureCapacity(width * height);
+            return seq;
+        }
+        return writeFrameHeader(dataOutput, seq, index, width, height, 0, 0, fps, false);
+    }
+
+    /**
+     * Writes one row of palette indices for the current frame, or stores it to be compared with the previous frame if
+     * {@link #setDeltaFrames(boolean)} is on.
+     */
+    void writeRow (DeflaterOutputStream deflaterOutput, byte[] line, int width) throws IOException {
+        if (deltaFrames) {
+            System.arraycopy(line, 0, frameBytes.items, frameRow++ * width, width);
+        } else {
+            deflaterOutput.write(filter.apply(line, width), 0, width + 1);
+        }
+    }
+
+    /**
+     * Finishes frame {@code index}. With {@link #setDeltaFrames(boolean)} on, this finds the rectangle that changed
+     * from the previous frame and writes the fcTL, data chunk, and rows for just that rectangle.
+     * @return the next sequence number
+     */
+    int endFrame (DeflaterOutputStream deflaterOutput, DataOutputStream dataOutput, int seq, int index,
+                          int width, int height, int fps) throws IOException {
+        if (deltaFrames) {
+            final byte[] current = frameBytes.items, previous = previousFrameBytes.items;
+            int left = 0, top = 0, right = width - 1, bottom = height - 1;
+            boolean over = false;
+            if (index > 0) {
+                left = width;
+                top = height;
+                right = -1;
+                bottom = -1;
+                for (int y = 0, i = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++, i++) {
+                        if (current[i] != previous[i]) {
+                            if (x < left) left = x;
+                            if (x > right) right = x;
+                            if (top == height) top = y;
+                            bottom = y;
+                        }
+                    }
+                }
+                if (right < 0) {
+                    // nothing changed, but a frame still has to be written to keep the timing
+                    left = top = right = bottom = 0;
+                }
+                // unchanged pixels can only be skipped with the transparent index, if no changed pixel needs it
+                over = palette.paletteArray[0] == 0;
+                for (int y = top; over && y <= bottom; y++) {
+                    for (int x = left, i = y * width + left; x <= right; x++, i++) {
+                        if (current[i] == 0 && previous[i] != 0) {
+                            over = false;
+                            break;
+                        }
+                    }
+                }
+            }
+            final int w = right - left + 1;
+            seq = writeFrameHeader(dataOutput, seq, index, w, bottom - top + 1, left, top, fps, over);
+            final byte[] line;
+            if (deltaLineBytes == null) {
+                line = (deltaLineBytes = new ByteArray(w)).items;
+            } else {
+                line = deltaLineBytes.ensureCapacity(w);
+            }
+            for (int y = top; y <= bottom; y++) {
+                final int start = y * width + left;
+                if (over) {
+                    for (int x = 0; x < w; x++) {
+                        line[x] = current[start + x] == previous[start + x] ? 0 : current[start + x];
+                    }
+                } else {
+                    System.arraycopy(current, start, line, 0, w);
+                }
+                deflaterOutput.write(filter.apply(line, w), 0, w + 1);
+            }
+            final ByteArray temp = frameBytes;
+            frameBytes = previousFrameBytes;
+            previousFrameBytes = temp;
+        }
+        deflaterOutput.finish();
+        buffer.endChunk(dataOutput);
+        return seq;
+    }
+
+    /**
+     * Writes an fcTL chunk for a frame with the given size and offset, then starts its IDAT (for the first frame) or
+     * fdAT chunk, and resets the Deflater and filter.
+     * @return the next sequence number
+     */
+    int writeFrameHeader (DataOutputStream dataOutput, int seq, int index, int width, int height,
+                                  int x, int y, int fps, boolean blendOver) throws IOException {
+        buffer.writeInt(fcTL);
+        buffer.writeInt(seq++);
+        buffer.writeInt(width);
+        buffer.writeInt(height);
+        buffer.writeInt(x);
+        buffer.writeInt(y);
+        buffer.writeShort(1);
+        buffer.writeShort(fps);
+        buffer.writeByte(0); // dispose_op: none
+        buffer.writeByte(blendOver ? 1 : 0); // blend_op: over or source
+        buffer.endChunk(dataOutput);
+
+        if (index == 0) {
+            buffer.writeInt(IDAT);
+        } else {
+            buffer.writeInt(fdAT);
+            buffer.writeInt(seq++);
+        }
+        deflater.reset();
+        filter.start();
+        return seq;
+    }
+
     public void writeSolid(OutputStream output, Array<Pixmap> frames, int fps) {
         Pixmap pixmap = frames.first();
         final int[] paletteArray = palette.paletteArray;
@@ -3679,26 +3906,10 @@ public class A8PNG8 implements Dithered, Disposable {
         int seq = 0;
         for (int i = 0; i < frames.size; i++) {
 
-            buffer.writeInt(fcTL);
-            buffer.writeInt(seq++);
-            buffer.writeInt(width);
-            buffer.writeInt(height);
-            buffer.writeInt(0);
-            buffer.writeInt(0);
-            buffer.writeShort(1);
-            buffer.writeShort(fps);
-            buffer.writeByte(0);
-            buffer.writeByte(0);
-            buffer.endChunk(dataOutput);
-
-            if (i == 0) {
-                buffer.writeInt(IDAT);
-            } else {
+            if (i > 0) {
                 pixmap = frames.get(i);
-                buffer.writeInt(fdAT);
-                buffer.writeInt(seq++);
             }
-            deflater.reset();
+            seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
@@ -3746,11 +3957,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                deflaterOutput.write(FILTER_PAETH);
 //                deflaterOutput.write(lineOut, 0, width);
 
-                deflaterOutput.write(FILTER_NONE);
-                deflaterOutput.write(curLine, 0, width);
+                writeRow(deflaterOutput, curLine, width);
             }
-            deflaterOutput.finish();
-            buffer.endChunk(dataOutput);
+            seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
         }
 
         buffer.writeInt(IEND);
@@ -3879,26 +4088,10 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
@@ -3945,11 +4138,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, width);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4015,26 +4206,10 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
@@ -4086,11 +4261,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, width);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4154,26 +4327,10 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
@@ -4197,11 +4354,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4267,26 +4422,10 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
 
                 if (curLineBytes == null) {
@@ -4310,11 +4449,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4379,26 +4516,10 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
@@ -4445,11 +4566,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, width);
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4515,33 +4634,18 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
         } else {
             curLine = curLineBytes.ensureCapacity(width);
         }
-                long s = 0xC13FA9A902A6328FL * seq;
+                // delta frames don't advance seq until endFrame(), so this seeds from the value seq has here otherwise
+                long s = 0xC13FA9A902A6328FL * (i << 1 | 1);
                 for (int y = 0; y < height; y++) {
                     int py = flipY ? (height - y - 1) : y;
                     for (int px = 0; px < width; px++) {
@@ -4602,11 +4706,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, width);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4692,30 +4794,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -4807,11 +4892,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -4877,26 +4960,10 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(width);
-                buffer.writeInt(height);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, width, height, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(width)).items;
@@ -4956,11 +5023,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //            deflaterOutput.write(FILTER_PAETH);
 //            deflaterOutput.write(lineOut, 0, lineLen);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, width);
+                    writeRow(deflaterOutput, curLine, width);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, width, height, fps);
             }
 
             buffer.writeInt(IEND);
@@ -5048,30 +5113,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -5163,11 +5211,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -5257,30 +5303,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -5374,11 +5403,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -5468,30 +5495,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -5561,11 +5571,9 @@ public class A8PNG8 implements Dithered, Disposable {
                             }
                         }
                     }
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -5654,30 +5662,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -5766,11 +5757,9 @@ public class A8PNG8 implements Dithered, Disposable {
 //                    deflaterOutput.write(FILTER_PAETH);
 //                    deflaterOutput.write(lineOut, 0, w);
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -5861,30 +5850,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -5950,11 +5922,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -6045,30 +6015,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
         if (curLineBytes == null) {
             curLine = (curLineBytes = new ByteArray(w)).items;
@@ -6163,11 +6116,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -6253,30 +6204,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
                 if (curLineBytes == null) {
                     curLine = (curLineBytes = new ByteArray(w)).items;
@@ -6397,11 +6331,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -6486,30 +6418,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
                 if (curLineBytes == null) {
                     curLine = (curLineBytes = new ByteArray(w)).items;
@@ -6595,11 +6510,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -6685,30 +6598,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
                 if (curLineBytes == null) {
                     curLine = (curLineBytes = new ByteArray(w)).items;
@@ -6808,11 +6704,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -6899,30 +6793,13 @@ public class A8PNG8 implements Dithered, Disposable {
             int seq = 0;
             for (int i = 0; i < frames.size; i++) {
 
-                buffer.writeInt(fcTL);
-                buffer.writeInt(seq++);
-                buffer.writeInt(w);
-                buffer.writeInt(h);
-                buffer.writeInt(0);
-                buffer.writeInt(0);
-                buffer.writeShort(1);
-                buffer.writeShort(fps);
-                buffer.writeByte(0);
-                buffer.writeByte(0);
-                buffer.endChunk(dataOutput);
-
-                if (i == 0) {
-                    buffer.writeInt(IDAT);
-                } else {
+                if (i > 0) {
                     pixmap = frames.get(i);
-                    buffer.writeInt(fdAT);
-                    buffer.writeInt(seq++);
-
                     Arrays.fill(nextErrorRed, (byte) 0);
                     Arrays.fill(nextErrorGreen, (byte) 0);
                     Arrays.fill(nextErrorBlue, (byte) 0);
                 }
-                deflater.reset();
+                seq = beginFrame(dataOutput, seq, i, w, h, fps);
 
                 if (curLineBytes == null) {
                     curLine = (curLineBytes = new ByteArray(w)).items;
@@ -7030,11 +6907,9 @@ public class A8PNG8 implements Dithered, Disposable {
                         }
                     }
 
-                    deflaterOutput.write(FILTER_NONE);
-                    deflaterOutput.write(curLine, 0, w);
+                    writeRow(deflaterOutput, curLine, w);
                 }
-                deflaterOutput.finish();
-                buffer.endChunk(dataOutput);
+                seq = endFrame(deflaterOutput, dataOutput, seq, i, w, h, fps);
             }
 
             buffer.writeInt(IEND);
@@ -7049,6 +6924,7 @@ public class A8PNG8 implements Dithered, Disposable {
     /** Should probably be done explicitly; finalize() has been scheduled for removal from the JVM. */
     public void dispose () {
         deflater.end();
+        filter.dispose();
     }
 
     /**
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2022  Tommy Ettinger
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package colorweaver.a8;
+
+import colorweaver.annotation.GwtIncompatible;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an animated PNG one frame at a time, so frames can be rendered, captured, or decoded as they are written
+ * instead of all being held in an {@code Array<Pixmap>} first. Memory use doesn't grow with the number of frames: this
+ * keeps one frame's worth of palette indices as scratch space, plus the two frames of indices an
+ * {@link A8PNG8} keeps when {@link A8PNG8#setDeltaFrames(boolean)} is on (which is recommended here, since it usually
+ * makes long animations much smaller).
+ * <br>
+ * Configure an A8PNG8 as usual (its palette, dither algorithm and strength, compression, filter mode, flipY, and delta
+ * frames), then pass it to {@link #A8PNG8Stream(A8PNG8)}. Call one of the {@code begin()} methods, then
+ * {@link #addFrame(Pixmap)} for each frame, then {@link #finish()}. The A8PNG8 shouldn't be used to write anything
+ * else between begin() and finish(). The palette should be fixed before the first frame, either with
+ * {@link A8PaletteReducer#exact(int[])} or by analyzing frames ahead of time; if the A8PNG8's palette is null, the
+ * first frame is analyzed and its palette is used for every frame.
+ * <br>
+ * An animated PNG stores its frame count near the start of the file. If the count is known, pass it to
+ * {@link #begin(OutputStream, int, int)}, which can write to any stream. If it isn't, use
+ * {@link #begin(SeekableByteChannel, int)} or {@link #begin(FileHandle, int)}, and the count will be filled in by
+ * finish().
+ * <br>
+ * Each frame is dithered straight from its pixels to palette indices with
+ * {@link A8PaletteReducer#reduce(ByteBuffer, int, int, int, byte[], Dithered.DitherAlgorithm)}, which supports every
+ * dither algorithm and leaves the frame unchanged. A null dither algorithm means no dither, as in
+ * {@link A8PNG8#writeSolid(OutputStream, com.badlogic.gdx.utils.Array, int)}.
+ */
+@GwtIncompatible
+public class A8PNG8Stream implements Disposable {
+    private final A8PNG8 png;
+    private DataOutputStream dataOutput;
+    private DeflaterOutputStream deflaterOutput;
+    private SeekableByteChannel channel;
+    private boolean closeChannel, clearPalette;
+    private long acTLPosition = -1L;
+    private int fps, expectedFrames, frameIndex, seq, width, height;
+    private byte[] indices, line;
+    private Pixmap scratch;
+
+    /**
+     * Creates a streaming writer that uses the settings and palette of {@code png}.
+     * @param png a configured A8PNG8; its palette may be null to analyze the first frame
+     */
+    public A8PNG8Stream(A8PNG8 png) {
+        this.png = png;
+    }
+
+    /**
+     * Gets the A8PNG8 this uses for its settings and encoding.
+     * @return the A8PNG8 given in the constructor
+     */
+    public A8PNG8 getPNG() {
+        return png;
+    }
+
+    /**
+     * Starts an animated PNG with a known number of frames, which will be written to {@code output}. Exactly
+     * {@code frameCount} frames must be added before {@link #finish()}. The output is not closed by finish().
+     * @param output     any OutputStream; wrapping a file stream in a BufferedOutputStream is a good idea
+     * @param frameCount how many frames will be added, at least 1
+     * @param fps        how many frames per second the animation should run at
+     * @throws IOException if the header can't be written
+     */
+    public void begin(OutputStream output, int frameCount, int fps) throws IOException {
+        if (frameCount < 1)
+            throw new IllegalArgumentException("An animated PNG needs at least 1 frame, not " + frameCount);
+        start(output, null, false, frameCount, fps);
+    }
+
+    /**
+     * Starts an animated PNG with any number of frames, which will be written to {@code channel} starting at its
+     * current position. The frame count is filled in by {@link #finish()}, which seeks back to the header to write it
+     * and then returns to the end. The channel is not closed by finish().
+     * @param channel a SeekableByteChannel that can be written to, such as a FileChannel
+     * @param fps     how many frames per second the animation should run at
+     * @throws IOException if the header can't be written
+     */
+    public void begin(SeekableByteChannel channel, int fps) throws IOException {
+        start(Channels.newOutputStream(channel), channel, false, -1, fps);
+    }
+
+    /**
+     * Starts an animated PNG with any number of frames, which will replace the contents of {@code file}. The frame
+     * count is filled in by {@link #finish()}, which also closes the file.
+     * @param file a FileHandle to a local or absolute file that can be written to
+     * @param fps  how many frames per second the animation should run at
+     * @throws IOException if the file can't be opened or the header can't be written
+     */
+    public void begin(FileHandle file, int fps) throws IOException {
+        file.parent().mkdirs();
+        final SeekableByteChannel ch = new RandomAccessFile(file.file(), "rw").getChannel();
+        ch.truncate(0L);
+        start(Channels.newOutputStream(ch), ch, true, -1, fps);
+    }
+
+    private void start(OutputStream output, SeekableByteChannel channel, boolean closeChannel, int frameCount, int fps) {
+        if (dataOutput != null)
+            throw new IllegalStateException("begin() was called twice without finish()");
+        dataOutput = new DataOutputStream(output);
+        deflaterOutput = new DeflaterOutputStream(png.buffer, png.deflater);
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.expectedFrames = frameCount;
+        this.fps = fps;
+        frameIndex = 0;
+        seq = 0;
+        acTLPosition = -1L;
+    }
+
+    /**
+     * Reduces {@code frame} to the palette and writes it as the next frame of the animation. The first frame sets the
+     * size of the animation, and every later frame must be the same size. The frame isn't kept after this returns, so
+     * it can be changed or disposed right away.
+     * @param frame a Pixmap in any format with the same size as the first frame
+     * @throws IOException if the frame can't be written
+     */
+    public void addFrame(Pixmap frame) throws IOException {
+        if (dataOutput == null)
+            throw new IllegalStateException("begin() must be called before addFrame()");
+        if (expectedFrames >= 0 && frameIndex >= expectedFrames)
+            throw new IllegalStateException("Only " + expectedFrames + " frames were expected");
+        if (frameIndex == 0) {
+            width = frame.getWidth();
+            height = frame.getHeight();
+            if (clearPalette = (png.palette == null))
+                png.palette = new A8PaletteReducer(frame);
+            png.palette.setDitherStrength(png.ditherStrength);
+            png.writeAnimationHeader(dataOutput, width, height, Math.max(expectedFrames, 1));
+            if (channel != null)
+                acTLPosition = channel.position() - 20L;
+            indices = new byte[width * height];
+            line = new byte[width];
+        } else if (frame.getWidth() != width || frame.getHeight() != height) {
+            throw new IllegalArgumentException("Every frame must be " + width + "x" + height + ", but a frame was "
+                    + frame.getWidth() + "x" + frame.getHeight());
+        }
+        reduceFrame(frame);
+        seq = png.beginFrame(dataOutput, seq, frameIndex, width, height, fps);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(indices, (png.flipY ? height - 1 - y : y) * width, line, 0, width);
+            png.writeRow(deflaterOutput, line, width);
+        }
+        seq = png.endFrame(deflaterOutput, dataOutput, seq, frameIndex, width, height, fps);
+        frameIndex++;
+    }
+
+    /**
+     * Fills {@link #indices} with the palette index of every pixel in frame, top row first. The frame itself isn't
+     * changed; a frame that isn't RGBA8888 is first copied into a scratch Pixmap that is.
+     */
+    private void reduceFrame(Pixmap frame) {
+        Dithered.DitherAlgorithm algorithm = png.getDitherAlgorithm();
+        if (algorithm == null)
+            algorithm = Dithered.DitherAlgorithm.NONE;
+        Pixmap source = frame;
+        if (frame.getFormat() != Pixmap.Format.RGBA8888) {
+            if (scratch == null || scratch.getWidth() != width || scratch.getHeight() != height) {
+                if (scratch != null)
+                    scratch.dispose();
+                scratch = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+            }
+            scratch.setBlending(Pixmap.Blending.None);
+            scratch.drawPixmap(frame, 0, 0);
+            source = scratch;
+        }
+        png.palette.reduce(source.getPixels(), width, height, width, indices, algorithm);
+    }
+
+    /**
+     * Gets how many frames have been added since {@code begin()} was called.
+     * @return the number of frames written so far
+     */
+    public int getFrameCount() {
+        return frameIndex;
+    }
+
+    /**
+     * Ends the animated PNG. If it was started with a SeekableByteChannel or FileHandle, this writes the real frame
+     * count into the header, and if it was started with a FileHandle, this closes the file. After this, begin() can be
+     * called again to start another animation.
+     * @throws IOException if the end of the file can't be written, or the frame count can't be filled in
+     * @throws IllegalStateException if no frames were added, or a different number of frames was given to
+     * {@link #begin(OutputStream, int, int)}
+     */
+    public void finish() throws IOException {
+        if (dataOutput == null)
+            throw new IllegalStateException("begin() must be called before finish()");
+        try {
+            if (frameIndex == 0)
+                throw new IllegalStateException("An animated PNG needs at least 1 frame");
+            png.writeEnd(dataOutput);
+            dataOutput.flush();
+            if (expectedFrames >= 0 && frameIndex != expectedFrames)
+                throw new IllegalStateException("Expected " + expectedFrames + " frames, but " + frameIndex + " were added");
+            if (channel != null)
+                patchFrameCount();
+        } finally {
+            if (clearPalette)
+                png.palette = null;
+            clearPalette = false;
+            if (closeChannel)
+                channel.close();
+            channel = null;
+            dataOutput = null;
+            deflaterOutput = null;
+        }
+    }
+
+    /**
+     * Rewrites the acTL chunk with the number of frames that were actually added, then goes back to the end.
+     */
+    private void patchFrameCount() throws IOException {
+        final ByteBuffer chunk = ByteBuffer.allocate(20);
+        chunk.putInt(8).putInt(0x6163544C).putInt(frameIndex).putInt(0);
+        final CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, 12);
+        chunk.putInt((int) crc.getValue());
+        chunk.flip();
+        final long end = channel.position();
+        channel.position(acTLPosition);
+        while (chunk.hasRemaining())
+            channel.write(chunk);
+        channel.position(end);
+    }
+
+    /**
+     * Disposes the scratch Pixmap used to convert frames that aren't RGBA8888. This doesn't dispose the A8PNG8.
+     */
+    @Override
+    public void dispose() {
+        if (scratch != null) {
+            scratch.dispose();
+            scratch = null;
+        }
+    }
+}
@@ -19,6 +19,12 @@
 package colorweaver.a8;
 
 import colorweaver.BlueNoise;
+import colorweaver.ColorTables;
+import colorweaver.PaletteIndex;
+import colorweaver.PaletteReducer;
+import colorweaver.tools.ColorHistogram;
+import colorweaver.tools.ParallelKit;
+import colorweaver.tools.PixelSurface;
 import colorweaver.tools.SpaceFillingCurves;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
@@ -29,6 +35,8 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.*;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
@@ -524,7 +532,7 @@ public class A8PaletteReducer {
     };
 
     /**
-     * Converts an RGBA8888 int color to the RGB555 format used by {@link #OKLAB} to look up colors.
+     * Converts an RGBA8888 int color to the RGB555 format used by {@link ColorTables#oklab()} to look up colors.
      * @param color an RGBA8888 int color
      * @return an RGB555 int color
      */
@@ -639,20 +647,6 @@ public class A8PaletteReducer {
 ////		return (L - 0.993f) / (1f + L * 0.75f) + 0.993f;
 ////	}
 
-    /**
-     * Stores Oklab components corresponding to RGB555 indices.
-     * OKLAB[0] stores L (lightness) from 0.0 to 1.0 .
-     * OKLAB[1] stores A, which is something like a green-red axis, from -0.5 (green) to 0.5 (red).
-     * OKLAB[2] stores B, which is something like a blue-yellow axis, from -0.5 (blue) to 0.5 (yellow).
-     * OKLAB[3] stores the hue in radians from -PI to PI, with red at 0, yellow at PI/2, and blue at -PI/2.
-     * <br>
-     * The indices into each of these float[] values store red in bits 10-14, green in bits 5-9, and blue in bits 0-4.
-     * It's ideal to work with these indices with bitwise operations, as with {@code (r << 10 | g << 5 | b)}, where r,
-     * g, and b are all in the 0-31 range inclusive. It's usually easiest to convert an RGBA8888 int color to an RGB555
-     * color with {@link #shrink(int)}.
-     */
-    public static final float[][] OKLAB = new float[4][0x8000];
-
     /**
      * A 16384-element byte array as a 128x128 grid of bytes. When arranged into a grid, the bytes will follow a blue noise
      * frequency (in this case, they will have a triangular distribution for its bytes, so values near 0 are much more
@@ -788,29 +782,6 @@ public class A8PaletteReducer {
     public static final byte[] TRI_BAYER_MATRIX = new byte[1 << TBM_BITS + TBM_BITS];
 
     static {
-        float rf, gf, bf, lf, mf, sf;
-        int idx = 0;
-        for (int ri = 0; ri < 32; ri++) {
-            rf = (float) (ri * ri * 0.0010405827263267429); // 1.0 / 31.0 / 31.0
-            for (int gi = 0; gi < 32; gi++) {
-                gf = (float) (gi * gi * 0.0010405827263267429); // 1.0 / 31.0 / 31.0
-                for (int bi = 0; bi < 32; bi++) {
-                    bf = (float) (bi * bi * 0.0010405827263267429); // 1.0 / 31.0 / 31.0
-
-                    lf = OtherMath.cbrtPositive(0.4121656120f * rf + 0.5362752080f * gf + 0.0514575653f * bf);
-                    mf = OtherMath.cbrtPositive(0.2118591070f * rf + 0.6807189584f * gf + 0.1074065790f * bf);
-                    sf = OtherMath.cbrtPositive(0.0883097947f * rf + 0.2818474174f * gf + 0.6302613616f * bf);
-
-                    OKLAB[0][idx] = forwardLight(
-                                    0.2104542553f * lf + 0.7936177850f * mf - 0.0040720468f * sf);
-                    OKLAB[1][idx] = 1.9779984951f * lf - 2.4285922050f * mf + 0.4505937099f * sf;
-                    OKLAB[2][idx] = 0.0259040371f * lf + 0.7827717662f * mf - 0.8086757660f * sf;
-                    OKLAB[3][idx] = MathUtils.atan2(OKLAB[2][idx], OKLAB[1][idx]);
-
-                    idx++;
-                }
-            }
-        }
 //        for (int i = 1; i < 256; i++) {
 //            EXACT_LOOKUP[i] = OtherMath.barronSpline(i / 255f, 4f, 0.5f);
 //            ANALYTIC_LOOKUP[i] = OtherMath.barronSpline(i / 255f, 3f, 0.5f);
@@ -1001,6 +972,11 @@ public class A8PaletteReducer {
      */
     protected float populationBias = 0.5f;
 
+    /**
+     * How many threads to use when building {@link #paletteMapping}; see {@link #setParallelism(int)}.
+     */
+    protected int parallelism = 1;
+
     /**
      * Given by Joel Yliluoma in <a href="https://bisqwit.iki.fi/story/howto/dither/jy/">a dithering article</a>.
      * Must not be modified.
@@ -1385,11 +1361,12 @@ public class A8PaletteReducer {
      * @return the squared Euclidean distance between colors 1 and 2
      */
     public double differenceMatch(int r1, int g1, int b1, int r2, int g2, int b2) {
+        final float[][] oklab = ColorTables.oklab();
         final int idx1 = ((r1 << 7) & 0x7C00) | ((g1 << 2) & 0x3E0) | ((b1 >>> 3));
         final int idx2 = ((r2 << 7) & 0x7C00) | ((g2 << 2) & 0x3E0) | ((b2 >>> 3));
-        final double dL = (OKLAB[0][idx1] - OKLAB[0][idx2]) * 512.0;
-        final double dA = (OKLAB[1][idx1] - OKLAB[1][idx2]) * 512.0;
-        final double dB = (OKLAB[2][idx1] - OKLAB[2][idx2]) * 512.0;
+        final double dL = (oklab[0][idx1] - oklab[0][idx2]) * 512.0;
+        final double dA = (oklab[1][idx1] - oklab[1][idx2]) * 512.0;
+        final double dB = (oklab[2][idx1] - oklab[2][idx2]) * 512.0;
         return (dL * dL + dA * dA + dB * dB);
 
 //        double rf = (EXACT_LOOKUP[r1] - EXACT_LOOKUP[r2]) * 1.55;// rf *= rf;// * 0.875;
@@ -1421,11 +1398,12 @@ public class A8PaletteReducer {
      * @return the squared Euclidean distance between colors 1 and 2
      */
     public double differenceAnalyzing(int r1, int g1, int b1, int r2, int g2, int b2) {
+        final float[][] oklab = ColorTables.oklab();
         final int idx1 = ((r1 << 7) & 0x7C00) | ((g1 << 2) & 0x3E0) | ((b1 >>> 3));
         final int idx2 = ((r2 << 7) & 0x7C00) | ((g2 << 2) & 0x3E0) | ((b2 >>> 3));
-        final double dL = (OKLAB[0][idx1] - OKLAB[0][idx2]) * 512.0;
-        final double dA = (OKLAB[1][idx1] - OKLAB[1][idx2]) * 512.0;
-        final double dB = (OKLAB[2][idx1] - OKLAB[2][idx2]) * 512.0;
+        final double dL = (oklab[0][idx1] - oklab[0][idx2]) * 512.0;
+        final double dA = (oklab[1][idx1] - oklab[1][idx2]) * 512.0;
+        final double dB = (oklab[2][idx1] - oklab[2][idx2]) * 512.0;
         return (dL * dL + dA * dA + dB * dB);
 
 //        int rf = (r1 - r2);
@@ -1462,11 +1440,12 @@ public class A8PaletteReducer {
      * @return the squared Euclidean distance, between colors 1 and 2
      */
     public double differenceHW(int r1, int g1, int b1, int r2, int g2, int b2) {
+        final float[][] oklab = ColorTables.oklab();
         final int idx1 = ((r1 << 7) & 0x7C00) | ((g1 << 2) & 0x3E0) | ((b1 >>> 3));
         final int idx2 = ((r2 << 7) & 0x7C00) | ((g2 << 2) & 0x3E0) | ((b2 >>> 3));
-        final double dL = (OKLAB[0][idx1] - OKLAB[0][idx2]) * 512.0;
-        final double dA = (OKLAB[1][idx1] - OKLAB[1][idx2]) * 512.0;
-        final double dB = (OKLAB[2][idx1] - OKLAB[2][idx2]) * 512.0;
+        final double dL = (oklab[0][idx1] - oklab[0][idx2]) * 512.0;
+        final double dA = (oklab[1][idx1] - oklab[1][idx2]) * 512.0;
+        final double dB = (oklab[2][idx1] - oklab[2][idx2]) * 512.0;
         return (dL * dL + dA * dA + dB * dB);
 
 //        int rf = (r1 - r2);
@@ -1481,6 +1460,356 @@ public class A8PaletteReducer {
 //        return (rf * rf + gf * gf + bf * bf) * 0x1.4p17;
     }
 
+    /**
+     * Matches the difference functions here, {@link #differenceMatch(int, int, int, int, int, int)},
+     * {@link #differenceAnalyzing(int, int, int, int, int, int)}, and {@link #differenceHW(int, int, int, int, int, int)},
+     * which all measure squared Euclidean distance in {@link ColorTables#oklab()} scaled by 512. This lets a {@link PaletteIndex}
+     * skip most palette colors when building {@link #paletteMapping}, while still choosing the same colors. It is only
+     * used when this is exactly an A8PaletteReducer, since a subclass may have changed those difference functions.
+     */
+    public static final PaletteIndex.Space OKLAB_SPACE = new PaletteIndex.Space() {
+        @Override
+        public void coordinates(int c1, int c2, int c3, double[] out) {
+            final float[][] oklab = ColorTables.oklab();
+            final int idx = ((c1 << 7) & 0x7C00) | ((c2 << 2) & 0x3E0) | ((c3 >>> 3));
+            out[0] = oklab[0][idx];
+            out[1] = oklab[1][idx];
+            out[2] = oklab[2][idx];
+        }
+
+        @Override
+        public double axisDifference(int axis, double a, double b) {
+            final double d = ((float) a - (float) b) * 512.0;
+            return d * d;
+        }
+    };
+
+    /**
+     * Gets how many threads are used when building {@link #paletteMapping} and when running the ordered dithers that
+     * can be split into bands of rows; the default is 1.
+     * @return the number of threads used to build the palette mapping and run ordered dithers
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many threads will be used when building {@link #paletteMapping} in {@link #exact(int[], int)},
+     * {@link #analyze(Pixmap, double, int)}, and the other methods that build it from a palette. The result is the
+     * same for any parallelism. If the difference functions here have been overridden, they must be safe to call
+     * from several threads at once before this is set above 1.
+     * <br>
+     * This also splits the rows of a Pixmap into bands, each run on its own thread, for the dithers that only use a
+     * pixel's position and color: {@link #reduceBlueNoise(Pixmap)} and the other reduceBlueNoise methods,
+     * {@link #reduceBayer(Pixmap)}, {@link #reduceBayerOct(Pixmap)}, {@link #reduceBayerOctShifty(Pixmap)}, and
+     * {@link #reduceBayerCubist(Pixmap, int, int, int, int, int, int)}. Their output is the same for any parallelism.
+     * <br>
+     * The error-diffusion dithers {@link #reduceFloydSteinberg(Pixmap)}, {@link #reduceBurkes(Pixmap)}, {@link #reduceSierraLite(Pixmap)},
+     * {@link #reduceOceanic(Pixmap)}, {@link #reduceSeaside(Pixmap)}, {@link #reduceNeue(Pixmap)}, and
+     * {@link #reduceOverboard(Pixmap)} run as a
+     * wavefront instead, with each row trailing the row above it by a few pixels so that the error it needs has
+     * already been added; their output is also the same for any parallelism.
+     * @param parallelism how many threads to use when building the palette mapping; at least 1
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Runs {@code task} over the rows of an image with the given height, split into bands that run on
+     * {@link #getParallelism()} threads. Each band is a range of rows; the task must only write to pixels in those
+     * rows. With a parallelism of 1, this just runs every row on the calling thread.
+     * @param height how many rows are in the image
+     * @param task   the work to run on each band of rows
+     */
+    protected void forEachRowBand(int height, ParallelKit.RangeTask task) {
+        ParallelKit.forRange(parallelism, 0, height, Math.max(16, height / (parallelism << 2)), task);
+    }
+
+    /**
+     * Counts every pixel in pixmap with at least 50% alpha into tally, as its RGB555 color with the low bits of each
+     * channel filled in, using {@link #getParallelism()} threads; see
+     * {@link ParallelKit#tally(int, int, int, int, ParallelKit.ColorTally, ParallelKit.TallyTask)}. The counts, and
+     * the order of the counts map, are the same for any parallelism. If keepAll is true, every counted color is also
+     * appended to the tally's samples, in row order.
+     */
+    protected void tallyColors(final Pixmap pixmap, ParallelKit.ColorTally tally, final boolean keepAll) {
+        final int width = pixmap.getWidth();
+        ParallelKit.tally(parallelism, 0, pixmap.getHeight(), 16, tally, new ParallelKit.TallyTask() {
+            @Override
+            public void run(int start, int end, ParallelKit.ColorTally tally) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0; x < width; x++) {
+                        color = pixmap.getPixel(x, y) & 0xF8F8F880;
+                        if ((color & 0x80) != 0) {
+                            color |= (color >>> 5 & 0x07070700) | 0xFF;
+                            tally.add(color);
+                            if (keepAll)
+                                tally.samples.add(color);
+                        } else {
+                            tally.transparent = true;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Like {@link #tallyColors(Pixmap, ParallelKit.ColorTally, boolean)}, but also appends about 3 in 32 colors to the
+     * tally's samples, after {@link #shrink(int)}, choosing pixels by position and by which image this is in a
+     * sequence, the way the hue-wise analysis methods always have.
+     */
+    protected void tallyHueWise(final Pixmap pixmap, final int index, ParallelKit.ColorTally tally) {
+        final int width = pixmap.getWidth();
+        ParallelKit.tally(parallelism, 0, pixmap.getHeight(), 16, tally, new ParallelKit.TallyTask() {
+            @Override
+            public void run(int start, int end, ParallelKit.ColorTally tally) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0; x < width; x++) {
+                        color = pixmap.getPixel(x, y) & 0xF8F8F880;
+                        if ((color & 0x80) != 0) {
+                            color |= (color >>> 5 & 0x07070700) | 0xFF;
+                            tally.add(color);
+                            if(((x & y) * 5 - index & 31) < 3)
+                                tally.samples.add(shrink(color));
+                        } else {
+                            tally.transparent = true;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Like {@link #tallyColors(Pixmap, ParallelKit.ColorTally, boolean)}, but counts each pixel as the closest color
+     * in {@link #BIG_PALETTE}, for the "Reductive" analysis methods; {@link #buildBigPalette()} must have been called.
+     */
+    protected void tallyReductive(final Pixmap pixmap, ParallelKit.ColorTally tally) {
+        final int width = pixmap.getWidth();
+        ParallelKit.tally(parallelism, 0, pixmap.getHeight(), 16, tally, new ParallelKit.TallyTask() {
+            @Override
+            public void run(int start, int end, ParallelKit.ColorTally tally) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int x = 0; x < width; x++) {
+                        color = pixmap.getPixel(x, y) & 0xF8F8F880;
+                        if ((color & 0x80) != 0) {
+                            tally.add(BIG_PALETTE[bigPaletteMapping[shrink(color)]]);
+                        } else {
+                            tally.transparent = true;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs an error-diffusion dither over an image with the given width and height, one row at a time. With a
+     * parallelism of 1, this runs each row on the calling thread from top to bottom, reusing this reducer's error
+     * arrays. With a higher parallelism, it uses {@link ParallelKit#diffuse(int, int, int, int, ParallelKit.DiffusionTask)}
+     * to dither several rows at once as a wavefront, which gives exactly the same result.
+     * @param width  how many pixels are in each row
+     * @param height how many rows there are
+     * @param reach  how far left or right of a pixel the dither can send error
+     * @param task   dithers part of one row
+     */
+    protected void diffuse(int width, int height, int reach, ParallelKit.DiffusionTask task) {
+        if (parallelism > 1 && height > 1) {
+            ParallelKit.diffuse(parallelism, width, height, reach, task);
+            return;
+        }
+        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
+        if (curErrorRedFloats == null) {
+            curErrorRed = (curErrorRedFloats = new FloatArray(width)).items;
+            nextErrorRed = (nextErrorRedFloats = new FloatArray(width)).items;
+            curErrorGreen = (curErrorGreenFloats = new FloatArray(width)).items;
+            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(width)).items;
+            curErrorBlue = (curErrorBlueFloats = new FloatArray(width)).items;
+            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(width)).items;
+        } else {
+            curErrorRed = curErrorRedFloats.ensureCapacity(width);
+            nextErrorRed = nextErrorRedFloats.ensureCapacity(width);
+            curErrorGreen = curErrorGreenFloats.ensureCapacity(width);
+            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(width);
+            curErrorBlue = curErrorBlueFloats.ensureCapacity(width);
+            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(width);
+
+            Arrays.fill(nextErrorRed, 0, width, 0);
+            Arrays.fill(nextErrorGreen, 0, width, 0);
+            Arrays.fill(nextErrorBlue, 0, width, 0);
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, width);
+            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, width);
+            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, width);
+
+            Arrays.fill(nextErrorRed, 0, width, 0);
+            Arrays.fill(nextErrorGreen, 0, width, 0);
+            Arrays.fill(nextErrorBlue, 0, width, 0);
+
+            task.run(y, 0, width, curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue);
+        }
+    }
+
+    /**
+     * Fills every cell of {@link #paletteMapping} that is still 0 with the index {@code finder} picks for it, using
+     * {@link #getParallelism()} threads.
+     * @param finder picks the palette index for each cell; see {@link #matchFinder(int[], int, double)}
+     */
+    protected void fillMapping(final PaletteReducer.NearestFinder finder) {
+        final byte[] mapping = paletteMapping;
+        ParallelKit.forRange(parallelism, 0, 32, 1, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int c2, best;
+                for (int r = start; r < end; r++) {
+                    final int rr = (r << 3 | r >>> 2);
+                    for (int g = 0; g < 32; g++) {
+                        final int gg = (g << 3 | g >>> 2);
+                        for (int b = 0; b < 32; b++) {
+                            c2 = r << 10 | g << 5 | b;
+                            if (mapping[c2] == 0 && (best = finder.nearest(rr, gg, b << 3 | b >>> 2)) != 0)
+                                mapping[c2] = (byte) best;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Makes a NearestFinder that picks the first palette color with the smallest
+     * {@link #differenceMatch(int, int, int, int)} from a cell, checking indices 1 up to (but not including)
+     * {@code count}, or index 0 if no difference is less than {@code initial}.
+     * @param palette RGBA8888 colors
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(PaletteReducer.NearestFinder)}
+     */
+    protected PaletteReducer.NearestFinder matchFinder(final int[] palette, final int count, final double initial) {
+        return finder(new PaletteIndex.Distance() {
+            @Override
+            public double difference(int index, int r, int g, int b) {
+                return differenceMatch(palette[index], r, g, b);
+            }
+        }, palette, count, initial);
+    }
+
+    /**
+     * Like {@link #matchFinder(int[], int, double)}, but using {@link #differenceAnalyzing(int, int, int, int)}.
+     * @param palette RGBA8888 colors
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(PaletteReducer.NearestFinder)}
+     */
+    protected PaletteReducer.NearestFinder analyzingFinder(final int[] palette, final int count, final double initial) {
+        return finder(new PaletteIndex.Distance() {
+            @Override
+            public double difference(int index, int r, int g, int b) {
+                return differenceAnalyzing(palette[index], r, g, b);
+            }
+        }, palette, count, initial);
+    }
+
+    /**
+     * Like {@link #matchFinder(int[], int, double)}, but using
+     * {@link #differenceAnalyzing(int, int, int, int, int, int)} on colors given as separate channel arrays.
+     * @param reds    red channel of each palette color, from 0 to 255
+     * @param greens  green channel of each palette color, from 0 to 255
+     * @param blues   blue channel of each palette color, from 0 to 255
+     * @param count   how many items of the channel arrays to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(PaletteReducer.NearestFinder)}
+     */
+    protected PaletteReducer.NearestFinder analyzingFinder(final int[] reds, final int[] greens, final int[] blues,
+                                                           final int count, final double initial) {
+        return finder(new PaletteIndex.Distance() {
+            @Override
+            public double difference(int index, int r, int g, int b) {
+                return differenceAnalyzing(reds[index], greens[index], blues[index], r, g, b);
+            }
+        }, reds, greens, blues, count, initial);
+    }
+
+    /**
+     * Like {@link #matchFinder(int[], int, double)}, but using {@link #differenceHW(int, int, int, int)}.
+     * @param palette RGBA8888 colors
+     * @param count   how many items of palette to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(PaletteReducer.NearestFinder)}
+     */
+    protected PaletteReducer.NearestFinder hwFinder(final int[] palette, final int count, final double initial) {
+        return finder(new PaletteIndex.Distance() {
+            @Override
+            public double difference(int index, int r, int g, int b) {
+                return differenceHW(palette[index], r, g, b);
+            }
+        }, palette, count, initial);
+    }
+
+    /**
+     * Like {@link #matchFinder(int[], int, double)}, but using {@link #differenceHW(int, int, int, int, int, int)}
+     * on colors given as separate channel arrays.
+     * @param reds    red channel of each palette color, from 0 to 255
+     * @param greens  green channel of each palette color, from 0 to 255
+     * @param blues   blue channel of each palette color, from 0 to 255
+     * @param count   how many items of the channel arrays to consider, including index 0
+     * @param initial any difference must be less than this to be picked
+     * @return a NearestFinder that can be given to {@link #fillMapping(PaletteReducer.NearestFinder)}
+     */
+    protected PaletteReducer.NearestFinder hwFinder(final int[] reds, final int[] greens, final int[] blues,
+                                                    final int count, final double initial) {
+        return finder(new PaletteIndex.Distance() {
+            @Override
+            public double difference(int index, int r, int g, int b) {
+                return differenceHW(reds[index], greens[index], blues[index], r, g, b);
+            }
+        }, reds, greens, blues, count, initial);
+    }
+
+    private PaletteReducer.NearestFinder finder(final PaletteIndex.Distance distance, final int[] palette,
+                                                final int count, final double initial) {
+        if (count > 16 && getClass() == A8PaletteReducer.class) {
+            final int[] r = new int[count], g = new int[count], b = new int[count];
+            for (int i = 1; i < count; i++) {
+                r[i] = palette[i] >>> 24;
+                g[i] = palette[i] >>> 16 & 0xFF;
+                b[i] = palette[i] >>> 8 & 0xFF;
+            }
+            return new PaletteIndex(OKLAB_SPACE, distance, r, g, b, count, initial);
+        }
+        return bruteFinder(distance, count, initial);
+    }
+
+    private PaletteReducer.NearestFinder finder(final PaletteIndex.Distance distance, final int[] reds,
+                                                final int[] greens, final int[] blues,
+                                                final int count, final double initial) {
+        if (count > 16 && getClass() == A8PaletteReducer.class)
+            return new PaletteIndex(OKLAB_SPACE, distance, reds, greens, blues, count, initial);
+        return bruteFinder(distance, count, initial);
+    }
+
+    private static PaletteReducer.NearestFinder bruteFinder(final PaletteIndex.Distance distance, final int count,
+                                                           final double initial) {
+        return new PaletteReducer.NearestFinder() {
+            @Override
+            public int nearest(int rr, int gg, int bb) {
+                double dist = initial;
+                int best = 0;
+                for (int i = 1; i < count; i++) {
+                    if (dist > (dist = Math.min(dist, distance.difference(i, rr, gg, bb))))
+                        best = i;
+                }
+                return best;
+            }
+        };
+    }
+
     /**
      * Resets the palette to the 256-color (including transparent) "Snuggly" palette. PaletteReducer already
      * stores most of the calculated data needed to use this one palette. Note that this uses a more-detailed
@@ -1523,8 +1852,7 @@ public class A8PaletteReducer {
         final int plen = Math.min(Math.min(256, limit), rgbaPalette.length);
         colorCount = plen;
         populationBias = (float) Math.exp(-1.375/colorCount);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = rgbaPalette[i];
             if ((color & 0x80) != 0) {
@@ -1532,24 +1860,7 @@ public class A8PaletteReducer {
                 paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
             }
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 1E100;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, differenceMatch(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(matchFinder(paletteArray, plen, 1E100));
    }
 
     /**
@@ -1615,32 +1926,14 @@ public class A8PaletteReducer {
         final int plen = Math.min(Math.min(256, colorPalette.length), limit);
         colorCount = plen;
         populationBias = (float) Math.exp(-1.375/colorCount);
-        int color, c2;
-        double dist;
+        int color;
 
         for (int i = 0; i < plen; i++) {
             color = Color.rgba8888(colorPalette[i]);
             paletteArray[i] = color;
             paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 0x7FFFFFFF;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, differenceMatch(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(matchFinder(paletteArray, plen, 0x7FFFFFFF));
     }
 
     protected static final Comparator<IntIntMap.Entry> entryComparator = new Comparator<IntIntMap.Entry>() {
@@ -1679,7 +1972,8 @@ public class A8PaletteReducer {
     protected static final IntComparator lightnessComparator = new IntComparator() {
         @Override
         public int compare(int k1, int k2) {
-            return NumberUtils.floatToIntBits(OKLAB[0][k2] - OKLAB[0][k1]);
+            final float[][] oklab = ColorTables.oklab();
+            return NumberUtils.floatToIntBits(oklab[0][k2] - oklab[0][k1]);
         }
     };
 
@@ -1689,7 +1983,8 @@ public class A8PaletteReducer {
     protected static final IntComparator hueComparator = new IntComparator() {
         @Override
         public int compare(int k1, int k2) {
-            return NumberUtils.floatToIntBits(OKLAB[3][k2] - OKLAB[3][k1]);
+            final float[][] oklab = ColorTables.oklab();
+            return NumberUtils.floatToIntBits(oklab[3][k2] - oklab[3][k1]);
         }
     };
 
@@ -1947,17 +2242,8 @@ public class A8PaletteReducer {
         int color;
         limit = Math.min(Math.max(limit, 2), 256);
         threshold /= Math.min(0.5625, Math.pow(limit + 16, 1.45) * 0.00025);
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                if ((color & 0x80) != 0) {
-                    color |= (color >>> 5 & 0x07070700) | 0xFF;
-                    counts.getAndIncrement(color, 0, 1);
-                }
-            }
-        }
+        tallyColors(pixmap, new ParallelKit.ColorTally(counts), false);
         int cs = counts.size;
         Array<IntIntMap.Entry> es = new Array<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -1996,26 +2282,7 @@ public class A8PaletteReducer {
             populationBias = (float) Math.exp(-1.375/colorCount);
         }
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceAnalyzing(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(analyzingFinder(paletteArray, colorCount, Double.MAX_VALUE));
     }
 
     /**
@@ -2047,25 +2314,15 @@ public class A8PaletteReducer {
      * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
      */
     public void analyzeHueWise(Pixmap pixmap, double threshold, int limit) {
+        final float[][] oklab = ColorTables.oklab();
         Arrays.fill(paletteArray, 0);
         Arrays.fill(paletteMapping, (byte) 0);
         int color;
         limit = Math.min(Math.max(limit, 3), 256);
         threshold /= Math.pow(limit, 1.35) * 0.00005375;
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
-        IntArray enc = new IntArray(width * height);
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                if ((color & 0x80) != 0) {
-                    color |= (color >>> 5 & 0x07070700) | 0xFF;
-                    counts.getAndIncrement(color, 0, 1);
-                    if(((x & y) * 5 & 31) < 3)
-                        enc.add(shrink(color));
-                }
-            }
-        }
+        IntArray enc = new IntArray(pixmap.getWidth() * pixmap.getHeight());
+        tallyHueWise(pixmap, 0, new ParallelKit.ColorTally(counts, enc));
         int cs = counts.size;
         if (cs < limit) {
             Array<IntIntMap.Entry> es = new Array<>(cs);
@@ -2110,9 +2367,9 @@ public class A8PaletteReducer {
                     float totalL = 0.0f, totalA = 0.0f, totalB = 0.0f;
                     for (; e < end; e++) {
                         int index = ei[e];
-                        totalL += OKLAB[0][index];
-                        totalA += OKLAB[1][index];
-                        totalB += OKLAB[2][index];
+                        totalL += oklab[0][index];
+                        totalA += oklab[1][index];
+                        totalB += oklab[2][index];
                     }
                     totalA /= len;
                     totalB /= len;
@@ -2137,26 +2394,7 @@ public class A8PaletteReducer {
             populationBias = (float) Math.exp(-1.375/colorCount);
         }
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceHW(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(hwFinder(paletteArray, colorCount, Double.MAX_VALUE));
     }
 
     /**
@@ -2191,17 +2429,8 @@ public class A8PaletteReducer {
         int color;
         limit = Math.min(Math.max(limit, 2), 256);
         threshold /= Math.min(0.5625, Math.pow(limit + 16, 1.45) * 0.00025);
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                if ((color & 0x80) != 0) {
-                    color |= (color >>> 5 & 0x07070700) | 0xFF;
-                    counts.getAndIncrement(color, 0, 1);
-                }
-            }
-        }
+        tallyColors(pixmap, new ParallelKit.ColorTally(counts), false);
         int cs = counts.size;
         Array<IntIntMap.Entry> es = new Array<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -2318,25 +2547,36 @@ public class A8PaletteReducer {
     }
 
     public void analyzeMC(Pixmap pixmap, int limit) {
+        IntArray bin = new IntArray(pixmap.getWidth() * pixmap.getHeight());
+        IntIntMap counts = new IntIntMap(limit);
+        ParallelKit.ColorTally tally = new ParallelKit.ColorTally(counts, bin);
+        tallyColors(pixmap, tally, true);
+        analyzeMC(bin, counts, tally.transparent ? 1 : 0, limit);
+    }
+
+    /**
+     * Uses median cut on every image counted by {@code histogram}, the same way {@link #analyzeMC(Pixmap, int)} does
+     * for one image, building a palette with at most {@code limit} colors. Instead of a list of every pixel, this cuts
+     * a list made from the histogram's 15-bit counts, which has at most about 4 million items (scaled down evenly if
+     * more pixels were counted), so it never needs more than one image in memory at a time.
+     *
+     * @param histogram a ColorHistogram that has already counted every image the palette should fit
+     * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
+     */
+    public void analyzeMC(ColorHistogram histogram, int limit) {
+        analyzeMC(histogram.expand(15, 1.0, 1 << 22), histogram.getColorCounts(15),
+                histogram.hasTransparent() ? 1 : 0, limit);
+    }
+
+    /**
+     * Builds the palette from a list of RGB555 colors (with the low bits of each channel filled in), one per pixel, and
+     * a map of those colors to their counts; used by both kinds of analyzeMC().
+     */
+    private void analyzeMC(IntArray bin, IntIntMap counts, int hasTransparent, int limit) {
         Arrays.fill(paletteArray, 0);
         Arrays.fill(paletteMapping, (byte) 0);
         int color;
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
-        IntArray bin = new IntArray(width * height);
-        IntIntMap counts = new IntIntMap(limit);
-        int hasTransparent = 0;
         int rangeR, rangeG, rangeB;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                if ((color & 0x80) != 0) {
-                    bin.add(color |= (color >>> 5 & 0x07070700) | 0xFF);
-                    counts.getAndIncrement(color, 0, 1);
-                } else {
-                    hasTransparent = 1;
-                }
-            }
-        }
         limit = Math.max(2 - hasTransparent, Math.min(limit - hasTransparent, 256));
         if(counts.size > limit) {
             int numCuts = 32 - Integer.numberOfLeadingZeros(limit - 1);
@@ -2484,26 +2724,7 @@ public class A8PaletteReducer {
             populationBias = (float) Math.exp(-1.375/colorCount);
         }
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.POSITIVE_INFINITY;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceAnalyzing(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(analyzingFinder(paletteArray, colorCount, Double.POSITIVE_INFINITY));
     }
 
     protected static boolean bigPaletteLoaded = false;
@@ -2707,18 +2928,9 @@ public class A8PaletteReducer {
         limit = Math.min(Math.max(limit, 2), 256);
         threshold /= Math.min(0.3, Math.pow(limit + 16, 1.45) * 0.00013333);
 //        threshold /= Math.sqrt(limit + 16) * 0.5;
-        final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
         int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                if ((color & 0x80) != 0) {
-                    color = BIG_PALETTE[bigPaletteMapping[shrink(color)]];
-                    counts.getAndIncrement(color, 0, 1);
-                }
-            }
-        }
+        tallyReductive(pixmap, new ParallelKit.ColorTally(counts));
         int cs = counts.size;
         Array<IntIntMap.Entry> es = new Array<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -2770,38 +2982,20 @@ public class A8PaletteReducer {
             populationBias = (float) Math.exp(-1.375/colorCount);
         }
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceAnalyzing(reds[i], greens[i], blues[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(analyzingFinder(reds, greens, blues, colorCount, Double.MAX_VALUE));
     }
 
 
     public int blend(int rgba1, int rgba2, float preference) {
+        final float[][] oklab = ColorTables.oklab();
         int a1 = rgba1 & 255, a2 = rgba2 & 255;
         if((a1 & 0x80) == 0) return rgba2;
         else if((a2 & 0x80) == 0) return rgba1;
         rgba1 = shrink(rgba1);
         rgba2 = shrink(rgba2);
-        float L = OKLAB[0][rgba1] + (OKLAB[0][rgba2] - OKLAB[0][rgba1]) * preference;
-        float A = OKLAB[1][rgba1] + (OKLAB[1][rgba2] - OKLAB[1][rgba1]) * preference;
-        float B = OKLAB[2][rgba1] + (OKLAB[2][rgba2] - OKLAB[2][rgba1]) * preference;
+        float L = oklab[0][rgba1] + (oklab[0][rgba2] - oklab[0][rgba1]) * preference;
+        float A = oklab[1][rgba1] + (oklab[1][rgba2] - oklab[1][rgba1]) * preference;
+        float B = oklab[2][rgba1] + (oklab[2][rgba2] - oklab[2][rgba1]) * preference;
         return oklabToRGB(L, A, B, (a1 + (a2 - a1) * preference) * (1f/255f));
     }
 
@@ -2891,26 +3085,53 @@ public class A8PaletteReducer {
      * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
      */
     public void analyze(Pixmap[] pixmaps, int pixmapCount, double threshold, int limit) {
-        Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
         int color;
         limit = Math.min(Math.max(limit, 2), 256);
-        threshold /= Math.min(0.5625, Math.pow(limit + 16, 1.45) * 0.00025);
         IntIntMap counts = new IntIntMap(limit);
-        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
+        ParallelKit.ColorTally tally = new ParallelKit.ColorTally(counts);
         for (int i = 0; i < pixmapCount && i < pixmaps.length; i++) {
-            Pixmap pixmap = pixmaps[i];
-            final int width = pixmap.getWidth(), height = pixmap.getHeight();
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                    if ((color & 0x80) != 0) {
-                        color |= (color >>> 5 & 0x07070700) | 0xFF;
-                        counts.getAndIncrement(color, 0, 1);
-                    }
-                }
-            }
+            tallyColors(pixmaps[i], tally, false);
         }
+        analyzeCounts(counts, threshold, limit);
+    }
+
+    /**
+     * Analyzes every image counted by {@code histogram} for color count and frequency (as if they are one image), the
+     * same way {@link #analyze(Pixmap[], int, double, int)} does, building a palette with at most 256 colors. This
+     * uses a threshold of 100.
+     *
+     * @param histogram a ColorHistogram that has already counted every image the palette should fit
+     */
+    public void analyze(ColorHistogram histogram) {
+        analyze(histogram, 100, 256);
+    }
+
+    /**
+     * Analyzes every image counted by {@code histogram} for color count and frequency (as if they are one image), the
+     * same way {@link #analyze(Pixmap[], int, double, int)} does, building a palette with at most {@code limit}
+     * colors. Colors are compared at 15-bit precision, as that method does; an 18-bit histogram is folded down to 15
+     * bits first. Because the histogram counts images as they are added to it, this never needs more than one image
+     * in memory at a time, however many images there are.
+     *
+     * @param histogram a ColorHistogram that has already counted every image the palette should fit
+     * @param threshold a minimum color difference as produced by {@link #differenceAnalyzing(int, int)}; usually between 50 and 200, 100 is a good default
+     * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
+     */
+    public void analyze(ColorHistogram histogram, double threshold, int limit) {
+        limit = Math.min(Math.max(limit, 2), 256);
+        analyzeCounts(histogram.getColorCounts(15), threshold, limit);
+    }
+
+    /**
+     * Builds the palette from a map of RGB555 colors (with the low bits of each channel filled in) to their counts;
+     * used by both kinds of multiple-image analyze(). The limit must already be clamped.
+     */
+    private void analyzeCounts(IntIntMap counts, double threshold, int limit) {
+        Arrays.fill(paletteArray, 0);
+        Arrays.fill(paletteMapping, (byte) 0);
+        int color;
+        threshold /= Math.min(0.5625, Math.pow(limit + 16, 1.45) * 0.00025);
+        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
         final int cs = counts.size;
         Array<IntIntMap.Entry> es = new Array<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -2956,26 +3177,7 @@ public class A8PaletteReducer {
             populationBias = (float) Math.exp(-1.375/colorCount);
         }
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceAnalyzing(reds[i], greens[i], blues[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(analyzingFinder(reds, greens, blues, colorCount, Double.MAX_VALUE));
     }
 
     /**
@@ -3063,30 +3265,50 @@ public class A8PaletteReducer {
      * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
      */
     public void analyzeHueWise(Pixmap[] pixmaps, int pixmapCount, double threshold, int limit) {
-        Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
         int color;
         limit = Math.min(Math.max(limit, 3), 256);
-        threshold /= Math.pow(limit, 1.35) * 0.00005375;
         final int w0 = pixmaps[0].getWidth(), h0 = pixmaps[0].getHeight();
         IntIntMap counts = new IntIntMap(limit);
         IntArray enc = new IntArray(w0 * h0 * pixmapCount / 10);
-        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
+        ParallelKit.ColorTally tally = new ParallelKit.ColorTally(counts, enc);
         for (int i = 0; i < pixmapCount && i < pixmaps.length; i++) {
-            Pixmap pixmap = pixmaps[i];
-            final int width = pixmap.getWidth(), height = pixmap.getHeight();
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                    if ((color & 0x80) != 0) {
-                        color |= (color >>> 5 & 0x07070700) | 0xFF;
-                        counts.getAndIncrement(color, 0, 1);
-                        if(((x & y) * 5 - i & 31) < 3)
-                            enc.add(shrink(color));
-                    }
-                }
-            }
+            tallyHueWise(pixmaps[i], i, tally);
         }
+        analyzeHueWise(counts, enc, threshold, limit);
+    }
+
+    /**
+     * Analyzes every image counted by {@code histogram} the same way {@link #analyzeHueWise(Pixmap[], int, double, int)}
+     * does, building a palette with at most {@code limit} colors. Where that method samples about 3 of every 32
+     * pixels, this takes the same fraction of each color's count from the histogram (using at most about 4 million
+     * samples, however many pixels were counted), so it never needs more than one image in memory at a time.
+     *
+     * @param histogram a ColorHistogram that has already counted every image the palette should fit
+     * @param threshold a minimum color difference as produced by {@link #differenceHW(int, int)}; usually between 50 and 200, 100 is a good default
+     * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
+     */
+    public void analyzeHueWise(ColorHistogram histogram, double threshold, int limit) {
+        limit = Math.min(Math.max(limit, 3), 256);
+        IntArray enc = histogram.expand(15, 3.0 / 32.0, 1 << 22);
+        final int[] ei = enc.items;
+        for (int i = 0; i < enc.size; i++) {
+            ei[i] = shrink(ei[i]);
+        }
+        analyzeHueWise(histogram.getColorCounts(15), enc, threshold, limit);
+    }
+
+    /**
+     * Builds the palette from a map of RGB555 colors (with the low bits of each channel filled in) to their counts,
+     * and a sample of {@link #shrink(int)}-ed colors; used by both kinds of multiple-image analyzeHueWise(). The limit
+     * must already be clamped.
+     */
+    private void analyzeHueWise(IntIntMap counts, IntArray enc, double threshold, int limit) {
+        final float[][] oklab = ColorTables.oklab();
+        Arrays.fill(paletteArray, 0);
+        Arrays.fill(paletteMapping, (byte) 0);
+        int color;
+        threshold /= Math.pow(limit, 1.35) * 0.00005375;
+        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
         final int cs = counts.size;
         if (cs < limit) {
             Array<IntIntMap.Entry> es = new Array<>(cs);
@@ -3140,9 +3362,9 @@ public class A8PaletteReducer {
                     float totalL = 0.0f, totalA = 0.0f, totalB = 0.0f;
                     for (; e < end; e++) {
                         int index = ei[e];
-                        totalL += OKLAB[0][index];
-                        totalA += OKLAB[1][index];
-                        totalB += OKLAB[2][index];
+                        totalL += oklab[0][index];
+                        totalA += oklab[1][index];
+                        totalB += oklab[2][index];
                     }
                     totalA /= len;
                     totalB /= len;
@@ -3170,26 +3392,7 @@ public class A8PaletteReducer {
         }
         populationBias = (float) Math.exp(-1.375/colorCount);
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceHW(reds[i], greens[i], blues[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(hwFinder(reds, greens, blues, colorCount, Double.MAX_VALUE));
     }
 
     /**
@@ -3303,18 +3506,9 @@ public class A8PaletteReducer {
 //        threshold /= Math.sqrt(limit + 16) * 0.5;
         IntIntMap counts = new IntIntMap(limit);
         int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
+        ParallelKit.ColorTally tally = new ParallelKit.ColorTally(counts);
         for (int i = 0; i < pixmapCount && i < pixmaps.length; i++) {
-            Pixmap pixmap = pixmaps[i];
-            final int width = pixmap.getWidth(), height = pixmap.getHeight();
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    color = pixmap.getPixel(x, y) & 0xF8F8F880;
-                    if ((color & 0x80) != 0) {
-                        color = BIG_PALETTE[bigPaletteMapping[shrink(color)]];
-                        counts.getAndIncrement(color, 0, 1);
-                    }
-                }
-            }
+            tallyReductive(pixmaps[i], tally);
         }
         final int cs = counts.size;
         Array<IntIntMap.Entry> es = new Array<>(cs);
@@ -3367,26 +3561,7 @@ public class A8PaletteReducer {
             populationBias = (float) Math.exp(-1.375/colorCount);
         }
 
-        int c2;
-        int rr, gg, bb;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = Double.MAX_VALUE;
-                        for (int i = 1; i < colorCount; i++) {
-                            if (dist > (dist = Math.min(dist, differenceAnalyzing(reds[i], greens[i], blues[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(analyzingFinder(reds, greens, blues, colorCount, Double.MAX_VALUE));
     }
 
     /**
@@ -3452,52 +3627,167 @@ public class A8PaletteReducer {
      */
     public Pixmap reduce(Pixmap pixmap, Dithered.DitherAlgorithm ditherAlgorithm){
         if(pixmap == null) return null;
-        if(ditherAlgorithm == null) return reduceOverboard(pixmap);
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduce(PixelSurface.of(pixmap), ditherAlgorithm);
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduce(Pixmap, Dithered.DitherAlgorithm)}, but reads and writes pixels through a
+     * {@link PixelSurface}, which can wrap an int array or a buffer as well as a Pixmap. Every
+     * {@link Dithered.DitherAlgorithm} gives the same colors here as it does for an RGBA8888 Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#OVERBOARD}
+     */
+    public void reduce(PixelSurface surface, Dithered.DitherAlgorithm ditherAlgorithm){
+        if(ditherAlgorithm == null) {
+            reduceOverboard(surface);
+            return;
+        }
         switch (ditherAlgorithm) {
             case NONE:
-                return reduceSolid(pixmap);
+                reduceSolid(surface);
+                break;
             case GRADIENT_NOISE:
-                return reduceJimenez(pixmap);
+                reduceJimenez(surface);
+                break;
             case PATTERN:
-                return reduceKnoll(pixmap);
+                reduceKnoll(surface);
+                break;
             case CHAOTIC_NOISE:
-                return reduceChaoticNoise(pixmap);
+                reduceChaoticNoise(surface);
+                break;
             case DIFFUSION:
-                return reduceFloydSteinberg(pixmap);
+                reduceFloydSteinberg(surface);
+                break;
             case BLUE_NOISE:
-                return reduceBlueNoise(pixmap); 
+                reduceBlueNoise(surface);
+                break;
             case SCATTER:
-                return reduceScatter(pixmap);
+                reduceScatter(surface);
+                break;
             case ROBERTS:
-                return reduceRoberts(pixmap);
+                reduceRoberts(surface);
+                break;
             case WOVEN:
-                return reduceWoven(pixmap);
+                reduceWoven(surface);
+                break;
             case DODGY:
-                return reduceDodgy(pixmap);
+                reduceDodgy(surface);
+                break;
             case LOAF:
-                return reduceLoaf(pixmap);
+                reduceLoaf(surface);
+                break;
             case NEUE:
-                return reduceNeue(pixmap);
+                reduceNeue(surface);
+                break;
             case BURKES:
-                return reduceBurkes(pixmap);
+                reduceBurkes(surface);
+                break;
             case WREN:
-                return reduceWren(pixmap);
+                reduceWren(surface);
+                break;
             case OCEANIC:
-                return reduceOceanic(pixmap);
+                reduceOceanic(surface);
+                break;
             case SEASIDE:
-                return reduceSeaside(pixmap);
+                reduceSeaside(surface);
+                break;
             case GOURD:
-                return reduceGourd(pixmap);
+                reduceGourd(surface);
+                break;
             case SIERRA_LITE:
-                return reduceSierraLite(pixmap);
+                reduceSierraLite(surface);
+                break;
             case BAYER:
-                return reduceBayer(pixmap);
+                reduceBayer(surface);
+                break;
             case OVERBOARD:
             default:
-                return reduceOverboard(pixmap);
+                reduceOverboard(surface);
         }
     }
 
+    /**
+     * Like {@link #reduce(Pixmap)}, but works on an array of RGBA8888 ints instead of a Pixmap, which avoids the
+     * per-pixel cost of {@link Pixmap#getPixel(int, int)} and {@link Pixmap#drawPixel(int, int, int)} and doesn't need
+     * a Pixmap (or libGDX's native code) at all. This uses Overboard dithering, the same as reduce(Pixmap).
+     * Pixel {@code (x, y)} is read from {@code pixels[offset + y * stride + x]}. If {@code indices} is null, the
+     * reduced color is written back to that position in pixels; otherwise, pixels is left unchanged and the palette
+     * index is written to {@code indices[y * width + x]}, which is the layout A8PNG8 uses for its image data.
+     * <br>
+     * For an RGBA8888 Pixmap, this gives the same colors that reduce(Pixmap) would.
+     * @param pixels  RGBA8888 colors; will be modified in place if indices is null
+     * @param offset  the index in pixels of the top-left pixel
+     * @param width   how many pixels are in each row
+     * @param height  how many rows there are
+     * @param stride  how many ints apart the starts of each row are in pixels; often equal to width
+     * @param indices if non-null, receives palette indices and must have at least {@code width * height} items
+     */
+    public void reduce (int[] pixels, int offset, int width, int height, int stride, byte[] indices) {
+        reduce(pixels, offset, width, height, stride, indices, null);
+    }
+
+    /**
+     * Like {@link #reduce(Pixmap, Dithered.DitherAlgorithm)}, but works on an array of RGBA8888 ints; see
+     * {@link #reduce(int[], int, int, int, int, byte[])} for how the other arguments are used. Every
+     * {@link Dithered.DitherAlgorithm} is supported, and gives the same colors it would for an RGBA8888 Pixmap.
+     * @param pixels          RGBA8888 colors; will be modified in place if indices is null
+     * @param offset          the index in pixels of the top-left pixel
+     * @param width           how many pixels are in each row
+     * @param height          how many rows there are
+     * @param stride          how many ints apart the starts of each row are in pixels; often equal to width
+     * @param indices         if non-null, receives palette indices and must have at least {@code width * height} items
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#OVERBOARD}
+     */
+    public void reduce (int[] pixels, int offset, int width, int height, int stride, byte[] indices,
+                        Dithered.DitherAlgorithm ditherAlgorithm) {
+        reduce(bulkSurface(PixelSurface.of(pixels, offset, width, height, stride), indices), ditherAlgorithm);
+    }
+
+    /**
+     * Like {@link #reduce(int[], int, int, int, int, byte[], Dithered.DitherAlgorithm)}, but reads pixels from an
+     * IntBuffer of RGBA8888 colors, starting at its current position. If the buffer is backed by an array, that array
+     * is used directly; otherwise, the buffer is read and written in place with its absolute get and put methods, so
+     * nothing the size of the image is allocated. The buffer's position is not changed.
+     * @param pixels          RGBA8888 colors, starting at the buffer's position; will be modified if indices is null
+     * @param width           how many pixels are in each row
+     * @param height          how many rows there are
+     * @param stride          how many ints apart the starts of each row are in pixels; often equal to width
+     * @param indices         if non-null, receives palette indices and must have at least {@code width * height} items
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#OVERBOARD}
+     */
+    public void reduce (IntBuffer pixels, int width, int height, int stride, byte[] indices,
+                        Dithered.DitherAlgorithm ditherAlgorithm) {
+        reduce(bulkSurface(PixelSurface.of(pixels, width, height, stride), indices), ditherAlgorithm);
+    }
+
+    /**
+     * Like {@link #reduce(IntBuffer, int, int, int, byte[], Dithered.DitherAlgorithm)}, but reads RGBA8888 pixels as 4
+     * bytes each (red, green, blue, alpha, in that order) from a ByteBuffer, such as the one returned by
+     * {@link Pixmap#getPixels()} for an RGBA8888 Pixmap. The buffer's position and byte order are not changed.
+     * @param pixels          RGBA8888 pixels as bytes, starting at the buffer's position; will be modified if indices is null
+     * @param width           how many pixels are in each row
+     * @param height          how many rows there are
+     * @param stride          how many pixels (not bytes) apart the starts of each row are; often equal to width
+     * @param indices         if non-null, receives palette indices and must have at least {@code width * height} items
+     * @param ditherAlgorithm a dithering algorithm enum value; if null, defaults to {@link Dithered.DitherAlgorithm#OVERBOARD}
+     */
+    public void reduce (ByteBuffer pixels, int width, int height, int stride, byte[] indices,
+                        Dithered.DitherAlgorithm ditherAlgorithm) {
+        reduce(bulkSurface(PixelSurface.of(pixels, width, height, stride), indices), ditherAlgorithm);
+    }
+
+    /**
+     * Returns {@code pixels} if indices is null, or otherwise wraps it so that dithering writes palette indices into
+     * {@code indices} and leaves pixels unchanged.
+     */
+    private PixelSurface bulkSurface (PixelSurface pixels, byte[] indices) {
+        return indices == null ? pixels : PixelSurface.indexed(pixels, indices, paletteArray, paletteMapping);
+    }
+
     /**
      * Modifies the given Pixmap so it only uses colors present in this PaletteReducer, without dithering. This produces
      * blocky solid sections of color in most images where the palette isn't exact, instead of checkerboard-like
@@ -3509,21 +3799,32 @@ public class A8PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceSolid (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceSolid(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceSolid(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceSolid (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color;
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int rr = ((color >>> 24)       );
                     int gg = ((color >>> 16) & 0xFF);
                     int bb = ((color >>> 8)  & 0xFF);
-                    pixmap.drawPixel(px, y, paletteArray[
+                    surface.drawPixel(px, y, paletteArray[
                             paletteMapping[((rr << 7) & 0x7C00)
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))] & 0xFF]);
@@ -3531,8 +3832,6 @@ public class A8PaletteReducer {
             }
 
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -3550,89 +3849,73 @@ public class A8PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceSierraLite (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used;
-        float rdiff, gdiff, bdiff;
-        float ditherStrength = this.ditherStrength * 20, halfDitherStrength = ditherStrength * 0.5f;
-        for (int y = 0; y < h; y++) {
-            int ny = y + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
+        reduceSierraLite(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + curErrorRed[px]  , 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + curErrorGreen[px], 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + curErrorBlue[px] , 0), 1023)] & 255;
-                    used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF];
-                    pixmap.drawPixel(px, y, used);
-                    pixmap.drawPixel(px, y, used);
-                    rdiff = (0x2.4p-8f * ((color>>>24)-    (used>>>24))    );
-                    gdiff = (0x2.4p-8f * ((color>>>16&255)-(used>>>16&255)));
-                    bdiff = (0x2.4p-8f * ((color>>>8&255)- (used>>>8&255)) );
-                    rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
-                    gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
-                    bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
+    /**
+     * Like {@link #reduceSierraLite(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceSierraLite (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        float ditherStrength = this.ditherStrength * 20, halfDitherStrength = ditherStrength * 0.5f;
+        diffuse(lineLen, h, 1, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                int ny = y + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, y);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, y, 0);
+                    else {
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + curErrorRed[px]  , 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + curErrorGreen[px], 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + curErrorBlue[px] , 0), 1023)] & 255;
+                        used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                | ((gg << 2) & 0x3E0)
+                                | ((bb >>> 3))] & 0xFF];
+                        surface.drawPixel(px, y, used);
+                        surface.drawPixel(px, y, used);
+                        rdiff = (0x2.4p-8f * ((color>>>24)-    (used>>>24))    );
+                        gdiff = (0x2.4p-8f * ((color>>>16&255)-(used>>>16&255)));
+                        bdiff = (0x2.4p-8f * ((color>>>8&255)- (used>>>8&255)) );
+                        rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
+                        gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
+                        bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
 
 
 
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += rdiff * ditherStrength;
-                        curErrorGreen[px+1] += gdiff * ditherStrength;
-                        curErrorBlue[px+1]  += bdiff * ditherStrength;
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+                        if(px < lineLen - 1)
+                        {
+                            curErrorRed[px+1]   += rdiff * ditherStrength;
+                            curErrorGreen[px+1] += gdiff * ditherStrength;
+                            curErrorBlue[px+1]  += bdiff * ditherStrength;
+                        }
+                        if(ny < h)
                         {
-                            nextErrorRed[px-1]   += rdiff * halfDitherStrength;
-                            nextErrorGreen[px-1] += gdiff * halfDitherStrength;
-                            nextErrorBlue[px-1]  += bdiff * halfDitherStrength;
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += rdiff * halfDitherStrength;
+                                nextErrorGreen[px-1] += gdiff * halfDitherStrength;
+                                nextErrorBlue[px-1]  += bdiff * halfDitherStrength;
+                            }
+                            nextErrorRed[px]   += rdiff * halfDitherStrength;
+                            nextErrorGreen[px] += gdiff * halfDitherStrength;
+                            nextErrorBlue[px]  += bdiff * halfDitherStrength;
                         }
-                        nextErrorRed[px]   += rdiff * halfDitherStrength;
-                        nextErrorGreen[px] += gdiff * halfDitherStrength;
-                        nextErrorBlue[px]  += bdiff * halfDitherStrength;
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -3645,95 +3928,79 @@ public class A8PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceFloydSteinberg (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used;
-        float rdiff, gdiff, bdiff;
-        float w1 = ditherStrength * 32 / populationBias, w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f;
-        for (int y = 0; y < h; y++) {
-            int ny = y + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
+        reduceFloydSteinberg(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + curErrorRed[px]  , 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + curErrorGreen[px], 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + curErrorBlue[px] , 0), 1023)] & 255;
-                    used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF];
-                    pixmap.drawPixel(px, y, used);
-                    rdiff = (0x1p-8f * ((color>>>24)-    (used>>>24))    );
-                    gdiff = (0x1p-8f * ((color>>>16&255)-(used>>>16&255)));
-                    bdiff = (0x1p-8f * ((color>>>8&255)- (used>>>8&255)) );
-                    // this alternate code used a sigmoid function to smoothly limit error.
-//                    rdiff = (0x1.8p-8f * ((color>>>24)-    (used>>>24))    );
-//                    gdiff = (0x1.8p-8f * ((color>>>16&255)-(used>>>16&255)));
-//                    bdiff = (0x1.8p-8f * ((color>>>8&255)- (used>>>8&255)) );
-//                    rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
-//                    gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
-//                    bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += rdiff * w7;
-                        curErrorGreen[px+1] += gdiff * w7;
-                        curErrorBlue[px+1]  += bdiff * w7;
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+    /**
+     * Like {@link #reduceFloydSteinberg(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceFloydSteinberg (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        float w1 = ditherStrength * 32 / populationBias, w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f;
+        diffuse(lineLen, h, 1, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                int ny = y + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, y);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, y, 0);
+                    else {
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + curErrorRed[px]  , 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + curErrorGreen[px], 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + curErrorBlue[px] , 0), 1023)] & 255;
+                        used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                | ((gg << 2) & 0x3E0)
+                                | ((bb >>> 3))] & 0xFF];
+                        surface.drawPixel(px, y, used);
+                        rdiff = (0x1p-8f * ((color>>>24)-    (used>>>24))    );
+                        gdiff = (0x1p-8f * ((color>>>16&255)-(used>>>16&255)));
+                        bdiff = (0x1p-8f * ((color>>>8&255)- (used>>>8&255)) );
+                        // this alternate code used a sigmoid function to smoothly limit error.
+//                        rdiff = (0x1.8p-8f * ((color>>>24)-    (used>>>24))    );
+//                        gdiff = (0x1.8p-8f * ((color>>>16&255)-(used>>>16&255)));
+//                        bdiff = (0x1.8p-8f * ((color>>>8&255)- (used>>>8&255)) );
+//                        rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
+//                        gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
+//                        bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += rdiff * w3;
-                            nextErrorGreen[px-1] += gdiff * w3;
-                            nextErrorBlue[px-1]  += bdiff * w3;
+                            curErrorRed[px+1]   += rdiff * w7;
+                            curErrorGreen[px+1] += gdiff * w7;
+                            curErrorBlue[px+1]  += bdiff * w7;
                         }
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[px+1]   += rdiff * w1;
-                            nextErrorGreen[px+1] += gdiff * w1;
-                            nextErrorBlue[px+1]  += bdiff * w1;
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += rdiff * w3;
+                                nextErrorGreen[px-1] += gdiff * w3;
+                                nextErrorBlue[px-1]  += bdiff * w3;
+                            }
+                            if(px < lineLen - 1)
+                            {
+                                nextErrorRed[px+1]   += rdiff * w1;
+                                nextErrorGreen[px+1] += gdiff * w1;
+                                nextErrorBlue[px+1]  += bdiff * w1;
+                            }
+                            nextErrorRed[px]   += rdiff * w5;
+                            nextErrorGreen[px] += gdiff * w5;
+                            nextErrorBlue[px]  += bdiff * w5;
                         }
-                        nextErrorRed[px]   += rdiff * w5;
-                        nextErrorGreen[px] += gdiff * w5;
-                        nextErrorBlue[px]  += bdiff * w5;
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -3749,10 +4016,21 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceJimenez(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceJimenez(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceJimenez(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceJimenez(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
 //        final float strength = 50f * ditherStrength * (float) Math.pow(populationBias, -2f);
 //        final float strength = Math.min(0.63f * ditherStrength / (populationBias * populationBias), 1f);
 //        final float strength = Math.min(ditherStrength * populationBias, 1f);
@@ -3765,9 +4043,9 @@ public class A8PaletteReducer {
 
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
+                int color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     // The original IGN for shaders:
                     // fract(fract(v_texCoords.xy * vec2(6.711056, 0.583715)) * 52.9829189)
@@ -3804,14 +4082,12 @@ public class A8PaletteReducer {
                     int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16 & 0xFF)] + ((142 * (px + 0xFA) + 79 * (y - 0xA3) & 255) - 127.5f) * strength, 0), 1023)] & 255;
                     int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8 & 0xFF) ] + ((142 * (px + 0xA5) + 79 * (y - 0xC9) & 255) - 127.5f) * strength, 0), 1023)] & 255;
 
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
                             | ((gg << 2) & 0x3E0)
                             | ((bb >>> 3))] & 0xFF]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -3969,10 +4245,21 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceRoberts (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceRoberts(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceRoberts(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceRoberts (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color;
 //        float str = (32f * ditherStrength / (populationBias * populationBias));
 //        float str = (float) (64 * ditherStrength / Math.log(colorCount * 0.3 + 1.5));
@@ -3984,9 +4271,9 @@ public class A8PaletteReducer {
 
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     // used in 0.3.10
 //                    // Gets R2-based noise and puts it in the -0.75 to 0.75 range
@@ -4022,14 +4309,12 @@ public class A8PaletteReducer {
                     int gg = fromLinearLUT[(int) Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + OtherMath.triangleWave(theta + 0.209f) * str, 0), 1023)] & 255;
                     int bb = fromLinearLUT[(int) Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + OtherMath.triangleWave(theta + 0.518f) * str, 0), 1023)] & 255;
 
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
                             | ((gg << 2) & 0x3E0)
                             | ((bb >>> 3))] & 0xFF]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -4038,29 +4323,38 @@ public class A8PaletteReducer {
      * @return
      */
     public Pixmap reduceLoaf(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceLoaf(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceLoaf(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceLoaf(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float strength = 5f * ditherStrength * (float)Math.pow(colorCount, -0.4f);
 //        final float strength = Math.min(Math.max(2.5f + 5f * ditherStrength - 5.5f * populationBias, 0f), 7.9f);
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
+                int color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int adj = (int)((((px + y & 1) << 5) - 16) * strength); // either + 16 * strength or - 16 * strength
                     int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + adj, 0), 1023)] & 255;
                     int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + adj, 0), 1023)] & 255;
                     int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + adj, 0), 1023)] & 255;
                     int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -4102,10 +4396,21 @@ public class A8PaletteReducer {
      * @return
      */
     public Pixmap reduceGourd(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceGourd(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceGourd(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceGourd(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         // is the lowest possible populationBias^4, 0.8188650241570136f is the difference between the highest populationBias^4 and the lowest.
 //        final float strength = Math.min(ditherStrength * (4f - (populationBias * populationBias * populationBias * populationBias - 0.1598797460796939f) * (3.5f / 0.8188650241570136f)), 4f);
 
@@ -4131,9 +4436,9 @@ public class A8PaletteReducer {
         }
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
+                int color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int idx = (px & 7) ^ (y << 3 & 56);
                     
@@ -4141,17 +4446,28 @@ public class A8PaletteReducer {
                     int gg = (fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + tempThresholdMatrix[idx ^ 0b110011])] & 255);
                     int bb = (fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + tempThresholdMatrix[idx ^ 0b100111])] & 255);
                     int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
                 }
             }
         }
+    }
+
+    public Pixmap reduceWoven(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceWoven(PixelSurface.of(pixmap));
         pixmap.setBlending(blending);
         return pixmap;
     }
 
-    public Pixmap reduceWoven(Pixmap pixmap) {
+    /**
+     * Like {@link #reduceWoven(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceWoven(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -4172,8 +4488,6 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorGreen, 0, lineLen, 0);
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -4194,9 +4508,9 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
 
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     er = Math.min(Math.max(((((px+1) * 0xC13FA9A902A6328FL + (y+1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-23f - 0x1.4p-1f) * strength, -limit), limit) + (curErrorRed[px]);
                     eg = Math.min(Math.max(((((px+3) * 0xC13FA9A902A6328FL + (y-1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-23f - 0x1.4p-1f) * strength, -limit), limit) + (curErrorGreen[px]);
@@ -4215,7 +4529,7 @@ public class A8PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
+                    surface.drawPixel(px, y, used);
                     rdiff = (0x5p-10f * ((color>>>24)-    (used>>>24))    );
                     gdiff = (0x5p-10f * ((color>>>16&255)-(used>>>16&255)));
                     bdiff = (0x5p-10f * ((color>>>8&255)- (used>>>8&255)) );
@@ -4247,8 +4561,6 @@ public class A8PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -4361,8 +4673,21 @@ public class A8PaletteReducer {
     }
 
     public Pixmap reduceWren(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceWren(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceWren(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceWren(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -4383,8 +4708,6 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorGreen, 0, lineLen, 0);
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -4406,9 +4729,9 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
 
             for (int x = 0; x < lineLen; x++) {
-                color = pixmap.getPixel(x, y);
+                color = surface.getPixel(x, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(x, y, 0);
+                    surface.drawPixel(x, y, 0);
                 else {
                     er = Math.min(Math.max(( ( (BlueNoise.getSeededTriangular(x, y, 0xAAAAA) + 0.5f) * blueStrength + ((((x+1) * 0xC13FA9A902A6328FL + (y+1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-24f - 0x1.4p-2f) * strength)), -limit), limit) + (curErrorRed[x]);
                     eg = Math.min(Math.max(( ( (BlueNoise.getSeededTriangular(x, y, 0xBBBBB) + 0.5f) * blueStrength + ((((x+3) * 0xC13FA9A902A6328FL + (y-1) * 0x91E10DA5C79E7B1DL) >>> 41) * 0x1.4p-24f - 0x1.4p-2f) * strength)), -limit), limit) + (curErrorGreen[x]);
@@ -4422,7 +4745,7 @@ public class A8PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(x, y, used);
+                    surface.drawPixel(x, y, used);
                     rdiff = ((color>>>24)-    (used>>>24))     * partialDitherStrength;
                     gdiff = ((color>>>16&255)-(used>>>16&255)) * partialDitherStrength;
                     bdiff = ((color>>>8&255)- (used>>>8&255))  * partialDitherStrength;
@@ -4483,8 +4806,6 @@ public class A8PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -4498,30 +4819,44 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceBlueNoise (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        final float strength = 1.25f * ditherStrength * (float)Math.pow(colorCount, -0.4f);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    float adj = Math.min(Math.max(((BlueNoise.getSeededTriangular(px, y, 0x37F01) + ((px + y & 1) << 8) - 127.5f) * strength), -100.5f), 101.5f);
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + adj)] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + adj)] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + adj)] & 255;
+        reduceBlueNoise(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+    /**
+     * Like {@link #reduceBlueNoise(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceBlueNoise (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        final float strength = 1.25f * ditherStrength * (float)Math.pow(colorCount, -0.4f);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        int color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            float adj = Math.min(Math.max(((BlueNoise.getSeededTriangular(px, y, 0x37F01) + ((px + y & 1) << 8) - 127.5f) * strength), -100.5f), 101.5f);
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + adj)] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + adj)] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + adj)] & 255;
+
+                            surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceBlueNoiseOmni64 (Pixmap pixmap) {
@@ -4529,24 +4864,29 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.375f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y     , 0x145BC) + 0.5f) * strength), -127), 127))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 21, y + 53, 0x287D6) + 0.5f) * strength), -127), 127))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 43, y + 11, 0x3FEA9) + 0.5f) * strength), -127), 127))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y     , 0x145BC) + 0.5f) * strength), -127), 127))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 21, y + 53, 0x287D6) + 0.5f) * strength), -127), 127))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 43, y + 11, 0x3FEA9) + 0.5f) * strength), -127), 127))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4556,24 +4896,29 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.375f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y     , 0x5BC) + 0.5f) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 21, y + 53, 0x7D6) + 0.5f) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 43, y + 11, 0xEA9) + 0.5f) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y     , 0x5BC) + 0.5f) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 21, y + 53, 0x7D6) + 0.5f) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 43, y + 11, 0xEA9) + 0.5f) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4583,24 +4928,29 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.3125f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y     , 0x5BC) - BlueNoise.getSeededTriangular(px + 62, y + 66, ~0x65BC)) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 21, y + 53, 0x7D6) - BlueNoise.getSeededTriangular(px + 50, y + 98, ~0x57D6)) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 43, y + 11, 0xEA9) - BlueNoise.getSeededTriangular(px + 88, y + 20, ~0x3EA9)) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y     , 0x5BC) - BlueNoise.getSeededTriangular(px + 62, y + 66, ~0x65BC)) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 21, y + 53, 0x7D6) - BlueNoise.getSeededTriangular(px + 50, y + 98, ~0x57D6)) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 43, y + 11, 0xEA9) - BlueNoise.getSeededTriangular(px + 88, y + 20, ~0x3EA9)) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4610,25 +4960,30 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.3125f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int adj = BlueNoise.getSeededTriangular(px + 62, y + 66, 0xF01);
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int adj = BlueNoise.getSeededTriangular(px + 62, y + 66, 0xF01);
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4638,25 +4993,30 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.4375f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int adj = BlueNoise.getSeededTriangular(px + 62, y + 66, 0xF01) + ((px + y & 1) << 7) - 64;
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int adj = BlueNoise.getSeededTriangular(px + 62, y + 66, 0xF01) + ((px + y & 1) << 7) - 64;
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4666,25 +5026,30 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.3125f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    float adj = ((px + y & 1) << 7) - 63.5f;
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            float adj = ((px + y & 1) << 7) - 63.5f;
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4694,25 +5059,30 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.3125f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int adj = (142 * px + 79 * y & 255) - 128;
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int adj = (142 * px + 79 * y & 255) - 128;
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4722,25 +5092,30 @@ public class A8PaletteReducer {
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color;
         float strength = 0.3125f * ditherStrength / (populationBias * populationBias * populationBias);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    float adj = (A8PaletteReducer.thresholdMatrix16[(px & 3) << 2 | (y & 3)] << 4) - 119.5f;
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int color;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            float adj = (A8PaletteReducer.thresholdMatrix16[(px & 3) << 2 | (y & 3)] << 4) - 119.5f;
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px     , y      , 0x5BC) - adj) * strength), -100), 100))] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 31, y + 113, 0x7D6) - adj) * strength), -100), 100))] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(((BlueNoise.getSeededTriangular(px + 71, y + 41 , 0xEA9) - adj) * strength), -100), 100))] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4861,22 +5236,27 @@ public class A8PaletteReducer {
 
         float strength = Math.min(Math.max(0.5f * ditherStrength / (populationBias * populationBias * populationBias), -0.95f), 0.95f);
         
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + TRI_BAYER_MATRIX[(px + 62 & TBM_MASK) << TBM_BITS | (y + 66  & TBM_MASK)] * strength)] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + TRI_BAYER_MATRIX[(px + 31 & TBM_MASK) << TBM_BITS | (y + 113 & TBM_MASK)] * strength)] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + TRI_BAYER_MATRIX[(px + 71 & TBM_MASK) << TBM_BITS | (y + 41  & TBM_MASK)] * strength)] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        int color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + TRI_BAYER_MATRIX[(px + 62 & TBM_MASK) << TBM_BITS | (y + 66  & TBM_MASK)] * strength)] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + TRI_BAYER_MATRIX[(px + 31 & TBM_MASK) << TBM_BITS | (y + 113 & TBM_MASK)] * strength)] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + TRI_BAYER_MATRIX[(px + 71 & TBM_MASK) << TBM_BITS | (y + 41  & TBM_MASK)] * strength)] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4925,22 +5305,27 @@ public class A8PaletteReducer {
 
         float strength = Math.min(Math.max(0.5f * ditherStrength / (populationBias * populationBias * populationBias), -0.95f), 0.95f);
 
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + TRI_BAYER_MATRIX[(px + 2 & TBM_MASK) << TBM_BITS | (y     & TBM_MASK)] * strength)] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + TRI_BAYER_MATRIX[(px     & TBM_MASK) << TBM_BITS | (y + 4 & TBM_MASK)] * strength)] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + TRI_BAYER_MATRIX[(px + 4 & TBM_MASK) << TBM_BITS | (y + 2 & TBM_MASK)] * strength)] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        int color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + TRI_BAYER_MATRIX[(px + 2 & TBM_MASK) << TBM_BITS | (y     & TBM_MASK)] * strength)] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + TRI_BAYER_MATRIX[(px     & TBM_MASK) << TBM_BITS | (y + 4 & TBM_MASK)] * strength)] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + TRI_BAYER_MATRIX[(px + 4 & TBM_MASK) << TBM_BITS | (y + 2 & TBM_MASK)] * strength)] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -4953,22 +5338,27 @@ public class A8PaletteReducer {
 
         float strength = Math.min(Math.max(0.5f * ditherStrength / (populationBias * populationBias * populationBias), -0.95f), 0.95f);
 
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + TRI_BAYER_MATRIX[(px + rx & TBM_MASK) << TBM_BITS | (y + ry & TBM_MASK)] * strength)] & 255;
-                    int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + TRI_BAYER_MATRIX[(px + gx & TBM_MASK) << TBM_BITS | (y + gy & TBM_MASK)] * strength)] & 255;
-                    int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + TRI_BAYER_MATRIX[(px + bx & TBM_MASK) << TBM_BITS | (y + by & TBM_MASK)] * strength)] & 255;
-
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        int color = pixmap.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            pixmap.drawPixel(px, y, 0);
+                        else {
+                            int rr = fromLinearLUT[(int)(toLinearLUT[(color >>> 24)       ] + TRI_BAYER_MATRIX[(px + rx & TBM_MASK) << TBM_BITS | (y + ry & TBM_MASK)] * strength)] & 255;
+                            int gg = fromLinearLUT[(int)(toLinearLUT[(color >>> 16) & 0xFF] + TRI_BAYER_MATRIX[(px + gx & TBM_MASK) << TBM_BITS | (y + gy & TBM_MASK)] * strength)] & 255;
+                            int bb = fromLinearLUT[(int)(toLinearLUT[(color >>> 8)  & 0xFF] + TRI_BAYER_MATRIX[(px + bx & TBM_MASK) << TBM_BITS | (y + by & TBM_MASK)] * strength)] & 255;
+
+                            pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
+        });
         pixmap.setBlending(blending);
         return pixmap;
     }
@@ -5159,18 +5549,29 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceChaoticNoise (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceChaoticNoise(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceChaoticNoise(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceChaoticNoise (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color, used;
         double adj, strength = ditherStrength * populationBias * 1.5;
         long s = 0xC13FA9A902A6328FL;
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int rr = ((color >>> 24)       );
                     int gg = ((color >>> 16) & 0xFF);
@@ -5194,14 +5595,12 @@ public class A8PaletteReducer {
                     rr = Math.min(Math.max((int) (rr + (adj * ((rr - (used >>> 24))))), 0), 0xFF);
                     gg = Math.min(Math.max((int) (gg + (adj * ((gg - (used >>> 16 & 0xFF))))), 0), 0xFF);
                     bb = Math.min(Math.max((int) (bb + (adj * ((bb - (used >>> 8 & 0xFF))))), 0), 0xFF);
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                    surface.drawPixel(px, y, paletteArray[paletteMapping[((rr << 7) & 0x7C00)
                             | ((gg << 2) & 0x3E0)
                             | ((bb >>> 3))] & 0xFF]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -5214,8 +5613,21 @@ public class A8PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceScatter (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceScatter(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceScatter(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceScatter (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -5236,8 +5648,6 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorGreen, 0, lineLen, 0);
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -5255,9 +5665,9 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
 
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     float tbn = A8PaletteReducer.TRI_BLUE_NOISE_MULTIPLIERS_A[(px & 127) | (y & 127) << 7];
                     er = curErrorRed[px] * tbn;
@@ -5271,7 +5681,7 @@ public class A8PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, y, used);
+                    surface.drawPixel(px, y, used);
                     rdiff = (0x2.1p-8f * ((color>>>24)-    (used>>>24))    );
                     gdiff = (0x2.1p-8f * ((color>>>16&255)-(used>>>16&255)));
                     bdiff = (0x2.1p-8f * ((color>>>8&255)- (used>>>8&255)) );
@@ -5305,8 +5715,6 @@ public class A8PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -5323,103 +5731,87 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceNeue(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        int color, used;
-        float rdiff, gdiff, bdiff;
-        float er, eg, eb, adj;
-        byte paletteIndex;
+        reduceNeue(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceNeue(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceNeue(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float w1 = ditherStrength * 8f, w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f,
                 strength = (70f * ditherStrength / (populationBias * populationBias * populationBias)),
                 limit = Math.min(127, (float) Math.pow(80, 1.635 - populationBias));
 
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-
-            for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    adj = ((BlueNoise.getSeededTriangular(px, py, 0x2357B) + 0.5f) * 0.005f); // plus or minus 255/400
-                    adj = Math.min(Math.max(adj * strength, -limit), limit);
-                    er = adj + (curErrorRed[px]);
-                    eg = adj + (curErrorGreen[px]);
-                    eb = adj + (curErrorBlue[px]);
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    rdiff = (0x2.Ep-8f * ((color>>>24)-    (used>>>24))    );
-                    gdiff = (0x2.Ep-8f * ((color>>>16&255)-(used>>>16&255)));
-                    bdiff = (0x2.Ep-8f * ((color>>>8&255)- (used>>>8&255)) );
-                    rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
-                    gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
-                    bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += rdiff * w7;
-                        curErrorGreen[px+1] += gdiff * w7;
-                        curErrorBlue[px+1]  += bdiff * w7;
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+        diffuse(lineLen, h, 1, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used;
+                float rdiff, gdiff, bdiff;
+                float er, eg, eb, adj;
+                byte paletteIndex;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        adj = ((BlueNoise.getSeededTriangular(px, py, 0x2357B) + 0.5f) * 0.005f); // plus or minus 255/400
+                        adj = Math.min(Math.max(adj * strength, -limit), limit);
+                        er = adj + (curErrorRed[px]);
+                        eg = adj + (curErrorGreen[px]);
+                        eb = adj + (curErrorBlue[px]);
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        rdiff = (0x2.Ep-8f * ((color>>>24)-    (used>>>24))    );
+                        gdiff = (0x2.Ep-8f * ((color>>>16&255)-(used>>>16&255)));
+                        bdiff = (0x2.Ep-8f * ((color>>>8&255)- (used>>>8&255)) );
+                        rdiff *= 1.25f / (0.25f + Math.abs(rdiff));
+                        gdiff *= 1.25f / (0.25f + Math.abs(gdiff));
+                        bdiff *= 1.25f / (0.25f + Math.abs(bdiff));
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += rdiff * w3;
-                            nextErrorGreen[px-1] += gdiff * w3;
-                            nextErrorBlue[px-1]  += bdiff * w3;
+                            curErrorRed[px+1]   += rdiff * w7;
+                            curErrorGreen[px+1] += gdiff * w7;
+                            curErrorBlue[px+1]  += bdiff * w7;
                         }
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[px+1]   += rdiff * w1;
-                            nextErrorGreen[px+1] += gdiff * w1;
-                            nextErrorBlue[px+1]  += bdiff * w1;
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += rdiff * w3;
+                                nextErrorGreen[px-1] += gdiff * w3;
+                                nextErrorBlue[px-1]  += bdiff * w3;
+                            }
+                            if(px < lineLen - 1)
+                            {
+                                nextErrorRed[px+1]   += rdiff * w1;
+                                nextErrorGreen[px+1] += gdiff * w1;
+                                nextErrorBlue[px+1]  += bdiff * w1;
+                            }
+                            nextErrorRed[px]   += rdiff * w5;
+                            nextErrorGreen[px] += gdiff * w5;
+                            nextErrorBlue[px]  += bdiff * w5;
                         }
-                        nextErrorRed[px]   += rdiff * w5;
-                        nextErrorGreen[px] += gdiff * w5;
-                        nextErrorBlue[px]  += bdiff * w5;
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -5435,8 +5827,21 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceDodgy(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceDodgy(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceDodgy(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceDodgy(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
         if (curErrorRedFloats == null) {
             curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
@@ -5457,8 +5862,6 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorGreen, 0, lineLen, 0);
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
         }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
         int color, used;
         float rdiff, gdiff, bdiff;
         float er, eg, eb;
@@ -5480,9 +5883,9 @@ public class A8PaletteReducer {
             Arrays.fill(nextErrorBlue, 0, lineLen, 0);
 
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, py);
+                color = surface.getPixel(px, py);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
+                    surface.drawPixel(px, py, 0);
                 else {
                     er = Math.min(Math.max(((BlueNoise.getSeededTriangular(px, py, 0xAAAAA) + 0.5f) * strength), -limit), limit) + (curErrorRed[px]);
                     eg = Math.min(Math.max(((BlueNoise.getSeededTriangular(px, py, 0xBBBBB) + 0.5f) * strength), -limit), limit) + (curErrorGreen[px]);
@@ -5495,7 +5898,7 @@ public class A8PaletteReducer {
                                     | ((gg << 2) & 0x3E0)
                                     | ((bb >>> 3))];
                     used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
+                    surface.drawPixel(px, py, used);
 
                     rdiff = (0x5p-8f * ((color>>>24)-    (used>>>24))    );
                     gdiff = (0x5p-8f * ((color>>>16&255)-(used>>>16&255)));
@@ -5531,8 +5934,6 @@ public class A8PaletteReducer {
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -5560,161 +5961,144 @@ public class A8PaletteReducer {
      * @return pixmap, after modifications
      */
     public Pixmap reduceOverboard(Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceOverboard(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceOverboard(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceOverboard(PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float strength = ditherStrength * 1.5f * (populationBias * populationBias),
                 noiseStrength = 4f / (populationBias * populationBias),
                 limit = 110f;
 
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
-        for (int y = 0; y < h; y++) {
-            int ny = y + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-
-            for (int x = 0; x < lineLen; x++) {
-                int color = pixmap.getPixel(x, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(x, y, 0);
-                else {
-                    float er = 0f, eg = 0f, eb = 0f;
-                    switch ((x << 1 & 2) | (y & 1)){
-                        case 0:
-                            er += ((x ^ y) % 9 - 4);
-                            er += ((x * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eg += (BlueNoise.getSeededTriangular(x, y, 0xBBBBB) + 0.5f) * 0x1p-5f;
-                            eg += ((x * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eb += (BlueNoise.getSeededTriangular(x, y, 0xCCCCC) + 0.5f) * 0x1p-6f;
-                            eb += ((y * 0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
-                            break;
-                        case 1:
-                            er += (BlueNoise.getSeededTriangular(x, y, 0xAAAAA) + 0.5f) * 0x1p-5f;
-                            er += ((x * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eg += (BlueNoise.getSeededTriangular(x, y, 0xBBBBB) + 0.5f) * 0x1p-6f;
-                            eg += ((y * 0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
-                            eb += ((x ^ y) % 11 - 5);
-                            eb += ((y * -0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
-                            break;
-                        case 2:
-                            er += (BlueNoise.getSeededTriangular(x, y, 0xAAAAA) + 0.5f) * 0x1p-6f;
-                            er += ((y * 0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
-                            eg += ((x ^ y) % 11 - 5);
-                            eg += ((y * -0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
-                            eb += ((x ^ y) % 9 - 4);
-                            eb += ((x * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            break;
-                        default: // case 3:
-                            er += ((x ^ y) % 11 - 5);
-                            er += ((y * -0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
-                            eg += ((x ^ y) % 9 - 4);
-                            eg += ((x * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            eb += (BlueNoise.getSeededTriangular(x, y, 0xCCCCC) + 0.5f) * 0x1p-5f;
-                            eb += ((x * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
-                            break;
-                    }
-                    er = er * noiseStrength + curErrorRed[x];
-                    eg = eg * noiseStrength + curErrorGreen[x];
-                    eb = eb * noiseStrength + curErrorBlue[x];
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(er, -limit), limit), 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(eg, -limit), limit), 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(eb, -limit), limit), 0), 1023)] & 255;
-                    byte paletteIndex = paletteMapping[((rr << 7) & 0x7C00)
-                                                       | ((gg << 2) & 0x3E0)
-                                                       | ((bb >>> 3))];
-                    int used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(x, y, used);
-                    float rdiff = ((color >>> 24) - (used >>> 24)) * strength;
-                    float gdiff = ((color >>> 16 & 255) - (used >>> 16 & 255)) * strength;
-                    float bdiff = ((color >>> 8 & 255) - (used >>> 8 & 255)) * strength;
-                    float r1 = rdiff * 16f / (45f + Math.abs(rdiff));
-                    float g1 = gdiff * 16f / (45f + Math.abs(gdiff));
-                    float b1 = bdiff * 16f / (45f + Math.abs(bdiff));
-//                    float r1 = rdiff * 16f / (float)Math.sqrt(2048f + rdiff * rdiff);
-//                    float g1 = gdiff * 16f / (float)Math.sqrt(2048f + gdiff * gdiff);
-//                    float b1 = bdiff * 16f / (float)Math.sqrt(2048f + bdiff * bdiff);
-                    float r2 = r1 + r1;
-                    float g2 = g1 + g1;
-                    float b2 = b1 + b1;
-                    float r4 = r2 + r2;
-                    float g4 = g2 + g2;
-                    float b4 = b2 + b2;
-                    if(x < lineLen - 1)
-                    {
-                        curErrorRed[x+1]   += r4;
-                        curErrorGreen[x+1] += g4;
-                        curErrorBlue[x+1]  += b4;
-                        if(x < lineLen - 2)
-                        {
-
-                            curErrorRed[x+2]   += r2;
-                            curErrorGreen[x+2] += g2;
-                            curErrorBlue[x+2]  += b2;
+        diffuse(lineLen, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int ny = y + 1;
+                for (int x = start; x < end; x++) {
+                    int color = surface.getPixel(x, y);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(x, y, 0);
+                    else {
+                        float er = 0f, eg = 0f, eb = 0f;
+                        switch ((x << 1 & 2) | (y & 1)){
+                            case 0:
+                                er += ((x ^ y) % 9 - 4);
+                                er += ((x * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eg += (BlueNoise.getSeededTriangular(x, y, 0xBBBBB) + 0.5f) * 0x1p-5f;
+                                eg += ((x * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eb += (BlueNoise.getSeededTriangular(x, y, 0xCCCCC) + 0.5f) * 0x1p-6f;
+                                eb += ((y * 0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
+                                break;
+                            case 1:
+                                er += (BlueNoise.getSeededTriangular(x, y, 0xAAAAA) + 0.5f) * 0x1p-5f;
+                                er += ((x * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eg += (BlueNoise.getSeededTriangular(x, y, 0xBBBBB) + 0.5f) * 0x1p-6f;
+                                eg += ((y * 0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
+                                eb += ((x ^ y) % 11 - 5);
+                                eb += ((y * -0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
+                                break;
+                            case 2:
+                                er += (BlueNoise.getSeededTriangular(x, y, 0xAAAAA) + 0.5f) * 0x1p-6f;
+                                er += ((y * 0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-20f;
+                                eg += ((x ^ y) % 11 - 5);
+                                eg += ((y * -0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
+                                eb += ((x ^ y) % 9 - 4);
+                                eb += ((x * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                break;
+                            default: // case 3:
+                                er += ((x ^ y) % 11 - 5);
+                                er += ((y * -0xC13FA9A902A6328FL + x * -0x91E10DA5C79E7B1DL) >> 41) * 0x1.8p-21f;
+                                eg += ((x ^ y) % 9 - 4);
+                                eg += ((x * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                eb += (BlueNoise.getSeededTriangular(x, y, 0xCCCCC) + 0.5f) * 0x1p-5f;
+                                eb += ((x * -0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL) >> 41) * 0x1p-20f;
+                                break;
                         }
-                    }
-                    if(ny < h)
-                    {
-                        if(x > 0)
+                        er = er * noiseStrength + curErrorRed[x];
+                        eg = eg * noiseStrength + curErrorGreen[x];
+                        eb = eb * noiseStrength + curErrorBlue[x];
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + Math.min(Math.max(er, -limit), limit), 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + Math.min(Math.max(eg, -limit), limit), 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + Math.min(Math.max(eb, -limit), limit), 0), 1023)] & 255;
+                        byte paletteIndex = paletteMapping[((rr << 7) & 0x7C00)
+                                                           | ((gg << 2) & 0x3E0)
+                                                           | ((bb >>> 3))];
+                        int used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(x, y, used);
+                        float rdiff = ((color >>> 24) - (used >>> 24)) * strength;
+                        float gdiff = ((color >>> 16 & 255) - (used >>> 16 & 255)) * strength;
+                        float bdiff = ((color >>> 8 & 255) - (used >>> 8 & 255)) * strength;
+                        float r1 = rdiff * 16f / (45f + Math.abs(rdiff));
+                        float g1 = gdiff * 16f / (45f + Math.abs(gdiff));
+                        float b1 = bdiff * 16f / (45f + Math.abs(bdiff));
+//                        float r1 = rdiff * 16f / (float)Math.sqrt(2048f + rdiff * rdiff);
+//                        float g1 = gdiff * 16f / (float)Math.sqrt(2048f + gdiff * gdiff);
+//                        float b1 = bdiff * 16f / (float)Math.sqrt(2048f + bdiff * bdiff);
+                        float r2 = r1 + r1;
+                        float g2 = g1 + g1;
+                        float b2 = b1 + b1;
+                        float r4 = r2 + r2;
+                        float g4 = g2 + g2;
+                        float b4 = b2 + b2;
+                        if(x < lineLen - 1)
                         {
-                            nextErrorRed[x-1]   += r2;
-                            nextErrorGreen[x-1] += g2;
-                            nextErrorBlue[x-1]  += b2;
-                            if(x > 1)
+                            curErrorRed[x+1]   += r4;
+                            curErrorGreen[x+1] += g4;
+                            curErrorBlue[x+1]  += b4;
+                            if(x < lineLen - 2)
                             {
-                                nextErrorRed[x-2]   += r1;
-                                nextErrorGreen[x-2] += g1;
-                                nextErrorBlue[x-2]  += b1;
+
+                                curErrorRed[x+2]   += r2;
+                                curErrorGreen[x+2] += g2;
+                                curErrorBlue[x+2]  += b2;
                             }
                         }
-                        nextErrorRed[x]   += r4;
-                        nextErrorGreen[x] += g4;
-                        nextErrorBlue[x]  += b4;
-                        if(x < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[x+1]   += r2;
-                            nextErrorGreen[x+1] += g2;
-                            nextErrorBlue[x+1]  += b2;
-                            if(x < lineLen - 2)
+                            if(x > 0)
                             {
-
-                                nextErrorRed[x+2]   += r1;
-                                nextErrorGreen[x+2] += g1;
-                                nextErrorBlue[x+2]  += b1;
+                                nextErrorRed[x-1]   += r2;
+                                nextErrorGreen[x-1] += g2;
+                                nextErrorBlue[x-1]  += b2;
+                                if(x > 1)
+                                {
+                                    nextErrorRed[x-2]   += r1;
+                                    nextErrorGreen[x-2] += g1;
+                                    nextErrorBlue[x-2]  += b1;
+                                }
+                            }
+                            nextErrorRed[x]   += r4;
+                            nextErrorGreen[x] += g4;
+                            nextErrorBlue[x]  += b4;
+                            if(x < lineLen - 1)
+                            {
+                                nextErrorRed[x+1]   += r2;
+                                nextErrorGreen[x+1] += g2;
+                                nextErrorBlue[x+1]  += b2;
+                                if(x < lineLen - 2)
+                                {
+
+                                    nextErrorRed[x+2]   += r1;
+                                    nextErrorGreen[x+2] += g1;
+                                    nextErrorBlue[x+2]  += b1;
+                                }
                             }
                         }
                     }
                 }
             }
-
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -5725,119 +6109,103 @@ public class A8PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceBurkes (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
-        float r4, r2, r1, g4, g2, g1, b4, b2, b1;
-        final float s = (0.13f * ditherStrength / (populationBias * populationBias)),
-                strength = s * 0.58f / (0.3f + s);
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(lineLen)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(lineLen)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(lineLen)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(lineLen)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(lineLen)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(lineLen)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(lineLen);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(lineLen);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(lineLen);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(lineLen);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(lineLen);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
-        }
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, lineLen);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, lineLen);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, lineLen);
-
-            Arrays.fill(nextErrorRed, 0, lineLen, 0);
-            Arrays.fill(nextErrorGreen, 0, lineLen, 0);
-            Arrays.fill(nextErrorBlue, 0, lineLen, 0);
+        reduceBurkes(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
 
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    float er = curErrorRed[px];
-                    float eg = curErrorGreen[px];
-                    float eb = curErrorBlue[px];
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
-                    byte paletteIndex = paletteMapping[((rr << 7) & 0x7C00)
-                            | ((gg << 2) & 0x3E0)
-                            | ((bb >>> 3))];
-                    int used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    int rdiff = (color >>> 24) - (used >>> 24);
-                    int gdiff = (color >>> 16 & 255) - (used >>> 16 & 255);
-                    int bdiff = (color >>> 8 & 255) - (used >>> 8 & 255);
-                    r1 = rdiff * strength;
-                    g1 = gdiff * strength;
-                    b1 = bdiff * strength;
-                    r2 = r1 + r1;
-                    g2 = g1 + g1;
-                    b2 = b1 + b1;
-                    r4 = r2 + r2;
-                    g4 = g2 + g2;
-                    b4 = b2 + b2;
-                    if(px < lineLen - 1)
-                    {
-                        curErrorRed[px+1]   += r4;
-                        curErrorGreen[px+1] += g4;
-                        curErrorBlue[px+1]  += b4;
-                        if(px < lineLen - 2)
-                        {
-                            curErrorRed[px+2]   += r2;
-                            curErrorGreen[px+2] += g2;
-                            curErrorBlue[px+2]  += b2;
-                        }
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+    /**
+     * Like {@link #reduceBurkes(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceBurkes (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
+        final float s = (0.13f * ditherStrength / (populationBias * populationBias)),
+                strength = s * 0.58f / (0.3f + s);
+        diffuse(lineLen, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    int color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        float er = curErrorRed[px];
+                        float eg = curErrorGreen[px];
+                        float eb = curErrorBlue[px];
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
+                        byte paletteIndex = paletteMapping[((rr << 7) & 0x7C00)
+                                | ((gg << 2) & 0x3E0)
+                                | ((bb >>> 3))];
+                        int used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        int rdiff = (color >>> 24) - (used >>> 24);
+                        int gdiff = (color >>> 16 & 255) - (used >>> 16 & 255);
+                        int bdiff = (color >>> 8 & 255) - (used >>> 8 & 255);
+                        r1 = rdiff * strength;
+                        g1 = gdiff * strength;
+                        b1 = bdiff * strength;
+                        r2 = r1 + r1;
+                        g2 = g1 + g1;
+                        b2 = b1 + b1;
+                        r4 = r2 + r2;
+                        g4 = g2 + g2;
+                        b4 = b2 + b2;
+                        if(px < lineLen - 1)
                         {
-                            nextErrorRed[px-1]   += r2;
-                            nextErrorGreen[px-1] += g2;
-                            nextErrorBlue[px-1]  += b2;
-                            if(px > 1)
+                            curErrorRed[px+1]   += r4;
+                            curErrorGreen[px+1] += g4;
+                            curErrorBlue[px+1]  += b4;
+                            if(px < lineLen - 2)
                             {
-                                nextErrorRed[px-2]   += r1;
-                                nextErrorGreen[px-2] += g1;
-                                nextErrorBlue[px-2]  += b1;
+                                curErrorRed[px+2]   += r2;
+                                curErrorGreen[px+2] += g2;
+                                curErrorBlue[px+2]  += b2;
                             }
                         }
-                        nextErrorRed[px]   += r4;
-                        nextErrorGreen[px] += g4;
-                        nextErrorBlue[px]  += b4;
-                        if(px < lineLen - 1)
+                        if(ny < h)
                         {
-                            nextErrorRed[px+1]   += r2;
-                            nextErrorGreen[px+1] += g2;
-                            nextErrorBlue[px+1]  += b2;
-                            if(px < lineLen - 2)
+                            if(px > 0)
+                            {
+                                nextErrorRed[px-1]   += r2;
+                                nextErrorGreen[px-1] += g2;
+                                nextErrorBlue[px-1]  += b2;
+                                if(px > 1)
+                                {
+                                    nextErrorRed[px-2]   += r1;
+                                    nextErrorGreen[px-2] += g1;
+                                    nextErrorBlue[px-2]  += b1;
+                                }
+                            }
+                            nextErrorRed[px]   += r4;
+                            nextErrorGreen[px] += g4;
+                            nextErrorBlue[px]  += b4;
+                            if(px < lineLen - 1)
                             {
-                                nextErrorRed[px+2]   += r1;
-                                nextErrorGreen[px+2] += g1;
-                                nextErrorBlue[px+2]  += b1;
+                                nextErrorRed[px+1]   += r2;
+                                nextErrorGreen[px+1] += g2;
+                                nextErrorBlue[px+1]  += b2;
+                                if(px < lineLen - 2)
+                                {
+                                    nextErrorRed[px+2]   += r1;
+                                    nextErrorGreen[px+2] += g1;
+                                    nextErrorBlue[px+2]  += b1;
+                                }
                             }
                         }
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -5847,135 +6215,119 @@ public class A8PaletteReducer {
      * @param pixmap a Pixmap that will be modified in place
      * @return the given Pixmap, for chaining
      */
-    public Pixmap reduceOceanic (Pixmap pixmap) {
+    public Pixmap reduceOceanic (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceOceanic(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceOceanic(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceOceanic (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int w = pixmap.getWidth(), h = pixmap.getHeight();
+        final int w = surface.getWidth(), h = surface.getHeight();
         final float[] noise = TRI_BLUE_NOISE_MULTIPLIERS_A;
-        float r4, r2, r1, g4, g2, g1, b4, b2, b1;
         final float s = (0.13f * ditherStrength / (populationBias * populationBias)),
                 strength = s * 0.58f / (0.3f + s);
 
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(w)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(w)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(w)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(w)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(w)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(w)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(w);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(w);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(w);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(w);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(w);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(w);
-
-            Arrays.fill(nextErrorRed, 0, w, 0);
-            Arrays.fill(nextErrorGreen, 0, w, 0);
-            Arrays.fill(nextErrorBlue, 0, w, 0);
-        }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
-        int color, used, rdiff, gdiff, bdiff;
-        float er, eg, eb;
-        byte paletteIndex;
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, w);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, w);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, w);
-
-            Arrays.fill(nextErrorRed, 0, w, 0);
-            Arrays.fill(nextErrorGreen, 0, w, 0);
-            Arrays.fill(nextErrorBlue, 0, w, 0);
-
-            for (int px = 0; px < w; px++) {
-                color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    er = curErrorRed[px];
-                    eg = curErrorGreen[px];
-                    eb = curErrorBlue[px];
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
-
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    rdiff = (color>>>24)-    (used>>>24);
-                    gdiff = (color>>>16&255)-(used>>>16&255);
-                    bdiff = (color>>>8&255)- (used>>>8&255);
-                    r1 = rdiff * strength;
-                    g1 = gdiff * strength;
-                    b1 = bdiff * strength;
-                    r2 = r1 + r1;
-                    g2 = g1 + g1;
-                    b2 = b1 + b1;
-                    r4 = r2 + r2;
-                    g4 = g2 + g2;
-                    b4 = b2 + b2;
-                    float modifier;
-                    if(px < w - 1)
-                    {
-                        modifier = noise[(px + 1 & 127) | (py & 127) << 7];
-                        curErrorRed[px+1]   += r4 * modifier;
-                        curErrorGreen[px+1] += g4 * modifier;
-                        curErrorBlue[px+1]  += b4 * modifier;
-                        if(px < w - 2)
-                        {
-                            modifier = noise[(px + 2 & 127) | (py & 127) << 7];
-                            curErrorRed[px+2]   += r2 * modifier;
-                            curErrorGreen[px+2] += g2 * modifier;
-                            curErrorBlue[px+2]  += b2 * modifier;
-                        }
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+        diffuse(w, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+                int color, used, rdiff, gdiff, bdiff;
+                float er, eg, eb;
+                byte paletteIndex;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        er = curErrorRed[px];
+                        eg = curErrorGreen[px];
+                        eb = curErrorBlue[px];
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
+
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        rdiff = (color>>>24)-    (used>>>24);
+                        gdiff = (color>>>16&255)-(used>>>16&255);
+                        bdiff = (color>>>8&255)- (used>>>8&255);
+                        r1 = rdiff * strength;
+                        g1 = gdiff * strength;
+                        b1 = bdiff * strength;
+                        r2 = r1 + r1;
+                        g2 = g1 + g1;
+                        b2 = b1 + b1;
+                        r4 = r2 + r2;
+                        g4 = g2 + g2;
+                        b4 = b2 + b2;
+                        float modifier;
+                        if(px < w - 1)
                         {
-                            modifier = noise[(px - 1 & 127) | (ny & 127) << 7];
-                            nextErrorRed[px-1]   += r2 * modifier;
-                            nextErrorGreen[px-1] += g2 * modifier;
-                            nextErrorBlue[px-1]  += b2 * modifier;
-                            if(px > 1)
+                            modifier = noise[(px + 1 & 127) | (py & 127) << 7];
+                            curErrorRed[px+1]   += r4 * modifier;
+                            curErrorGreen[px+1] += g4 * modifier;
+                            curErrorBlue[px+1]  += b4 * modifier;
+                            if(px < w - 2)
                             {
-                                modifier = noise[(px - 2 & 127) | (ny & 127) << 7];
-                                nextErrorRed[px-2]   += r1 * modifier;
-                                nextErrorGreen[px-2] += g1 * modifier;
-                                nextErrorBlue[px-2]  += b1 * modifier;
+                                modifier = noise[(px + 2 & 127) | (py & 127) << 7];
+                                curErrorRed[px+2]   += r2 * modifier;
+                                curErrorGreen[px+2] += g2 * modifier;
+                                curErrorBlue[px+2]  += b2 * modifier;
                             }
                         }
-                        modifier = noise[(px & 127) | (ny & 127) << 7];
-                        nextErrorRed[px]   += r4 * modifier;
-                        nextErrorGreen[px] += g4 * modifier;
-                        nextErrorBlue[px]  += b4 * modifier;
-                        if(px < w - 1)
+                        if(ny < h)
                         {
-                            modifier = noise[(px + 1 & 127) | (ny & 127) << 7];
-                            nextErrorRed[px+1]   += r2 * modifier;
-                            nextErrorGreen[px+1] += g2 * modifier;
-                            nextErrorBlue[px+1]  += b2 * modifier;
-                            if(px < w - 2)
+                            if(px > 0)
                             {
-                                modifier = noise[(px + 2 & 127) | (ny & 127) << 7];
-                                nextErrorRed[px+2]   += r1 * modifier;
-                                nextErrorGreen[px+2] += g1 * modifier;
-                                nextErrorBlue[px+2]  += b1 * modifier;
+                                modifier = noise[(px - 1 & 127) | (ny & 127) << 7];
+                                nextErrorRed[px-1]   += r2 * modifier;
+                                nextErrorGreen[px-1] += g2 * modifier;
+                                nextErrorBlue[px-1]  += b2 * modifier;
+                                if(px > 1)
+                                {
+                                    modifier = noise[(px - 2 & 127) | (ny & 127) << 7];
+                                    nextErrorRed[px-2]   += r1 * modifier;
+                                    nextErrorGreen[px-2] += g1 * modifier;
+                                    nextErrorBlue[px-2]  += b1 * modifier;
+                                }
+                            }
+                            modifier = noise[(px & 127) | (ny & 127) << 7];
+                            nextErrorRed[px]   += r4 * modifier;
+                            nextErrorGreen[px] += g4 * modifier;
+                            nextErrorBlue[px]  += b4 * modifier;
+                            if(px < w - 1)
+                            {
+                                modifier = noise[(px + 1 & 127) | (ny & 127) << 7];
+                                nextErrorRed[px+1]   += r2 * modifier;
+                                nextErrorGreen[px+1] += g2 * modifier;
+                                nextErrorBlue[px+1]  += b2 * modifier;
+                                if(px < w - 2)
+                                {
+                                    modifier = noise[(px + 2 & 127) | (ny & 127) << 7];
+                                    nextErrorRed[px+2]   += r1 * modifier;
+                                    nextErrorGreen[px+2] += g1 * modifier;
+                                    nextErrorBlue[px+2]  += b1 * modifier;
+                                }
                             }
                         }
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -5988,142 +6340,126 @@ public class A8PaletteReducer {
      * @return the given Pixmap, for chaining
      */
     public Pixmap reduceSeaside (Pixmap pixmap) {
+        Pixmap.Blending blending = pixmap.getBlending();
+        pixmap.setBlending(Pixmap.Blending.None);
+        reduceSeaside(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceSeaside(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceSeaside (PixelSurface surface) {
         boolean hasTransparent = (paletteArray[0] == 0);
-        final int w = pixmap.getWidth(), h = pixmap.getHeight();
+        final int w = surface.getWidth(), h = surface.getHeight();
         final float[] noiseA = TRI_BLUE_NOISE_MULTIPLIERS_A;
         final float[] noiseB = TRI_BLUE_NOISE_MULTIPLIERS_B;
         final float[] noiseC = TRI_BLUE_NOISE_MULTIPLIERS_C;
         final float s = (0.13f * ditherStrength / (populationBias * populationBias)),
                 strength = s * 0.58f / (0.3f + s);
-        float[] curErrorRed, nextErrorRed, curErrorGreen, nextErrorGreen, curErrorBlue, nextErrorBlue;
-        if (curErrorRedFloats == null) {
-            curErrorRed = (curErrorRedFloats = new FloatArray(w)).items;
-            nextErrorRed = (nextErrorRedFloats = new FloatArray(w)).items;
-            curErrorGreen = (curErrorGreenFloats = new FloatArray(w)).items;
-            nextErrorGreen = (nextErrorGreenFloats = new FloatArray(w)).items;
-            curErrorBlue = (curErrorBlueFloats = new FloatArray(w)).items;
-            nextErrorBlue = (nextErrorBlueFloats = new FloatArray(w)).items;
-        } else {
-            curErrorRed = curErrorRedFloats.ensureCapacity(w);
-            nextErrorRed = nextErrorRedFloats.ensureCapacity(w);
-            curErrorGreen = curErrorGreenFloats.ensureCapacity(w);
-            nextErrorGreen = nextErrorGreenFloats.ensureCapacity(w);
-            curErrorBlue = curErrorBlueFloats.ensureCapacity(w);
-            nextErrorBlue = nextErrorBlueFloats.ensureCapacity(w);
-
-            Arrays.fill(nextErrorRed, 0, w, 0);
-            Arrays.fill(nextErrorGreen, 0, w, 0);
-            Arrays.fill(nextErrorBlue, 0, w, 0);
-        }
-        Pixmap.Blending blending = pixmap.getBlending();
-        pixmap.setBlending(Pixmap.Blending.None);
-        int color, used, rdiff, gdiff, bdiff;
-        float er, eg, eb;
-        byte paletteIndex;
-        for (int py = 0; py < h; py++) {
-            int ny = py + 1;
-
-            System.arraycopy(nextErrorRed, 0, curErrorRed, 0, w);
-            System.arraycopy(nextErrorGreen, 0, curErrorGreen, 0, w);
-            System.arraycopy(nextErrorBlue, 0, curErrorBlue, 0, w);
-
-            Arrays.fill(nextErrorRed, 0, w, 0);
-            Arrays.fill(nextErrorGreen, 0, w, 0);
-            Arrays.fill(nextErrorBlue, 0, w, 0);
-
-            for (int px = 0; px < w; px++) {
-                color = pixmap.getPixel(px, py);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, py, 0);
-                else {
-                    er = curErrorRed[px];
-                    eg = curErrorGreen[px];
-                    eb = curErrorBlue[px];
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
-
-                    paletteIndex =
-                            paletteMapping[((rr << 7) & 0x7C00)
-                                    | ((gg << 2) & 0x3E0)
-                                    | ((bb >>> 3))];
-                    used = paletteArray[paletteIndex & 0xFF];
-                    pixmap.drawPixel(px, py, used);
-                    rdiff = (color>>>24)-    (used>>>24);
-                    gdiff = (color>>>16&255)-(used>>>16&255);
-                    bdiff = (color>>>8&255)- (used>>>8&255);
-                    int modifier = ((px & 127) | (py & 127) << 7);
-                    final float r1 = rdiff * strength * noiseA[modifier];
-                    final float g1 = gdiff * strength * noiseB[modifier];
-                    final float b1 = bdiff * strength * noiseC[modifier];
-                    final float r2 = r1 + r1;
-                    final float g2 = g1 + g1;
-                    final float b2 = b1 + b1;
-                    final float r4 = r2 + r2;
-                    final float g4 = g2 + g2;
-                    final float b4 = b2 + b2;
+        diffuse(w, h, 2, new ParallelKit.DiffusionTask() {
+            @Override
+            public void run(int py, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                            float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue) {
+                int color, used, rdiff, gdiff, bdiff;
+                float er, eg, eb;
+                byte paletteIndex;
+                int ny = py + 1;
+                for (int px = start; px < end; px++) {
+                    color = surface.getPixel(px, py);
+                    if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                        surface.drawPixel(px, py, 0);
+                    else {
+                        er = curErrorRed[px];
+                        eg = curErrorGreen[px];
+                        eb = curErrorBlue[px];
+                        int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + er, 0), 1023)] & 255;
+                        int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + eg, 0), 1023)] & 255;
+                        int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + eb, 0), 1023)] & 255;
+
+                        paletteIndex =
+                                paletteMapping[((rr << 7) & 0x7C00)
+                                        | ((gg << 2) & 0x3E0)
+                                        | ((bb >>> 3))];
+                        used = paletteArray[paletteIndex & 0xFF];
+                        surface.drawPixel(px, py, used);
+                        rdiff = (color>>>24)-    (used>>>24);
+                        gdiff = (color>>>16&255)-(used>>>16&255);
+                        bdiff = (color>>>8&255)- (used>>>8&255);
+                        int modifier = ((px & 127) | (py & 127) << 7);
+                        final float r1 = rdiff * strength * noiseA[modifier];
+                        final float g1 = gdiff * strength * noiseB[modifier];
+                        final float b1 = bdiff * strength * noiseC[modifier];
+                        final float r2 = r1 + r1;
+                        final float g2 = g1 + g1;
+                        final float b2 = b1 + b1;
+                        final float r4 = r2 + r2;
+                        final float g4 = g2 + g2;
+                        final float b4 = b2 + b2;
 
-                    if(px < w - 1)
-                    {
-                        modifier = ((px + 1 & 127) | (py & 127) << 7);
-                        curErrorRed[px+1]   += r4 * noiseA[modifier];
-                        curErrorGreen[px+1] += g4 * noiseB[modifier];
-                        curErrorBlue[px+1]  += b4 * noiseC[modifier];
-                        if(px < w - 2)
-                        {
-                            modifier = ((px + 2 & 127) | (py & 127) << 7);
-                            curErrorRed[px+2]   += r2 * noiseA[modifier];
-                            curErrorGreen[px+2] += g2 * noiseB[modifier];
-                            curErrorBlue[px+2]  += b2 * noiseC[modifier];
-                        }
-                        if(px < w - 3)
-                        {
-                            modifier = ((px + 3 & 127) | (py & 127) << 7);
-                            curErrorRed[px+2]   += r1 * noiseA[modifier];
-                            curErrorGreen[px+2] += g1 * noiseB[modifier];
-                            curErrorBlue[px+2]  += b1 * noiseC[modifier];
-                        }
-                    }
-                    if(ny < h)
-                    {
-                        if(px > 0)
+                        if(px < w - 1)
                         {
-                            modifier = (px - 1 & 127) | (ny & 127) << 7;
-                            nextErrorRed[px-1]   += r2 * noiseA[modifier];
-                            nextErrorGreen[px-1] += g2 * noiseB[modifier];
-                            nextErrorBlue[px-1]  += b2 * noiseC[modifier];
-                            if(px > 1)
+                            modifier = ((px + 1 & 127) | (py & 127) << 7);
+                            curErrorRed[px+1]   += r4 * noiseA[modifier];
+                            curErrorGreen[px+1] += g4 * noiseB[modifier];
+                            curErrorBlue[px+1]  += b4 * noiseC[modifier];
+                            if(px < w - 2)
                             {
-                                modifier = (px - 2 & 127) | (ny & 127) << 7;
-                                nextErrorRed[px-2]   += r1 * noiseA[modifier];
-                                nextErrorGreen[px-2] += g1 * noiseB[modifier];
-                                nextErrorBlue[px-2]  += b1 * noiseC[modifier];
+                                modifier = ((px + 2 & 127) | (py & 127) << 7);
+                                curErrorRed[px+2]   += r2 * noiseA[modifier];
+                                curErrorGreen[px+2] += g2 * noiseB[modifier];
+                                curErrorBlue[px+2]  += b2 * noiseC[modifier];
+                            }
+                            if(px < w - 3)
+                            {
+                                modifier = ((px + 3 & 127) | (py & 127) << 7);
+                                curErrorRed[px+2]   += r1 * noiseA[modifier];
+                                curErrorGreen[px+2] += g1 * noiseB[modifier];
+                                curErrorBlue[px+2]  += b1 * noiseC[modifier];
                             }
                         }
-                        modifier = (px & 127) | (ny & 127) << 7;
-                        nextErrorRed[px]   += r4 * noiseA[modifier];
-                        nextErrorGreen[px] += g4 * noiseB[modifier];
-                        nextErrorBlue[px]  += b4 * noiseC[modifier];
-                        if(px < w - 1)
+                        if(ny < h)
                         {
-                            modifier = (px + 1 & 127) | (ny & 127) << 7;
-                            nextErrorRed[px+1]   += r2 * noiseA[modifier];
-                            nextErrorGreen[px+1] += g2 * noiseB[modifier];
-                            nextErrorBlue[px+1]  += b2 * noiseC[modifier];
-                            if(px < w - 2)
+                            if(px > 0)
                             {
-                                modifier = (px + 2 & 127) | (ny & 127) << 7;
-                                nextErrorRed[px+2]   += r1 * noiseA[modifier];
-                                nextErrorGreen[px+2] += g1 * noiseB[modifier];
-                                nextErrorBlue[px+2]  += b1 * noiseC[modifier];
+                                modifier = (px - 1 & 127) | (ny & 127) << 7;
+                                nextErrorRed[px-1]   += r2 * noiseA[modifier];
+                                nextErrorGreen[px-1] += g2 * noiseB[modifier];
+                                nextErrorBlue[px-1]  += b2 * noiseC[modifier];
+                                if(px > 1)
+                                {
+                                    modifier = (px - 2 & 127) | (ny & 127) << 7;
+                                    nextErrorRed[px-2]   += r1 * noiseA[modifier];
+                                    nextErrorGreen[px-2] += g1 * noiseB[modifier];
+                                    nextErrorBlue[px-2]  += b1 * noiseC[modifier];
+                                }
+                            }
+                            modifier = (px & 127) | (ny & 127) << 7;
+                            nextErrorRed[px]   += r4 * noiseA[modifier];
+                            nextErrorGreen[px] += g4 * noiseB[modifier];
+                            nextErrorBlue[px]  += b4 * noiseC[modifier];
+                            if(px < w - 1)
+                            {
+                                modifier = (px + 1 & 127) | (ny & 127) << 7;
+                                nextErrorRed[px+1]   += r2 * noiseA[modifier];
+                                nextErrorGreen[px+1] += g2 * noiseB[modifier];
+                                nextErrorBlue[px+1]  += b2 * noiseC[modifier];
+                                if(px < w - 2)
+                                {
+                                    modifier = (px + 2 & 127) | (ny & 127) << 7;
+                                    nextErrorRed[px+2]   += r1 * noiseA[modifier];
+                                    nextErrorGreen[px+2] += g1 * noiseB[modifier];
+                                    nextErrorBlue[px+2]  += b1 * noiseC[modifier];
+                                }
                             }
                         }
                     }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     /**
@@ -6355,13 +6691,14 @@ public class A8PaletteReducer {
      * <br>
      * This is protected rather than private because it's more likely
      * that this would be desirable to override than a method that uses it, like {@link #reduceKnoll(Pixmap)}. Uses
-     * {@link #OKLAB} to look up accurate luma for the given RGB555 colors in the later half of {@code ints}.
+     * {@link ColorTables#oklab()} to look up accurate luma for the given RGB555 colors in the later half of {@code ints}.
      * @param ints an int array than must be able to take a, b, a+16, and b+16 as indices; may be modified in place
      * @param a an index into ints
      * @param b an index into ints
      */
     protected static void compareSwap(final int[] ints, final int a, final int b) {
-        if(OKLAB[0][ints[a|16]] > OKLAB[0][ints[b|16]]) {
+        final float[][] oklab = ColorTables.oklab();
+        if(oklab[0][ints[a|16]] > oklab[0][ints[b|16]]) {
             final int t = ints[a], st = ints[a|16];
             ints[a] = ints[b];
             ints[a|16] = ints[b|16];
@@ -6481,17 +6818,28 @@ public class A8PaletteReducer {
      * @return {@code pixmap}, after modifications
      */
     public Pixmap reduceKnoll (Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceKnoll(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceKnoll(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceKnoll (PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         int color, used, cr, cg, cb, usedIndex;
         final float errorMul = (ditherStrength * 0.5f / populationBias);
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
-                color = pixmap.getPixel(px, y);
+                color = surface.getPixel(px, y);
                 if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
+                    surface.drawPixel(px, y, 0);
                 else {
                     int er = 0, eg = 0, eb = 0;
                     cr = (color >>> 24);
@@ -6510,12 +6858,10 @@ public class A8PaletteReducer {
                         eb += cb - (used >>> 8 & 0xFF);
                     }
                     sort16(candidates);
-                    pixmap.drawPixel(px, y, candidates[thresholdMatrix16[((px & 3) | (y & 3) << 2)]]);
+                    surface.drawPixel(px, y, candidates[thresholdMatrix16[((px & 3) | (y & 3) << 2)]]);
                 }
             }
         }
-        pixmap.setBlending(blending);
-        return pixmap;
     }
 
     /**
@@ -6526,7 +6872,7 @@ public class A8PaletteReducer {
      * <br>
      * This is protected rather than private because it's more likely
      * that this would be desirable to override than a method that uses it, like {@link #reduceKnoll(Pixmap)}. Uses
-     * {@link #OKLAB} to look up accurate luma for the given RGB555 colors in the later half of {@code ints}.
+     * {@link ColorTables#oklab()} to look up accurate luma for the given RGB555 colors in the later half of {@code ints}.
      * @param ints an int array than must be able to take a, b, a+16, and b+16 as indices; may be modified in place
      * @param a an index into ints
      * @param b an index into ints
@@ -6628,13 +6974,14 @@ public class A8PaletteReducer {
      * @return {@code pixmap}, after modifications
      */
     public Pixmap reduceKnollStored (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
         int color, used, cr, cg, cb, usedIndex;
         final float errorMul = (ditherStrength * 0.5f / populationBias);
-        final float[] L = OKLAB[0];
+        final float[] L = oklab[0];
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
                 color = pixmap.getPixel(px, y);
@@ -6774,13 +7121,14 @@ public class A8PaletteReducer {
      * @return {@code pixmap}, after modifications
      */
     public Pixmap reduceKnollStoredLight (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
         int color, used, cr, cg, cb, usedIndex;
         final float errorMul = (ditherStrength * 0.5f / populationBias);
-        final float[] L = OKLAB[0];
+        final float[] L = oklab[0];
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
                 color = pixmap.getPixel(px, y);
@@ -6814,13 +7162,14 @@ public class A8PaletteReducer {
 
 
     public Pixmap reduceKnollSelect (Pixmap pixmap) {
+        final float[][] oklab = ColorTables.oklab();
         boolean hasTransparent = (paletteArray[0] == 0);
         final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
         int color, used, cr, cg, cb, usedIndex;
         final float errorMul = (ditherStrength * 0.5f / populationBias);
-        final float[] L = OKLAB[0];
+        final float[] L = oklab[0];
         for (int y = 0; y < h; y++) {
             for (int px = 0; px < lineLen; px++) {
                 color = pixmap.getPixel(px, y);
@@ -7680,28 +8029,42 @@ public class A8PaletteReducer {
      * @return {@code pixmap}, after modifications
      */
     public Pixmap reduceBayer(Pixmap pixmap) {
-        boolean hasTransparent = (paletteArray[0] == 0);
-        final int lineLen = pixmap.getWidth(), h = pixmap.getHeight();
         Pixmap.Blending blending = pixmap.getBlending();
         pixmap.setBlending(Pixmap.Blending.None);
+        reduceBayer(PixelSurface.of(pixmap));
+        pixmap.setBlending(blending);
+        return pixmap;
+    }
+
+    /**
+     * Like {@link #reduceBayer(Pixmap)}, but reads and writes pixels through a {@link PixelSurface}, which can
+     * wrap an int array or a buffer as well as a Pixmap.
+     * @param surface the pixels to reduce; will be modified in place
+     */
+    public void reduceBayer(PixelSurface surface) {
+        boolean hasTransparent = (paletteArray[0] == 0);
+        final int lineLen = surface.getWidth(), h = surface.getHeight();
         final float strength = 10f * ditherStrength * (float)Math.pow(colorCount, -0.4f);
-        for (int y = 0; y < h; y++) {
-            for (int px = 0; px < lineLen; px++) {
-                int color = pixmap.getPixel(px, y);
-                if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
-                    pixmap.drawPixel(px, y, 0);
-                else {
-                    float adj = (thresholdMatrix64[((px & 7) | (y & 7) << 3)] - 31.5f) * strength;
-                    int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + adj, 0), 1023)] & 255;
-                    int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + adj, 0), 1023)] & 255;
-                    int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + adj, 0), 1023)] & 255;
-                    int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
-                    pixmap.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+        forEachRowBand(h, new ParallelKit.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < lineLen; px++) {
+                        int color = surface.getPixel(px, y);
+                        if (hasTransparent && (color & 0x80) == 0) /* if this pixel is less than 50% opaque, draw a pure transparent pixel. */
+                            surface.drawPixel(px, y, 0);
+                        else {
+                            float adj = (thresholdMatrix64[((px & 7) | (y & 7) << 3)] - 31.5f) * strength;
+                            int rr = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 24)       ] + adj, 0), 1023)] & 255;
+                            int gg = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 16) & 0xFF] + adj, 0), 1023)] & 255;
+                            int bb = fromLinearLUT[(int)Math.min(Math.max(toLinearLUT[(color >>> 8)  & 0xFF] + adj, 0), 1023)] & 255;
+                            int rgb555 = ((rr << 7) & 0x7C00) | ((gg << 2) & 0x3E0) | ((bb >>> 3));
+                            surface.drawPixel(px, y, paletteArray[paletteMapping[rgb555] & 0xFF]);
+                        }
+                    }
                 }
             }
-        }
-        pixmap.setBlending(blending);
-        return pixmap;
+        });
     }
 
     public Pixmap reduceBluyerMono(Pixmap pixmap) {
@@ -7839,10 +8202,11 @@ public class A8PaletteReducer {
      * @return this PaletteReducer, for chaining
      */
     public A8PaletteReducer alterColorsLightness(Interpolation lightness) {
+        final float[][] oklab = ColorTables.oklab();
         int[] palette = paletteArray;
         for (int idx = 0; idx < colorCount; idx++) {
             int s = shrink(palette[idx]);
-            palette[idx] = oklabToRGB(lightness.apply(OKLAB[0][s]), OKLAB[1][s], OKLAB[2][s],
+            palette[idx] = oklabToRGB(lightness.apply(oklab[0][s]), oklab[1][s], oklab[2][s],
                     (palette[idx] & 0xFE) / 254f);
         }
         return this;
@@ -7866,12 +8230,13 @@ public class A8PaletteReducer {
      * @return this PaletteReducer, for chaining
      */
     public A8PaletteReducer alterColorsOklab(Interpolation lightness, Interpolation greenToRed, Interpolation blueToYellow) {
+        final float[][] oklab = ColorTables.oklab();
         int[] palette = paletteArray;
         for (int idx = 0; idx < colorCount; idx++) {
             int s = shrink(palette[idx]);
-            float L = lightness.apply(OKLAB[0][s]);
-            float A = greenToRed.apply(-1, 1, OKLAB[1][s] * 0.5f + 0.5f);
-            float B = blueToYellow.apply(-1, 1, OKLAB[2][s] * 0.5f + 0.5f);
+            float L = lightness.apply(oklab[0][s]);
+            float A = greenToRed.apply(-1, 1, oklab[1][s] * 0.5f + 0.5f);
+            float B = blueToYellow.apply(-1, 1, oklab[2][s] * 0.5f + 0.5f);
             palette[idx] = oklabToRGB(L, A, B, (palette[idx] & 0xFE) / 254f);
         }
         return this;
@@ -7883,12 +8248,13 @@ public class A8PaletteReducer {
      * @return this PaletteReducer, for chaining
      */
     public A8PaletteReducer hueShift() {
+        final float[][] oklab = ColorTables.oklab();
         int[] palette = paletteArray;
         for (int idx = 0; idx < colorCount; idx++) {
             int s = shrink(palette[idx]);
-            float L = OKLAB[0][s];
-            float A = OKLAB[1][s] + (L - 0.5f) * 0.04f;
-            float B = OKLAB[2][s] + (L - 0.5f) * 0.08f;
+            float L = oklab[0][s];
+            float A = oklab[1][s] + (L - 0.5f) * 0.04f;
+            float B = oklab[2][s] + (L - 0.5f) * 0.08f;
             palette[idx] = oklabToRGB(L, A, B, (palette[idx] & 0xFE) / 254f);
         }
         return this;
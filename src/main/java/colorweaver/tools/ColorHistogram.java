@@ -0,0 +1,368 @@
+package colorweaver.tools;
+
+import colorweaver.annotation.GwtIncompatible;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Counts the colors in any number of images, so a palette can be analyzed from all of them without keeping them all
+ * in memory. Colors are counted in a fixed-size array with one bin for each RGB555 color (15 bits, 32768 bins) or each
+ * RGB666 color (18 bits, 262144 bins), instead of in a hash map that grows with the number of distinct colors. Until
+ * more than {@link #EXACT_LIMIT} distinct colors have been seen, the exact colors are also counted, so a set of images
+ * that shares a small palette can still get that palette back exactly.
+ * <br>
+ * Images can be added from several threads at once; each thread counts an image into its own scratch bins, then adds
+ * just the bins it touched to the shared counts under a lock. When every image has been added, pass this to one of the
+ * analysis methods that take a ColorHistogram, such as
+ * {@link colorweaver.PaletteReducer#analyze(ColorHistogram, int, int, colorweaver.PaletteReducer.ColorMetric)},
+ * {@link colorweaver.a8.A8PaletteReducer#analyze(ColorHistogram, double, int)},
+ * {@link colorweaver.a8.A8PaletteReducer#analyzeHueWise(ColorHistogram, double, int)}, or
+ * {@link colorweaver.a8.A8PaletteReducer#analyzeMC(ColorHistogram, int)}. Pixels with alpha of 50% or less aren't
+ * counted in any bin, but are noted by {@link #hasTransparent()}.
+ */
+@GwtIncompatible
+public class ColorHistogram {
+    /**
+     * The most distinct exact colors that are tracked; once more than this many have been seen, only the bins are kept.
+     */
+    public static final int EXACT_LIMIT = 256;
+
+    private final int bits;
+    private final long[] counts;
+    private long total;
+    private boolean transparent;
+    private final IntIntMap exact = new IntIntMap(EXACT_LIMIT);
+    private volatile boolean exactOverflow;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(1 << ColorHistogram.this.bits);
+        }
+    };
+
+    /**
+     * Per-thread bins for one image, plus a list of which bins are non-zero, so only those need to be merged and
+     * cleared.
+     */
+    private static final class Scratch {
+        final int[] counts;
+        final IntArray touched = new IntArray(256);
+        final IntIntMap exact = new IntIntMap(EXACT_LIMIT);
+        boolean transparent, exactOverflow;
+
+        Scratch(int size) {
+            counts = new int[size];
+        }
+    }
+
+    /**
+     * Creates a 15-bit (RGB555) ColorHistogram, which matches the precision A8PaletteReducer's analysis uses.
+     */
+    public ColorHistogram() {
+        this(15);
+    }
+
+    /**
+     * Creates a ColorHistogram that counts colors with the given number of bits, which must be 15 (5 bits per channel,
+     * using 256KB) or 18 (6 bits per channel, using 2MB).
+     * @param bits 15 or 18
+     */
+    public ColorHistogram(int bits) {
+        if (bits != 15 && bits != 18)
+            throw new IllegalArgumentException("bits must be 15 or 18, not " + bits);
+        this.bits = bits;
+        counts = new long[1 << bits];
+    }
+
+    /**
+     * Gets how many bits each color's bin uses; 15 or 18.
+     * @return 15 or 18
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Gets the bin for an RGBA8888 color at this histogram's precision.
+     * @param rgba an RGBA8888 color
+     * @return the index of the bin that color is counted in
+     */
+    public int binOf(int rgba) {
+        return bits == 15
+                ? (rgba >>> 17 & 0x7C00) | (rgba >>> 14 & 0x3E0) | (rgba >>> 11 & 0x1F)
+                : (rgba >>> 14 & 0x3F000) | (rgba >>> 12 & 0xFC0) | (rgba >>> 10 & 0x3F);
+    }
+
+    /**
+     * Gets the opaque RGBA8888 color that represents the given bin, with each channel's low bits filled in by
+     * repeating its high bits (so 0 stays 0 and the highest bin value becomes 255).
+     * @param bin a bin index, from 0 to {@code (1 << getBits()) - 1}
+     * @return an opaque RGBA8888 color
+     */
+    public int colorOf(int bin) {
+        return colorOf(bin, bits);
+    }
+
+    /**
+     * Gets how many opaque pixels were counted in the given bin.
+     * @param bin a bin index, from 0 to {@code (1 << getBits()) - 1}
+     * @return how many pixels fell in that bin
+     */
+    public synchronized long getCount(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Gets how many opaque pixels have been counted in total.
+     * @return the total count of opaque pixels
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns true if any pixel with alpha of 50% or less was seen.
+     * @return true if any counted image had a transparent pixel
+     */
+    public synchronized boolean hasTransparent() {
+        return transparent;
+    }
+
+    /**
+     * Gets a copy of the exact RGBA8888 colors seen so far and their counts, or null if more than
+     * {@link #EXACT_LIMIT} distinct opaque colors have been seen.
+     * @return a new IntIntMap from exact color to count, or null if there were too many colors
+     */
+    public synchronized IntIntMap getExactColors() {
+        if (exactOverflow)
+            return null;
+        final IntIntMap copy = new IntIntMap(exact.size);
+        copy.putAll(exact);
+        return copy;
+    }
+
+    /**
+     * Counts every pixel in an RGBA8888 Pixmap quickly, or any other Pixmap with {@link Pixmap#getPixel(int, int)}.
+     * @param pixmap a Pixmap to count; not modified
+     * @return this, for chaining
+     */
+    public ColorHistogram add(Pixmap pixmap) {
+        final Scratch s = scratch.get();
+        final int width = pixmap.getWidth(), height = pixmap.getHeight();
+        if (pixmap.getFormat() == Pixmap.Format.RGBA8888) {
+            final IntBuffer pixels = pixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+            for (int i = 0, n = width * height; i < n; i++) {
+                count(s, pixels.get(i));
+            }
+        } else {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    count(s, pixmap.getPixel(x, y));
+                }
+            }
+        }
+        merge(s);
+        return this;
+    }
+
+    /**
+     * Counts {@code length} RGBA8888 pixels in an int array, starting at {@code offset}.
+     * @param pixels RGBA8888 colors; not modified
+     * @param offset the first index in pixels to count
+     * @param length how many pixels to count
+     * @return this, for chaining
+     */
+    public ColorHistogram add(int[] pixels, int offset, int length) {
+        final Scratch s = scratch.get();
+        for (int i = offset, n = offset + length; i < n; i++) {
+            count(s, pixels[i]);
+        }
+        merge(s);
+        return this;
+    }
+
+    /**
+     * Adds every count in {@code other} to this, as if every image added to other was also added to this. Both
+     * histograms must use the same number of bits.
+     * @param other another ColorHistogram with the same bits; not modified
+     * @return this, for chaining
+     */
+    public ColorHistogram addAll(ColorHistogram other) {
+        if (other.bits != bits)
+            throw new IllegalArgumentException("Can't add a " + other.bits + "-bit histogram to a " + bits + "-bit one");
+        final long[] otherCounts;
+        final IntIntMap otherExact;
+        final boolean otherTransparent;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherExact = other.exactOverflow ? null : new IntIntMap(other.exact.size);
+            if (otherExact != null)
+                otherExact.putAll(other.exact);
+            otherTransparent = other.transparent;
+        }
+        synchronized (this) {
+            for (int i = 0; i < otherCounts.length; i++) {
+                counts[i] += otherCounts[i];
+                total += otherCounts[i];
+            }
+            transparent |= otherTransparent;
+            if (otherExact == null)
+                dropExact();
+            else if (!exactOverflow) {
+                for (IntIntMap.Entry e : otherExact) {
+                    exact.getAndIncrement(e.key, 0, e.value);
+                }
+                if (exact.size > EXACT_LIMIT)
+                    dropExact();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Removes all counts, so this can be reused for another set of images.
+     */
+    public synchronized void clear() {
+        Arrays.fill(counts, 0L);
+        total = 0L;
+        transparent = false;
+        exact.clear();
+        exactOverflow = false;
+    }
+
+    /**
+     * Gets the non-empty bins as a map from their representative RGBA8888 colors (see {@link #colorOf(int)}) to their
+     * counts, at 15 bits or at this histogram's own precision. If any count is too large for an int, every count is
+     * scaled down by the same factor, so they still compare the same way.
+     * @param bits 15, or the same as {@link #getBits()}
+     * @return a new IntIntMap from color to count, with at most {@code 1 << bits} entries
+     */
+    public IntIntMap getColorCounts(int bits) {
+        final long[] binned = binned(bits);
+        long max = 0L;
+        int size = 0;
+        for (long c : binned) {
+            if (c > max) max = c;
+            if (c != 0) size++;
+        }
+        final long divisor = max / Integer.MAX_VALUE + 1L;
+        final IntIntMap map = new IntIntMap(size);
+        for (int i = 0; i < binned.length; i++) {
+            if (binned[i] != 0)
+                map.put(colorOf(i, bits), (int) Math.max(binned[i] / divisor, 1L));
+        }
+        return map;
+    }
+
+    /**
+     * Makes a list of representative RGBA8888 colors (see {@link #colorOf(int)}) where each bin appears about
+     * {@code fraction} times its count, in bin order. This stands in for a list of every pixel, or a sample of pixels,
+     * for analysis methods that need one. If that would be more than {@code maxSize} items, fraction is lowered so it
+     * fits; bins too small to get one whole item at that fraction may not appear at all.
+     * @param bits     15, or the same as {@link #getBits()}
+     * @param fraction roughly how many items each counted pixel should produce, such as 1.0 for every pixel
+     * @param maxSize  the most items the list may have
+     * @return a new IntArray of RGBA8888 colors
+     */
+    public IntArray expand(int bits, double fraction, int maxSize) {
+        final long[] binned = binned(bits);
+        long sum = 0L;
+        for (long c : binned) sum += c;
+        if (sum * fraction > maxSize)
+            fraction = maxSize / (double) sum;
+        final IntArray list = new IntArray((int) Math.min(sum * fraction + 1.0, maxSize));
+        double wanted = 0.0;
+        long made = 0L;
+        for (int i = 0; i < binned.length; i++) {
+            if (binned[i] == 0) continue;
+            wanted += binned[i] * fraction;
+            final int color = colorOf(i, bits);
+            for (long n = (long) wanted; made < n && list.size < maxSize; made++) {
+                list.add(color);
+            }
+        }
+        return list;
+    }
+
+    private void count(Scratch s, int color) {
+        if ((color & 0x80) == 0) {
+            s.transparent = true;
+            return;
+        }
+        final int bin = binOf(color);
+        if (s.counts[bin]++ == 0)
+            s.touched.add(bin);
+        if (!s.exactOverflow) {
+            s.exact.getAndIncrement(color, 0, 1);
+            if (s.exact.size > EXACT_LIMIT)
+                s.exactOverflow = true;
+        }
+    }
+
+    private void merge(Scratch s) {
+        final int[] local = s.counts, touched = s.touched.items;
+        synchronized (this) {
+            for (int i = 0, n = s.touched.size; i < n; i++) {
+                final int bin = touched[i];
+                counts[bin] += local[bin];
+                total += local[bin];
+            }
+            transparent |= s.transparent;
+            if (s.exactOverflow)
+                dropExact();
+            else if (!exactOverflow) {
+                for (IntIntMap.Entry e : s.exact) {
+                    exact.getAndIncrement(e.key, 0, e.value);
+                }
+                if (exact.size > EXACT_LIMIT)
+                    dropExact();
+            }
+        }
+        for (int i = 0, n = s.touched.size; i < n; i++) {
+            local[touched[i]] = 0;
+        }
+        s.touched.clear();
+        s.exact.clear();
+        s.transparent = false;
+        // once the shared exact colors are gone, threads don't need to keep counting them
+        s.exactOverflow = exactOverflow;
+    }
+
+    private void dropExact() {
+        exactOverflow = true;
+        exact.clear();
+    }
+
+    private long[] binned(int bits) {
+        if (bits == this.bits) {
+            synchronized (this) {
+                return counts.clone();
+            }
+        }
+        if (bits != 15)
+            throw new IllegalArgumentException("bits must be 15 or " + this.bits + ", not " + bits);
+        final long[] folded = new long[0x8000];
+        synchronized (this) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0)
+                    folded[(i >>> 13) << 10 | (i >>> 7 & 31) << 5 | (i >>> 1 & 31)] += counts[i];
+            }
+        }
+        return folded;
+    }
+
+    private static int colorOf(int bin, int bits) {
+        if (bits == 15) {
+            final int r = bin >>> 10, g = bin >>> 5 & 31, b = bin & 31;
+            return (r << 3 | r >>> 2) << 24 | (g << 3 | g >>> 2) << 16 | (b << 3 | b >>> 2) << 8 | 0xFF;
+        }
+        final int r = bin >>> 12, g = bin >>> 6 & 63, b = bin & 63;
+        return (r << 2 | r >>> 4) << 24 | (g << 2 | g >>> 4) << 16 | (b << 2 | b >>> 4) << 8 | 0xFF;
+    }
+}
@@ -0,0 +1,368 @@
+package colorweaver.tools;
+
+import colorweaver.annotation.GwtIncompatible;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Small helpers for splitting a range of ints (usually rows of an image or slices of the RGB555 color cube) across a
+ * {@link ForkJoinPool}. Each distinct parallelism level gets one pool, created the first time it is requested and
+ * kept for the life of the JVM; the pool's threads are daemon threads, so they won't keep an application alive. A
+ * parallelism of 1 or less always runs the work on the calling thread, without touching any pool.
+ */
+@GwtIncompatible
+public final class ParallelKit {
+    private ParallelKit(){}
+
+    /**
+     * A piece of work that handles every int from {@code start} (inclusive) to {@code end} (exclusive). Separate
+     * calls to {@link #run(int, int)} may happen at the same time on different threads, so implementations should
+     * only write to data that belongs to their own part of the range.
+     */
+    public interface RangeTask {
+        void run(int start, int end);
+    }
+
+    /**
+     * One row (or part of a row) of an error-diffusion dither. A call handles the pixels from {@code start}
+     * (inclusive) to {@code end} (exclusive) in row {@code y}, in order from left to right, reading the error for row
+     * y from the three {@code cur} arrays and adding error for row {@code y + 1} to the three {@code next} arrays. It
+     * may also add error to later pixels in the same row, through the cur arrays. Calls for one row always happen in
+     * order from left to right, but calls for different rows may happen at the same time on different threads.
+     */
+    public interface DiffusionTask {
+        void run(int y, int start, int end, float[] curErrorRed, float[] nextErrorRed,
+                 float[] curErrorGreen, float[] nextErrorGreen, float[] curErrorBlue, float[] nextErrorBlue);
+    }
+
+    /**
+     * Counts part of a histogram. A call handles every item from {@code start} (inclusive) to {@code end} (exclusive),
+     * usually rows of an image, adding to {@code bins}, which belongs only to this call.
+     */
+    public interface BinTask {
+        void run(int start, int end, int[] bins);
+    }
+
+    /**
+     * Counts the colors in part of a range of rows into {@code tally}, which belongs only to this call.
+     */
+    public interface TallyTask {
+        void run(int start, int end, ColorTally tally);
+    }
+
+    /**
+     * Counts of colors (or any int keys), plus the order each key was first seen in, an optional list of samples, and
+     * whether any transparent pixel was seen. {@link #tally(int, int, int, ColorTally, TallyTask)} counts separate
+     * strips of rows into separate ColorTally objects, then merges them in order; because the order keys were first
+     * seen is kept, the merged {@link #counts} map has its keys inserted in the same order it would have on one thread,
+     * so even code that depends on the map's iteration order gets the same result for any parallelism.
+     */
+    public static final class ColorTally {
+        /**
+         * How many times each key was added.
+         */
+        public final IntIntMap counts;
+        /**
+         * Every key in {@link #counts}, in the order each was first added.
+         */
+        public final IntArray order;
+        /**
+         * Any extra ints a task wants to keep in row order, such as sampled colors; merged strips are appended in order.
+         */
+        public final IntArray samples;
+        /**
+         * Set this to true when a transparent pixel is seen.
+         */
+        public boolean transparent;
+
+        /**
+         * Creates a ColorTally that counts into the given map.
+         * @param counts an IntIntMap that will receive counts; usually empty, with the capacity the caller wants
+         */
+        public ColorTally(IntIntMap counts) {
+            this(counts, new IntArray());
+        }
+
+        /**
+         * Creates a ColorTally that counts into the given map and appends samples to the given IntArray.
+         * @param counts  an IntIntMap that will receive counts; usually empty, with the capacity the caller wants
+         * @param samples an IntArray that will receive samples, so its initial capacity can be chosen
+         */
+        public ColorTally(IntIntMap counts, IntArray samples) {
+            this.counts = counts;
+            this.samples = samples;
+            order = new IntArray(Math.max(counts.size, 16));
+        }
+
+        /**
+         * Adds 1 to the count for key.
+         * @param key a color or other int key
+         */
+        public void add(int key) {
+            if (counts.getAndIncrement(key, 0, 1) == 0)
+                order.add(key);
+        }
+
+        private void addAll(ColorTally other) {
+            final int[] keys = other.order.items;
+            for (int i = 0, n = other.order.size; i < n; i++) {
+                if (counts.getAndIncrement(keys[i], 0, other.counts.get(keys[i], 0)) == 0)
+                    order.add(keys[i]);
+            }
+            samples.addAll(other.samples);
+            transparent |= other.transparent;
+        }
+    }
+
+    /**
+     * How many pixels of a row a {@link DiffusionTask} handles before the rows after it are allowed to catch up.
+     */
+    private static final int SEGMENT = 64;
+
+    private static final ForkJoinPool[] pools = new ForkJoinPool[64];
+
+    /**
+     * Gets the number of processors available to the JVM, which is a reasonable parallelism level when a caller
+     * wants to use the whole machine.
+     * @return the number of available processors, at least 1
+     */
+    public static int availableParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Gets a ForkJoinPool with the given parallelism, creating it if this is the first request for that level. Pools
+     * are shared by everything in ColorWeaver that runs with the same parallelism level. The parallelism is clamped
+     * between 1 and 64.
+     * @param parallelism how many worker threads the pool should use; clamped to between 1 and 64
+     * @return a ForkJoinPool with the requested parallelism
+     */
+    public static ForkJoinPool pool(int parallelism) {
+        parallelism = Math.min(Math.max(parallelism, 1), pools.length);
+        synchronized (pools) {
+            ForkJoinPool p = pools[parallelism - 1];
+            if (p == null)
+                p = pools[parallelism - 1] = new ForkJoinPool(parallelism);
+            return p;
+        }
+    }
+
+    /**
+     * Runs {@code task} over the range from {@code start} (inclusive) to {@code end} (exclusive), splitting the range
+     * in half repeatedly until each piece has at most {@code grain} items, and running the pieces on the pool for
+     * {@code parallelism}. This blocks until every piece has finished. If parallelism is 1 or less, or the range
+     * already fits in one grain, this just calls {@code task.run(start, end)} on the current thread.
+     * @param parallelism how many threads to use; 1 or less runs on the calling thread
+     * @param start       the first int in the range, inclusive
+     * @param end         the last int in the range, exclusive
+     * @param grain       the largest piece of the range that won't be split further; at least 1
+     * @param task        the work to run on each piece of the range
+     */
+    public static void forRange(int parallelism, int start, int end, int grain, RangeTask task) {
+        grain = Math.max(grain, 1);
+        if (parallelism <= 1 || end - start <= grain) {
+            task.run(start, end);
+            return;
+        }
+        pool(parallelism).invoke(new RangeAction(task, start, end, grain));
+    }
+
+    /**
+     * Builds a histogram with {@code size} bins over the range from {@code start} (inclusive) to {@code end}
+     * (exclusive), usually the rows of an image. The range is split into contiguous strips of at least {@code grain}
+     * items, one or a few per thread; each strip is counted by {@code task} into its own int array, and the arrays are
+     * summed at the end, so no locking happens while counting. With a parallelism of 1 or less, or a range that fits in
+     * one grain, this counts everything into one array on the calling thread.
+     * @param parallelism how many threads to use; 1 or less runs on the calling thread
+     * @param start       the first item in the range, inclusive
+     * @param end         the last item in the range, exclusive
+     * @param grain       the fewest items a strip should have; at least 1
+     * @param size        how many bins the histogram has
+     * @param task        counts one strip into its own bins
+     * @return a new int array of {@code size} counts
+     */
+    public static int[] countBins(int parallelism, int start, int end, int grain, final int size, final BinTask task) {
+        final int strips = strips(parallelism, end - start, grain);
+        if (strips <= 1) {
+            final int[] bins = new int[size];
+            task.run(start, end, bins);
+            return bins;
+        }
+        final int[][] parts = new int[strips][];
+        final int first = start, length = end - start;
+        forRange(parallelism, 0, strips, 1, new RangeTask() {
+            @Override
+            public void run(int s, int e) {
+                for (int i = s; i < e; i++) {
+                    parts[i] = new int[size];
+                    task.run(first + (int) ((long) length * i / strips), first + (int) ((long) length * (i + 1) / strips), parts[i]);
+                }
+            }
+        });
+        final int[] bins = parts[0];
+        for (int i = 1; i < strips; i++) {
+            final int[] part = parts[i];
+            for (int b = 0; b < size; b++) {
+                bins[b] += part[b];
+            }
+        }
+        return bins;
+    }
+
+    /**
+     * Counts colors over the range from {@code start} (inclusive) to {@code end} (exclusive), usually the rows of an
+     * image, into {@code into}. The range is split into contiguous strips of at least {@code grain} items, one or a
+     * few per thread, each counted by {@code task} into its own {@link ColorTally}; the strips are then merged into
+     * {@code into} in order, so its counts, key order, samples, and even the iteration order of its map are the same
+     * as if {@code task} had run over the whole range on one thread. With a parallelism of 1 or less, or a range that
+     * fits in one grain, {@code task} just runs on the calling thread with {@code into}.
+     * @param parallelism how many threads to use; 1 or less runs on the calling thread
+     * @param start       the first item in the range, inclusive
+     * @param end         the last item in the range, exclusive
+     * @param grain       the fewest items a strip should have; at least 1
+     * @param into        the ColorTally that receives every count; may already have counts from earlier calls
+     * @param task        counts one strip into its own ColorTally
+     */
+    public static void tally(int parallelism, int start, int end, int grain, ColorTally into, final TallyTask task) {
+        final int strips = strips(parallelism, end - start, grain);
+        if (strips <= 1) {
+            task.run(start, end, into);
+            return;
+        }
+        final ColorTally[] parts = new ColorTally[strips];
+        final int first = start, length = end - start;
+        forRange(parallelism, 0, strips, 1, new RangeTask() {
+            @Override
+            public void run(int s, int e) {
+                for (int i = s; i < e; i++) {
+                    parts[i] = new ColorTally(new IntIntMap(256));
+                    task.run(first + (int) ((long) length * i / strips), first + (int) ((long) length * (i + 1) / strips), parts[i]);
+                }
+            }
+        });
+        for (int i = 0; i < strips; i++) {
+            into.addAll(parts[i]);
+        }
+    }
+
+    /**
+     * How many strips to split a range of {@code length} items into: twice the parallelism, so a slow strip doesn't
+     * hold up the others, but never so many that a strip has fewer than {@code grain} items.
+     */
+    private static int strips(int parallelism, int length, int grain) {
+        if (parallelism <= 1 || length <= 0)
+            return 1;
+        return Math.max(1, Math.min(Math.min(parallelism, pools.length) * 2, length / Math.max(grain, 1)));
+    }
+
+    /**
+     * Runs an error-diffusion dither over an image with the given width and height as a diagonal wavefront, so several
+     * rows are dithered at once, with each row trailing the row above it by a few pixels. The result is bit-for-bit
+     * identical to running {@code task} on every row from top to bottom on one thread, where each row's cur arrays
+     * hold the error its previous row left in its next arrays, and each next array starts as all 0. This works
+     * because a row only starts a pixel once the row above has finished every pixel that could send error to it or
+     * to the pixels it sends error to, so every error value is the same sum, added in the same order, as it would be
+     * on one thread.
+     * <br>
+     * Rows are claimed in order by whichever thread is free, and a row only ever waits on the row above it, which
+     * was claimed earlier and is already running; this can't deadlock even if the pool is busy with other work. If
+     * parallelism is 1 or less, this runs every row on the calling thread.
+     * @param parallelism how many threads to use; 1 or less runs on the calling thread
+     * @param width       how many pixels are in each row
+     * @param height      how many rows there are
+     * @param reach       how far left or right of a pixel it can send error, such as 1 for Floyd-Steinberg or 2 for
+     *                    Burkes
+     * @param task        dithers part of one row; see {@link DiffusionTask}
+     */
+    public static void diffuse(int parallelism, final int width, final int height, int reach, final DiffusionTask task) {
+        parallelism = Math.min(Math.max(parallelism, 1), pools.length);
+        final int rows = parallelism + 2, lag = Math.max(reach, 0) * 2;
+        final float[][] buffers = new float[rows * 3][width];
+        if (parallelism == 1 || height <= 1) {
+            for (int y = 0; y < height; y++) {
+                diffuseRow(buffers, rows, y, 0, width, task);
+            }
+            return;
+        }
+        final AtomicInteger nextRow = new AtomicInteger(0), failed = new AtomicInteger(0);
+        final AtomicIntegerArray progress = new AtomicIntegerArray(height);
+        forRange(parallelism, 0, Math.min(parallelism, height), 1, new RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                try {
+                    int y;
+                    while ((y = nextRow.getAndIncrement()) < height) {
+                        // the buffer this row fills for the next row was last read by an older row, which must be done
+                        if (y + 1 >= rows)
+                            await(progress, failed, y + 1 - rows, width);
+                        for (int x = 0; x < width; x += SEGMENT) {
+                            final int e = Math.min(x + SEGMENT, width);
+                            if (y > 0)
+                                await(progress, failed, y - 1, Math.min(e + lag, width));
+                            diffuseRow(buffers, rows, y, x, e, task);
+                            progress.set(y, e);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failed.set(1);
+                    throw t;
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs one segment of a row for {@link #diffuse(int, int, int, int, DiffusionTask)}, using a ring of
+     * {@code rows} sets of error buffers; the next row's buffers are cleared when a row starts.
+     */
+    private static void diffuseRow(float[][] buffers, int rows, int y, int start, int end, DiffusionTask task) {
+        final int c = (y % rows) * 3, n = ((y + 1) % rows) * 3;
+        if (start == 0) {
+            Arrays.fill(buffers[n], 0f);
+            Arrays.fill(buffers[n + 1], 0f);
+            Arrays.fill(buffers[n + 2], 0f);
+        }
+        task.run(y, start, end, buffers[c], buffers[n], buffers[c + 1], buffers[n + 1], buffers[c + 2], buffers[n + 2]);
+    }
+
+    /**
+     * Waits until {@code progress} for {@code row} is at least {@code target}, or gives up if another thread failed.
+     */
+    private static void await(AtomicIntegerArray progress, AtomicInteger failed, int row, int target) {
+        while (progress.get(row) < target) {
+            if (failed.get() != 0)
+                throw new CancellationException("Another row failed to dither");
+            Thread.yield();
+        }
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RangeTask task;
+        private final int start, end, grain;
+
+        RangeAction(RangeTask task, int start, int end, int grain) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= grain) {
+                task.run(start, end);
+                return;
+            }
+            final int mid = start + end >>> 1;
+            invokeAll(new RangeAction(task, start, mid, grain), new RangeAction(task, mid, end, grain));
+        }
+    }
+}
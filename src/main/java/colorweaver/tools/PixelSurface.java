@@ -0,0 +1,184 @@
+package colorweaver.tools;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A rectangle of RGBA8888 pixels that can be read and written by x,y position, whether it is held in a
+ * {@link Pixmap}, an int array, an IntBuffer, or a ByteBuffer. The dithering methods in
+ * {@link colorweaver.PaletteReducer} and {@link colorweaver.a8.A8PaletteReducer} that work on a Pixmap do their work
+ * on a PixelSurface, so the same dither can run on pixels that were never in a Pixmap, without copying them; this
+ * also means a dither gives the same colors for an RGBA8888 Pixmap as it does for the same pixels in an array or
+ * buffer.
+ * <br>
+ * {@link #getPixel(int, int)} and {@link #drawPixel(int, int, int)} act like the Pixmap methods with the same names
+ * when blending is off. Dithers that run on several threads call them from each thread at once, but never for the same
+ * pixel, so the surfaces here only need each pixel to be independent. A surface made by
+ * {@link #indexed(PixelSurface, byte[], int[], byte[])} doesn't change its source pixels at all, and instead writes
+ * the palette index of each drawn color, which is the form PNG8 and A8PNG8 write.
+ */
+public abstract class PixelSurface {
+    protected final int width, height;
+
+    protected PixelSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Gets how many pixels are in each row.
+     * @return the width of this surface
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets how many rows there are.
+     * @return the height of this surface
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the RGBA8888 color of the pixel at x,y, where 0,0 is the top-left.
+     * @param x the x position, from 0 (inclusive) to {@link #getWidth()} (exclusive)
+     * @param y the y position, from 0 (inclusive) to {@link #getHeight()} (exclusive)
+     * @return the RGBA8888 color at x,y
+     */
+    public abstract int getPixel(int x, int y);
+
+    /**
+     * Sets the pixel at x,y to the RGBA8888 {@code color}, without blending.
+     * @param x     the x position, from 0 (inclusive) to {@link #getWidth()} (exclusive)
+     * @param y     the y position, from 0 (inclusive) to {@link #getHeight()} (exclusive)
+     * @param color an RGBA8888 color
+     */
+    public abstract void drawPixel(int x, int y, int color);
+
+    /**
+     * Wraps a Pixmap of any format, reading and writing through {@link Pixmap#getPixel(int, int)} and
+     * {@link Pixmap#drawPixel(int, int, int)}. Drawing uses the Pixmap's current blending, so it should usually be set
+     * to {@link Pixmap.Blending#None} first.
+     * @param pixmap the Pixmap to wrap
+     * @return a PixelSurface that reads and writes {@code pixmap}
+     */
+    public static PixelSurface of(final Pixmap pixmap) {
+        return new PixelSurface(pixmap.getWidth(), pixmap.getHeight()) {
+            @Override
+            public int getPixel(int x, int y) {
+                return pixmap.getPixel(x, y);
+            }
+
+            @Override
+            public void drawPixel(int x, int y, int color) {
+                pixmap.drawPixel(x, y, color);
+            }
+        };
+    }
+
+    /**
+     * Wraps an array of RGBA8888 ints, where pixel {@code (x, y)} is {@code pixels[offset + y * stride + x]}.
+     * @param pixels RGBA8888 colors
+     * @param offset the index in pixels of the top-left pixel
+     * @param width  how many pixels are in each row
+     * @param height how many rows there are
+     * @param stride how many ints apart the starts of each row are in pixels; often equal to width
+     * @return a PixelSurface that reads and writes {@code pixels}
+     */
+    public static PixelSurface of(final int[] pixels, final int offset, int width, int height, final int stride) {
+        return new PixelSurface(width, height) {
+            @Override
+            public int getPixel(int x, int y) {
+                return pixels[offset + y * stride + x];
+            }
+
+            @Override
+            public void drawPixel(int x, int y, int color) {
+                pixels[offset + y * stride + x] = color;
+            }
+        };
+    }
+
+    /**
+     * Wraps an IntBuffer of RGBA8888 colors, where the top-left pixel is at the buffer's current position and each row
+     * starts {@code stride} ints after the last. If the buffer is backed by an array, that array is used directly;
+     * otherwise, pixels are read and written with the buffer's absolute get and put methods. The buffer's position is
+     * never changed.
+     * @param pixels RGBA8888 colors, starting at the buffer's position
+     * @param width  how many pixels are in each row
+     * @param height how many rows there are
+     * @param stride how many ints apart the starts of each row are in pixels; often equal to width
+     * @return a PixelSurface that reads and writes {@code pixels}
+     */
+    public static PixelSurface of(final IntBuffer pixels, int width, int height, final int stride) {
+        if (pixels.hasArray())
+            return of(pixels.array(), pixels.arrayOffset() + pixels.position(), width, height, stride);
+        final int start = pixels.position();
+        return new PixelSurface(width, height) {
+            @Override
+            public int getPixel(int x, int y) {
+                return pixels.get(start + y * stride + x);
+            }
+
+            @Override
+            public void drawPixel(int x, int y, int color) {
+                pixels.put(start + y * stride + x, color);
+            }
+        };
+    }
+
+    /**
+     * Wraps a ByteBuffer that holds RGBA8888 pixels as 4 bytes each (red, green, blue, alpha, in that order), such as
+     * the one returned by {@link Pixmap#getPixels()} for an RGBA8888 Pixmap. The top-left pixel starts at the buffer's
+     * current position. The buffer's position and byte order are never changed.
+     * @param pixels RGBA8888 pixels as bytes, starting at the buffer's position
+     * @param width  how many pixels are in each row
+     * @param height how many rows there are
+     * @param stride how many pixels (not bytes) apart the starts of each row are; often equal to width
+     * @return a PixelSurface that reads and writes {@code pixels}
+     */
+    public static PixelSurface of(ByteBuffer pixels, int width, int height, int stride) {
+        return of(pixels.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer(), width, height, stride);
+    }
+
+    /**
+     * Wraps {@code source} so that reading gets its pixels, but drawing leaves it unchanged and instead writes the
+     * index in {@code palette} of the drawn color to {@code indices[y * width + x]}. Every color drawn must be in
+     * palette, as it is for the dithers in PaletteReducer and A8PaletteReducer, or be 0 (which is written as index 0).
+     * When a color is in palette more than once, the index {@code mapping} gives for that color is used if it matches,
+     * or the first index with that color otherwise.
+     * @param source  the pixels to read
+     * @param indices receives palette indices, row-major; must have at least {@code width * height} items
+     * @param palette RGBA8888 colors, such as {@link colorweaver.PaletteReducer#paletteArray}
+     * @param mapping an RGB555 lookup table of palette indices, like {@link colorweaver.PaletteReducer#paletteMapping}
+     * @return a PixelSurface that reads {@code source} and writes palette indices
+     */
+    public static PixelSurface indexed(final PixelSurface source, final byte[] indices, final int[] palette,
+                                       final byte[] mapping) {
+        final IntIntMap colorToIndex = new IntIntMap(palette.length);
+        for (int i = palette.length - 1; i >= 0; i--) {
+            colorToIndex.put(palette[i], i);
+        }
+        final int w = source.width;
+        return new PixelSurface(w, source.height) {
+            @Override
+            public int getPixel(int x, int y) {
+                return source.getPixel(x, y);
+            }
+
+            @Override
+            public void drawPixel(int x, int y, int color) {
+                int index = mapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] & 0xFF;
+                if (palette[index] != color)
+                    index = colorToIndex.get(color, 0);
+                indices[y * w + x] = (byte) index;
+            }
+        };
+    }
+}
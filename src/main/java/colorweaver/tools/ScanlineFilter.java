@@ -0,0 +1,258 @@
+package colorweaver.tools;
+
+import colorweaver.annotation.GwtIncompatible;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Applies PNG scanline filters to rows of image data before they are deflated. Each PNG encoder in ColorWeaver
+ * ({@link colorweaver.PNG8}, {@link colorweaver.a8.A8PNG8}, and {@link colorweaver.a8.A8PNG}) owns one of these, and
+ * its {@link Mode} can be changed with the encoder's {@code setFilterMode()} method. The default, {@link Mode#NONE},
+ * writes rows unfiltered, which is what those encoders always did before. The filters predict each byte from the
+ * bytes to its left and above it, and store only the difference; smooth gradients and truecolor images usually
+ * compress much better that way. {@link Mode#ADAPTIVE} picks a filter for each row using the usual
+ * "minimum sum of absolute differences" heuristic, and {@link Mode#TRIAL} picks the filter whose row deflates to the
+ * fewest bytes, which is slower but can do better on dithered images.
+ * <br>
+ * All buffers are kept and reused between rows and images, so filtering doesn't allocate once the buffers are big
+ * enough for the widest row written. Call {@link #start()} before the first row of each image (or each animation
+ * frame), then {@link #apply(byte[], int)} for every row in the order they are written.
+ */
+@GwtIncompatible
+public class ScanlineFilter {
+    /**
+     * Which filter or filter-choosing strategy a {@link ScanlineFilter} uses.
+     */
+    public enum Mode {
+        /**
+         * No filtering; every row is written as-is. This is fastest, and is often best for indexed images with
+         * little repetition between rows.
+         */
+        NONE,
+        /**
+         * Every row uses the Sub filter, predicting each byte from the pixel to its left.
+         */
+        SUB,
+        /**
+         * Every row uses the Up filter, predicting each byte from the pixel above it.
+         */
+        UP,
+        /**
+         * Every row uses the Average filter, predicting each byte from the average of the pixels left of and above it.
+         */
+        AVERAGE,
+        /**
+         * Every row uses the Paeth filter, predicting each byte from whichever of the pixels left, above, and
+         * above-left is closest to a linear guess.
+         */
+        PAETH,
+        /**
+         * Each row uses whichever filter (including none) makes the smallest sum of absolute values, treating filtered
+         * bytes as signed. This is the heuristic libpng uses, and costs little more than filtering every row 5 ways.
+         */
+        ADAPTIVE,
+        /**
+         * Each row uses whichever filter (including none) makes the row deflate to the fewest bytes on its own, using
+         * a separate, fast Deflater. This is several times slower than {@link #ADAPTIVE}, but is more reliable for
+         * indexed or dithered images, where the sum of differences doesn't predict compression well.
+         */
+        TRIAL
+    }
+
+    private final int bytesPerPixel;
+    private Mode mode = Mode.NONE;
+    private byte[] previous = new byte[0];
+    private final byte[][] candidates = new byte[5][];
+    private boolean first = true;
+    private Deflater trial;
+    private byte[] trialOutput;
+
+    /**
+     * Creates a ScanlineFilter for rows with the given number of bytes per pixel, which is 1 for indexed images or 4
+     * for RGBA images.
+     * @param bytesPerPixel how many bytes each pixel uses in a row, at least 1
+     */
+    public ScanlineFilter(int bytesPerPixel) {
+        this.bytesPerPixel = Math.max(bytesPerPixel, 1);
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = new byte[1];
+        }
+    }
+
+    /**
+     * Gets the current filter mode.
+     * @return the current Mode; {@link Mode#NONE} by default
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the filter mode used for rows after this is called.
+     * @param mode a Mode; if null, this uses {@link Mode#NONE}
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode == null ? Mode.NONE : mode;
+    }
+
+    /**
+     * Must be called before the first row of each image or animation frame, so the first row isn't predicted from
+     * the last row of a previous image.
+     */
+    public void start() {
+        first = true;
+    }
+
+    /**
+     * Filters one row of image data, returning an array that holds the filter type in index 0 and the filtered row
+     * after it, so the row can be written to a PNG's deflated data with one call, writing {@code length + 1} bytes
+     * from index 0. The returned array is reused, and will be overwritten by the next call.
+     * @param row    the unfiltered bytes of the row; not modified
+     * @param length how many bytes of row to use
+     * @return an array with the filter type and filtered row, of which {@code length + 1} bytes should be written
+     */
+    public byte[] apply(byte[] row, int length) {
+        if (candidates[0].length < length + 1) {
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = new byte[length + 1];
+            }
+            previous = Arrays.copyOf(previous, length);
+        }
+        if (mode == Mode.NONE) {
+            final byte[] out = candidates[0];
+            out[0] = 0;
+            System.arraycopy(row, 0, out, 1, length);
+            first = true;
+            return out;
+        }
+        if (first) {
+            Arrays.fill(previous, 0, length, (byte) 0);
+            first = false;
+        }
+        final byte[] out;
+        switch (mode) {
+            case SUB:
+                out = sub(row, length);
+                break;
+            case UP:
+                out = up(row, length);
+                break;
+            case AVERAGE:
+                out = average(row, length);
+                break;
+            case PAETH:
+                out = paeth(row, length);
+                break;
+            default:
+                out = choose(row, length);
+        }
+        System.arraycopy(row, 0, previous, 0, length);
+        return out;
+    }
+
+    /**
+     * Ends the Deflater used by {@link Mode#TRIAL}, if one was created. This can still be used afterwards.
+     */
+    public void dispose() {
+        if (trial != null) {
+            trial.end();
+            trial = null;
+        }
+    }
+
+    private byte[] choose(byte[] row, int length) {
+        final byte[] none = candidates[0];
+        none[0] = 0;
+        System.arraycopy(row, 0, none, 1, length);
+        sub(row, length);
+        up(row, length);
+        average(row, length);
+        paeth(row, length);
+        int best = 0;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < candidates.length; i++) {
+            final long score = mode == Mode.TRIAL ? trialSize(candidates[i], length + 1) : absoluteSum(candidates[i], length + 1);
+            if (score < bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return candidates[best];
+    }
+
+    private byte[] sub(byte[] row, int length) {
+        final byte[] out = candidates[1];
+        out[0] = 1;
+        final int bpp = Math.min(bytesPerPixel, length);
+        for (int i = 0; i < bpp; i++) {
+            out[i + 1] = row[i];
+        }
+        for (int i = bpp; i < length; i++) {
+            out[i + 1] = (byte) (row[i] - row[i - bpp]);
+        }
+        return out;
+    }
+
+    private byte[] up(byte[] row, int length) {
+        final byte[] out = candidates[2];
+        out[0] = 2;
+        for (int i = 0; i < length; i++) {
+            out[i + 1] = (byte) (row[i] - previous[i]);
+        }
+        return out;
+    }
+
+    private byte[] average(byte[] row, int length) {
+        final byte[] out = candidates[3];
+        out[0] = 3;
+        final int bpp = Math.min(bytesPerPixel, length);
+        for (int i = 0; i < bpp; i++) {
+            out[i + 1] = (byte) (row[i] - ((previous[i] & 255) >>> 1));
+        }
+        for (int i = bpp; i < length; i++) {
+            out[i + 1] = (byte) (row[i] - ((row[i - bpp] & 255) + (previous[i] & 255) >>> 1));
+        }
+        return out;
+    }
+
+    private byte[] paeth(byte[] row, int length) {
+        final byte[] out = candidates[4];
+        out[0] = 4;
+        final int bpp = Math.min(bytesPerPixel, length);
+        // with nothing to the left, Paeth always predicts the byte above
+        for (int i = 0; i < bpp; i++) {
+            out[i + 1] = (byte) (row[i] - previous[i]);
+        }
+        for (int i = bpp; i < length; i++) {
+            final int a = row[i - bpp] & 255, b = previous[i] & 255, c = previous[i - bpp] & 255;
+            final int p = a + b - c;
+            final int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+            out[i + 1] = (byte) (row[i] - (pa <= pb && pa <= pc ? a : pb <= pc ? b : c));
+        }
+        return out;
+    }
+
+    private static long absoluteSum(byte[] filtered, int length) {
+        long sum = 0;
+        for (int i = 1; i < length; i++) {
+            sum += Math.abs(filtered[i]);
+        }
+        return sum;
+    }
+
+    private long trialSize(byte[] filtered, int length) {
+        if (trial == null) {
+            trial = new Deflater(Deflater.BEST_SPEED);
+            trialOutput = new byte[4096];
+        }
+        trial.reset();
+        trial.setInput(filtered, 0, length);
+        trial.finish();
+        long size = 0;
+        while (!trial.finished()) {
+            size += trial.deflate(trialOutput);
+        }
+        return size;
+    }
+}
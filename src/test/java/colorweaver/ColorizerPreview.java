@@ -107,7 +107,7 @@ public class ColorizerPreview extends ApplicationAdapter {
 	
 	private static double roughBrightness(int color)
 	{
-		return PaletteReducer.OKLAB[0][PaletteReducer.shrink(color)];
+		return ColorTables.oklab()[0][PaletteReducer.shrink(color)];
 //		return (
 //			(color >>> 24) * 3 +
 //			(color >>> 14 & 0x3FC) +
@@ -46,7 +46,8 @@ public class PaletteGuarantee {
         }
         edit.sort(Comparator.comparing(i -> {
             int s = PaletteReducer.shrink(i);
-            double L = PaletteReducer.OKLAB[0][s],  A = PaletteReducer.OKLAB[1][s], B = PaletteReducer.OKLAB[2][s];
+            final float[][] oklab = ColorTables.oklab();
+            double L = oklab[0][s],  A = oklab[1][s], B = oklab[2][s];
             return (A * A + B * B < 0.00325 ? L : 3.0 - TrigTools.atan2_(A, B));
         }));
         for (int i = 0; i < guarantee.length; i++) {